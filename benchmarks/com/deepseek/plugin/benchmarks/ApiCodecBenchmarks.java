@@ -0,0 +1,91 @@
+package com.deepseek.plugin.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.deepseek.plugin.api.ChatCompletion;
+import com.deepseek.plugin.api.ChatRequest;
+import com.deepseek.plugin.api.CompletionParser;
+import com.deepseek.plugin.api.RequestBuffer;
+
+/**
+ * Benchmarks of the API client's serialization and parsing paths.
+ *
+ * <p>For each payload size, three paths are measured: serializing a request
+ * into the buffer handed to the HTTP client, parsing a complete response
+ * body from a stream, and parsing every {@code data:} event of the same
+ * answer when it is streamed. Before being measured, each path is checked
+ * to reproduce the original content.</p>
+ */
+public final class ApiCodecBenchmarks {
+
+    /** The payload sizes, from a short prompt to a very large answer. */
+    static final int[] SIZES = { 1024, 64 * 1024, 1024 * 1024, 5 * 1024 * 1024 };
+
+    /** The length of each streamed delta, in characters. */
+    static final int DELTA_LENGTH = 24;
+
+    private ApiCodecBenchmarks() {
+    }
+
+    /**
+     * Creates every benchmark, in size order.
+     *
+     * @return the benchmarks
+     * @throws IOException if a payload cannot be generated
+     */
+    public static List<BenchmarkRunner.Benchmark> all() throws IOException {
+        List<BenchmarkRunner.Benchmark> benchmarks = new ArrayList<>();
+        for (int size : SIZES) {
+            String label = size >= 1024 * 1024 ? size / (1024 * 1024) + "MB" : size / 1024 + "KB";
+
+            ChatRequest request = Payloads.request(size);
+            int requestBytes = serialize(request, 256).size();
+            benchmarks.add(new BenchmarkRunner.Benchmark("request.serialize/" + label, requestBytes,
+                () -> serialize(request, requestBytes)));
+
+            String answer = Payloads.text(size);
+            byte[] body = Payloads.completion(answer);
+            check(answer, CompletionParser.parse(new ByteArrayInputStream(body)).content());
+            benchmarks.add(new BenchmarkRunner.Benchmark("response.parse/" + label, body.length,
+                () -> CompletionParser.parse(new ByteArrayInputStream(body))));
+
+            List<String> chunks = Payloads.chunks(answer, DELTA_LENGTH);
+            check(answer, parseStream(chunks));
+            long chunkBytes = chunks.stream().mapToLong(String::length).sum();
+            benchmarks.add(new BenchmarkRunner.Benchmark("stream.parseChunk/" + label, chunkBytes,
+                () -> parseStream(chunks)));
+        }
+        return benchmarks;
+    }
+
+    private static RequestBuffer serialize(ChatRequest request, int capacity) throws IOException {
+        RequestBuffer buffer = new RequestBuffer(capacity);
+        request.writeTo(buffer);
+        return buffer;
+    }
+
+    /**
+     * Parses the events of a streamed answer and accumulates the content,
+     * as the streaming client does.
+     */
+    private static String parseStream(List<String> chunks) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (String chunk : chunks) {
+            ChatCompletion completion = CompletionParser.parseChunk(chunk);
+            String delta = completion.content();
+            if (delta != null) {
+                content.append(delta);
+            }
+        }
+        return content.toString();
+    }
+
+    private static void check(String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("Round trip changed the content of a " + expected.length() + " character payload");
+        }
+    }
+}
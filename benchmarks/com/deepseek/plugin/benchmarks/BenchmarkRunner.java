@@ -0,0 +1,223 @@
+package com.deepseek.plugin.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import com.deepseek.plugin.api.json.JsonWriter;
+
+/**
+ * A small headless benchmark harness.
+ *
+ * <p>Each benchmark runs a number of warmup iterations, whose results are
+ * discarded, followed by measured iterations of a fixed duration. For every
+ * benchmark the harness reports the throughput, the throughput in payload
+ * megabytes per second, the bytes allocated per operation and the number of
+ * garbage collections, so that both speed and allocation rate can be
+ * tracked over time. Results are printed as a table and can additionally be
+ * written as JSON for comparison between runs.</p>
+ *
+ * <p>Usage: {@code BenchmarkRunner [-wi n] [-i n] [-t millis] [-json file] [filter...]},
+ * where each filter selects the benchmarks whose name contains it.</p>
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * The operation measured by a benchmark.
+     */
+    @FunctionalInterface
+    public interface Operation {
+
+        /**
+         * Runs the operation once.
+         *
+         * @return the result of the operation, consumed so it is not optimized away
+         * @throws Exception if the operation fails
+         */
+        Object run() throws Exception;
+    }
+
+    /**
+     * A named operation over a payload.
+     *
+     * @param name         the benchmark name, such as {@code response.parse/64KB}
+     * @param payloadBytes the size of the payload processed by one operation
+     * @param operation    the operation
+     */
+    public record Benchmark(String name, long payloadBytes, Operation operation) {
+    }
+
+    /**
+     * The measurements of one benchmark.
+     *
+     * @param name               the benchmark name
+     * @param payloadBytes       the size of the payload processed by one operation
+     * @param operations         the number of measured operations
+     * @param opsPerSecond       the mean throughput over the measured iterations
+     * @param opsPerSecondError  the standard deviation of the throughput
+     * @param megabytesPerSecond the payload throughput
+     * @param bytesPerOp         the bytes allocated per operation
+     * @param gcCount            the number of collections during the measured iterations
+     */
+    public record Result(String name, long payloadBytes, long operations, double opsPerSecond,
+            double opsPerSecondError, double megabytesPerSecond, double bytesPerOp, long gcCount) {
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static volatile Object sink;
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+
+    /**
+     * Creates a runner.
+     *
+     * @param warmupIterations the number of discarded iterations
+     * @param iterations       the number of measured iterations
+     * @param iterationMillis  the duration of each iteration
+     */
+    public BenchmarkRunner(int warmupIterations, int iterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = Math.max(1, iterations);
+        this.iterationNanos = iterationMillis * 1_000_000;
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Runs the benchmarks selected on the command line.
+     *
+     * @param args the options and filters described in the class comment
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        int warmup = 3;
+        int iterations = 5;
+        long millis = 1000;
+        Path json = null;
+        List<String> filters = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi" -> warmup = Integer.parseInt(args[++i]);
+                case "-i" -> iterations = Integer.parseInt(args[++i]);
+                case "-t" -> millis = Long.parseLong(args[++i]);
+                case "-json" -> json = Path.of(args[++i]);
+                default -> filters.add(args[i]);
+            }
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(warmup, iterations, millis);
+        List<Result> results = new ArrayList<>();
+        System.out.printf(Locale.ROOT, "%-28s %12s %10s %12s %14s %6s%n",
+            "Benchmark", "ops/s", "error", "MB/s", "alloc B/op", "GCs");
+        for (Benchmark benchmark : ApiCodecBenchmarks.all()) {
+            if (!filters.isEmpty() && filters.stream().noneMatch(benchmark.name()::contains)) {
+                continue;
+            }
+            Result result = runner.run(benchmark);
+            results.add(result);
+            System.out.printf(Locale.ROOT, "%-28s %12.1f %10.1f %12.1f %14.0f %6d%n",
+                result.name(), result.opsPerSecond(), result.opsPerSecondError(),
+                result.megabytesPerSecond(), result.bytesPerOp(), result.gcCount());
+        }
+        if (json != null) {
+            writeJson(json, results);
+        }
+    }
+
+    /**
+     * Warms up and measures one benchmark.
+     *
+     * @param benchmark the benchmark
+     * @return the measurements
+     * @throws Exception if the operation fails
+     */
+    public Result run(Benchmark benchmark) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(benchmark.operation());
+        }
+
+        long threadId = Thread.currentThread().threadId();
+        double[] throughput = new double[iterations];
+        long operations = 0;
+        long allocated = 0;
+        long gcBefore = gcCount();
+        for (int i = 0; i < iterations; i++) {
+            long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long[] measured = iteration(benchmark.operation());
+            allocated += THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            operations += measured[0];
+            throughput[i] = measured[0] * 1e9 / measured[1];
+        }
+        long gcs = gcCount() - gcBefore;
+
+        double mean = 0;
+        for (double value : throughput) {
+            mean += value / iterations;
+        }
+        double variance = 0;
+        for (double value : throughput) {
+            variance += (value - mean) * (value - mean) / iterations;
+        }
+        return new Result(benchmark.name(), benchmark.payloadBytes(), operations, mean, Math.sqrt(variance),
+            mean * benchmark.payloadBytes() / (1024.0 * 1024.0), (double) allocated / operations, gcs);
+    }
+
+    /**
+     * Runs the operation until the iteration duration has elapsed, at least once.
+     *
+     * @return the number of operations and the elapsed nanoseconds
+     */
+    private long[] iteration(Operation operation) throws Exception {
+        long start = System.nanoTime();
+        long operations = 0;
+        long elapsed;
+        do {
+            sink = operation.run();
+            operations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[] { operations, elapsed };
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static void writeJson(Path file, List<Result> results) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file);
+             JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("timestamp").value(Instant.now().toString());
+            writer.name("java").value(Runtime.version().toString());
+            writer.name("results").beginArray();
+            for (Result result : results) {
+                writer.beginObject();
+                writer.name("name").value(result.name());
+                writer.name("payloadBytes").value(result.payloadBytes());
+                writer.name("operations").value(result.operations());
+                writer.name("opsPerSecond").value(result.opsPerSecond());
+                writer.name("opsPerSecondError").value(result.opsPerSecondError());
+                writer.name("megabytesPerSecond").value(result.megabytesPerSecond());
+                writer.name("bytesPerOp").value(result.bytesPerOp());
+                writer.name("gcCount").value(result.gcCount());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+    }
+}
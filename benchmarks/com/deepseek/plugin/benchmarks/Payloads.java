@@ -0,0 +1,161 @@
+package com.deepseek.plugin.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.deepseek.plugin.api.ChatMessage;
+import com.deepseek.plugin.api.ChatRequest;
+import com.deepseek.plugin.api.json.JsonWriter;
+
+/**
+ * Generates realistic API payloads for the benchmarks.
+ *
+ * <p>Text is assembled from fragments resembling what the plugin actually
+ * exchanges: source code full of quotes, backslashes, tabs and line breaks,
+ * Portuguese prose with accented letters, CJK text, emoji encoded as
+ * surrogate pairs and the control and separator characters that JSON
+ * requires to be escaped. Generation is deterministic, so runs are
+ * comparable with each other.</p>
+ */
+public final class Payloads {
+
+    private static final String[] FRAGMENTS = {
+        "public String escape(String s) {\n\treturn s.replace(\"\\\\\", \"\\\\\\\\\").replace(\"\\\"\", \"\\\\\\\"\");\n}\n",
+        "Não foi possível conectar à API. Verifique a configuração e tente novamente: ação, coração, útil.\n",
+        "String path = \"C:\\\\Users\\\\dev\\\\workspace\\\\src\\\\Main.java\";\r\n",
+        "日本語のテキストと中文文本，以及한국어 문장。",
+        "Emoji: \uD83D\uDE80 \uD83D\uDC4D \uD83E\uDD16 \uD83D\uDCA1 done.\n",
+        "Control \u0001\u0002\u001F and separators \u2028\u2029 inside text.\t\t|\n",
+        "```java\nif (a < b && c > d) { map.put(\"key\", '\\n'); }\n```\n",
+        "Plain ASCII prose explaining what the method does and why it is written this way. ",
+    };
+
+    private static final int[] FRAGMENT_BYTES = new int[FRAGMENTS.length];
+
+    static {
+        for (int i = 0; i < FRAGMENTS.length; i++) {
+            FRAGMENT_BYTES[i] = FRAGMENTS[i].getBytes(StandardCharsets.UTF_8).length;
+        }
+    }
+
+    private Payloads() {
+    }
+
+    /**
+     * Generates text whose UTF-8 encoding is at least the given size.
+     *
+     * @param bytes the minimum encoded size
+     * @return the generated text
+     */
+    public static String text(int bytes) {
+        StringBuilder text = new StringBuilder(bytes);
+        int size = 0;
+        for (int i = 0; size < bytes; i++) {
+            int fragment = (i * 5 + i / FRAGMENTS.length) % FRAGMENTS.length;
+            text.append(FRAGMENTS[fragment]);
+            size += FRAGMENT_BYTES[fragment];
+        }
+        return text.toString();
+    }
+
+    /**
+     * Builds a streamed request carrying a conversation of about the given size,
+     * split over a system prompt and alternating user and assistant turns.
+     *
+     * @param bytes the approximate size of the message contents
+     * @return the request
+     */
+    public static ChatRequest request(int bytes) {
+        int turns = bytes < 4096 ? 2 : 8;
+        List<ChatMessage> messages = new ArrayList<>(turns + 1);
+        messages.add(new ChatMessage("system", "You are a helpful assistant for Java developers.", null));
+        for (int i = 0; i < turns; i++) {
+            String role = i % 2 == 0 ? "user" : "assistant";
+            messages.add(new ChatMessage(role, text(bytes / turns), null));
+        }
+        return new ChatRequest("deepseek-chat", messages, true);
+    }
+
+    /**
+     * Encodes a complete, non-streamed chat completion response.
+     *
+     * @param content the answer text
+     * @return the UTF-8 encoded response body
+     * @throws IOException if encoding fails
+     */
+    public static byte[] completion(String content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length() * 2 + 512);
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("id").value("930c60df-bf64-41c9-a88e-3ec75f81e00e");
+            writer.name("object").value("chat.completion");
+            writer.name("created").value(1705651092L);
+            writer.name("model").value("deepseek-chat");
+            writer.name("choices").beginArray();
+            writer.beginObject();
+            writer.name("index").value(0L);
+            writer.name("message").beginObject();
+            writer.name("role").value("assistant");
+            writer.name("content").value(content);
+            writer.endObject();
+            writer.name("logprobs").nullValue();
+            writer.name("finish_reason").value("stop");
+            writer.endObject();
+            writer.endArray();
+            writer.name("usage").beginObject();
+            writer.name("prompt_tokens").value(16L);
+            writer.name("completion_tokens").value(content.length() / 4L);
+            writer.name("total_tokens").value(16L + content.length() / 4L);
+            writer.endObject();
+            writer.endObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes the {@code data:} payloads of a streamed answer, one per delta.
+     * Deltas are about as long as the fragments the server sends and never
+     * split a surrogate pair.
+     *
+     * @param content     the answer text
+     * @param deltaLength the approximate length of each delta, in characters
+     * @return the event payloads, in order
+     * @throws IOException if encoding fails
+     */
+    public static List<String> chunks(String content, int deltaLength) throws IOException {
+        List<String> chunks = new ArrayList<>(content.length() / deltaLength + 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        int start = 0;
+        while (start < content.length()) {
+            int end = Math.min(start + deltaLength, content.length());
+            if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+                end++;
+            }
+            out.reset();
+            try (JsonWriter writer = new JsonWriter(out)) {
+                writer.beginObject();
+                writer.name("id").value("930c60df-bf64-41c9-a88e-3ec75f81e00e");
+                writer.name("object").value("chat.completion.chunk");
+                writer.name("created").value(1705651092L);
+                writer.name("model").value("deepseek-chat");
+                writer.name("choices").beginArray();
+                writer.beginObject();
+                writer.name("index").value(0L);
+                writer.name("delta").beginObject();
+                writer.name("content").value(content.substring(start, end));
+                writer.endObject();
+                writer.name("logprobs").nullValue();
+                writer.name("finish_reason").nullValue();
+                writer.endObject();
+                writer.endArray();
+                writer.endObject();
+            }
+            chunks.add(out.toString(StandardCharsets.UTF_8));
+            start = end;
+        }
+        return chunks;
+    }
+}
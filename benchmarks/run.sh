@@ -0,0 +1,19 @@
+#!/bin/sh
+# Compiles the benchmarks together with the plugin classes they exercise and
+# runs them headless. Arguments are passed to BenchmarkRunner, for example:
+#
+#   benchmarks/run.sh -i 10 -json results.json response.parse
+#
+# Only the pure Java API classes are compiled, so no Eclipse installation is
+# needed. Set JAVA_HOME to choose the JDK and JAVA_OPTS to tune the JVM.
+set -e
+cd "$(dirname "$0")/.."
+
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+JAVAC="${JAVA_HOME:+$JAVA_HOME/bin/}javac"
+OUT=bin-benchmarks
+
+"$JAVAC" -d "$OUT" -sourcepath src:benchmarks \
+    benchmarks/com/deepseek/plugin/benchmarks/*.java
+exec "$JAVA" ${JAVA_OPTS:--Xms2g -Xmx2g} -cp "$OUT" \
+    com.deepseek.plugin.benchmarks.BenchmarkRunner "$@"
@@ -1,11 +1,37 @@
 package com.deepseek.plugin;
 
+import java.io.IOException;
+import java.time.Duration;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.ui.preferences.ScopedPreferenceStore;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
 import org.osgi.framework.BundleContext;
 
+import com.deepseek.plugin.api.DeepSeekAPIClient;
+import com.deepseek.plugin.api.EndpointRouter;
+import com.deepseek.plugin.api.HttpTransport;
+import com.deepseek.plugin.api.RateLimiter;
+import com.deepseek.plugin.api.RequestCoalescer;
+import com.deepseek.plugin.cache.ResponseCache;
+import com.deepseek.plugin.completion.CompletionEngine;
+import com.deepseek.plugin.concurrent.RequestScheduler;
+import com.deepseek.plugin.configuration.ConfigurationManager;
+import com.deepseek.plugin.context.ContextIndex;
+import com.deepseek.plugin.context.WorkspaceIndexer;
+import com.deepseek.plugin.editor.EditorSelectionTracker;
+import com.deepseek.plugin.editor.PromptPrebuilder;
+import com.deepseek.plugin.history.ConversationStore;
+import com.deepseek.plugin.preferences.DeepSeekPreferencesPage;
+
 /**
  * The main activator class for the DeepSeek Eclipse Plugin.
  * Controls the plugin lifecycle and provides access to plugin-wide services
@@ -22,17 +48,149 @@ public class Activator implements BundleActivator {
      */
     private static Activator plugin;
     
+    /**
+     * Maximum number of API requests running at the same time.
+     */
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+    
+    /**
+     * Maximum number of API requests waiting or running.
+     */
+    private static final int MAX_PENDING_REQUESTS = 32;
+    
+    /**
+     * Time granted to running requests to finish when the plugin stops.
+     */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+    
+    /**
+     * Share of the configured request rate granted to code completions, on
+     * top of the chat budget.
+     */
+    private static final int COMPLETION_RATE_DIVISOR = 4;
+    
+    /**
+     * Number of completion requests that may be sent at once.
+     */
+    private static final int COMPLETION_BURST = 2;
+    
+    /**
+     * The plugin bundle, used for logging and state location.
+     */
+    private Bundle bundle;
+    
     /**
      * The preference store for plugin configuration.
      */
     private IPreferenceStore preferenceStore;
     
+    /**
+     * The HTTP transport shared by all API clients.
+     */
+    private volatile HttpTransport transport;
+    
+    /**
+     * The rate limiter shared by all transports, kept when the transport is rebuilt.
+     */
+    private RateLimiter rateLimiter;
+    
+    /**
+     * The rate limiter of code completions, so speculative requests never
+     * take the permits of chat requests.
+     */
+    private RateLimiter completionRateLimiter;
+    
+    /**
+     * The shared transport, paced by the completion rate limiter.
+     */
+    private volatile HttpTransport completionTransport;
+    
+    /**
+     * The router choosing the endpoint of each request, rebuilt when the endpoints change.
+     */
+    private volatile EndpointRouter endpointRouter;
+    
+    /**
+     * Shares one API call between identical requests in flight.
+     */
+    private final RequestCoalescer requestCoalescer = new RequestCoalescer();
+    
+    /**
+     * The scheduler running all API requests.
+     */
+    private RequestScheduler requestScheduler;
+    
+    /**
+     * The cache of answers to repeated prompts.
+     */
+    private ResponseCache responseCache;
+    
+    /**
+     * The persistent conversation history, or null if it could not be opened.
+     */
+    private ConversationStore conversationStore;
+    
+    /**
+     * Whether opening the conversation history was attempted.
+     */
+    private boolean historyOpened;
+    
+    /**
+     * Guards the opening and closing of the conversation history.
+     */
+    private final Object historyLock = new Object();
+    
+    /**
+     * The persistent workspace context index, or null if it could not be opened.
+     */
+    private ContextIndex contextIndex;
+    
+    /**
+     * The indexer keeping the workspace context index up to date, or null without an index.
+     */
+    private WorkspaceIndexer workspaceIndexer;
+    
+    /**
+     * Whether opening the workspace context index was attempted.
+     */
+    private boolean contextOpened;
+    
+    /**
+     * Guards the opening and closing of the workspace context index and
+     * the starting and stopping of its indexer.
+     */
+    private final Object contextLock = new Object();
+    
+    /**
+     * Prepares the prompts of editor commands in the background.
+     */
+    private PromptPrebuilder promptPrebuilder;
+    
+    /**
+     * Feeds editor selections to the prompt prebuilder and the completion tracker.
+     */
+    private EditorSelectionTracker editorSelectionTracker;
+    
+    /**
+     * Requests and caches code completions for the Java editor.
+     */
+    private CompletionEngine completionEngine;
+    
+    /**
+     * Applies changed timeout and cache preferences.
+     */
+    private final IPropertyChangeListener preferenceListener = this::preferenceChanged;
+    
     /**
      * Starts this plugin and initializes its core services.
      * 
      * <p>This method is called when the plugin is activated by the OSGi framework.
-     * It initializes the preference store and sets up the plugin instance
-     * for global access.</p>
+     * It initializes the preference store, creates the shared HTTP transport,
+     * endpoint router, request scheduler and response cache, creates the
+     * editor prompt prebuilder, the editor selection tracker and the
+     * completion engine, and sets up the plugin instance for global access.
+     * The conversation history and the workspace context index are opened on
+     * first use, so activating the plugin reads nothing from disk.</p>
      *
      * @param context the bundle context provided by the OSGi framework
      * @throws Exception if plugin initialization fails
@@ -40,20 +198,86 @@ public class Activator implements BundleActivator {
     @Override
     public void start(BundleContext context) throws Exception {
         plugin = this;
+        bundle = context.getBundle();
         preferenceStore = new ScopedPreferenceStore(InstanceScope.INSTANCE, "com.deepseek.plugin");
+        ConfigurationManager.initializeDefaults();
+        rateLimiter = new RateLimiter(ConfigurationManager.getRequestsPerMinute(), HttpTransport.DEFAULT_BURST);
+        completionRateLimiter = new RateLimiter(completionRate(), COMPLETION_BURST);
+        transport = createTransport();
+        completionTransport = transport.withRateLimiter(completionRateLimiter);
+        endpointRouter = new EndpointRouter(ConfigurationManager.getEndpointProfiles());
+        requestScheduler = new RequestScheduler(MAX_CONCURRENT_REQUESTS, MAX_PENDING_REQUESTS);
+        responseCache = new ResponseCache(
+            Platform.getStateLocation(bundle).toFile().toPath().resolve("cache"),
+            ResponseCache.DEFAULT_MEMORY_BYTES,
+            ResponseCache.DEFAULT_DISK_BYTES,
+            Duration.ofMinutes(ConfigurationManager.getCacheTtl()));
+        responseCache.setDiskEnabled(ConfigurationManager.isCacheOnDisk());
+        preferenceStore.addPropertyChangeListener(preferenceListener);
+        promptPrebuilder = new PromptPrebuilder();
+        editorSelectionTracker = new EditorSelectionTracker();
+        completionEngine = new CompletionEngine(requestScheduler, (messages, token) ->
+            new DeepSeekAPIClient(ConfigurationManager.getApiKey(), endpointRouter, completionTransport, null)
+                .complete(messages, token));
     }
     
     /**
      * Stops this plugin and releases any allocated resources.
      * 
      * <p>This method is called when the plugin is being stopped by the OSGi framework.
-     * It performs cleanup operations and nullifies the plugin instance reference.</p>
+     * It disposes of the completion engine and the prompt prebuilder, cancels
+     * pending requests and waits briefly for them, so that no request still
+     * reads the index, then stops the workspace indexer and commits the
+     * context index, closes the conversation history, shuts down the shared
+     * HTTP transport and nullifies the plugin instance reference.</p>
      *
      * @param context the bundle context provided by the OSGi framework
      * @throws Exception if plugin shutdown fails
      */
     @Override
     public void stop(BundleContext context) throws Exception {
+        preferenceStore.removePropertyChangeListener(preferenceListener);
+        if (completionEngine != null) {
+            completionEngine.dispose();
+            completionEngine = null;
+        }
+        if (promptPrebuilder != null) {
+            promptPrebuilder.dispose();
+            promptPrebuilder = null;
+        }
+        if (requestScheduler != null) {
+            if (!requestScheduler.shutdown(SHUTDOWN_TIMEOUT)) {
+                logError("API requests still running after shutdown", null);
+            }
+            requestScheduler = null;
+        }
+        synchronized (contextLock) {
+            contextOpened = true;
+            if (workspaceIndexer != null) {
+                workspaceIndexer.stop();
+                workspaceIndexer = null;
+            }
+            if (contextIndex != null) {
+                try {
+                    contextIndex.close();
+                } catch (IOException exception) {
+                    logError("Could not commit the workspace context index", exception);
+                }
+                contextIndex = null;
+            }
+        }
+        synchronized (historyLock) {
+            historyOpened = true;
+            if (conversationStore != null) {
+                conversationStore.close();
+                conversationStore = null;
+            }
+        }
+        if (transport != null) {
+            transport.shutdown();
+            transport = null;
+            completionTransport = null;
+        }
         plugin = null;
     }
     
@@ -80,4 +304,234 @@ public class Activator implements BundleActivator {
     public IPreferenceStore getPreferenceStore() {
         return preferenceStore;
     }
+    
+    /**
+     * Returns the HTTP transport shared by all API clients.
+     * 
+     * <p>The transport keeps connections alive across requests, so clients
+     * should always obtain it here instead of creating their own.</p>
+     *
+     * @return the shared HTTP transport
+     */
+    public HttpTransport getTransport() {
+        return transport;
+    }
+    
+    /**
+     * Returns the router choosing the endpoint of each API request.
+     * 
+     * <p>The router keeps the latency and error rate of every configured
+     * endpoint, so clients should always obtain it here; it is replaced,
+     * with fresh statistics, when the endpoint preferences change.</p>
+     *
+     * @return the shared endpoint router
+     */
+    public EndpointRouter getEndpointRouter() {
+        return endpointRouter;
+    }
+    
+    /**
+     * Returns the coalescer sharing one API call between identical requests
+     * in flight, such as a prompt sent twice in a row or asked by several views.
+     *
+     * @return the shared request coalescer
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+    
+    /**
+     * Returns the scheduler that runs API requests.
+     * 
+     * <p>Requests should be submitted here instead of starting threads, so
+     * that their number stays bounded and they are cancelled when the plugin
+     * stops.</p>
+     *
+     * @return the shared request scheduler
+     */
+    public RequestScheduler getRequestScheduler() {
+        return requestScheduler;
+    }
+    
+    /**
+     * Returns the cache of answers to repeated prompts.
+     * 
+     * <p>The cache is always available; whether clients use it is controlled
+     * by {@link ConfigurationManager#isCacheEnabled()}.</p>
+     *
+     * @return the shared response cache
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+    
+    /**
+     * Returns the persistent conversation history, opening it on first use.
+     *
+     * @return the conversation store, or null if it could not be opened
+     */
+    public ConversationStore getConversationStore() {
+        synchronized (historyLock) {
+            if (!historyOpened) {
+                historyOpened = true;
+                try {
+                    conversationStore = ConversationStore.open(
+                        Platform.getStateLocation(bundle).toFile().toPath().resolve("history"));
+                } catch (IOException exception) {
+                    logError("Could not open the conversation history", exception);
+                }
+            }
+            return conversationStore;
+        }
+    }
+    
+    /**
+     * Returns the indexer providing workspace context for prompts.
+     * 
+     * <p>The index is opened, and the indexer started, on first use. The
+     * indexer only runs while {@link ConfigurationManager#getContextChunks()}
+     * is positive; otherwise its index is left as it was.</p>
+     *
+     * @return the workspace indexer, or null if the index could not be opened
+     */
+    public WorkspaceIndexer getWorkspaceIndexer() {
+        synchronized (contextLock) {
+            if (!contextOpened) {
+                contextOpened = true;
+                try {
+                    contextIndex = ContextIndex.open(
+                        Platform.getStateLocation(bundle).toFile().toPath().resolve("index"));
+                    workspaceIndexer = new WorkspaceIndexer(ResourcesPlugin.getWorkspace(), contextIndex);
+                    if (ConfigurationManager.getContextChunks() > 0) {
+                        workspaceIndexer.start();
+                    }
+                } catch (IOException exception) {
+                    logError("Could not open the workspace context index", exception);
+                }
+            }
+            return workspaceIndexer;
+        }
+    }
+    
+    /**
+     * Returns the component preparing the prompts of editor commands in the background.
+     *
+     * @return the prompt prebuilder
+     */
+    public PromptPrebuilder getPromptPrebuilder() {
+        return promptPrebuilder;
+    }
+    
+    /**
+     * Returns the tracker feeding editor selections to the prompt prebuilder
+     * and the completion tracker. Features working on editors install it
+     * when first used.
+     *
+     * @return the editor selection tracker
+     */
+    public EditorSelectionTracker getEditorSelectionTracker() {
+        return editorSelectionTracker;
+    }
+    
+    /**
+     * Returns the engine requesting code completions for the Java editor.
+     * 
+     * <p>Its requests bypass the response cache, since the engine keeps
+     * its own cache of completions by prefix, and are paced by a rate
+     * limiter of their own, so completions typed ahead never delay a chat
+     * request.</p>
+     *
+     * @return the completion engine
+     */
+    public CompletionEngine getCompletionEngine() {
+        return completionEngine;
+    }
+    
+    /**
+     * Writes an error to the Eclipse error log.
+     *
+     * @param message   the error description
+     * @param exception the cause, may be null
+     */
+    public static void logError(String message, Throwable exception) {
+        Activator activator = plugin;
+        if (activator != null) {
+            Platform.getLog(activator.bundle).log(
+                new Status(IStatus.ERROR, activator.bundle.getSymbolicName(), message, exception));
+        }
+    }
+    
+    /**
+     * Returns the request rate of code completions.
+     *
+     * @return the completion requests per minute
+     */
+    private static int completionRate() {
+        return Math.max(1, ConfigurationManager.getRequestsPerMinute() / COMPLETION_RATE_DIVISOR);
+    }
+    
+    /**
+     * Creates a transport using the currently configured timeouts and the
+     * shared rate limiter.
+     *
+     * @return a new HTTP transport
+     */
+    private HttpTransport createTransport() {
+        return new HttpTransport(
+            Duration.ofSeconds(ConfigurationManager.getConnectTimeout()),
+            Duration.ofSeconds(ConfigurationManager.getReadTimeout()),
+            rateLimiter
+        );
+    }
+    
+    /**
+     * Replaces the shared transport when a timeout preference changes,
+     * adjusts the rate limit and reconfigures the response cache when their
+     * preferences change, rebuilds the endpoint router and empties the cache
+     * when the endpoints or the model change since its answers came from
+     * another server or model, and starts or stops the
+     * workspace indexer when workspace context is enabled or disabled, and
+     * cancels pending completions when completions are disabled.
+     * The previous transport is retired: it shuts down once the requests
+     * still using it have ended.
+     *
+     * @param event the preference change event
+     */
+    private void preferenceChanged(PropertyChangeEvent event) {
+        String property = event.getProperty();
+        if (DeepSeekPreferencesPage.PREFERENCE_CONNECT_TIMEOUT.equals(property)
+                || DeepSeekPreferencesPage.PREFERENCE_READ_TIMEOUT.equals(property)) {
+            HttpTransport previous = transport;
+            transport = createTransport();
+            completionTransport = transport.withRateLimiter(completionRateLimiter);
+            if (previous != null) {
+                previous.retire();
+            }
+        } else if (DeepSeekPreferencesPage.PREFERENCE_REQUESTS_PER_MINUTE.equals(property)) {
+            rateLimiter.setRate(ConfigurationManager.getRequestsPerMinute());
+            completionRateLimiter.setRate(completionRate());
+        } else if (DeepSeekPreferencesPage.PREFERENCE_CACHE_TTL.equals(property)) {
+            responseCache.setTimeToLive(Duration.ofMinutes(ConfigurationManager.getCacheTtl()));
+        } else if (DeepSeekPreferencesPage.PREFERENCE_CACHE_DISK.equals(property)) {
+            responseCache.setDiskEnabled(ConfigurationManager.isCacheOnDisk());
+        } else if (DeepSeekPreferencesPage.PREFERENCE_API_ENDPOINT.equals(property)
+                || DeepSeekPreferencesPage.PREFERENCE_MODEL.equals(property)
+                || DeepSeekPreferencesPage.PREFERENCE_ENDPOINT_PROFILES.equals(property)) {
+            endpointRouter = new EndpointRouter(ConfigurationManager.getEndpointProfiles());
+            responseCache.clear();
+        } else if (DeepSeekPreferencesPage.PREFERENCE_CONTEXT_CHUNKS.equals(property)) {
+            synchronized (contextLock) {
+                if (workspaceIndexer == null) {
+                    // not opened yet, or could not be; opening reads the preference
+                } else if (ConfigurationManager.getContextChunks() > 0) {
+                    workspaceIndexer.start();
+                } else {
+                    workspaceIndexer.stop();
+                }
+            }
+        } else if (DeepSeekPreferencesPage.PREFERENCE_COMPLETION_ENABLED.equals(property)
+                && !ConfigurationManager.isCompletionEnabled()) {
+            completionEngine.cancel();
+        }
+    }
 }
\ No newline at end of file
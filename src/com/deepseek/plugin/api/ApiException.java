@@ -0,0 +1,44 @@
+package com.deepseek.plugin.api;
+
+import java.io.IOException;
+
+/**
+ * Signals that the DeepSeek API answered, but not with a usable completion.
+ *
+ * <p>The message is meant to be shown to the user as is.</p>
+ */
+public class ApiException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    /**
+     * Creates an exception for a response that could not be used.
+     *
+     * @param message the user-facing description
+     */
+    public ApiException(String message) {
+        this(-1, message);
+    }
+
+    /**
+     * Creates an exception for a response with an error status.
+     *
+     * @param statusCode the HTTP status of the response
+     * @param message    the user-facing description
+     */
+    public ApiException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Returns the HTTP status of the response.
+     *
+     * @return the status code, or -1 if the status was 200
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,327 @@
+package com.deepseek.plugin.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import com.deepseek.plugin.concurrent.CancellationToken;
+
+/**
+ * A set of independent requests running concurrently, created by
+ * {@link DeepSeekAPIClient#sendBatch(List, int, CancellationToken)}.
+ *
+ * <p>Each item runs on its own virtual thread once one of the
+ * {@code parallelism} slots is free. Results can be consumed per item
+ * through {@link #future(int)}, or in completion order by subscribing to
+ * the batch as a {@link Flow.Publisher}. Subscribers first receive the
+ * results that completed before they subscribed, so subscribing late never
+ * loses items; every subscriber is completed once all items are done.</p>
+ */
+public final class ChatBatch implements Flow.Publisher<ChatBatch.Result> {
+
+    /**
+     * The outcome of one item.
+     *
+     * @param index   the position of the item in the batch
+     * @param content the answer, or null if the item failed or was cancelled
+     * @param failure the failure, a {@link CancellationException} for cancelled items, or null
+     */
+    public record Result(int index, String content, Throwable failure) {
+
+        /**
+         * Checks if the item produced an answer.
+         *
+         * @return true if the item succeeded
+         */
+        public boolean isSuccess() {
+            return failure == null;
+        }
+    }
+
+    /**
+     * The work performed for one item.
+     */
+    @FunctionalInterface
+    interface ItemTask {
+
+        /**
+         * Produces the answer of an item.
+         *
+         * @param index the item position
+         * @param token the item's own cancellation token
+         * @return the answer
+         * @throws Exception if the item fails
+         */
+        String run(int index, CancellationToken token) throws Exception;
+    }
+
+    private static final ThreadFactory THREAD_FACTORY = Thread.ofVirtual().name("deepseek-batch-", 0).factory();
+
+    private final List<CompletableFuture<String>> futures;
+    private final CancellationToken[] tokens;
+    private final List<Result> completed;
+    private final List<ReplaySubscription> subscriptions = new ArrayList<>();
+
+    private ChatBatch(int size) {
+        List<CompletableFuture<String>> list = new ArrayList<>(size);
+        tokens = new CancellationToken[size];
+        for (int i = 0; i < size; i++) {
+            list.add(new CompletableFuture<>());
+            tokens[i] = new CancellationToken();
+        }
+        futures = Collections.unmodifiableList(list);
+        completed = new ArrayList<>(size);
+    }
+
+    /**
+     * Starts a batch.
+     *
+     * @param size        the number of items
+     * @param parallelism the maximum number of items running at the same time
+     * @param token       the token cancelling every item
+     * @param task        the work performed for each item
+     * @return the running batch
+     */
+    static ChatBatch start(int size, int parallelism, CancellationToken token, ItemTask task) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        ChatBatch batch = new ChatBatch(size);
+        Semaphore slots = new Semaphore(parallelism, true);
+
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            CancellationToken itemToken = batch.tokens[index];
+            CompletableFuture<String> future = batch.futures.get(index);
+            CancellationToken.Registration link = token.onCancel(itemToken::cancel);
+
+            future.whenComplete((content, failure) -> {
+                link.close();
+                if (future.isCancelled()) {
+                    itemToken.cancel();
+                }
+                batch.publish(new Result(index, content, failure));
+            });
+
+            THREAD_FACTORY.newThread(() -> {
+                try {
+                    CancellationToken.Registration interrupt = itemToken.onCancel(Thread.currentThread()::interrupt);
+                    try {
+                        slots.acquire();
+                        try {
+                            if (itemToken.isCancelled()) {
+                                future.cancel(false);
+                            } else {
+                                future.complete(task.run(index, itemToken));
+                            }
+                        } finally {
+                            slots.release();
+                        }
+                    } finally {
+                        interrupt.close();
+                    }
+                } catch (InterruptedException interrupted) {
+                    future.cancel(false);
+                } catch (Throwable failure) {
+                    if (itemToken.isCancelled()) {
+                        future.cancel(false);
+                    } else {
+                        future.completeExceptionally(failure);
+                    }
+                } finally {
+                    Thread.interrupted();
+                }
+            }).start();
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the number of items.
+     *
+     * @return the batch size
+     */
+    public int size() {
+        return futures.size();
+    }
+
+    /**
+     * Returns the future answer of one item.
+     *
+     * @param index the item position
+     * @return a future completing with the answer, exceptionally on failure,
+     *         or cancelled when the item is cancelled
+     */
+    public CompletableFuture<String> future(int index) {
+        return futures.get(index);
+    }
+
+    /**
+     * Returns the future answers of all items, in item order.
+     *
+     * @return an unmodifiable list of futures
+     */
+    public List<CompletableFuture<String>> futures() {
+        return futures;
+    }
+
+    /**
+     * Returns a future completing once every item has completed, failed or
+     * been cancelled.
+     *
+     * @return a future that never completes exceptionally
+     */
+    public CompletableFuture<Void> whenDone() {
+        CompletableFuture<?>[] settled = new CompletableFuture<?>[futures.size()];
+        for (int i = 0; i < settled.length; i++) {
+            settled[i] = futures.get(i).handle((content, failure) -> null);
+        }
+        return CompletableFuture.allOf(settled);
+    }
+
+    /**
+     * Cancels one item, aborting its request if it is running. Other items are not affected.
+     *
+     * @param index the item position
+     */
+    public void cancel(int index) {
+        futures.get(index).cancel(true);
+    }
+
+    /**
+     * Cancels every item that has not completed yet.
+     */
+    public void cancelAll() {
+        for (CompletableFuture<String> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Subscribes to the results, delivered in completion order.
+     *
+     * @param subscriber the subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Result> subscriber) {
+        ReplaySubscription subscription = new ReplaySubscription(subscriber);
+        synchronized (this) {
+            subscriptions.add(subscription);
+        }
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    private void publish(Result result) {
+        List<ReplaySubscription> targets;
+        synchronized (this) {
+            completed.add(result);
+            targets = new ArrayList<>(subscriptions);
+        }
+        for (ReplaySubscription subscription : targets) {
+            subscription.drain();
+        }
+    }
+
+    /**
+     * Delivers the completed results to one subscriber, honoring its demand.
+     * Deliveries to a subscriber never overlap; a drain requested while
+     * another one is running is picked up by the running one.
+     */
+    private final class ReplaySubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super Result> subscriber;
+        private long requested;
+        private int next;
+        private boolean cancelled;
+        private boolean finished;
+        private boolean draining;
+        private boolean missed;
+
+        ReplaySubscription(Flow.Subscriber<? super Result> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    cancelled = true;
+                } else {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                }
+            }
+            if (n <= 0) {
+                detach();
+                subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+            }
+            detach();
+        }
+
+        void drain() {
+            synchronized (this) {
+                if (draining) {
+                    missed = true;
+                    return;
+                }
+                draining = true;
+            }
+            while (true) {
+                Result item = null;
+                boolean complete = false;
+                synchronized (ChatBatch.this) {
+                    synchronized (this) {
+                        if (cancelled || finished) {
+                            draining = false;
+                            return;
+                        }
+                        if (requested > 0 && next < completed.size()) {
+                            item = completed.get(next++);
+                            requested--;
+                        } else if (next == futures.size()) {
+                            complete = true;
+                            finished = true;
+                        }
+                    }
+                }
+
+                if (item != null) {
+                    subscriber.onNext(item);
+                    continue;
+                }
+                if (complete) {
+                    detach();
+                    subscriber.onComplete();
+                    return;
+                }
+                synchronized (this) {
+                    if (!missed) {
+                        draining = false;
+                        return;
+                    }
+                    missed = false;
+                }
+            }
+        }
+
+        private void detach() {
+            synchronized (ChatBatch.this) {
+                subscriptions.remove(this);
+            }
+        }
+    }
+}
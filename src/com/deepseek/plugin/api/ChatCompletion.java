@@ -0,0 +1,45 @@
+package com.deepseek.plugin.api;
+
+import java.util.List;
+
+/**
+ * A chat completion response, or a single chunk of a streamed response.
+ *
+ * @param id      the completion identifier
+ * @param model   the model that produced the completion
+ * @param choices the generated choices
+ * @param usage   the token usage, or null if the server did not report it
+ */
+public record ChatCompletion(String id, String model, List<Choice> choices, Usage usage) {
+
+    /**
+     * A single generated alternative.
+     *
+     * @param index        the position of this choice
+     * @param message      the generated message, or the delta for streamed chunks
+     * @param finishReason why generation stopped, or null while still generating
+     */
+    public record Choice(int index, ChatMessage message, String finishReason) {
+    }
+
+    /**
+     * Returns the content of the first choice.
+     *
+     * @return the generated text, or null if there is none
+     */
+    public String content() {
+        if (choices.isEmpty() || choices.get(0).message() == null) {
+            return null;
+        }
+        return choices.get(0).message().content();
+    }
+
+    /**
+     * Returns why the first choice stopped.
+     *
+     * @return the finish reason, or null while still generating
+     */
+    public String finishReason() {
+        return choices.isEmpty() ? null : choices.get(0).finishReason();
+    }
+}
@@ -0,0 +1,11 @@
+package com.deepseek.plugin.api;
+
+/**
+ * A single chat message exchanged with the DeepSeek API.
+ *
+ * @param role             the author role, such as {@code user} or {@code assistant}
+ * @param content          the message text, or null if the server sent none
+ * @param reasoningContent the reasoning trace produced by reasoning models, or null
+ */
+public record ChatMessage(String role, String content, String reasoningContent) {
+}
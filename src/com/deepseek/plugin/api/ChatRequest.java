@@ -0,0 +1,43 @@
+package com.deepseek.plugin.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.deepseek.plugin.api.json.JsonWriter;
+
+/**
+ * A chat completion request sent to the DeepSeek API.
+ *
+ * @param model    the model identifier, such as {@code deepseek-chat}
+ * @param messages the conversation messages, oldest first
+ * @param stream   whether the answer should be streamed as server-sent events
+ */
+public record ChatRequest(String model, List<ChatMessage> messages, boolean stream) {
+
+    /**
+     * Serializes this request as UTF-8 JSON directly into the given stream.
+     *
+     * <p>Message content is escaped and encoded in one pass; reasoning traces
+     * are never sent back to the server.</p>
+     *
+     * @param out the destination stream, which is flushed but not closed
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name("model").value(model);
+        writer.name("messages").beginArray();
+        for (ChatMessage message : messages) {
+            writer.beginObject();
+            writer.name("role").value(message.role());
+            writer.name("content").value(message.content());
+            writer.endObject();
+        }
+        writer.endArray();
+        writer.name("stream").value(stream);
+        writer.endObject();
+        writer.flush();
+    }
+}
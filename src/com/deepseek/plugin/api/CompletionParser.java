@@ -0,0 +1,147 @@
+package com.deepseek.plugin.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.deepseek.plugin.api.json.JsonReader;
+
+/**
+ * Parses chat completion responses into typed objects.
+ *
+ * <p>Responses are read in a single pass with a {@link JsonReader}; only the
+ * fields exposed by {@link ChatCompletion} are decoded and everything else
+ * is skipped without being copied.</p>
+ */
+public final class CompletionParser {
+
+    private CompletionParser() {
+    }
+
+    /**
+     * Parses a complete response body directly from the network stream.
+     *
+     * @param body the UTF-8 encoded response body, closed when done
+     * @return the parsed completion
+     * @throws IOException if the body cannot be read or is not valid JSON
+     */
+    public static ChatCompletion parse(InputStream body) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            return readCompletion(reader);
+        }
+    }
+
+    /**
+     * Parses the JSON payload of a single streamed {@code data:} event.
+     * The content of each choice is taken from its {@code delta} member.
+     *
+     * @param json the event payload
+     * @return the parsed chunk
+     * @throws IOException if the payload is not valid JSON
+     */
+    public static ChatCompletion parseChunk(String json) throws IOException {
+        return readCompletion(new JsonReader(json));
+    }
+
+    private static ChatCompletion readCompletion(JsonReader reader) throws IOException {
+        String id = null;
+        String model = null;
+        List<ChatCompletion.Choice> choices = List.of();
+        Usage usage = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id" -> id = reader.nextStringOrNull();
+                case "model" -> model = reader.nextStringOrNull();
+                case "choices" -> choices = readChoices(reader);
+                case "usage" -> usage = readUsage(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new ChatCompletion(id, model, choices, usage);
+    }
+
+    private static List<ChatCompletion.Choice> readChoices(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonReader.Token.NULL) {
+            reader.nextNull();
+            return List.of();
+        }
+
+        List<ChatCompletion.Choice> choices = new ArrayList<>(1);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int index = 0;
+            ChatMessage message = null;
+            String finishReason = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "index" -> index = reader.nextInt();
+                    case "message", "delta" -> message = readMessage(reader);
+                    case "finish_reason" -> finishReason = reader.nextStringOrNull();
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            choices.add(new ChatCompletion.Choice(index, message, finishReason));
+        }
+        reader.endArray();
+        return choices;
+    }
+
+    private static ChatMessage readMessage(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonReader.Token.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        String role = null;
+        String content = null;
+        String reasoningContent = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "role" -> role = reader.nextStringOrNull();
+                case "content" -> content = reader.nextStringOrNull();
+                case "reasoning_content" -> reasoningContent = reader.nextStringOrNull();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new ChatMessage(role, content, reasoningContent);
+    }
+
+    private static Usage readUsage(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonReader.Token.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        int promptTokens = 0;
+        int completionTokens = 0;
+        int totalTokens = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "prompt_tokens" -> promptTokens = reader.nextInt();
+                case "completion_tokens" -> completionTokens = reader.nextInt();
+                case "total_tokens" -> totalTokens = reader.nextInt();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return new Usage(promptTokens, completionTokens, totalTokens);
+    }
+}
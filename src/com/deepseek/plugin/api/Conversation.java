@@ -0,0 +1,191 @@
+package com.deepseek.plugin.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A multi-turn conversation with the DeepSeek API.
+ *
+ * <p>Holds an optional system prompt followed by the user and assistant
+ * turns in order. The turns sent with each request form a sliding window:
+ * whenever the estimated size of the window exceeds the token budget, the
+ * oldest turns are dropped from it. Token estimates are computed once when a
+ * turn is added and the window only ever moves forward, so keeping it within
+ * budget costs O(new text) per turn, never a rescan of the history.</p>
+ *
+ * <p>Instances are not thread-safe; callers should confine a conversation to
+ * one thread and hand {@link #window()} snapshots to worker threads.</p>
+ */
+public class Conversation {
+
+    /** Role of system prompts. */
+    public static final String ROLE_SYSTEM = "system";
+
+    /** Role of user turns. */
+    public static final String ROLE_USER = "user";
+
+    /** Role of assistant turns. */
+    public static final String ROLE_ASSISTANT = "assistant";
+
+    private final ChatMessage systemMessage;
+    private final int systemTokens;
+
+    private final List<ChatMessage> turns = new ArrayList<>();
+    private int[] turnTokens = new int[16];
+
+    private int tokenBudget;
+    private int windowStart;
+    private int windowTokens;
+
+    /**
+     * Creates an empty conversation.
+     *
+     * @param systemPrompt the system prompt sent with every request, or null for none
+     * @param tokenBudget  the maximum estimated number of tokens sent per request
+     */
+    public Conversation(String systemPrompt, int tokenBudget) {
+        this.systemMessage = systemPrompt != null && !systemPrompt.isBlank()
+            ? new ChatMessage(ROLE_SYSTEM, systemPrompt, null)
+            : null;
+        this.systemTokens = systemMessage != null ? TokenEstimator.estimate(systemMessage) : 0;
+        this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * Appends a user turn.
+     *
+     * @param content the user message
+     */
+    public void addUser(String content) {
+        add(new ChatMessage(ROLE_USER, content, null));
+    }
+
+    /**
+     * Appends an assistant turn.
+     *
+     * @param content the assistant answer
+     */
+    public void addAssistant(String content) {
+        add(new ChatMessage(ROLE_ASSISTANT, content, null));
+    }
+
+    /**
+     * Appends a turn and slides the window forward if it no longer fits the budget.
+     *
+     * @param message the turn to append
+     */
+    public void add(ChatMessage message) {
+        int index = turns.size();
+        if (index == turnTokens.length) {
+            int[] larger = new int[index * 2];
+            System.arraycopy(turnTokens, 0, larger, 0, index);
+            turnTokens = larger;
+        }
+        turns.add(message);
+        turnTokens[index] = TokenEstimator.estimate(message);
+        windowTokens += turnTokens[index];
+        trimWindow();
+    }
+
+    /**
+     * Removes the most recent turn, typically a question whose request failed.
+     *
+     * @return the removed turn, or null if the conversation is empty
+     */
+    public ChatMessage removeLast() {
+        if (turns.isEmpty()) {
+            return null;
+        }
+        int index = turns.size() - 1;
+        if (index >= windowStart) {
+            windowTokens -= turnTokens[index];
+        } else {
+            windowStart = index;
+        }
+        return turns.remove(index);
+    }
+
+    /**
+     * Returns the messages to send with the next request: the system prompt,
+     * if any, followed by the turns inside the current window.
+     *
+     * @return an immutable snapshot of the request messages
+     */
+    public List<ChatMessage> window() {
+        List<ChatMessage> window = new ArrayList<>(turns.size() - windowStart + 1);
+        if (systemMessage != null) {
+            window.add(systemMessage);
+        }
+        window.addAll(turns.subList(windowStart, turns.size()));
+        return List.copyOf(window);
+    }
+
+    /**
+     * Returns every turn of the conversation, including those outside the window.
+     *
+     * @return an immutable snapshot of all turns
+     */
+    public List<ChatMessage> getTurns() {
+        return List.copyOf(turns);
+    }
+
+    /**
+     * Returns the estimated number of tokens the next request will carry.
+     *
+     * @return the estimated size of the window, including the system prompt
+     */
+    public int getWindowTokens() {
+        return systemTokens + windowTokens;
+    }
+
+    /**
+     * Returns the number of turns that no longer fit in the window.
+     *
+     * @return the number of dropped turns
+     */
+    public int getDroppedTurns() {
+        return windowStart;
+    }
+
+    /**
+     * Changes the token budget and recomputes the window from the newest turn backwards.
+     *
+     * @param tokenBudget the new maximum estimated number of tokens per request
+     */
+    public void setTokenBudget(int tokenBudget) {
+        this.tokenBudget = tokenBudget;
+        windowStart = turns.size();
+        windowTokens = 0;
+        while (windowStart > 0
+                && (windowStart == turns.size()
+                    || systemTokens + windowTokens + turnTokens[windowStart - 1] <= tokenBudget)) {
+            windowStart--;
+            windowTokens += turnTokens[windowStart];
+        }
+        trimWindow();
+    }
+
+    /**
+     * Returns the token budget.
+     *
+     * @return the maximum estimated number of tokens per request
+     */
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+
+    /**
+     * Drops the oldest turns until the window fits the budget, always
+     * keeping at least the newest turn. A window never starts with an
+     * assistant answer whose question has already been dropped.
+     */
+    private void trimWindow() {
+        int last = turns.size() - 1;
+        while (windowStart < last
+                && (systemTokens + windowTokens > tokenBudget
+                    || (windowStart > 0 && ROLE_ASSISTANT.equals(turns.get(windowStart).role())))) {
+            windowTokens -= turnTokens[windowStart];
+            windowStart++;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.deepseek.plugin.api;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that counts the bytes read through it.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    /**
+     * Wraps a stream.
+     *
+     * @param in the stream to read from
+     */
+    public CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            count += read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    /**
+     * Returns the number of bytes read or skipped so far.
+     *
+     * @return the byte count
+     */
+    public long getCount() {
+        return count;
+    }
+}
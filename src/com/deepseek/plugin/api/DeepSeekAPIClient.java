@@ -1,140 +1,957 @@
 package com.deepseek.plugin.api;
 
-import java.net.HttpURLConnection;
 import java.net.URI;
-import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
 import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.deepseek.plugin.Activator;
+import com.deepseek.plugin.api.json.MalformedJsonException;
+import com.deepseek.plugin.cache.ResponseCache;
+import com.deepseek.plugin.concurrent.CancellationToken;
+import com.deepseek.plugin.configuration.ConfigurationManager;
+import com.deepseek.plugin.metrics.RequestRecorder;
 
 /**
  * Client for communicating with the DeepSeek API.
  * Handles HTTP requests and responses for AI chat completions.
+ *
+ * <p>Every call is bound to a {@link CancellationToken}; the in-flight
+ * exchange and response stream are local to the call, so one client may be
+ * shared by concurrent requests and cancelling one does not affect others.</p>
+ *
+ * <p>When a {@link ResponseCache} is configured, answers to prompts that
+ * were already answered are returned from the cache without contacting
+ * the server, and every complete answer is stored in it.</p>
+ *
+ * <p>Every call is measured through a {@link RequestRecorder}, which feeds
+ * the plugin {@link com.deepseek.plugin.metrics.Metrics} and emits a Flight
+ * Recorder event.</p>
+ *
+ * <p>Requests go to the endpoints of an {@link EndpointRouter}, each with
+ * its own model and optionally its own key. A request is sent to the
+ * endpoint the router ranks first; when that endpoint fails it moves on to
+ * the next one, and when it is slower than its usual 95th percentile the
+ * request is also sent to the next one and the first response wins. An
+ * answer is cached under the model of the endpoint that gave it, and looked
+ * up under the model of the endpoint the router ranks first.</p>
+ *
+ * <p>When a {@link RequestCoalescer} is configured, a request identical to
+ * one already in flight, from this client or another one sharing the
+ * coalescer, waits for that call instead of making its own.</p>
  */
 public class DeepSeekAPIClient {
-    private static final String API_URL = "https://api.deepseek.com/chat/completions";
+    /** The chat completions endpoint of the public DeepSeek API. */
+    public static final String DEFAULT_ENDPOINT = "https://api.deepseek.com/chat/completions";
+    
+    /** Reported when the transport of this client has been shut down. */
+    private static final String TRANSPORT_CLOSED_MESSAGE = "Erro: Conexão encerrada. Tente novamente.";
+    
     private final String apiKey;
-    private HttpURLConnection currentConnection;
-    private final AtomicBoolean isCancelled;
+    private final EndpointRouter router;
+    private final HttpTransport transport;
+    private final ResponseCache cache;
+    private final RequestCoalescer coalescer;
+    private final RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+    private volatile CancellationToken currentToken;
     
     /**
-     * Constructs a new DeepSeek API client with the provided API key.
+     * Constructs a new DeepSeek API client with the provided API key,
+     * using the endpoints configured in the preferences through the
+     * plugin-wide router, the plugin-wide shared transport, the plugin-wide
+     * request coalescer and, unless it is bypassed in the preferences, the
+     * plugin-wide response cache.
      *
      * @param apiKey the DeepSeek API authentication key
      */
     public DeepSeekAPIClient(String apiKey) {
+        this(apiKey, Activator.getDefault().getEndpointRouter(), Activator.getDefault().getTransport(),
+            ConfigurationManager.isCacheEnabled() ? Activator.getDefault().getResponseCache() : null,
+            Activator.getDefault().getRequestCoalescer());
+    }
+    
+    /**
+     * Constructs a new DeepSeek API client with the provided API key and
+     * transport, without a response cache, sending requests to the public API.
+     *
+     * @param apiKey    the DeepSeek API authentication key
+     * @param transport the HTTP transport used to reach the API
+     */
+    public DeepSeekAPIClient(String apiKey, HttpTransport transport) {
+        this(apiKey, transport, null);
+    }
+    
+    /**
+     * Constructs a new DeepSeek API client with the provided API key, transport
+     * and cache, sending requests to the public API.
+     *
+     * @param apiKey    the DeepSeek API authentication key
+     * @param transport the HTTP transport used to reach the API
+     * @param cache     the cache of answers to repeated prompts, or null to always call the API
+     */
+    public DeepSeekAPIClient(String apiKey, HttpTransport transport, ResponseCache cache) {
+        this(apiKey, URI.create(DEFAULT_ENDPOINT), transport, cache);
+    }
+    
+    /**
+     * Constructs a new DeepSeek API client for the given endpoint, such as a
+     * compatible proxy or a local mock server.
+     *
+     * @param apiKey    the DeepSeek API authentication key
+     * @param endpoint  the chat completions URL
+     * @param transport the HTTP transport used to reach the API
+     * @param cache     the cache of answers to repeated prompts, or null to always call the API
+     */
+    public DeepSeekAPIClient(String apiKey, URI endpoint, HttpTransport transport, ResponseCache cache) {
+        this(apiKey, EndpointRouter.of(new EndpointProfile("DeepSeek", endpoint, EndpointProfile.DEFAULT_MODEL, null)),
+            transport, cache);
+    }
+    
+    /**
+     * Constructs a new DeepSeek API client sending requests to the endpoints
+     * chosen by a router.
+     *
+     * @param apiKey    the API key of the endpoints that have none of their own
+     * @param router    the router choosing the endpoint of each request
+     * @param transport the HTTP transport used to reach the API
+     * @param cache     the cache of answers to repeated prompts, or null to always call the API
+     */
+    public DeepSeekAPIClient(String apiKey, EndpointRouter router, HttpTransport transport, ResponseCache cache) {
+        this(apiKey, router, transport, cache, null);
+    }
+    
+    /**
+     * Constructs a new DeepSeek API client sending requests to the endpoints
+     * chosen by a router, sharing identical requests in flight.
+     *
+     * @param apiKey    the API key of the endpoints that have none of their own
+     * @param router    the router choosing the endpoint of each request
+     * @param transport the HTTP transport used to reach the API
+     * @param cache     the cache of answers to repeated prompts, or null to always call the API
+     * @param coalescer the coalescer of identical requests in flight, or null to never share calls
+     */
+    public DeepSeekAPIClient(String apiKey, EndpointRouter router, HttpTransport transport, ResponseCache cache,
+            RequestCoalescer coalescer) {
         this.apiKey = apiKey;
-        this.isCancelled = new AtomicBoolean(false);
+        this.router = router;
+        this.transport = transport;
+        this.cache = cache;
+        this.coalescer = coalescer;
     }
     
     /**
-     * Sends a message to the DeepSeek API and returns the response.
-     * Implements retry logic with exponential backoff for transient failures.
+     * Sends a single user message to the DeepSeek API and returns the response.
      *
      * @param message the user message to send
      * @return the AI response or error message
      */
     public String sendMessage(String message) {
-        isCancelled.set(false);
+        return sendMessage(List.of(new ChatMessage(Conversation.ROLE_USER, message, null)));
+    }
+    
+    /**
+     * Sends a conversation to the DeepSeek API and returns the response.
+     * Transient failures are retried with exponential backoff and jitter,
+     * paced by the plugin-wide rate limiter.
+     *
+     * @param messages the messages to send, typically a {@link Conversation#window()}
+     * @return the AI response or error message
+     */
+    public String sendMessage(List<ChatMessage> messages) {
+        CancellationToken token = new CancellationToken();
+        currentToken = token;
+        return sendMessage(messages, token);
+    }
+    
+    /**
+     * Sends a conversation to the DeepSeek API and returns the response,
+     * aborting as soon as the given token is cancelled.
+     *
+     * @param messages the messages to send, typically a {@link Conversation#window()}
+     * @param token    the token cancelling this request
+     * @return the AI response or error message
+     */
+    public String sendMessage(List<ChatMessage> messages, CancellationToken token) {
+        try {
+            return complete(messages, token);
+            
+        } catch (ApiException apiException) {
+            return apiException.getMessage();
+            
+        } catch (HttpTimeoutException timeoutException) {
+            return "Erro: Timeout - o servidor demorou muito para responder.";
+            
+        } catch (Exception exception) {
+            if (token.isCancelled()) {
+                return "Requisição cancelada.";
+            }
+            return "Erro: " + getFriendlyErrorMessage(exception);
+        }
+    }
+    
+    /**
+     * Sends several independent conversations concurrently.
+     *
+     * <p>At most {@code parallelism} of them are in flight at the same time,
+     * all over the shared transport and paced by its rate limiter. Each item
+     * has its own cancellation token, linked to the given one: cancelling an
+     * item through {@link ChatBatch#cancel(int)} leaves the others running,
+     * while cancelling {@code token} cancels all of them. Results are
+     * available per item as futures and, in completion order, through the
+     * batch's {@link java.util.concurrent.Flow.Publisher}.</p>
+     *
+     * @param conversations the conversations to send, one request each
+     * @param parallelism   the maximum number of requests in flight
+     * @param token         the token cancelling the whole batch
+     * @return the running batch
+     */
+    public ChatBatch sendBatch(List<List<ChatMessage>> conversations, int parallelism, CancellationToken token) {
+        List<List<ChatMessage>> items = List.copyOf(conversations);
+        return ChatBatch.start(items.size(), parallelism, token,
+            (index, itemToken) -> complete(items.get(index), itemToken));
+    }
+    
+    /**
+     * Sends a conversation and returns the answer, or throws describing why
+     * there is none.
+     *
+     * <p>Unlike {@link #sendMessage(List, CancellationToken)}, failures are
+     * reported as exceptions rather than as user-facing text, which suits
+     * callers that are not a chat view, such as automation and load tests.</p>
+     *
+     * @param messages the messages to send
+     * @param token    the token cancelling this request
+     * @return the answer
+     * @throws ApiException          if the server answered with an error or an unusable body
+     * @throws CancellationException if the token was cancelled
+     * @throws Exception             if the request failed
+     */
+    public String complete(List<ChatMessage> messages, CancellationToken token) throws Exception {
+        RequestRecorder recorder = new RequestRecorder(false);
+        try {
+            EndpointProfile preferred = router.route().get(0);
+            if (cache != null) {
+                String cached = cache.get(cacheKey(preferred, messages));
+                recorder.cacheLookup(cached != null);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            if (coalescer != null) {
+                return coalescer.complete(flightKey(preferred, messages, false), token,
+                    flightToken -> fetch(messages, flightToken, recorder), recorder::coalesced);
+            }
+            return fetch(messages, token, recorder);
+            
+        } catch (Exception exception) {
+            recorder.failed(String.valueOf(exception.getMessage()));
+            throw exception;
+        } finally {
+            recorder.finish();
+        }
+    }
+    
+    /**
+     * Calls the API for a complete answer, caching it under the key of the
+     * endpoint that answered.
+     *
+     * @param messages the messages to send
+     * @param token    the token cancelling the call
+     * @param recorder the recorder of the call
+     * @return the answer
+     * @throws Exception if the call failed or was cancelled
+     */
+    private String fetch(List<ChatMessage> messages, CancellationToken token, RequestRecorder recorder)
+            throws Exception {
+        if (!transport.retain()) {
+            throw new ApiException(TRANSPORT_CLOSED_MESSAGE);
+        }
+        try {
+            return fetchRetained(messages, token, recorder);
+        } finally {
+            transport.release();
+        }
+    }
+    
+    /**
+     * Calls the API for a complete answer over the retained transport.
+     *
+     * @see #fetch(List, CancellationToken, RequestRecorder)
+     */
+    private String fetchRetained(List<ChatMessage> messages, CancellationToken token, RequestRecorder recorder)
+            throws Exception {
+        RoutedResponse routed = await(route(messages, false, token, 0, recorder));
+        HttpResponse<InputStream> response = routed.response();
+        recorder.bodyStarted(response.statusCode());
         
-        for (int attempt = 1; attempt <= 3; attempt++) {
-            try {
-                URI uri = URI.create(API_URL);
-                URL url = uri.toURL();
-                currentConnection = (HttpURLConnection) url.openConnection();
+        if (token.isCancelled()) {
+            response.body().close();
+            throw new CancellationException("Requisição cancelada.");
+        }
+        
+        int responseCode = response.statusCode();
+        if (responseCode != 200) {
+            response.body().close();
+            throw new ApiException(responseCode, describeStatus(responseCode));
+        }
+        
+        CountingInputStream body = new CountingInputStream(transport.watch(response.body()));
+        CancellationToken.Registration abort = token.onCancel(() -> closeQuietly(response.body()));
+        try {
+            String content = parseResponse(body, token,
+                cache != null ? cacheKey(routed.profile(), messages) : null);
+            recorder.content(TokenEstimator.estimate(content));
+            return content;
+        } finally {
+            abort.close();
+            recorder.received(body.getCount());
+            closeQuietly(body);
+        }
+    }
+
+    /**
+     * Sends a message to the DeepSeek API in streaming mode.
+     *
+     * <p>The server answers with server-sent events; every {@code data:} chunk
+     * is parsed as soon as it arrives and its content delta is forwarded to the
+     * listener, so the response is never buffered as a whole. Transient failures
+     * are retried only while no content has been delivered yet.</p>
+     *
+     * <p>The answer is complete, and cached, only once the server sends
+     * {@code data: [DONE]} or a finish reason; a stream cut off earlier or
+     * cancelled is reported through {@link StreamListener#onError(String)}.</p>
+     *
+     * @param message  the user message to send
+     * @param listener the listener receiving deltas and the final outcome
+     */
+    public void sendMessageStreaming(String message, StreamListener listener) {
+        sendMessageStreaming(List.of(new ChatMessage(Conversation.ROLE_USER, message, null)), listener);
+    }
+    
+    /**
+     * Sends a conversation to the DeepSeek API in streaming mode.
+     *
+     * @param messages the messages to send, typically a {@link Conversation#window()}
+     * @param listener the listener receiving deltas and the final outcome
+     * @see #sendMessageStreaming(String, StreamListener)
+     */
+    public void sendMessageStreaming(List<ChatMessage> messages, StreamListener listener) {
+        CancellationToken token = new CancellationToken();
+        currentToken = token;
+        sendMessageStreaming(messages, listener, token);
+    }
+    
+    /**
+     * Sends a conversation to the DeepSeek API in streaming mode, aborting
+     * as soon as the given token is cancelled.
+     *
+     * @param messages the messages to send, typically a {@link Conversation#window()}
+     * @param listener the listener receiving deltas and the final outcome
+     * @param token    the token cancelling this request
+     * @see #sendMessageStreaming(String, StreamListener)
+     */
+    public void sendMessageStreaming(List<ChatMessage> messages, StreamListener listener, CancellationToken token) {
+        RequestRecorder recorder = new RequestRecorder(true);
+        try {
+            stream(messages, new StreamListener() {
+                @Override
+                public void onDelta(String delta) {
+                    listener.onDelta(delta);
+                }
                 
-                currentConnection.setConnectTimeout(45000);
-                currentConnection.setReadTimeout(120000);
-                currentConnection.setRequestMethod("POST");
-                currentConnection.setRequestProperty("Content-Type", "application/json");
-                currentConnection.setRequestProperty("Authorization", "Bearer " + apiKey);
-                currentConnection.setRequestProperty("User-Agent", "DeepSeek-Eclipse-Plugin/1.0");
-                currentConnection.setDoOutput(true);
+                @Override
+                public void onComplete() {
+                    listener.onComplete();
+                }
                 
-                String jsonInput = createRequestJson(message);
+                @Override
+                public void onError(String message) {
+                    recorder.failed(message);
+                    listener.onError(message);
+                }
+            }, token, recorder);
+        } finally {
+            recorder.finish();
+        }
+    }
+    
+    /**
+     * Performs a streaming request, recording its measurements.
+     *
+     * @param messages the messages to send
+     * @param listener the listener receiving deltas and the final outcome
+     * @param token    the token cancelling this request
+     * @param recorder the recorder of this call
+     */
+    private void stream(List<ChatMessage> messages, StreamListener listener, CancellationToken token,
+            RequestRecorder recorder) {
+        EndpointProfile preferred = router.route().get(0);
+        if (cache != null) {
+            String cached = cache.get(cacheKey(preferred, messages));
+            recorder.cacheLookup(cached != null);
+            if (cached != null) {
+                listener.onDelta(cached);
+                listener.onComplete();
+                return;
+            }
+        }
+        if (coalescer != null) {
+            coalescer.stream(flightKey(preferred, messages, true), listener, token,
+                (flightListener, flightToken) -> fetchStream(messages, flightListener, flightToken, recorder),
+                recorder::coalesced);
+        } else {
+            fetchStream(messages, listener, token, recorder);
+        }
+    }
+    
+    /**
+     * Calls the API for a streamed answer. Sending is retried by the
+     * exchange; this method only sends the request again when reading the
+     * body fails before any content has been delivered.
+     *
+     * @param messages the messages to send
+     * @param listener the listener receiving deltas and the final outcome
+     * @param token    the token cancelling the call
+     * @param recorder the recorder of the call
+     */
+    private void fetchStream(List<ChatMessage> messages, StreamListener listener, CancellationToken token,
+            RequestRecorder recorder) {
+        if (!transport.retain()) {
+            listener.onError(TRANSPORT_CLOSED_MESSAGE);
+            return;
+        }
+        try {
+            fetchStreamRetained(messages, listener, token, recorder);
+        } finally {
+            transport.release();
+        }
+    }
+    
+    /**
+     * Calls the API for a streamed answer over the retained transport.
+     *
+     * @see #fetchStream(List, StreamListener, CancellationToken, RequestRecorder)
+     */
+    private void fetchStreamRetained(List<ChatMessage> messages, StreamListener listener, CancellationToken token,
+            RequestRecorder recorder) {
+        long delayNanos = 0;
+        for (int attempt = 1; ; attempt++) {
+            boolean receivedContent = false;
+            StringBuilder answer = cache != null ? new StringBuilder() : null;
+            EndpointProfile profile = null;
+            try {
+                RoutedResponse routed = await(route(messages, true, token, delayNanos, recorder));
+                profile = routed.profile();
+                HttpResponse<InputStream> response = routed.response();
+                recorder.bodyStarted(response.statusCode());
                 
-                try (OutputStream outputStream = currentConnection.getOutputStream()) {
-                    byte[] input = jsonInput.getBytes("utf-8");
-                    outputStream.write(input, 0, input.length);
+                if (token.isCancelled()) {
+                    response.body().close();
+                    listener.onError("Requisição cancelada.");
+                    return;
                 }
                 
-                if (isCancelled.get()) {
-                    return "Requisição cancelada.";
+                int responseCode = response.statusCode();
+                if (responseCode != 200) {
+                    response.body().close();
+                    listener.onError(describeStatus(responseCode));
+                    return;
                 }
                 
-                int responseCode = currentConnection.getResponseCode();
-                if (responseCode != HttpURLConnection.HTTP_OK) {
-                    if (responseCode == 429) {
-                        return "Erro: Rate limit excedido. Tente novamente em alguns instantes.";
-                    } else if (responseCode >= 500) {
-                        if (attempt < 3) {
-                            Thread.sleep(2000 * attempt);
+                boolean finished = false;
+                CountingInputStream body = new CountingInputStream(transport.watch(response.body()));
+                CancellationToken.Registration abort = token.onCancel(() -> closeQuietly(response.body()));
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (token.isCancelled()) {
+                            listener.onError("Requisição cancelada.");
+                            return;
+                        }
+                        if (!line.startsWith("data:")) {
                             continue;
                         }
-                        return "Erro: Servidor indisponível (HTTP " + responseCode + ")";
-                    } else {
-                        return "Erro HTTP: " + responseCode;
+                        String data = line.substring(5).trim();
+                        if (data.equals("[DONE]")) {
+                            finished = true;
+                            break;
+                        }
+                        long parseStart = System.nanoTime();
+                        ChatCompletion chunk = CompletionParser.parseChunk(data);
+                        String delta = chunk.content();
+                        recorder.parsed(System.nanoTime() - parseStart);
+                        if (chunk.finishReason() != null) {
+                            finished = true;
+                        }
+                        if (delta != null && !delta.isEmpty()) {
+                            receivedContent = true;
+                            recorder.content(TokenEstimator.estimate(delta));
+                            if (answer != null) {
+                                answer.append(delta);
+                            }
+                            listener.onDelta(delta);
+                        }
                     }
+                } finally {
+                    abort.close();
+                    recorder.received(body.getCount());
                 }
                 
-                return parseResponse(currentConnection);
-                
-            } catch (java.net.SocketTimeoutException timeoutException) {
-                if (attempt < 3) {
-                    try {
-                        Thread.sleep(3000 * attempt);
-                    } catch (InterruptedException ie) {
-                        return "Requisição interrompida.";
-                    }
-                    continue;
+                // Cancelling closes the body, which the reader may see as its end.
+                if (token.isCancelled()) {
+                    listener.onError("Requisição cancelada.");
+                    return;
+                }
+                if (!finished) {
+                    throw new EOFException("Resposta interrompida antes do fim.");
+                }
+                if (answer != null && receivedContent) {
+                    cache.put(cacheKey(profile, messages), answer.toString());
                 }
-                return "Erro: Timeout - o servidor demorou muito para responder.";
+                listener.onComplete();
+                return;
                 
             } catch (Exception exception) {
-                if (isCancelled.get()) {
-                    return "Requisição cancelada.";
+                if (token.isCancelled()) {
+                    listener.onError("Requisição cancelada.");
+                    return;
                 }
                 
-                if (attempt < 3) {
-                    try {
-                        Thread.sleep(2000 * attempt);
-                    } catch (InterruptedException ie) {
-                        return "Requisição interrompida.";
+                // Without a profile the exchange failed, after its own retries.
+                // A body that stalls is a failure of the endpoint like any other.
+                if (profile != null && exception instanceof IOException) {
+                    router.failed(profile);
+                    if (!receivedContent && retryPolicy.canRetry(attempt)) {
+                        recorder.retried();
+                        delayNanos = retryPolicy.delay(attempt, null).toNanos();
+                        continue;
                     }
-                    continue;
                 }
                 
-                return "Erro: " + getFriendlyErrorMessage(exception);
-                
-            } finally {
-                currentConnection = null;
+                if (exception instanceof HttpTimeoutException) {
+                    listener.onError("Erro: Timeout - o servidor demorou muito para responder.");
+                } else {
+                    listener.onError("Erro: " + getFriendlyErrorMessage(exception));
+                }
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Builds the HTTP request for a chat request to an endpoint. The body is
+     * serialized once; the request can be sent again for retries.
+     *
+     * @param profile the endpoint receiving the request
+     * @param request the chat request to send
+     * @return the HTTP request
+     * @throws UncheckedIOException if the body cannot be serialized
+     */
+    private HttpRequest buildHttpRequest(EndpointProfile profile, ChatRequest request) {
+        RequestBuffer body = new RequestBuffer(estimateRequestSize(request));
+        try {
+            request.writeTo(body);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        
+        HttpRequest.Builder builder = HttpRequest.newBuilder(profile.endpoint())
+            .timeout(transport.getReadTimeout())
+            .header("Content-Type", "application/json")
+            .header("Authorization", "Bearer " + apiKeyOf(profile))
+            .header("User-Agent", "DeepSeek-Eclipse-Plugin/1.0")
+            .POST(body.toBodyPublisher());
+        if (request.stream()) {
+            builder.header("Accept", "text/event-stream");
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Sends a conversation to the endpoints chosen by the router without
+     * blocking, until one of them answers.
+     *
+     * @param messages   the messages to send
+     * @param stream     whether the server should stream the answer as events
+     * @param token      the token cancelling this request
+     * @param delayNanos an additional delay before the first attempt
+     * @param recorder   the recorder of the call
+     * @return a future completing with the response to use and its endpoint
+     * @see RoutedExchange
+     */
+    private CompletableFuture<RoutedResponse> route(List<ChatMessage> messages, boolean stream,
+            CancellationToken token, long delayNanos, RequestRecorder recorder) {
+        RoutedExchange exchange = new RoutedExchange(messages, stream, token, recorder);
+        exchange.start(delayNanos);
+        return exchange.result;
+    }
+    
+    /**
+     * A response and the endpoint that sent it.
+     *
+     * @param profile  the endpoint
+     * @param response the response, whose body the caller must close
+     */
+    private record RoutedResponse(EndpointProfile profile, HttpResponse<InputStream> response) {
+    }
+    
+    /**
+     * One request sent to one or more endpoints, in the order chosen by the router.
+     *
+     * <p>The first endpoint gets the request. If it fails with an I/O error,
+     * a 429 or 5xx status or any other refusal except 400, the request moves
+     * on to the next endpoint; only the last endpoint retries on its own,
+     * following the {@link RetryPolicy}, so a failing endpoint does not hold
+     * the request back. If the first endpoint has not answered within its
+     * hedge delay, the request is also sent to the next endpoint. The first
+     * usable response wins and the other attempt is cancelled. Every outcome
+     * is reported to the router. When every endpoint failed, the last error
+     * response, or else the last failure, completes the request.</p>
+     */
+    private final class RoutedExchange {
+        private final List<ChatMessage> messages;
+        private final boolean stream;
+        private final CancellationToken token;
+        private final RequestRecorder recorder;
+        private final List<EndpointProfile> order = router.route();
+        private final List<CancellationToken> attempts = new ArrayList<>();
+        private final CompletableFuture<RoutedResponse> result = new CompletableFuture<>();
+        private int launched;
+        private int pending;
+        private RoutedResponse lastResponse;
+        private Throwable lastFailure;
+        
+        RoutedExchange(List<ChatMessage> messages, boolean stream, CancellationToken token,
+                RequestRecorder recorder) {
+            this.messages = messages;
+            this.stream = stream;
+            this.token = token;
+            this.recorder = recorder;
+        }
+        
+        /**
+         * Sends the request to the first endpoint and schedules the hedge.
+         */
+        void start(long delayNanos) {
+            CancellationToken.Registration cancel = token.onCancel(this::cancel);
+            result.whenComplete((routed, failure) -> cancel.close());
+            synchronized (this) {
+                launch(delayNanos);
+            }
+            long hedgeDelay = order.size() > 1 ? router.hedgeDelayNanos(order.get(0)) : -1;
+            if (hedgeDelay >= 0) {
+                CompletableFuture.delayedExecutor(delayNanos + hedgeDelay, TimeUnit.NANOSECONDS).execute(this::hedge);
+            }
+        }
+        
+        /**
+         * Sends the request to the next endpoint while the first one is still pending.
+         */
+        private synchronized void hedge() {
+            if (launched == 1 && pending == 1 && !result.isDone()) {
+                recorder.hedged();
+                launch(0);
+            }
+        }
+        
+        /**
+         * Sends the request to the next endpoint of the order; called with the lock held.
+         */
+        private void launch(long delayNanos) {
+            EndpointProfile profile = order.get(launched++);
+            boolean last = launched == order.size();
+            CancellationToken attemptToken = new CancellationToken();
+            attempts.add(attemptToken);
+            pending++;
+            long startNanos = System.nanoTime();
+            CompletableFuture<HttpResponse<InputStream>> exchange;
+            try {
+                exchange = exchange(buildHttpRequest(profile, createRequest(profile, messages, stream)), attemptToken,
+                    last ? 1 : retryPolicy.maxAttempts(), delayNanos, recorder);
+            } catch (RuntimeException exception) {
+                exchange = CompletableFuture.failedFuture(exception);
             }
+            exchange.whenComplete((response, failure) ->
+                completed(profile, attemptToken, startNanos, response, failure));
         }
         
-        return "Erro: Todas as tentativas falharam.";
+        /**
+         * Handles the outcome of one attempt.
+         */
+        private void completed(EndpointProfile profile, CancellationToken attemptToken, long startNanos,
+                HttpResponse<InputStream> response, Throwable failure) {
+            List<CancellationToken> losers = List.of();
+            synchronized (this) {
+                pending--;
+                if (result.isDone() || attemptToken.isCancelled()) {
+                    if (response != null) {
+                        closeQuietly(response.body());
+                    }
+                    return;
+                }
+                if (response != null && !isEndpointFailure(response.statusCode())) {
+                    router.succeeded(profile, System.nanoTime() - startNanos);
+                    recorder.routed(profile.name());
+                    if (lastResponse != null) {
+                        closeQuietly(lastResponse.response().body());
+                    }
+                    result.complete(new RoutedResponse(profile, response));
+                    losers = new ArrayList<>(attempts);
+                    losers.remove(attemptToken);
+                } else {
+                    router.failed(profile);
+                    if (response != null) {
+                        if (lastResponse != null) {
+                            closeQuietly(lastResponse.response().body());
+                        }
+                        lastResponse = new RoutedResponse(profile, response);
+                    } else {
+                        lastFailure = failure instanceof CompletionException && failure.getCause() != null
+                            ? failure.getCause()
+                            : failure;
+                    }
+                    if (launched < order.size() && !token.isCancelled()) {
+                        recorder.failedOver();
+                        launch(0);
+                    } else if (pending == 0) {
+                        if (lastResponse != null) {
+                            recorder.routed(lastResponse.profile().name());
+                            result.complete(lastResponse);
+                        } else {
+                            result.completeExceptionally(lastFailure);
+                        }
+                    }
+                }
+            }
+            for (CancellationToken loser : losers) {
+                loser.cancel();
+            }
+        }
+        
+        /**
+         * Cancels the request and every attempt in flight.
+         */
+        private void cancel() {
+            result.cancel(true);
+            List<CancellationToken> running;
+            synchronized (this) {
+                running = new ArrayList<>(attempts);
+                if (lastResponse != null) {
+                    closeQuietly(lastResponse.response().body());
+                }
+            }
+            for (CancellationToken attempt : running) {
+                attempt.cancel();
+            }
+        }
+        
+        /**
+         * Checks if a final status means the endpoint could not serve the
+         * request, so another endpoint might; a 400 rejects the request
+         * itself and would be rejected everywhere.
+         */
+        private static boolean isEndpointFailure(int status) {
+            return status >= 400 && status != 400;
+        }
+    }
+    
+    /**
+     * Sends a request over the shared transport without blocking, retrying
+     * transient failures.
+     *
+     * <p>Each attempt first reserves a permit from the transport's
+     * {@link RateLimiter} and is delayed accordingly. Responses with status
+     * 429 or 5xx and I/O failures are retried after a delay chosen by the
+     * {@link RetryPolicy}, honoring {@code Retry-After}; rate-limit headers
+     * of every response are fed back to the limiter. Delays run on a timer
+     * through {@link CompletableFuture#delayedExecutor}, so no thread sleeps
+     * while waiting. The returned future completes with the first response
+     * that is not retried, whose body the caller must close, and is
+     * cancelled when the token is cancelled.</p>
+     *
+     * @param httpRequest the request to send
+     * @param token       the token cancelling this request
+     * @param attempt     the number of this attempt, starting at 1
+     * @param delayNanos  an additional delay before this attempt
+     * @param recorder    the recorder of the call
+     * @return a future completing with the response
+     */
+    private CompletableFuture<HttpResponse<InputStream>> exchange(HttpRequest httpRequest,
+            CancellationToken token, int attempt, long delayNanos, RequestRecorder recorder) {
+        CompletableFuture<HttpResponse<InputStream>> result = new CompletableFuture<>();
+        CancellationToken.Registration cancel = token.onCancel(() -> result.cancel(true));
+        result.whenComplete((response, failure) -> cancel.close());
+        attempt(httpRequest, token, attempt, delayNanos, recorder, result);
+        return result;
+    }
+    
+    /**
+     * Schedules one attempt of {@link #exchange} after the rate-limit and retry delays.
+     */
+    private void attempt(HttpRequest httpRequest, CancellationToken token, int attempt, long delayNanos,
+            RequestRecorder recorder, CompletableFuture<HttpResponse<InputStream>> result) {
+        long wait = delayNanos + transport.getRateLimiter().reserve();
+        if (wait <= 0) {
+            send(httpRequest, token, attempt, recorder, result);
+        } else {
+            CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS)
+                .execute(() -> send(httpRequest, token, attempt, recorder, result));
+        }
+    }
+    
+    /**
+     * Sends one attempt and either completes the result or schedules the next attempt.
+     */
+    private void send(HttpRequest httpRequest, CancellationToken token, int attempt,
+            RequestRecorder recorder, CompletableFuture<HttpResponse<InputStream>> result) {
+        if (result.isDone()) {
+            return;
+        }
+        recorder.sent(httpRequest.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L));
+        long sendNanos = System.nanoTime();
+        CompletableFuture<HttpResponse<InputStream>> exchange;
+        try {
+            exchange = transport.getHttpClient().sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (RuntimeException exception) {
+            result.completeExceptionally(exception);
+            return;
+        }
+        CancellationToken.Registration abort = token.onCancel(() -> exchange.cancel(true));
+        
+        exchange.whenComplete((response, failure) -> {
+            abort.close();
+            try {
+                handle(httpRequest, token, attempt, recorder, result, sendNanos, response, failure);
+            } catch (RuntimeException exception) {
+                // Thrown here, it would be lost with the exchange and leave the result pending.
+                if (response != null) {
+                    closeQuietly(response.body());
+                }
+                result.completeExceptionally(exception);
+            }
+        });
+    }
+    
+    /**
+     * Handles the outcome of one attempt: sends it again or completes the result.
+     */
+    private void handle(HttpRequest httpRequest, CancellationToken token, int attempt, RequestRecorder recorder,
+            CompletableFuture<HttpResponse<InputStream>> result, long sendNanos,
+            HttpResponse<InputStream> response, Throwable failure) {
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause()
+                : failure;
+            if (!token.isCancelled() && cause instanceof IOException && retryPolicy.canRetry(attempt)) {
+                recorder.retried();
+                long delay = retryPolicy.delay(attempt, null).toNanos();
+                attempt(httpRequest, token, attempt + 1, delay, recorder, result);
+            } else {
+                result.completeExceptionally(cause);
+            }
+            return;
+        }
+        
+        recorder.headersReceived(sendNanos);
+        int status = response.statusCode();
+        transport.getRateLimiter().update(status, response.headers());
+        Duration retryAfter = RateLimiter.retryAfter(response.headers()).orElse(null);
+        if ((status == 429 || status >= 500) && retryPolicy.canRetry(attempt, retryAfter) && !token.isCancelled()) {
+            closeQuietly(response.body());
+            recorder.retried();
+            long delay = retryPolicy.delay(attempt, retryAfter).toNanos();
+            attempt(httpRequest, token, attempt + 1, delay, recorder, result);
+            return;
+        }
+        if (!result.complete(response)) {
+            closeQuietly(response.body());
+        }
+    }
+    
+    /**
+     * Waits for an exchange on the calling thread, unwrapping its failure.
+     *
+     * @param exchange the pending exchange
+     * @return the response
+     * @throws Exception the failure of the exchange, or a cancellation
+     */
+    private static <T> T await(CompletableFuture<T> exchange) throws Exception {
+        try {
+            return exchange.get();
+        } catch (ExecutionException executionException) {
+            if (executionException.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw executionException;
+        } catch (InterruptedException interrupted) {
+            exchange.cancel(true);
+            throw interrupted;
+        }
+    }
+    
+    /**
+     * Describes a final non-200 status for the user.
+     *
+     * @param responseCode the HTTP status
+     * @return the error message
+     */
+    private static String describeStatus(int responseCode) {
+        if (responseCode == 429) {
+            return "Erro: Rate limit excedido. Tente novamente em alguns instantes.";
+        } else if (responseCode >= 500) {
+            return "Erro: Servidor indisponível (HTTP " + responseCode + ")";
+        }
+        return "Erro HTTP: " + responseCode;
     }
 
     /**
      * Parses the HTTP response from the DeepSeek API.
      *
-     * @param connection the HTTP connection
+     * <p>A well-formed answer is stored in the response cache under the
+     * given key.</p>
+     *
+     * @param body     the response body stream
+     * @param token    the token cancelling this request
+     * @param cacheKey the cache key of the request, or null if it is not cached
      * @return extracted content from response
-     * @throws Exception if reading response fails
-     */
-    private String parseResponse(HttpURLConnection connection) throws Exception {
-        try (BufferedReader reader = new BufferedReader(
-            new InputStreamReader(connection.getInputStream(), "utf-8"))) {
-            StringBuilder response = new StringBuilder();
-            String responseLine;
-            while ((responseLine = reader.readLine()) != null) {
-                if (isCancelled.get()) {
-                    return "Requisição cancelada.";
-                }
-                response.append(responseLine.trim());
-            }
-            return extractContentFromJson(response.toString());
+     * @throws ApiException if the response is malformed or has no content
+     * @throws IOException  if reading response fails
+     */
+    private String parseResponse(InputStream body, CancellationToken token, String cacheKey) throws IOException {
+        ChatCompletion completion;
+        try {
+            completion = CompletionParser.parse(body);
+        } catch (MalformedJsonException malformedJsonException) {
+            throw new ApiException("Erro ao processar resposta: " + malformedJsonException.getMessage());
+        }
+        
+        if (token.isCancelled()) {
+            throw new CancellationException("Requisição cancelada.");
+        }
+        
+        String content = completion.content();
+        if (content == null) {
+            throw new ApiException("Resposta em formato inesperado.");
         }
+        if (cacheKey != null) {
+            cache.put(cacheKey, content);
+        }
+        return content;
     }
 
     /**
@@ -167,101 +984,95 @@ public class DeepSeekAPIClient {
     }
     
     /**
-     * Cancels the current API request by closing the connection in a non-blocking way.
+     * Cancels the latest request started without an explicit token by
+     * aborting the pending exchange and closing the response body in a
+     * non-blocking way. Requests started with a token are cancelled through
+     * that token instead.
      */
     public void cancelRequest() {
-        isCancelled.set(true);
-        if (currentConnection != null) {
-            new Thread(() -> {
-                try {
-                    currentConnection.disconnect();
-                } catch (Exception e) {
-                }
-            }).start();
+        CancellationToken token = currentToken;
+        if (token != null) {
+            token.cancel();
         }
     }
     
     /**
-     * Creates the JSON request payload for the DeepSeek API.
+     * Closes a response body, ignoring failures; used to abort a blocked read.
      *
-     * @param message the user message
-     * @return formatted JSON string
+     * @param body the response body stream
      */
-    private String createRequestJson(String message) {
-        return String.format(
-            "{\"model\": \"deepseek-chat\", \"messages\": [{\"role\": \"user\", \"content\": \"%s\"}]}",
-            escapeJson(message)
-        );
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+        }
     }
     
     /**
-     * Escapes special characters in JSON strings.
+     * Creates the request for the given messages to an endpoint.
      *
-     * @param text the text to escape
-     * @return escaped JSON string
+     * @param profile  the endpoint, which determines the model
+     * @param messages the conversation messages
+     * @param stream   whether the server should stream the answer as events
+     * @return the chat request
      */
-    private String escapeJson(String text) {
-        return text.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
+    private static ChatRequest createRequest(EndpointProfile profile, List<ChatMessage> messages, boolean stream) {
+        return new ChatRequest(profile.model(), messages, stream);
     }
-        
+    
     /**
-     * Extracts the message content from the JSON response.
+     * Returns the API key sent to an endpoint.
      *
-     * @param jsonResponse the raw JSON response
-     * @return extracted message content
+     * @param profile the endpoint
+     * @return the key of the endpoint, or else the key of the client
      */
-    private String extractContentFromJson(String jsonResponse) {
-        try {
-            int contentStart = jsonResponse.indexOf("\"content\":\"");
-            if (contentStart == -1) {
-                return "Resposta em formato inesperado: " + jsonResponse;
-            }
-            
-            contentStart += 11;
-            
-            int contentEnd = contentStart;
-            int length = jsonResponse.length();
-            while (contentEnd < length) {
-                char currentChar = jsonResponse.charAt(contentEnd);
-                
-                if (currentChar == '"') {
-                    if (contentEnd > 0 && jsonResponse.charAt(contentEnd - 1) == '\\') {
-                        contentEnd++;
-                        continue;
-                    } else {
-                        break;
-                    }
-                }
-                contentEnd++;
-            }
-            
-            if (contentEnd >= length) {
-                return "Resposta incompleta ou formato inválido.";
-            }
-            
-            String content = jsonResponse.substring(contentStart, contentEnd);
-            return unescapeJsonString(content);
-            
-        } catch (Exception e) {
-            return "Erro ao processar resposta: " + e.getMessage();
-        }
+    private String apiKeyOf(EndpointProfile profile) {
+        return profile.apiKey() != null ? profile.apiKey() : apiKey;
     }
     
     /**
-     * Unescapes JSON string by replacing escape sequences with actual characters.
+     * Returns the response cache key of a conversation as asked of an
+     * endpoint. Answers are cached under the key of the endpoint that gave
+     * them and looked up under the key of the endpoint the router prefers;
+     * endpoints serving the same model share their answers.
      *
-     * @param escapedString the string with JSON escape sequences
-     * @return unescaped string
+     * @param profile  the endpoint, which determines the model
+     * @param messages the conversation messages
+     * @return the cache key
      */
-    private String unescapeJsonString(String escapedString) {
-        return escapedString.replace("\\n", "\n")
-                          .replace("\\r", "\r")
-                          .replace("\\t", "\t")
-                          .replace("\\\"", "\"")
-                          .replace("\\\\", "\\");
+    private static String cacheKey(EndpointProfile profile, List<ChatMessage> messages) {
+        return ResponseCache.key(createRequest(profile, messages, false));
+    }
+    
+    /**
+     * Returns the key under which identical requests in flight are shared:
+     * the cache key for the endpoint the router prefers, qualified by that
+     * endpoint and its API key, so that a call is never shared between
+     * routes or accounts, and by the mode, since streamed and complete
+     * answers are delivered differently.
+     *
+     * @param profile  the endpoint the router prefers for the request
+     * @param messages the conversation messages
+     * @param stream   whether the answer is streamed
+     * @return the flight key
+     */
+    private String flightKey(EndpointProfile profile, List<ChatMessage> messages, boolean stream) {
+        return (stream ? "stream\n" : "complete\n") + profile.name() + "\n" + apiKeyOf(profile) + "\n"
+            + cacheKey(profile, messages);
+    }
+    
+    /**
+     * Estimates the serialized size of a request so the body buffer
+     * rarely needs to grow while it is written.
+     *
+     * @param request the chat request
+     * @return the expected body size in bytes
+     */
+    private int estimateRequestSize(ChatRequest request) {
+        long size = 128;
+        for (ChatMessage message : request.messages()) {
+            size += 32 + (message.content() != null ? message.content().length() + (message.content().length() >> 4) : 0);
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE - 8);
     }
 }
\ No newline at end of file
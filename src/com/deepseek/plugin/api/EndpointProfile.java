@@ -0,0 +1,90 @@
+package com.deepseek.plugin.api;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A DeepSeek-compatible chat completions endpoint and the model requested from it.
+ *
+ * <p>Profiles are written one per line as {@code name | url | model}, optionally
+ * followed by {@code | apiKey} when the endpoint does not accept the key of the
+ * public API, such as an on-premises gateway with its own credentials.</p>
+ *
+ * @param name     the name shown to the user
+ * @param endpoint the chat completions URL
+ * @param model    the model identifier, such as {@code deepseek-chat}
+ * @param apiKey   the API key of this endpoint, or null to use the key of the client
+ */
+public record EndpointProfile(String name, URI endpoint, String model, String apiKey) {
+
+    /** The model requested when none is configured. */
+    public static final String DEFAULT_MODEL = "deepseek-chat";
+
+    /**
+     * Parses profiles, one per line; blank lines and lines starting with
+     * {@code #} are ignored.
+     *
+     * @param text the profile lines
+     * @return the profiles, in the order of the lines
+     * @throws IllegalArgumentException if a line is not a valid profile, naming the line
+     */
+    public static List<EndpointProfile> parseList(String text) {
+        List<EndpointProfile> profiles = new ArrayList<>();
+        String[] lines = text.split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                profiles.add(parse(line));
+            } catch (IllegalArgumentException exception) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": " + exception.getMessage(), exception);
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Parses one profile.
+     *
+     * @param line the profile, as {@code name | url | model [| apiKey]}
+     * @return the profile
+     * @throws IllegalArgumentException if the line is not a valid profile
+     */
+    public static EndpointProfile parse(String line) {
+        String[] fields = line.split("\\|", -1);
+        if (fields.length < 3 || fields.length > 4) {
+            throw new IllegalArgumentException("expected name | url | model [| api key]");
+        }
+        String name = fields[0].trim();
+        String model = fields[2].trim();
+        String apiKey = fields.length == 4 && !fields[3].isBlank() ? fields[3].trim() : null;
+        if (name.isEmpty() || model.isEmpty()) {
+            throw new IllegalArgumentException("name and model must not be empty");
+        }
+        return new EndpointProfile(name, parseEndpoint(fields[1].trim()), model, apiKey);
+    }
+
+    /**
+     * Parses an HTTP or HTTPS URL.
+     *
+     * @param value the URL
+     * @return the endpoint
+     * @throws IllegalArgumentException if the value is not an absolute HTTP or HTTPS URL
+     */
+    public static URI parseEndpoint(String value) {
+        try {
+            URI endpoint = new URI(value);
+            String scheme = endpoint.getScheme();
+            if (endpoint.getHost() != null && ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+                return endpoint;
+            }
+        } catch (URISyntaxException exception) {
+            // reported below
+        }
+        throw new IllegalArgumentException("not an HTTP URL: " + value);
+    }
+}
@@ -0,0 +1,231 @@
+package com.deepseek.plugin.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chooses which of several interchangeable endpoints serves a request.
+ *
+ * <p>For every endpoint the router keeps the time to response headers of its
+ * recent successful requests and a moving average of its error rate. Samples
+ * older than {@link #SAMPLE_LIFETIME_NANOS} are ignored, so an endpoint
+ * whose measurements are stale is tried again rather than judged by its
+ * past. {@link #route()} orders the endpoints for one request: healthy ones
+ * first, the one with the lowest median latency, weighted by its error
+ * rate, in front; endpoints with fewer than {@link #MIN_RANKED_SAMPLES}
+ * recent samples count as the fastest, so they get measured beyond a first
+ * request slowed down by connection setup. After {@link #FAILURES_TO_OPEN}
+ * consecutive failures an endpoint is taken out of rotation for a cool-down
+ * that doubles with each further failure; it stays at the end of the order,
+ * so it is still used when every other endpoint has failed.</p>
+ *
+ * <p>{@link #hedgeDelayNanos(EndpointProfile)} returns the 95th percentile of
+ * an endpoint's recent latency: a request that has not been answered after
+ * that long is unusually slow and worth sending to a second endpoint.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public final class EndpointRouter {
+
+    /** The number of latency samples kept per endpoint. */
+    static final int WINDOW = 64;
+
+    /** The age after which a latency sample is ignored. */
+    static final long SAMPLE_LIFETIME_NANOS = 10 * 60 * 1_000_000_000L;
+
+    /** The number of recent samples needed before an endpoint is ranked by its latency. */
+    static final int MIN_RANKED_SAMPLES = 3;
+
+    /** The number of recent samples needed before slow requests are hedged. */
+    static final int MIN_HEDGE_SAMPLES = 10;
+
+    /** The shortest hedge delay, so fast endpoints are not hedged on jitter. */
+    static final long MIN_HEDGE_DELAY_NANOS = 50_000_000L;
+
+    /** The number of consecutive failures taking an endpoint out of rotation. */
+    static final int FAILURES_TO_OPEN = 3;
+
+    private static final long BASE_COOL_DOWN_NANOS = 30 * 1_000_000_000L;
+    private static final long MAX_COOL_DOWN_NANOS = 5 * 60 * 1_000_000_000L;
+    private static final double ERROR_RATE_WEIGHT = 0.2;
+    private static final double ERROR_PENALTY = 4;
+
+    /**
+     * The recent behaviour of one endpoint; guarded by the router.
+     */
+    private static final class Route {
+        final EndpointProfile profile;
+        final long[] latencies = new long[WINDOW];
+        final long[] times = new long[WINDOW];
+        int next;
+        double errorRate;
+        int consecutiveFailures;
+        long unavailableUntil;
+
+        Route(EndpointProfile profile) {
+            this.profile = profile;
+        }
+
+        /**
+         * Returns the latencies measured since the given time, sorted.
+         */
+        long[] recentLatencies(long since) {
+            long[] recent = new long[WINDOW];
+            int count = 0;
+            for (int i = 0; i < WINDOW; i++) {
+                if (times[i] != 0 && times[i] - since >= 0) {
+                    recent[count++] = latencies[i];
+                }
+            }
+            recent = Arrays.copyOf(recent, count);
+            Arrays.sort(recent);
+            return recent;
+        }
+    }
+
+    private final List<Route> routes;
+
+    /**
+     * Creates a router over the given endpoints.
+     *
+     * @param profiles the endpoints, in order of preference while nothing is measured
+     * @throws IllegalArgumentException if there is no endpoint
+     */
+    public EndpointRouter(List<EndpointProfile> profiles) {
+        if (profiles.isEmpty()) {
+            throw new IllegalArgumentException("No endpoint configured");
+        }
+        List<Route> list = new ArrayList<>(profiles.size());
+        for (EndpointProfile profile : profiles) {
+            list.add(new Route(profile));
+        }
+        this.routes = List.copyOf(list);
+    }
+
+    /**
+     * Creates a router always choosing the given endpoint.
+     *
+     * @param profile the endpoint
+     * @return the router
+     */
+    public static EndpointRouter of(EndpointProfile profile) {
+        return new EndpointRouter(List.of(profile));
+    }
+
+    /**
+     * Returns the configured endpoints.
+     *
+     * @return the endpoints, in configuration order
+     */
+    public List<EndpointProfile> getProfiles() {
+        return routes.stream().map(route -> route.profile).toList();
+    }
+
+    /**
+     * Orders the endpoints for one request.
+     *
+     * @return every endpoint, the one to try first at the front
+     */
+    public List<EndpointProfile> route() {
+        if (routes.size() == 1) {
+            return List.of(routes.get(0).profile);
+        }
+        long now = System.nanoTime();
+        long since = now - SAMPLE_LIFETIME_NANOS;
+        record Candidate(Route route, boolean available, double score) {
+        }
+        List<Candidate> candidates = new ArrayList<>(routes.size());
+        synchronized (this) {
+            for (Route route : routes) {
+                long[] recent = route.recentLatencies(since);
+                double median = recent.length >= MIN_RANKED_SAMPLES ? recent[recent.length / 2] : 0;
+                boolean available = route.unavailableUntil - now <= 0;
+                double score = available
+                    ? median * (1 + ERROR_PENALTY * route.errorRate)
+                    : route.unavailableUntil - now;
+                candidates.add(new Candidate(route, available, score));
+            }
+        }
+        candidates.sort(Comparator.comparing((Candidate candidate) -> !candidate.available())
+            .thenComparingDouble(Candidate::score));
+        return candidates.stream().map(candidate -> candidate.route().profile).toList();
+    }
+
+    /**
+     * Records a request answered by an endpoint.
+     *
+     * @param profile      the endpoint
+     * @param latencyNanos the time from sending the request to the response headers
+     */
+    public synchronized void succeeded(EndpointProfile profile, long latencyNanos) {
+        Route route = find(profile);
+        if (route == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        route.latencies[route.next] = latencyNanos;
+        route.times[route.next] = now == 0 ? 1 : now;
+        route.next = (route.next + 1) % WINDOW;
+        route.errorRate *= 1 - ERROR_RATE_WEIGHT;
+        route.consecutiveFailures = 0;
+        route.unavailableUntil = 0;
+    }
+
+    /**
+     * Records a request an endpoint could not answer: an I/O failure, a
+     * server error or a refusal such as an exhausted rate limit.
+     *
+     * @param profile the endpoint
+     */
+    public synchronized void failed(EndpointProfile profile) {
+        Route route = find(profile);
+        if (route == null) {
+            return;
+        }
+        route.errorRate = route.errorRate * (1 - ERROR_RATE_WEIGHT) + ERROR_RATE_WEIGHT;
+        route.consecutiveFailures++;
+        if (route.consecutiveFailures >= FAILURES_TO_OPEN) {
+            int doublings = Math.min(route.consecutiveFailures - FAILURES_TO_OPEN, 10);
+            long coolDown = Math.min(BASE_COOL_DOWN_NANOS << doublings, MAX_COOL_DOWN_NANOS);
+            route.unavailableUntil = System.nanoTime() + coolDown;
+        }
+    }
+
+    /**
+     * Returns how long to wait for an endpoint before sending the request
+     * to another one as well.
+     *
+     * @param profile the endpoint serving the request
+     * @return the delay in nanoseconds, or -1 if the request should not be
+     *         hedged because there is no other endpoint or too few samples
+     */
+    public long hedgeDelayNanos(EndpointProfile profile) {
+        if (routes.size() == 1) {
+            return -1;
+        }
+        long[] recent;
+        synchronized (this) {
+            Route route = find(profile);
+            if (route == null) {
+                return -1;
+            }
+            recent = route.recentLatencies(System.nanoTime() - SAMPLE_LIFETIME_NANOS);
+        }
+        if (recent.length < MIN_HEDGE_SAMPLES) {
+            return -1;
+        }
+        long p95 = recent[Math.min(recent.length - 1, (int) Math.ceil(recent.length * 0.95) - 1)];
+        return Math.max(p95, MIN_HEDGE_DELAY_NANOS);
+    }
+
+    private Route find(EndpointProfile profile) {
+        for (Route route : routes) {
+            if (route.profile.equals(profile)) {
+                return route;
+            }
+        }
+        return null;
+    }
+}
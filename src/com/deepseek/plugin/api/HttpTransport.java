@@ -0,0 +1,192 @@
+package com.deepseek.plugin.api;
+
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Shared HTTP transport used by all API clients of the plugin.
+ *
+ * <p>Wraps a single {@link HttpClient} that negotiates HTTP/2 when the server
+ * supports it, keeps connections alive between requests and multiplexes
+ * concurrent requests over them, so that consecutive prompts do not pay
+ * for new TCP and TLS handshakes.</p>
+ *
+ * <p>The transport also carries the {@link RateLimiter} that paces the
+ * requests of all clients using it.</p>
+ *
+ * <p>The read timeout bounds every wait for the server: for the response
+ * headers of each attempt, and then, through {@link #watch(InputStream)},
+ * for each next bytes of the body, so a response stalled mid-stream fails
+ * instead of hanging. It does not bound the total duration of a response
+ * that keeps arriving, such as a long streamed answer.</p>
+ */
+public class HttpTransport {
+
+    /** Default sustained request rate. */
+    public static final int DEFAULT_REQUESTS_PER_MINUTE = 60;
+
+    /** Default number of requests that may be sent at once. */
+    public static final int DEFAULT_BURST = 5;
+
+    /**
+     * The requests using an HTTP client, shared by the transports over it;
+     * guarded by itself.
+     */
+    private static final class Leases {
+        int requests;
+        boolean retired;
+        boolean closed;
+    }
+
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+    private final RateLimiter rateLimiter;
+    private final Leases leases;
+
+    /**
+     * Creates a new transport with the given timeouts and a default rate limit.
+     *
+     * @param connectTimeout the maximum time to establish a connection
+     * @param readTimeout    the maximum time to wait for the response headers or the next bytes of the body
+     */
+    public HttpTransport(Duration connectTimeout, Duration readTimeout) {
+        this(connectTimeout, readTimeout, new RateLimiter(DEFAULT_REQUESTS_PER_MINUTE, DEFAULT_BURST));
+    }
+
+    /**
+     * Creates a new transport with the given timeouts and rate limiter.
+     *
+     * @param connectTimeout the maximum time to establish a connection
+     * @param readTimeout    the maximum time to wait for the response headers or the next bytes of the body
+     * @param rateLimiter    the limiter pacing requests, typically shared across transports
+     */
+    public HttpTransport(Duration connectTimeout, Duration readTimeout, RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        this.readTimeout = readTimeout;
+        this.leases = new Leases();
+    }
+
+    private HttpTransport(HttpClient httpClient, Duration readTimeout, RateLimiter rateLimiter, Leases leases) {
+        this.httpClient = httpClient;
+        this.readTimeout = readTimeout;
+        this.rateLimiter = rateLimiter;
+        this.leases = leases;
+    }
+
+    /**
+     * Returns a transport sending over the same connections with the same
+     * timeouts, but paced by another limiter, so that a class of requests
+     * has a budget of its own. Shutting down either transport shuts down
+     * both.
+     *
+     * @param limiter the limiter pacing the requests of the new transport
+     * @return the transport
+     */
+    public HttpTransport withRateLimiter(RateLimiter limiter) {
+        return new HttpTransport(httpClient, readTimeout, limiter, leases);
+    }
+
+    /**
+     * Returns the underlying HTTP client.
+     *
+     * @return the pooled HTTP client
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Returns the timeout applied to each request while waiting for a response.
+     *
+     * @return the read timeout
+     */
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Wraps a response body so that a read waiting longer than the read
+     * timeout for bytes closes the body and fails with an
+     * {@link java.net.http.HttpTimeoutException}.
+     *
+     * @param body the response body
+     * @return the watched body, which the caller must close
+     */
+    public InputStream watch(InputStream body) {
+        return new IdleTimeoutInputStream(body, readTimeout);
+    }
+
+    /**
+     * Returns the limiter pacing the requests sent over this transport.
+     *
+     * @return the rate limiter
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Marks the start of a request, including the reading of its response,
+     * so that {@link #retire()} waits for it. Every successful call must be
+     * followed by {@link #release()}.
+     *
+     * @return true if the transport can be used, false if it was shut down
+     */
+    public boolean retain() {
+        synchronized (leases) {
+            if (leases.closed) {
+                return false;
+            }
+            leases.requests++;
+            return true;
+        }
+    }
+
+    /**
+     * Marks the end of a request started with {@link #retain()}, shutting
+     * the transport down if it was retired and this was its last request.
+     */
+    public void release() {
+        synchronized (leases) {
+            leases.requests--;
+            if (!leases.retired || leases.requests > 0 || leases.closed) {
+                return;
+            }
+            leases.closed = true;
+        }
+        httpClient.shutdown();
+    }
+
+    /**
+     * Shuts the transport down once the requests retaining it have ended,
+     * or now if there are none; used when the transport is replaced while
+     * requests may still be running over it.
+     */
+    public void retire() {
+        synchronized (leases) {
+            leases.retired = true;
+            if (leases.requests > 0 || leases.closed) {
+                return;
+            }
+            leases.closed = true;
+        }
+        httpClient.shutdown();
+    }
+
+    /**
+     * Stops accepting new requests and lets in-flight exchanges complete,
+     * after which pooled connections are closed.
+     */
+    public void shutdown() {
+        synchronized (leases) {
+            leases.closed = true;
+        }
+        httpClient.shutdown();
+    }
+}
@@ -0,0 +1,121 @@
+package com.deepseek.plugin.api;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An input stream that fails a read blocked for longer than an idle timeout.
+ *
+ * <p>A watchdog running on the {@link CompletableFuture#delayedExecutor}
+ * timer checks the stream once per timeout. If a read has been waiting for
+ * bytes for the whole timeout, the watchdog closes the underlying stream,
+ * which unblocks the read, and the read throws {@link HttpTimeoutException}.
+ * Time spent between reads, while the caller handles the data, does not
+ * count. The watchdog stops once the stream is closed or exhausted.</p>
+ */
+public class IdleTimeoutInputStream extends FilterInputStream {
+
+    private final long timeoutNanos;
+    private volatile long readStartNanos;
+    private volatile boolean reading;
+    private volatile boolean finished;
+    private volatile boolean timedOut;
+
+    /**
+     * Wraps a stream and starts its watchdog.
+     *
+     * @param in      the stream to read from
+     * @param timeout the longest a read may wait for bytes
+     */
+    public IdleTimeoutInputStream(InputStream in, Duration timeout) {
+        super(in);
+        this.timeoutNanos = timeout.toNanos();
+        schedule(timeoutNanos);
+    }
+
+    @Override
+    public int read() throws IOException {
+        begin();
+        try {
+            int b = super.read();
+            if (b < 0) {
+                finished = true;
+            }
+            return b;
+        } catch (IOException exception) {
+            throw translate(exception);
+        } finally {
+            reading = false;
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        begin();
+        try {
+            int read = super.read(buffer, offset, length);
+            if (read < 0) {
+                finished = true;
+            }
+            return read;
+        } catch (IOException exception) {
+            throw translate(exception);
+        } finally {
+            reading = false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        super.close();
+    }
+
+    private void begin() throws IOException {
+        if (timedOut) {
+            throw timeout();
+        }
+        readStartNanos = System.nanoTime();
+        reading = true;
+    }
+
+    private IOException translate(IOException exception) {
+        return timedOut ? timeout() : exception;
+    }
+
+    private HttpTimeoutException timeout() {
+        long millis = TimeUnit.NANOSECONDS.toMillis(timeoutNanos);
+        return new HttpTimeoutException("no response data received for "
+            + (millis % 1000 == 0 ? millis / 1000 + " s" : millis + " ms"));
+    }
+
+    private void schedule(long delayNanos) {
+        CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS).execute(this::check);
+    }
+
+    /**
+     * Closes the stream if a read has been blocked for the whole timeout,
+     * otherwise checks again when the current read would time out.
+     */
+    private void check() {
+        if (finished) {
+            return;
+        }
+        long idle = reading ? System.nanoTime() - readStartNanos : 0;
+        if (idle < timeoutNanos) {
+            schedule(timeoutNanos - idle);
+            return;
+        }
+        timedOut = true;
+        finished = true;
+        try {
+            in.close();
+        } catch (IOException e) {
+        }
+    }
+}
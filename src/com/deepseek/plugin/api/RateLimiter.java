@@ -0,0 +1,199 @@
+package com.deepseek.plugin.api;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Token-bucket rate limiter shared by all API clients of the plugin.
+ *
+ * <p>The bucket holds up to {@code burst} permits and refills at a steady
+ * rate. Permits are reserved rather than waited for: {@link #reserve()}
+ * always succeeds and returns how long the caller must delay its request,
+ * so concurrent requests are spread out in arrival order instead of failing.
+ * When the server reports that the limit is exhausted, through
+ * {@code Retry-After} or the {@code x-ratelimit-*} headers, the limiter
+ * pauses every client until the server's reset time, for at most
+ * {@link #MAX_PAUSE}.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public final class RateLimiter {
+
+    /** The longest pause a server can impose on the clients. */
+    public static final Duration MAX_PAUSE = Duration.ofMinutes(5);
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final int burst;
+    private double permitsPerNano;
+    private double available;
+    private long lastRefill;
+    private long pausedUntil;
+
+    /**
+     * Creates a limiter with a full bucket.
+     *
+     * @param requestsPerMinute the sustained request rate
+     * @param burst             the number of requests that may be sent at once
+     */
+    public RateLimiter(int requestsPerMinute, int burst) {
+        if (requestsPerMinute < 1 || burst < 1) {
+            throw new IllegalArgumentException(
+                "Invalid rate: requestsPerMinute=" + requestsPerMinute + ", burst=" + burst);
+        }
+        this.burst = burst;
+        this.permitsPerNano = requestsPerMinute / 60e9;
+        this.available = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Reserves a permit for one request.
+     *
+     * @return the delay in nanoseconds before the request may be sent, 0 if it may be sent now
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        refill(now);
+        available -= 1;
+
+        long delay = Math.max(0, pausedUntil - now);
+        if (available < 0) {
+            delay += (long) Math.ceil(-available / permitsPerNano);
+        }
+        return delay;
+    }
+
+    /**
+     * Changes the sustained request rate, keeping the current reservations.
+     *
+     * @param requestsPerMinute the new sustained request rate
+     */
+    public synchronized void setRate(int requestsPerMinute) {
+        refill(System.nanoTime());
+        this.permitsPerNano = Math.max(1, requestsPerMinute) / 60e9;
+    }
+
+    /**
+     * Stops granting permits until the given time has passed. Requests
+     * reserved meanwhile resume one by one at the sustained rate.
+     *
+     * @param duration how long to pause, measured from now, at most {@link #MAX_PAUSE}
+     */
+    public synchronized void pauseFor(Duration duration) {
+        long now = System.nanoTime();
+        refill(now);
+        Duration pause = duration.isNegative() ? Duration.ZERO
+            : duration.compareTo(MAX_PAUSE) > 0 ? MAX_PAUSE : duration;
+        pausedUntil = Math.max(pausedUntil, now + pause.toNanos());
+        available = Math.min(available, 0);
+        lastRefill = Math.max(lastRefill, pausedUntil);
+    }
+
+    /**
+     * Applies the rate-limit information of a response: pauses when
+     * {@code Retry-After} is present on a 429 answer, or when the
+     * {@code x-ratelimit-remaining-*} headers report an exhausted limit.
+     *
+     * @param statusCode the response status
+     * @param headers    the response headers
+     */
+    public void update(int statusCode, HttpHeaders headers) {
+        if (statusCode == 429) {
+            retryAfter(headers).ifPresent(this::pauseFor);
+        }
+        for (String kind : new String[] { "requests", "tokens" }) {
+            Optional<String> remaining = headers.firstValue("x-ratelimit-remaining-" + kind);
+            if (remaining.isPresent() && remaining.get().trim().equals("0")) {
+                headers.firstValue("x-ratelimit-reset-" + kind)
+                    .map(RateLimiter::parseDuration)
+                    .ifPresent(this::pauseFor);
+            }
+        }
+    }
+
+    /**
+     * Returns the delay requested by a {@code Retry-After} header, given
+     * either in seconds or as an HTTP date. Negative and non-finite numbers
+     * of seconds are invalid.
+     *
+     * @param headers the response headers
+     * @return the requested delay, if the header is present and valid
+     */
+    public static Optional<Duration> retryAfter(HttpHeaders headers) {
+        Optional<String> value = headers.firstValue("retry-after");
+        if (value.isEmpty()) {
+            return Optional.empty();
+        }
+        String text = value.get().trim();
+        try {
+            return Optional.ofNullable(parseSeconds(text));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(text, DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration delay = Duration.between(ZonedDateTime.now(date.getZone()), date);
+                return Optional.of(delay.isNegative() ? Duration.ZERO : delay);
+            } catch (DateTimeParseException notDate) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    /**
+     * Parses a reset interval such as {@code 20}, {@code 1.5s}, {@code 250ms} or {@code 6m0s}.
+     *
+     * @param text the header value
+     * @return the interval, or null if it cannot be parsed
+     */
+    static Duration parseDuration(String text) {
+        String value = text.trim();
+        try {
+            return parseSeconds(value);
+        } catch (NumberFormatException notSeconds) {
+            // fall through to the unit notation
+        }
+        Matcher matcher = DURATION_PART.matcher(value);
+        double millis = 0;
+        int end = 0;
+        while (matcher.find() && matcher.start() == end) {
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1000;
+                default -> amount;
+            };
+            end = matcher.end();
+        }
+        return end > 0 && end == value.length() ? Duration.ofMillis((long) millis) : null;
+    }
+
+    /**
+     * Parses a number of seconds. Durations too long for a long number of
+     * milliseconds saturate.
+     *
+     * @param text the number
+     * @return the duration, or null if the number is negative or not finite
+     * @throws NumberFormatException if the text is not a number
+     */
+    private static Duration parseSeconds(String text) {
+        double seconds = Double.parseDouble(text);
+        if (!Double.isFinite(seconds) || seconds < 0) {
+            return null;
+        }
+        return Duration.ofMillis((long) (seconds * 1000));
+    }
+
+    private void refill(long now) {
+        if (now > lastRefill) {
+            available = Math.min(burst, available + (now - lastRefill) * permitsPerNano);
+            lastRefill = now;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.deepseek.plugin.api;
+
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer that hands its contents to the HTTP client without copying.
+ *
+ * <p>Unlike {@link java.io.ByteArrayOutputStream}, the serialized request body
+ * is never duplicated by a {@code toByteArray()} call; the publisher reads the
+ * backing array directly. The buffer must therefore not be written to again
+ * once its publisher has been handed to a request.</p>
+ */
+public final class RequestBuffer extends OutputStream {
+
+    private byte[] bytes;
+    private int count;
+
+    /**
+     * Creates a buffer with the given initial capacity.
+     *
+     * @param initialCapacity the initial capacity in bytes
+     */
+    public RequestBuffer(int initialCapacity) {
+        this.bytes = new byte[Math.max(initialCapacity, 64)];
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        bytes[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] source, int offset, int length) {
+        ensureCapacity(count + length);
+        System.arraycopy(source, offset, bytes, count, length);
+        count += length;
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     *
+     * @return the buffer size
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Creates a body publisher backed by this buffer's array.
+     *
+     * @return a publisher emitting the written bytes
+     */
+    public HttpRequest.BodyPublisher toBodyPublisher() {
+        return HttpRequest.BodyPublishers.ofByteArray(bytes, 0, count);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.deepseek.plugin.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+import com.deepseek.plugin.concurrent.CancellationToken;
+
+/**
+ * Lets identical requests that are in flight at the same time share one
+ * call to the API.
+ *
+ * <p>Requests are identified by a key built from everything that determines
+ * the answer. The first request with a key starts a flight: its upstream
+ * call runs on a virtual thread with a token of its own. Requests with the
+ * same key arriving before the flight ends join it instead of calling the
+ * API, and all of them get its outcome. A streaming request that joins late
+ * first receives the content streamed so far as one delta, then the
+ * following deltas as they arrive. Every request still returns on its own
+ * thread, and its listener is called there.</p>
+ *
+ * <p>Cancellation is counted per request: cancelling one ends that request
+ * only, and the upstream call is cancelled when the last request of the
+ * flight has been cancelled. A flight is forgotten as soon as it ends or is
+ * abandoned, so later requests start a new call; repeated prompts are the
+ * business of the {@link com.deepseek.plugin.cache.ResponseCache}.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public final class RequestCoalescer {
+
+    /**
+     * An upstream call producing the whole answer.
+     */
+    @FunctionalInterface
+    interface Call {
+
+        /**
+         * Calls the API.
+         *
+         * @param token the token of the flight, cancelled when every request left it
+         * @return the answer
+         * @throws Exception if the call fails
+         */
+        String call(CancellationToken token) throws Exception;
+    }
+
+    /**
+     * An upstream call streaming the answer.
+     */
+    @FunctionalInterface
+    interface StreamCall {
+
+        /**
+         * Calls the API, reporting the outcome to the listener.
+         *
+         * @param listener the listener of the flight
+         * @param token    the token of the flight, cancelled when every request left it
+         */
+        void call(StreamListener listener, CancellationToken token);
+    }
+
+    private static final String CANCELLED_MESSAGE = "Requisição cancelada.";
+    private static final ThreadFactory THREAD_FACTORY = Thread.ofVirtual().name("deepseek-flight-", 0).factory();
+
+    /** Queued for a request when its token is cancelled. */
+    private static final Object CANCELLED = new Object();
+
+    /**
+     * The end of a flight.
+     *
+     * @param answer  the answer, or null if the call failed
+     * @param failure the failure, or null
+     */
+    private record Outcome(String answer, Exception failure) {
+    }
+
+    /**
+     * One upstream call and the requests waiting for it.
+     *
+     * <p>Each request has a queue receiving the content deltas, as strings,
+     * followed by the {@link Outcome}. The flight's fields are guarded by
+     * the flight; when both locks are needed, the coalescer is locked first.</p>
+     */
+    private static final class Flight {
+        final String key;
+        final CancellationToken upstream = new CancellationToken();
+        final StringBuilder received = new StringBuilder();
+        final List<BlockingQueue<Object>> waiters = new ArrayList<>();
+        Outcome outcome;
+
+        Flight(String key) {
+            this.key = key;
+        }
+    }
+
+    private final Map<String, Flight> flights = new HashMap<>();
+
+    /**
+     * Returns the answer to a request, calling the API unless an identical
+     * request is already in flight.
+     *
+     * @param key    the identity of the request
+     * @param token  the token cancelling this request
+     * @param call   the upstream call, made if no flight has the key
+     * @param joined run when the request joins a flight instead of calling the API
+     * @return the answer
+     * @throws CancellationException if the token was cancelled
+     * @throws Exception             the failure of the upstream call
+     */
+    String complete(String key, CancellationToken token, Call call, Runnable joined) throws Exception {
+        BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        Flight flight = join(key, events, joined, started -> {
+            String answer;
+            try {
+                answer = call.call(started.upstream);
+            } catch (Exception exception) {
+                finish(started, new Outcome(null, exception));
+                return;
+            }
+            finish(started, new Outcome(answer, null));
+        });
+        CancellationToken.Registration cancel = token.onCancel(() -> events.add(CANCELLED));
+        try {
+            while (true) {
+                Object event = events.take();
+                if (event == CANCELLED) {
+                    throw new CancellationException(CANCELLED_MESSAGE);
+                }
+                if (event instanceof Outcome outcome) {
+                    if (outcome.failure() != null) {
+                        throw outcome.failure();
+                    }
+                    return outcome.answer();
+                }
+            }
+        } finally {
+            cancel.close();
+            leave(flight, events);
+        }
+    }
+
+    /**
+     * Streams the answer to a request, calling the API unless an identical
+     * request is already in flight. Returns once the listener received the
+     * outcome.
+     *
+     * @param key      the identity of the request
+     * @param listener the listener receiving deltas and the final outcome on the calling thread
+     * @param token    the token cancelling this request
+     * @param call     the upstream call, made if no flight has the key
+     * @param joined   run when the request joins a flight instead of calling the API
+     */
+    void stream(String key, StreamListener listener, CancellationToken token, StreamCall call, Runnable joined) {
+        BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        Flight flight = join(key, events, joined, started -> call.call(new StreamListener() {
+            @Override
+            public void onDelta(String delta) {
+                synchronized (started) {
+                    if (started.outcome == null) {
+                        started.received.append(delta);
+                        for (BlockingQueue<Object> waiter : started.waiters) {
+                            waiter.add(delta);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                finish(started, new Outcome(null, null));
+            }
+
+            @Override
+            public void onError(String message) {
+                finish(started, new Outcome(null, new ApiException(message)));
+            }
+        }, started.upstream));
+        CancellationToken.Registration cancel = token.onCancel(() -> events.add(CANCELLED));
+        try {
+            while (true) {
+                Object event;
+                try {
+                    event = events.take();
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    event = CANCELLED;
+                }
+                if (event == CANCELLED) {
+                    listener.onError(CANCELLED_MESSAGE);
+                    return;
+                }
+                if (event instanceof Outcome outcome) {
+                    if (outcome.failure() != null) {
+                        listener.onError(outcome.failure().getMessage());
+                    } else {
+                        listener.onComplete();
+                    }
+                    return;
+                }
+                listener.onDelta((String) event);
+            }
+        } finally {
+            cancel.close();
+            leave(flight, events);
+        }
+    }
+
+    /**
+     * Returns the number of upstream calls in flight.
+     *
+     * @return the number of flights
+     */
+    public synchronized int size() {
+        return flights.size();
+    }
+
+    /**
+     * Adds a request to the flight of its key, starting the flight if there
+     * is none. A late request first gets the content received so far.
+     */
+    private Flight join(String key, BlockingQueue<Object> events, Runnable joined,
+            Consumer<Flight> upstream) {
+        Flight flight;
+        boolean leader;
+        synchronized (this) {
+            flight = flights.get(key);
+            leader = flight == null;
+            if (leader) {
+                flight = new Flight(key);
+                flights.put(key, flight);
+            }
+            synchronized (flight) {
+                if (flight.received.length() > 0) {
+                    events.add(flight.received.toString());
+                }
+                flight.waiters.add(events);
+            }
+        }
+        if (leader) {
+            Flight started = flight;
+            THREAD_FACTORY.newThread(() -> {
+                try {
+                    upstream.accept(started);
+                } catch (RuntimeException exception) {
+                    finish(started, new Outcome(null, exception));
+                } finally {
+                    finish(started, new Outcome(null, new ApiException("Resposta em formato inesperado.")));
+                }
+            }).start();
+        } else {
+            joined.run();
+        }
+        return flight;
+    }
+
+    /**
+     * Ends a flight, unless it already ended, and hands its outcome to the
+     * requests still waiting. The flight is forgotten first, so requests
+     * arriving from now on start a new one.
+     */
+    private void finish(Flight flight, Outcome outcome) {
+        synchronized (this) {
+            flights.remove(flight.key, flight);
+        }
+        synchronized (flight) {
+            if (flight.outcome != null) {
+                return;
+            }
+            flight.outcome = outcome;
+            for (BlockingQueue<Object> waiter : flight.waiters) {
+                waiter.add(outcome);
+            }
+        }
+    }
+
+    /**
+     * Removes a request from its flight, cancelling the upstream call if it
+     * was the last request waiting for it.
+     */
+    private void leave(Flight flight, BlockingQueue<Object> events) {
+        boolean abandoned;
+        synchronized (this) {
+            synchronized (flight) {
+                flight.waiters.remove(events);
+                abandoned = flight.waiters.isEmpty() && flight.outcome == null;
+                if (abandoned) {
+                    flights.remove(flight.key, flight);
+                }
+            }
+        }
+        if (abandoned) {
+            flight.upstream.cancel();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.deepseek.plugin.api;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed request is sent again.
+ *
+ * <p>Delays grow exponentially with the attempt number and are drawn
+ * uniformly between zero and that bound ("full jitter"), so clients that
+ * failed together do not retry together. A delay requested by the server
+ * takes precedence, with a little jitter added, as long as it does not
+ * exceed {@code maxDelay}: a request the server asks to delay longer fails
+ * instead of waiting.</p>
+ *
+ * @param maxAttempts the total number of attempts, including the first one
+ * @param baseDelay   the bound of the delay after the first attempt
+ * @param maxDelay    the largest delay between two attempts
+ */
+public record RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+
+    /** The policy used by the API clients. */
+    public static final RetryPolicy DEFAULT = new RetryPolicy(4, Duration.ofSeconds(1), Duration.ofSeconds(30));
+
+    private static final long SERVER_DELAY_JITTER_MILLIS = 250;
+
+    /**
+     * Checks if another attempt is allowed after a failed one.
+     *
+     * @param attempt the number of the attempt that failed, starting at 1
+     * @return true if the request may be sent again
+     */
+    public boolean canRetry(int attempt) {
+        return attempt < maxAttempts;
+    }
+
+    /**
+     * Checks if another attempt is allowed after a failed one, after the
+     * delay requested by the server.
+     *
+     * @param attempt    the number of the attempt that failed, starting at 1
+     * @param retryAfter the delay requested by the server, or null
+     * @return true if the request may be sent again
+     */
+    public boolean canRetry(int attempt, Duration retryAfter) {
+        return canRetry(attempt) && (retryAfter == null || retryAfter.compareTo(maxDelay) <= 0);
+    }
+
+    /**
+     * Returns the delay before the next attempt.
+     *
+     * @param attempt    the number of the attempt that failed, starting at 1
+     * @param retryAfter the delay requested by the server, or null
+     * @return the delay to wait; a server delay is cut to {@code maxDelay}
+     */
+    public Duration delay(int attempt, Duration retryAfter) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (retryAfter != null) {
+            Duration bounded = retryAfter.compareTo(maxDelay) > 0 ? maxDelay : retryAfter;
+            return bounded.plusMillis(random.nextLong(SERVER_DELAY_JITTER_MILLIS + 1));
+        }
+        long bound = baseDelay.toMillis() << Math.min(attempt - 1, 20);
+        bound = Math.min(Math.max(bound, 1), maxDelay.toMillis());
+        return Duration.ofMillis(random.nextLong(bound + 1));
+    }
+}
@@ -0,0 +1,33 @@
+package com.deepseek.plugin.api;
+
+/**
+ * Receives incremental output of a streamed chat completion.
+ *
+ * <p>Callbacks are invoked on the thread that performs the request, in the
+ * order the server produced them. Exactly one of {@link #onComplete()} or
+ * {@link #onError(String)} is called once the stream ends.</p>
+ */
+public interface StreamListener {
+
+    /**
+     * Called for every content fragment received from the server.
+     *
+     * @param delta the newly generated text, never empty
+     */
+    void onDelta(String delta);
+
+    /**
+     * Called when the server signals the end of the stream, with
+     * {@code data: [DONE]} or a finish reason.
+     */
+    void onComplete();
+
+    /**
+     * Called when the request fails or is cancelled before completion,
+     * including when the connection ends without the server signalling
+     * the end of the stream.
+     *
+     * @param message a user-friendly description of the failure
+     */
+    void onError(String message);
+}
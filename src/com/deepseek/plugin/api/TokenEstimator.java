@@ -0,0 +1,62 @@
+package com.deepseek.plugin.api;
+
+/**
+ * Estimates how many tokens a piece of text costs without running a tokenizer.
+ *
+ * <p>Follows DeepSeek's published rule of thumb: roughly 0.3 tokens per
+ * ASCII character and 0.6 tokens per other character. The estimate is
+ * computed in a single pass over the text.</p>
+ */
+public final class TokenEstimator {
+
+    /** Fixed cost of the role and framing of every message. */
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * Estimates the number of tokens in the given text.
+     *
+     * @param text the text to measure, may be null
+     * @return the estimated token count
+     */
+    public static int estimate(String text) {
+        if (text == null) {
+            return 0;
+        }
+        return estimate(text, 0, text.length());
+    }
+
+    /**
+     * Estimates the number of tokens in a range of a text, such as the lines
+     * being considered for a prompt, without copying it.
+     *
+     * @param text  the text to measure
+     * @param start the index of the first character, inclusive
+     * @param end   the index of the last character, exclusive
+     * @return the estimated token count
+     */
+    public static int estimate(CharSequence text, int start, int end) {
+        long asciiChars = 0;
+        long otherChars = 0;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) < 0x80) {
+                asciiChars++;
+            } else {
+                otherChars++;
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (asciiChars * 3 + otherChars * 6 + 9) / 10);
+    }
+
+    /**
+     * Estimates the number of tokens a message occupies in a request.
+     *
+     * @param message the message to measure
+     * @return the estimated token count, including framing overhead
+     */
+    public static int estimate(ChatMessage message) {
+        return MESSAGE_OVERHEAD + estimate(message.content());
+    }
+}
@@ -0,0 +1,11 @@
+package com.deepseek.plugin.api;
+
+/**
+ * Token accounting reported by the DeepSeek API for a completion.
+ *
+ * @param promptTokens     the number of tokens in the prompt
+ * @param completionTokens the number of tokens generated
+ * @param totalTokens      the total number of tokens billed
+ */
+public record Usage(int promptTokens, int completionTokens, int totalTokens) {
+}
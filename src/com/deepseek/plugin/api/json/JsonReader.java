@@ -0,0 +1,519 @@
+package com.deepseek.plugin.api.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A small pull parser that reads a JSON document token by token.
+ *
+ * <p>Characters are read straight from the underlying {@link Reader} into a
+ * fixed buffer and every string is decoded exactly once, including
+ * {@code \\uXXXX} escapes. Values that are not needed can be skipped without
+ * being materialized, so only the fields a caller asks for are allocated.</p>
+ *
+ * <p>Instances are not thread-safe.</p>
+ */
+public class JsonReader implements Closeable {
+
+    /**
+     * The kinds of tokens a JSON document is made of.
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader in;
+    private final char[] buffer;
+    private int pos;
+    private int limit;
+
+    private final StringBuilder text = new StringBuilder();
+    private int[] stack = new int[16];
+    private int stackSize;
+    private Token peeked;
+
+    /**
+     * Creates a reader that pulls characters from the given stream.
+     *
+     * @param in the character source, typically a UTF-8 decoding reader
+     */
+    public JsonReader(Reader in) {
+        this.in = in;
+        this.buffer = new char[8192];
+        this.stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Creates a reader over an already materialized JSON document.
+     *
+     * @param json the JSON text
+     */
+    public JsonReader(String json) {
+        this.in = null;
+        this.buffer = json.toCharArray();
+        this.limit = buffer.length;
+        this.stack[stackSize++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Returns the type of the next token without consuming it.
+     *
+     * @return the next token
+     * @throws IOException if the input cannot be read or is malformed
+     */
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+
+        int scope = stack[stackSize - 1];
+        int c = nextNonWhitespace();
+
+        if (scope == EMPTY_ARRAY || scope == NONEMPTY_ARRAY) {
+            if (c == ']') {
+                return peeked = Token.END_ARRAY;
+            }
+            if (scope == NONEMPTY_ARRAY) {
+                consume(',');
+                c = nextNonWhitespace();
+            }
+            stack[stackSize - 1] = NONEMPTY_ARRAY;
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            if (c == '}') {
+                return peeked = Token.END_OBJECT;
+            }
+            if (scope == NONEMPTY_OBJECT) {
+                consume(',');
+                c = nextNonWhitespace();
+            }
+            if (c != '"') {
+                throw syntaxError("Expected a member name");
+            }
+            stack[stackSize - 1] = DANGLING_NAME;
+            return peeked = Token.NAME;
+        } else if (scope == DANGLING_NAME) {
+            consume(':');
+            c = nextNonWhitespace();
+            stack[stackSize - 1] = NONEMPTY_OBJECT;
+        } else if (scope == EMPTY_DOCUMENT) {
+            stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+        } else if (c == -1) {
+            return peeked = Token.END_DOCUMENT;
+        } else {
+            throw syntaxError("Unexpected content after the document");
+        }
+
+        return peeked = valueToken(c);
+    }
+
+    /**
+     * Consumes the opening brace of an object.
+     *
+     * @throws IOException if the next token is not the start of an object
+     */
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        pos++;
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consumes the closing brace of the current object.
+     *
+     * @throws IOException if the next token is not the end of an object
+     */
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        pos++;
+        stackSize--;
+    }
+
+    /**
+     * Consumes the opening bracket of an array.
+     *
+     * @throws IOException if the next token is not the start of an array
+     */
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        pos++;
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consumes the closing bracket of the current array.
+     *
+     * @throws IOException if the next token is not the end of an array
+     */
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        pos++;
+        stackSize--;
+    }
+
+    /**
+     * Returns whether the current object or array has more elements.
+     *
+     * @return true if another member or element follows
+     * @throws IOException if the input cannot be read or is malformed
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Consumes the next member name.
+     *
+     * @return the decoded name
+     * @throws IOException if the next token is not a name
+     */
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        pos++;
+        return readString();
+    }
+
+    /**
+     * Consumes the next string value. Numbers are returned as their literal text.
+     *
+     * @return the decoded string
+     * @throws IOException if the next token is not a string or number
+     */
+    public String nextString() throws IOException {
+        Token token = peek();
+        if (token == Token.STRING) {
+            peeked = null;
+            pos++;
+            return readString();
+        }
+        if (token == Token.NUMBER) {
+            peeked = null;
+            readLiteral();
+            return text.toString();
+        }
+        throw syntaxError("Expected a string but was " + token);
+    }
+
+    /**
+     * Consumes the next string value, accepting an explicit {@code null}.
+     *
+     * @return the decoded string, or null
+     * @throws IOException if the next token is neither a string nor null
+     */
+    public String nextStringOrNull() throws IOException {
+        if (peek() == Token.NULL) {
+            nextNull();
+            return null;
+        }
+        return nextString();
+    }
+
+    /**
+     * Consumes the next numeric value as a long, truncating fractions.
+     *
+     * @return the numeric value
+     * @throws IOException if the next token is not a number
+     */
+    public long nextLong() throws IOException {
+        expect(Token.NUMBER);
+        readLiteral();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') {
+                return (long) Double.parseDouble(text.toString());
+            }
+        }
+        try {
+            return Long.parseLong(text, 0, text.length(), 10);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Invalid number " + text);
+        }
+    }
+
+    /**
+     * Consumes the next numeric value as an int.
+     *
+     * @return the numeric value
+     * @throws IOException if the next token is not a number
+     */
+    public int nextInt() throws IOException {
+        return (int) nextLong();
+    }
+
+    /**
+     * Consumes the next boolean value.
+     *
+     * @return the boolean value
+     * @throws IOException if the next token is not a boolean
+     */
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        readLiteral();
+        if (literalEquals("true")) {
+            return true;
+        }
+        if (literalEquals("false")) {
+            return false;
+        }
+        throw syntaxError("Invalid literal " + text);
+    }
+
+    /**
+     * Consumes the next {@code null} literal.
+     *
+     * @throws IOException if the next token is not null
+     */
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        readLiteral();
+        if (!literalEquals("null")) {
+            throw syntaxError("Invalid literal " + text);
+        }
+    }
+
+    /**
+     * Skips the next value, including all nested content, without decoding it.
+     *
+     * @throws IOException if the input cannot be read or is malformed
+     */
+    public void skipValue() throws IOException {
+        Token token = peek();
+        switch (token) {
+            case BEGIN_OBJECT -> {
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+            }
+            case BEGIN_ARRAY -> {
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+            }
+            case NAME -> nextName();
+            case STRING -> {
+                peeked = null;
+                pos++;
+                skipString();
+            }
+            case NUMBER, BOOLEAN, NULL -> {
+                peeked = null;
+                readLiteral();
+            }
+            default -> throw syntaxError("Unexpected " + token);
+        }
+    }
+
+    /**
+     * Closes the underlying reader.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    /**
+     * Verifies the next token and clears the peeked state.
+     */
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    /**
+     * Maps the first character of a value to its token type.
+     */
+    private Token valueToken(int c) throws IOException {
+        switch (c) {
+            case '{': return Token.BEGIN_OBJECT;
+            case '[': return Token.BEGIN_ARRAY;
+            case '"': return Token.STRING;
+            case 't':
+            case 'f': return Token.BOOLEAN;
+            case 'n': return Token.NULL;
+            case -1: throw syntaxError("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            int[] larger = new int[stackSize * 2];
+            System.arraycopy(stack, 0, larger, 0, stackSize);
+            stack = larger;
+        }
+        stack[stackSize++] = scope;
+    }
+
+    /**
+     * Refills the buffer from the reader.
+     *
+     * @return false if the end of input was reached
+     */
+    private boolean fill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        int read;
+        do {
+            read = in.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        pos = 0;
+        limit = read;
+        return true;
+    }
+
+    /**
+     * Returns the next non-whitespace character without consuming it, or -1 at the end of input.
+     */
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[pos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                pos++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    private void consume(char expected) throws IOException {
+        if (nextNonWhitespace() != expected) {
+            throw syntaxError("Expected '" + expected + "'");
+        }
+        pos++;
+    }
+
+    private char readChar() throws IOException {
+        if (pos == limit && !fill()) {
+            throw syntaxError("Unterminated string");
+        }
+        return buffer[pos++];
+    }
+
+    /**
+     * Decodes a string whose opening quote has already been consumed.
+     * Runs of plain characters are copied in bulk straight from the buffer.
+     */
+    private String readString() throws IOException {
+        text.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == '"') {
+                    text.append(buffer, start, pos - start);
+                    pos++;
+                    return text.toString();
+                }
+                if (c == '\\') {
+                    text.append(buffer, start, pos - start);
+                    pos++;
+                    text.append(readEscape());
+                    start = pos;
+                    continue;
+                }
+                pos++;
+            }
+            text.append(buffer, start, pos - start);
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    /**
+     * Skips a string whose opening quote has already been consumed.
+     */
+    private void skipString() throws IOException {
+        while (true) {
+            char c = readChar();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                readChar();
+            }
+        }
+    }
+
+    /**
+     * Decodes an escape sequence whose backslash has already been consumed.
+     */
+    private char readEscape() throws IOException {
+        char c = readChar();
+        switch (c) {
+            case 'n': return '\n';
+            case 'r': return '\r';
+            case 't': return '\t';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(readChar(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                return c;
+        }
+    }
+
+    /**
+     * Reads an unquoted literal such as a number, boolean or null into the text buffer.
+     */
+    private void readLiteral() throws IOException {
+        text.setLength(0);
+        while (pos < limit || fill()) {
+            char c = buffer[pos];
+            if (c == ',' || c == ':' || c == '}' || c == ']' || c == '{' || c == '['
+                    || c == '"' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                return;
+            }
+            text.append(c);
+            pos++;
+        }
+    }
+
+    private boolean literalEquals(String literal) {
+        return literal.contentEquals(text);
+    }
+
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException(message);
+    }
+}
@@ -0,0 +1,298 @@
+package com.deepseek.plugin.api.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a JSON document as UTF-8 bytes directly to an output stream.
+ *
+ * <p>Strings are escaped and encoded in a single pass into a small internal
+ * buffer, so no intermediate {@link String} or {@code byte[]} copy of the
+ * document is ever created. Every control character is escaped, as well as
+ * unpaired surrogates, which keeps the output valid for any input.</p>
+ *
+ * <p>Instances are not thread-safe.</p>
+ */
+public class JsonWriter implements Closeable, Flushable {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int count;
+
+    private boolean[] needsComma = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    /**
+     * Creates a writer that emits UTF-8 bytes to the given stream.
+     *
+     * @param out the destination stream
+     */
+    public JsonWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Begins a new object.
+     *
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        writeByte('{');
+        push();
+        return this;
+    }
+
+    /**
+     * Ends the current object.
+     *
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public JsonWriter endObject() throws IOException {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+
+    /**
+     * Begins a new array.
+     *
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        writeByte('[');
+        push();
+        return this;
+    }
+
+    /**
+     * Ends the current array.
+     *
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public JsonWriter endArray() throws IOException {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next object member.
+     *
+     * @param name the member name
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public JsonWriter name(String name) throws IOException {
+        beforeValue();
+        writeString(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value, or {@code null} if the value is null.
+     *
+     * @param value the string to write
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    /**
+     * Writes a boolean value.
+     *
+     * @param value the boolean to write
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes an integral numeric value.
+     *
+     * @param value the number to write
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a decimal numeric value.
+     *
+     * @param value the number to write, which must be finite
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("JSON numbers must be finite: " + value);
+        }
+        beforeValue();
+        writeAscii(Double.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a {@code null} literal.
+     *
+     * @return this writer
+     * @throws IOException if writing fails
+     */
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+
+    /**
+     * Writes all buffered bytes to the underlying stream.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+        out.flush();
+    }
+
+    /**
+     * Flushes buffered bytes and closes the underlying stream.
+     *
+     * @throws IOException if writing or closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    private void push() {
+        if (depth + 1 == needsComma.length) {
+            boolean[] larger = new boolean[needsComma.length * 2];
+            System.arraycopy(needsComma, 0, larger, 0, needsComma.length);
+            needsComma = larger;
+        }
+        needsComma[++depth] = false;
+    }
+
+    /**
+     * Emits the separator required before the next value or member name.
+     */
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (needsComma[depth]) {
+            writeByte(',');
+        }
+        needsComma[depth] = true;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (count == buffer.length) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    private void writeAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            writeByte(text.charAt(i));
+        }
+    }
+
+    /**
+     * Escapes and UTF-8 encodes a string, including the surrounding quotes.
+     */
+    private void writeString(String value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c >= 0x20 && c != '"' && c != '\\') {
+                    writeByte(c);
+                } else {
+                    writeEscaped(c);
+                }
+            } else if (c < 0x800) {
+                writeByte(0xC0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writeByte(0xF0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                writeByte(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                writeUnicodeEscape(c);
+            } else {
+                writeByte(0xE0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3F));
+                writeByte(0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeEscaped(char c) throws IOException {
+        char shorthand = switch (c) {
+            case '"' -> '"';
+            case '\\' -> '\\';
+            case '\n' -> 'n';
+            case '\r' -> 'r';
+            case '\t' -> 't';
+            case '\b' -> 'b';
+            case '\f' -> 'f';
+            default -> 0;
+        };
+        if (shorthand == 0) {
+            writeUnicodeEscape(c);
+        } else {
+            writeByte('\\');
+            writeByte(shorthand);
+        }
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        writeByte('\\');
+        writeByte('u');
+        writeByte(HEX[(c >> 12) & 0xF]);
+        writeByte(HEX[(c >> 8) & 0xF]);
+        writeByte(HEX[(c >> 4) & 0xF]);
+        writeByte(HEX[c & 0xF]);
+    }
+}
@@ -0,0 +1,20 @@
+package com.deepseek.plugin.api.json;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a JSON document does not conform to the expected syntax.
+ */
+public class MalformedJsonException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new exception with the given detail message.
+     *
+     * @param message the description of the syntax error
+     */
+    public MalformedJsonException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,378 @@
+package com.deepseek.plugin.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.deepseek.plugin.api.ChatMessage;
+import com.deepseek.plugin.api.ChatRequest;
+
+/**
+ * Caches API answers so that repeated prompts are answered without a round-trip.
+ *
+ * <p>Answers are keyed by a SHA-256 hash of the model and the normalized
+ * messages, see {@link #key(ChatRequest)}.
+ * The first tier is an in-memory LRU map bounded by the total size of the
+ * cached answers. The optional second tier stores one file per answer in a
+ * directory, typically under the plugin state location, and is bounded by
+ * its total size as well; an answer found on disk is promoted to memory.
+ * Every entry expires after the time-to-live in effect when it was stored.</p>
+ *
+ * <p>Instances are thread-safe. Disk files are replaced atomically, so a
+ * crash never leaves a partially written answer behind.</p>
+ */
+public class ResponseCache {
+
+    /** Default bound of the memory tier, in bytes. */
+    public static final long DEFAULT_MEMORY_BYTES = 8L * 1024 * 1024;
+
+    /** Default bound of the disk tier, in bytes. */
+    public static final long DEFAULT_DISK_BYTES = 64L * 1024 * 1024;
+
+    private static final String SUFFIX = ".entry";
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * A cached answer with its expiry time.
+     */
+    private record Entry(String value, long expiresAt) {
+        long weight() {
+            return 64 + 2L * value.length();
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxMemoryBytes;
+    private long memoryBytes;
+
+    private final Path directory;
+    private final long maxDiskBytes;
+    private long diskBytes = -1;
+
+    private volatile Duration timeToLive;
+    private volatile boolean diskEnabled;
+
+    /**
+     * Creates a cache.
+     *
+     * @param directory      the directory of the disk tier, or null for a memory-only cache
+     * @param maxMemoryBytes the approximate maximum size of the memory tier
+     * @param maxDiskBytes   the maximum size of the disk tier
+     * @param timeToLive     how long stored answers remain valid
+     */
+    public ResponseCache(Path directory, long maxMemoryBytes, long maxDiskBytes, Duration timeToLive) {
+        this.directory = directory;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        this.timeToLive = timeToLive;
+        this.diskEnabled = directory != null;
+    }
+
+    /**
+     * Computes the cache key of a request.
+     *
+     * <p>Message contents are normalized before hashing: line endings are
+     * converted to {@code \n} and leading and trailing whitespace is removed,
+     * so a prompt re-sent with cosmetic differences still hits. The
+     * {@code stream} flag is not part of the key since it does not change
+     * the answer.</p>
+     *
+     * @param request the request
+     * @return the hexadecimal SHA-256 key
+     */
+    public static String key(ChatRequest request) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+        update(digest, request.model());
+        for (ChatMessage message : request.messages()) {
+            update(digest, message.role());
+            update(digest, normalize(message.content()));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns a cached answer.
+     *
+     * @param key the request key
+     * @return the answer, or null if it is not cached or has expired
+     */
+    public String get(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = memory.get(key);
+            if (entry != null) {
+                if (entry.expiresAt() > now) {
+                    return entry.value();
+                }
+                remove(key);
+            }
+        }
+        if (!diskEnabled) {
+            return null;
+        }
+
+        Entry entry = readFile(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= now) {
+            deleteFile(key);
+            return null;
+        }
+        synchronized (this) {
+            putInMemory(key, entry);
+        }
+        return entry.value();
+    }
+
+    /**
+     * Stores an answer in memory and, when enabled, on disk.
+     *
+     * @param key   the request key
+     * @param value the answer
+     */
+    public void put(String key, String value) {
+        Entry entry = new Entry(value, System.currentTimeMillis() + timeToLive.toMillis());
+        synchronized (this) {
+            putInMemory(key, entry);
+        }
+        if (diskEnabled) {
+            writeFile(key, entry);
+        }
+    }
+
+    /**
+     * Removes every cached answer from both tiers.
+     */
+    public void clear() {
+        synchronized (this) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+        if (directory != null) {
+            for (Path file : listFiles()) {
+                deleteQuietly(file);
+            }
+            synchronized (this) {
+                diskBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * Changes the time-to-live of answers stored from now on.
+     *
+     * @param timeToLive how long stored answers remain valid
+     */
+    public void setTimeToLive(Duration timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Enables or disables the disk tier. Has no effect on a memory-only cache.
+     *
+     * @param enabled whether answers are read from and written to disk
+     */
+    public void setDiskEnabled(boolean enabled) {
+        this.diskEnabled = enabled && directory != null;
+    }
+
+    /**
+     * Returns the number of answers held in memory.
+     *
+     * @return the memory tier entry count
+     */
+    public synchronized int getMemoryEntries() {
+        return memory.size();
+    }
+
+    private void putInMemory(String key, Entry entry) {
+        Entry previous = memory.put(key, entry);
+        if (previous != null) {
+            memoryBytes -= previous.weight();
+        }
+        memoryBytes += entry.weight();
+
+        Iterator<Map.Entry<String, Entry>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().getValue().weight();
+            eldest.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Entry removed = memory.remove(key);
+        if (removed != null) {
+            memoryBytes -= removed.weight();
+        }
+    }
+
+    private Path fileOf(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    private Entry readFile(String key) {
+        try (InputStream in = Files.newInputStream(fileOf(key));
+             DataInputStream data = new DataInputStream(in)) {
+            if (data.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long expiresAt = data.readLong();
+            return new Entry(new String(data.readAllBytes(), StandardCharsets.UTF_8), expiresAt);
+        } catch (NoSuchFileException missing) {
+            return null;
+        } catch (IOException exception) {
+            deleteFile(key);
+            return null;
+        }
+    }
+
+    /**
+     * Writes an entry to a temporary file and moves it in place, then
+     * evicts the oldest files if the disk tier grew beyond its bound.
+     */
+    private void writeFile(String key, Entry entry) {
+        byte[] value = entry.value().getBytes(StandardCharsets.UTF_8);
+        Path target = fileOf(key);
+        Path temporary = null;
+        long previousSize;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary);
+                 DataOutputStream data = new DataOutputStream(out)) {
+                data.writeInt(FORMAT_VERSION);
+                data.writeLong(entry.expiresAt());
+                data.write(value);
+            }
+            previousSize = Files.exists(target) ? Files.size(target) : 0;
+            try {
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException unsupported) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException exception) {
+            deleteQuietly(target);
+            return;
+        } finally {
+            if (temporary != null) {
+                deleteQuietly(temporary);
+            }
+        }
+
+        // The entry is in place; failing to account for it must not remove it.
+        try {
+            boolean overflow;
+            synchronized (this) {
+                if (diskBytes < 0) {
+                    diskBytes = measureDisk();
+                } else {
+                    diskBytes += Files.size(target) - previousSize;
+                }
+                overflow = diskBytes > maxDiskBytes;
+            }
+            if (overflow) {
+                trimDisk();
+            }
+        } catch (IOException exception) {
+            // measured again on the next write
+            synchronized (this) {
+                diskBytes = -1;
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently written files until the disk tier fits its bound.
+     */
+    private void trimDisk() throws IOException {
+        List<Path> files = listFiles();
+        List<long[]> order = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            order.add(new long[] { Files.getLastModifiedTime(files.get(i)).toMillis(), i });
+        }
+        order.sort((a, b) -> Long.compare(a[0], b[0]));
+
+        synchronized (this) {
+            diskBytes = measureDisk();
+            for (long[] candidate : order) {
+                if (diskBytes <= maxDiskBytes * 3 / 4) break;
+                Path file = files.get((int) candidate[1]);
+                long size = Files.size(file);
+                if (deleteQuietly(file)) {
+                    diskBytes -= size;
+                }
+            }
+        }
+    }
+
+    private long measureDisk() throws IOException {
+        long total = 0;
+        for (Path file : listFiles()) {
+            total += Files.size(file);
+        }
+        return total;
+    }
+
+    private List<Path> listFiles() {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException exception) {
+            // an unreadable directory behaves as an empty disk tier
+        }
+        return files;
+    }
+
+    private void deleteFile(String key) {
+        deleteQuietly(fileOf(key));
+    }
+
+    private static boolean deleteQuietly(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    private static String normalize(String content) {
+        if (content == null) {
+            return "";
+        }
+        return content.replace("\r\n", "\n").replace('\r', '\n').strip();
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        digest.update(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length });
+        digest.update(bytes);
+    }
+}
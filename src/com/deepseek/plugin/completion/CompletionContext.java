@@ -0,0 +1,112 @@
+package com.deepseek.plugin.completion;
+
+import java.util.List;
+import java.util.Objects;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+
+import com.deepseek.plugin.api.ChatMessage;
+import com.deepseek.plugin.api.Conversation;
+
+/**
+ * The code around a cursor position, captured to ask for a completion.
+ *
+ * <p>Only a window of the document is kept: up to {@link #PREFIX_CHARS}
+ * characters before the cursor and {@link #SUFFIX_CHARS} after it, read
+ * straight from the document so that capturing a context on every keystroke
+ * does not copy the whole file.</p>
+ *
+ * @param path        the workspace path of the edited file, or null if it is not a workspace file
+ * @param offset      the offset of the cursor in the document
+ * @param prefixStart the offset of the first character of {@code prefix}
+ * @param prefix      the text before the cursor
+ * @param suffix      the text after the cursor
+ */
+public record CompletionContext(String path, int offset, int prefixStart, String prefix, String suffix) {
+
+    /** The maximum number of characters before the cursor sent with a request. */
+    public static final int PREFIX_CHARS = 4000;
+
+    /** The maximum number of characters after the cursor sent with a request. */
+    public static final int SUFFIX_CHARS = 1000;
+
+    /** The marker standing for the cursor in the prompt. */
+    public static final String CURSOR = "<CURSOR>";
+
+    private static final String INSTRUCTION =
+        "You are a code completion engine. Reply only with the code to insert at " + CURSOR
+        + ", without explanations, Markdown fences or the code already before or after it. "
+        + "Complete at most the current statement or a few lines. Reply with nothing if no code should be inserted.";
+
+    /**
+     * Captures the context of a cursor position.
+     *
+     * @param path     the workspace path of the edited file, or null
+     * @param document the edited document
+     * @param offset   the offset of the cursor
+     * @return the context, or null if the offset is outside the document
+     */
+    public static CompletionContext capture(String path, IDocument document, int offset) {
+        int length = document.getLength();
+        if (offset < 0 || offset > length) {
+            return null;
+        }
+        int prefixStart = Math.max(0, offset - PREFIX_CHARS);
+        try {
+            return new CompletionContext(path, offset, prefixStart,
+                document.get(prefixStart, offset - prefixStart),
+                document.get(offset, Math.min(SUFFIX_CHARS, length - offset)));
+        } catch (BadLocationException exception) {
+            // the document changed while it was read
+            return null;
+        }
+    }
+
+    /**
+     * Returns the text typed since an earlier context of the same document,
+     * if the completion of that context could also serve this one: both are
+     * in the same file, the text after the cursor is unchanged, and the text
+     * before this cursor continues the text before the earlier one.
+     *
+     * @param earlier the earlier context
+     * @return the characters typed since, possibly empty, or null if this
+     *         context does not continue the earlier one
+     */
+    public String typedSince(CompletionContext earlier) {
+        if (offset < earlier.offset || !Objects.equals(path, earlier.path) || !suffix.equals(earlier.suffix)) {
+            return null;
+        }
+        int from = Math.max(prefixStart, earlier.prefixStart);
+        if (from > earlier.offset || !prefix.regionMatches(from - prefixStart,
+                earlier.prefix, from - earlier.prefixStart, earlier.offset - from)) {
+            return null;
+        }
+        return prefix.substring(earlier.offset - prefixStart);
+    }
+
+    /**
+     * Returns the text of the cursor line before the cursor.
+     *
+     * @return the start of the current line
+     */
+    public String linePrefix() {
+        return prefix.substring(prefix.lastIndexOf('\n') + 1);
+    }
+
+    /**
+     * Returns the request asking for the completion of this context.
+     *
+     * @return the messages to send
+     */
+    public List<ChatMessage> messages() {
+        StringBuilder prompt = new StringBuilder(prefix.length() + suffix.length() + 64);
+        if (path != null) {
+            prompt.append("File: ").append(path).append("\n\n");
+        }
+        prompt.append(prefix).append(CURSOR).append(suffix);
+        return List.of(
+            new ChatMessage(Conversation.ROLE_SYSTEM, INSTRUCTION, null),
+            new ChatMessage(Conversation.ROLE_USER, prompt.toString(), null));
+    }
+}
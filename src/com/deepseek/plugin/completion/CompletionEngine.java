@@ -0,0 +1,320 @@
+package com.deepseek.plugin.completion;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.deepseek.plugin.api.ChatMessage;
+import com.deepseek.plugin.concurrent.CancellationToken;
+import com.deepseek.plugin.concurrent.RequestScheduler;
+
+/**
+ * Requests code completions for cursor positions, speculatively while the
+ * user types and on demand when content assist asks for them.
+ *
+ * <p>Keystrokes are debounced: {@link #schedule(CompletionContext, long)}
+ * only sends a request once the cursor has rested for the given delay, and
+ * a request is never sent twice for the same position while one is in
+ * flight. Every request has its own {@link CancellationToken}; as soon as
+ * the cursor moves to a position the request cannot serve, the token is
+ * cancelled, which aborts the exchange or closes the response stream on the
+ * spot and cancels the result.</p>
+ *
+ * <p>The last {@link #MAX_CACHED} completions are kept by prefix. When the
+ * user keeps typing the text of a completion, the rest of it is served
+ * from the cache, and while the request of an earlier position is still in
+ * flight, a later position that continues it waits for it instead of
+ * sending another request.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public final class CompletionEngine {
+
+    /** The maximum number of completions kept for reuse. */
+    public static final int MAX_CACHED = 64;
+
+    /**
+     * Produces the completion of a prompt, such as
+     * {@link com.deepseek.plugin.api.DeepSeekAPIClient#complete}.
+     */
+    @FunctionalInterface
+    public interface Completer {
+
+        /**
+         * Sends a completion request.
+         *
+         * @param messages the messages to send
+         * @param token    the token cancelling the request
+         * @return the answer
+         * @throws Exception if the request fails or is cancelled
+         */
+        String complete(List<ChatMessage> messages, CancellationToken token) throws Exception;
+    }
+
+    /**
+     * A completion requested for a context, in flight or done.
+     */
+    private static final class Entry {
+        final CompletionContext context;
+        final CancellationToken token = new CancellationToken();
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Entry(CompletionContext context) {
+            this.context = context;
+            token.onCancel(() -> result.cancel(false));
+        }
+    }
+
+    private final RequestScheduler scheduler;
+    private final Completer completer;
+
+    /** Requested completions, most recently used first. */
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private CompletionContext latest;
+    private long generation;
+    private boolean disposed;
+
+    /**
+     * Creates an engine.
+     *
+     * @param scheduler the scheduler running the requests
+     * @param completer the client sending the requests
+     */
+    public CompletionEngine(RequestScheduler scheduler, Completer completer) {
+        this.scheduler = scheduler;
+        this.completer = completer;
+    }
+
+    /**
+     * Records a cursor move that needs no completion, such as navigation,
+     * cancelling the requests that cannot serve the new position.
+     *
+     * @param context the new cursor position
+     */
+    public void moveTo(CompletionContext context) {
+        List<CancellationToken> stale;
+        synchronized (this) {
+            stale = advance(context);
+        }
+        cancel(stale);
+    }
+
+    /**
+     * Records a keystroke and requests the completion of its position once
+     * the cursor has rested there for the given delay.
+     *
+     * @param context     the new cursor position
+     * @param delayMillis the debounce delay in milliseconds
+     */
+    public void schedule(CompletionContext context, long delayMillis) {
+        List<CancellationToken> stale;
+        long scheduled;
+        synchronized (this) {
+            stale = advance(context);
+            scheduled = generation;
+        }
+        cancel(stale);
+        CompletableFuture.delayedExecutor(Math.max(0, delayMillis), TimeUnit.MILLISECONDS).execute(() -> {
+            synchronized (this) {
+                if (disposed || scheduled != generation) {
+                    return;
+                }
+                resolve(context, scheduled);
+            }
+        });
+    }
+
+    /**
+     * Returns the completion of a position right away, from the cache or the
+     * request in flight when they can serve it, or from a new request.
+     *
+     * <p>Cancelling the returned future does not cancel a request other
+     * positions are waiting for; moving the cursor does.</p>
+     *
+     * @param context the cursor position
+     * @return the text to insert at the cursor, possibly empty; cancelled
+     *         when the cursor moves elsewhere first
+     */
+    public CompletableFuture<String> request(CompletionContext context) {
+        List<CancellationToken> stale;
+        CompletableFuture<String> result;
+        synchronized (this) {
+            if (disposed) {
+                return CompletableFuture.failedFuture(new CancellationException("Completions are disposed"));
+            }
+            stale = advance(context);
+            result = resolve(context, generation);
+        }
+        cancel(stale);
+        return result;
+    }
+
+    /**
+     * Cancels every request in flight, for example when the editor loses focus.
+     * Completed completions stay cached.
+     */
+    public void cancel() {
+        List<CancellationToken> stale;
+        synchronized (this) {
+            stale = advance(null);
+        }
+        cancel(stale);
+    }
+
+    /**
+     * Cancels every request in flight and drops the cache.
+     */
+    public void dispose() {
+        List<CancellationToken> stale;
+        synchronized (this) {
+            stale = advance(null);
+            disposed = true;
+            entries.clear();
+        }
+        cancel(stale);
+    }
+
+    /**
+     * Makes a position the latest one and removes the requests in flight
+     * that cannot serve it. Caller holds the lock.
+     *
+     * @param context the new position, or null if there is none
+     * @return the tokens of the removed requests, to cancel without holding the lock
+     */
+    private List<CancellationToken> advance(CompletionContext context) {
+        if (context != null && context.equals(latest)) {
+            return List.of();
+        }
+        latest = context;
+        generation++;
+        List<CancellationToken> stale = new ArrayList<>();
+        for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext();) {
+            Entry entry = iterator.next();
+            if (!entry.result.isDone() && (context == null || context.typedSince(entry.context) == null)) {
+                iterator.remove();
+                stale.add(entry.token);
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Serves a position from the cache or the requests in flight, or starts
+     * a request for it. Caller holds the lock.
+     *
+     * @param context the position
+     * @param current the generation the position belongs to
+     * @return the completion
+     */
+    private CompletableFuture<String> resolve(CompletionContext context, long current) {
+        for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext();) {
+            Entry entry = iterator.next();
+            if (entry.result.isCompletedExceptionally()) {
+                iterator.remove();
+                continue;
+            }
+            String typed = context.typedSince(entry.context);
+            if (typed == null) {
+                continue;
+            }
+            if (!entry.result.isDone()) {
+                if (typed.isEmpty()) {
+                    return entry.result.copy();
+                }
+                // see whether the completion still applies once it arrives
+                return entry.result.handle((completion, failure) -> null)
+                    .thenCompose(ignored -> resolveIfCurrent(context, current));
+            }
+            String completion = entry.result.join();
+            if ((completion.length() > typed.length() && completion.startsWith(typed))
+                    || (typed.isEmpty() && completion.isEmpty())) {
+                iterator.remove();
+                entries.addFirst(entry);
+                return CompletableFuture.completedFuture(completion.substring(typed.length()));
+            }
+        }
+        return start(context);
+    }
+
+    /**
+     * Resolves a position unless the cursor has moved since it was requested.
+     */
+    private synchronized CompletableFuture<String> resolveIfCurrent(CompletionContext context, long current) {
+        if (disposed || current != generation) {
+            return CompletableFuture.failedFuture(new CancellationException("The cursor moved"));
+        }
+        return resolve(context, current);
+    }
+
+    /**
+     * Starts the request of a position. Caller holds the lock.
+     */
+    private CompletableFuture<String> start(CompletionContext context) {
+        Entry entry = new Entry(context);
+        entries.addFirst(entry);
+        while (entries.size() > MAX_CACHED) {
+            entries.removeLast();
+        }
+        try {
+            scheduler.submit(entry.token, () -> {
+                try {
+                    entry.result.complete(clean(context, completer.complete(context.messages(), entry.token)));
+                } catch (Exception exception) {
+                    entry.result.completeExceptionally(exception);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            entries.remove(entry);
+            entry.result.completeExceptionally(exception);
+        }
+        return entry.result.copy();
+    }
+
+    /**
+     * Cancels requests. Their callbacks abort the exchanges on this thread,
+     * so this is called without holding the lock.
+     */
+    private static void cancel(List<CancellationToken> tokens) {
+        for (CancellationToken token : tokens) {
+            token.cancel();
+        }
+    }
+
+    /**
+     * Reduces an answer to the text to insert: removes Markdown fences, the
+     * start of the cursor line and the rest of it when the model repeats
+     * them, and trailing blank space.
+     *
+     * @param context the position the answer is for
+     * @param answer  the answer of the model
+     * @return the text to insert, possibly empty
+     */
+    static String clean(CompletionContext context, String answer) {
+        if (answer == null) {
+            return "";
+        }
+        String text = answer.replace(CompletionContext.CURSOR, "");
+        if (text.startsWith("```")) {
+            int bodyStart = text.indexOf('\n') + 1;
+            int fenceEnd = text.lastIndexOf("```");
+            text = bodyStart == 0 ? "" : text.substring(bodyStart, fenceEnd >= bodyStart ? fenceEnd : text.length());
+        }
+        text = text.stripTrailing();
+
+        String linePrefix = context.linePrefix().stripLeading();
+        if (!linePrefix.isEmpty() && text.stripLeading().startsWith(linePrefix)) {
+            text = text.stripLeading().substring(linePrefix.length());
+        }
+        int lineEnd = context.suffix().indexOf('\n');
+        String lineSuffix = (lineEnd < 0 ? context.suffix() : context.suffix().substring(0, lineEnd)).strip();
+        if (!lineSuffix.isEmpty() && text.endsWith(lineSuffix)) {
+            text = text.substring(0, text.length() - lineSuffix.length());
+        }
+        return text;
+    }
+}
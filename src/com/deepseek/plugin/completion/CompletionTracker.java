@@ -0,0 +1,82 @@
+package com.deepseek.plugin.completion;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.ui.ISelectionListener;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.deepseek.plugin.Activator;
+import com.deepseek.plugin.configuration.ConfigurationManager;
+
+/**
+ * Feeds the cursor moves of Java editors to the {@link CompletionEngine}.
+ *
+ * <p>Registered as an immediate selection listener, so it sees every caret
+ * move. A move caused by typing schedules a debounced completion request;
+ * any other move, and focus leaving the Java editor, only cancels the
+ * requests that no longer apply.</p>
+ *
+ * <p>Called on the UI thread only.</p>
+ */
+public class CompletionTracker implements ISelectionListener {
+
+    private IDocument lastDocument;
+    private long lastStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+    private int lastLength = -1;
+
+    /**
+     * Schedules or cancels completions for a selection change.
+     *
+     * @param part      the part holding the selection
+     * @param selection the selection
+     */
+    @Override
+    public void selectionChanged(IWorkbenchPart part, ISelection selection) {
+        Activator activator = Activator.getDefault();
+        CompletionEngine engine = activator != null ? activator.getCompletionEngine() : null;
+        if (engine == null) {
+            return;
+        }
+        IDocument document = part instanceof ITextEditor editor && editor.getDocumentProvider() != null
+            ? editor.getDocumentProvider().getDocument(editor.getEditorInput())
+            : null;
+        IFile file = document != null ? ((ITextEditor) part).getEditorInput().getAdapter(IFile.class) : null;
+        if (file == null || !"java".equals(file.getFileExtension())
+                || !(selection instanceof ITextSelection textSelection) || textSelection.getLength() != 0
+                || !ConfigurationManager.isCompletionEnabled() || !ConfigurationManager.hasApiKey()) {
+            engine.cancel();
+            return;
+        }
+
+        CompletionContext context = CompletionContext.capture(
+            file.getFullPath().toPortableString(), document, textSelection.getOffset());
+        if (context == null) {
+            engine.cancel();
+        } else if (edited(document)) {
+            engine.schedule(context, ConfigurationManager.getCompletionDelay());
+        } else {
+            engine.moveTo(context);
+        }
+    }
+
+    /**
+     * Checks whether a document changed since the previous selection change.
+     */
+    private boolean edited(IDocument document) {
+        long stamp = document instanceof IDocumentExtension4 extension
+            ? extension.getModificationStamp()
+            : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+        int length = document.getLength();
+        boolean edited = document == lastDocument && (stamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP
+            ? stamp != lastStamp
+            : length != lastLength);
+        lastDocument = document;
+        lastStamp = stamp;
+        lastLength = length;
+        return edited;
+    }
+}
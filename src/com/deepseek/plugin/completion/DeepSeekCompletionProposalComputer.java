@@ -0,0 +1,139 @@
+package com.deepseek.plugin.completion;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.ui.text.java.ContentAssistInvocationContext;
+import org.eclipse.jdt.ui.text.java.IJavaCompletionProposalComputer;
+import org.eclipse.jdt.ui.text.java.JavaContentAssistInvocationContext;
+import org.eclipse.jface.text.contentassist.CompletionProposal;
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+import org.eclipse.jface.text.contentassist.IContextInformation;
+
+import com.deepseek.plugin.Activator;
+import com.deepseek.plugin.api.ApiException;
+import com.deepseek.plugin.configuration.ConfigurationManager;
+
+/**
+ * Adds the DeepSeek completion of the cursor position to content assist in
+ * the Java editor.
+ *
+ * <p>Content assist runs on the UI thread, so the completion is awaited for
+ * at most {@link #MAX_WAIT}. It is usually ready by then: the
+ * {@link CompletionTracker}, installed by the first content assist session,
+ * requests it while the user types, and typing onward is served from the
+ * cache of the {@link CompletionEngine}. A completion arriving later is not
+ * lost; it is cached for the next invocation.</p>
+ */
+public class DeepSeekCompletionProposalComputer implements IJavaCompletionProposalComputer {
+
+    /** The longest time content assist waits for a completion. */
+    public static final Duration MAX_WAIT = Duration.ofMillis(250);
+
+    /** The interval at which the wait checks whether content assist was cancelled. */
+    private static final long POLL_MILLIS = 25;
+
+    private String errorMessage;
+
+    /**
+     * Starts a content assist session. The first one also starts tracking
+     * the cursor, so later completions are requested while the user types.
+     */
+    @Override
+    public void sessionStarted() {
+        errorMessage = null;
+        Activator activator = Activator.getDefault();
+        if (activator != null) {
+            activator.getEditorSelectionTracker().install();
+        }
+    }
+
+    /**
+     * Returns the completion of the invocation offset as a single proposal.
+     *
+     * @param context the content assist invocation
+     * @param monitor the progress monitor of content assist
+     * @return the proposal, or an empty list if there is no completion in time
+     */
+    @Override
+    public List<ICompletionProposal> computeCompletionProposals(ContentAssistInvocationContext context,
+            IProgressMonitor monitor) {
+        Activator activator = Activator.getDefault();
+        CompletionEngine engine = activator != null ? activator.getCompletionEngine() : null;
+        if (engine == null || !ConfigurationManager.isCompletionEnabled() || !ConfigurationManager.hasApiKey()) {
+            return Collections.emptyList();
+        }
+        ICompilationUnit unit = context instanceof JavaContentAssistInvocationContext javaContext
+            ? javaContext.getCompilationUnit()
+            : null;
+        int offset = context.getInvocationOffset();
+        CompletionContext completionContext = CompletionContext.capture(
+            unit != null ? unit.getPath().toPortableString() : null, context.getDocument(), offset);
+        if (completionContext == null) {
+            return Collections.emptyList();
+        }
+
+        String completion = await(engine.request(completionContext), monitor);
+        if (completion == null || completion.isBlank()) {
+            return Collections.emptyList();
+        }
+        int lineEnd = completion.indexOf('\n');
+        String display = lineEnd < 0 ? completion.strip() : completion.substring(0, lineEnd).strip() + " ...";
+        return List.of(new CompletionProposal(completion, offset, 0, completion.length(), null,
+            display + " - DeepSeek", null, completion));
+    }
+
+    @Override
+    public List<IContextInformation> computeContextInformation(ContentAssistInvocationContext context,
+            IProgressMonitor monitor) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @Override
+    public void sessionEnded() {
+    }
+
+    /**
+     * Waits for a completion until {@link #MAX_WAIT} elapses or content assist is cancelled.
+     *
+     * @return the completion, or null if it is not available in time
+     */
+    private String await(CompletableFuture<String> completion, IProgressMonitor monitor) {
+        long deadline = System.nanoTime() + MAX_WAIT.toNanos();
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || (monitor != null && monitor.isCanceled())) {
+                return null;
+            }
+            try {
+                return completion.get(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS)),
+                    TimeUnit.NANOSECONDS);
+            } catch (TimeoutException stillWaiting) {
+                // check the monitor and the deadline again
+            } catch (CancellationException cancelled) {
+                return null;
+            } catch (ExecutionException failure) {
+                if (failure.getCause() instanceof ApiException apiException) {
+                    errorMessage = apiException.getMessage();
+                }
+                return null;
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+}
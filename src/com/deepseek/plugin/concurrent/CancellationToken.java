@@ -0,0 +1,88 @@
+package com.deepseek.plugin.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A cooperative cancellation signal shared between the party that requests
+ * cancellation and the work being cancelled.
+ *
+ * <p>Work checks {@link #isCancelled()} at convenient points and registers
+ * callbacks with {@link #onCancel(Runnable)} to abort blocking operations,
+ * such as closing a response stream. A token can be cancelled only once;
+ * callbacks run on the thread calling {@link #cancel()}.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public final class CancellationToken {
+
+    /**
+     * Handle of a callback registered with {@link CancellationToken#onCancel(Runnable)}.
+     * Closing it removes the callback if it has not run yet.
+     */
+    public interface Registration extends AutoCloseable {
+
+        /**
+         * Removes the callback from the token.
+         */
+        @Override
+        void close();
+    }
+
+    private static final Registration NONE = () -> {};
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private boolean cancelled;
+
+    /**
+     * Cancels this token and runs the registered callbacks. Does nothing if
+     * the token is already cancelled.
+     */
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Runnable callback : toRun) {
+            try {
+                callback.run();
+            } catch (RuntimeException exception) {
+                // one failing callback must not prevent the others from running
+            }
+        }
+    }
+
+    /**
+     * Returns whether this token was cancelled.
+     *
+     * @return true once {@link #cancel()} has been called
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Registers a callback to run when this token is cancelled. If the token
+     * is already cancelled, the callback runs immediately on the calling thread.
+     *
+     * @param callback the action to run on cancellation
+     * @return a registration that removes the callback when closed
+     */
+    public Registration onCancel(Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (this) {
+                        callbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        callback.run();
+        return NONE;
+    }
+}
@@ -0,0 +1,155 @@
+package com.deepseek.plugin.concurrent;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plugin-wide scheduler for API requests.
+ *
+ * <p>Each request runs on its own virtual thread, so a request blocked on
+ * the network does not hold a platform thread. At most
+ * {@code maxConcurrent} requests run at the same time; further requests
+ * wait for a slot, and once {@code maxPending} requests are waiting or
+ * running, new submissions are rejected instead of queueing without bound.</p>
+ *
+ * <p>Every request is bound to a {@link CancellationToken}, which is also
+ * cancelled when the returned future is cancelled or when the scheduler
+ * shuts down. Cancelling it interrupts the request thread, so waits for a
+ * slot or for the server are aborted promptly.</p>
+ */
+public final class RequestScheduler {
+
+    private final int maxPending;
+    private final Semaphore slots;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private final CancellationToken shutdownToken = new CancellationToken();
+    private final ThreadFactory threadFactory = Thread.ofVirtual().name("deepseek-request-", 0).factory();
+
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param maxConcurrent the maximum number of requests running at the same time
+     * @param maxPending    the maximum number of requests waiting or running
+     */
+    public RequestScheduler(int maxConcurrent, int maxPending) {
+        if (maxConcurrent < 1 || maxPending < maxConcurrent) {
+            throw new IllegalArgumentException(
+                "Invalid limits: maxConcurrent=" + maxConcurrent + ", maxPending=" + maxPending);
+        }
+        this.slots = new Semaphore(maxConcurrent, true);
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Schedules a request.
+     *
+     * <p>The task should pass the token on to the API client. The returned
+     * future completes when the task returns, completes exceptionally if it
+     * throws, and is cancelled if the request is cancelled before it starts
+     * running.</p>
+     *
+     * @param token the token cancelling this request, owned by the caller
+     * @param task  the work to run
+     * @return a future tracking the request; cancelling it cancels the token
+     * @throws RejectedExecutionException if the scheduler is shut down or full
+     */
+    public CompletableFuture<Void> submit(CancellationToken token, Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("O agendador de requisições foi encerrado.");
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException("Muitas requisições pendentes. Aguarde alguns instantes.");
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        future.whenComplete((result, failure) -> {
+            if (future.isCancelled()) {
+                token.cancel();
+            }
+        });
+
+        Thread thread = threadFactory.newThread(() -> run(token, future, task));
+        threads.add(thread);
+        thread.start();
+        return future;
+    }
+
+    /**
+     * Runs a request on its virtual thread once a slot is free.
+     */
+    private void run(CancellationToken token, CompletableFuture<Void> future, Runnable task) {
+        Thread current = Thread.currentThread();
+        try {
+            CancellationToken.Registration shutdownLink = shutdownToken.onCancel(token::cancel);
+            CancellationToken.Registration interrupt = token.onCancel(current::interrupt);
+            try {
+                slots.acquire();
+                try {
+                    if (token.isCancelled()) {
+                        future.cancel(false);
+                        return;
+                    }
+                    task.run();
+                    future.complete(null);
+                } finally {
+                    slots.release();
+                }
+            } finally {
+                interrupt.close();
+                shutdownLink.close();
+            }
+        } catch (InterruptedException interrupted) {
+            future.cancel(false);
+        } catch (Throwable failure) {
+            future.completeExceptionally(failure);
+        } finally {
+            pending.decrementAndGet();
+            threads.remove(current);
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Returns the number of requests waiting or running.
+     *
+     * @return the pending request count
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Stops accepting requests, cancels all pending ones and waits for their
+     * threads to finish.
+     *
+     * @param timeout the maximum time to wait
+     * @return true if all request threads finished within the timeout
+     */
+    public boolean shutdown(Duration timeout) {
+        shutdown = true;
+        shutdownToken.cancel();
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (Thread thread : threads) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+            try {
+                thread.join(Duration.ofNanos(remaining));
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return threads.isEmpty();
+    }
+}
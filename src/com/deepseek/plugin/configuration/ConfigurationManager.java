@@ -1,7 +1,13 @@
 package com.deepseek.plugin.configuration;
 
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.jface.preference.IPreferenceStore;
 import com.deepseek.plugin.Activator;
+import com.deepseek.plugin.api.DeepSeekAPIClient;
+import com.deepseek.plugin.api.EndpointProfile;
 import com.deepseek.plugin.preferences.DeepSeekPreferencesPage;
 
 /**
@@ -10,6 +16,56 @@ import com.deepseek.plugin.preferences.DeepSeekPreferencesPage;
  */
 public class ConfigurationManager {
     
+    /** Default chat completions endpoint. */
+    public static final String DEFAULT_API_ENDPOINT = DeepSeekAPIClient.DEFAULT_ENDPOINT;
+    
+    /** Default model requested from the main endpoint. */
+    public static final String DEFAULT_MODEL = EndpointProfile.DEFAULT_MODEL;
+    
+    /** Name of the profile of the main endpoint. */
+    public static final String MAIN_PROFILE_NAME = "DeepSeek";
+    
+    /** Default connection timeout in seconds. */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 45;
+    
+    /** Default response timeout in seconds. */
+    public static final int DEFAULT_READ_TIMEOUT = 120;
+    
+    /** Default maximum number of tokens of conversation history sent per request. */
+    public static final int DEFAULT_CONTEXT_TOKENS = 32000;
+    
+    /** Default maximum number of API requests per minute, shared by all views. */
+    public static final int DEFAULT_REQUESTS_PER_MINUTE = 60;
+    
+    /** Default number of workspace chunks attached to each prompt. */
+    public static final int DEFAULT_CONTEXT_CHUNKS = 4;
+    
+    /** Default lifetime of cached answers in minutes. */
+    public static final int DEFAULT_CACHE_TTL = 24 * 60;
+    
+    /** Default typing pause in milliseconds before a completion is requested. */
+    public static final int DEFAULT_COMPLETION_DELAY = 200;
+    
+    /**
+     * Registers the default values of all plugin preferences.
+     */
+    public static void initializeDefaults() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_API_ENDPOINT, DEFAULT_API_ENDPOINT);
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_MODEL, DEFAULT_MODEL);
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_ENDPOINT_PROFILES, "");
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT);
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_READ_TIMEOUT, DEFAULT_READ_TIMEOUT);
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_CONTEXT_TOKENS, DEFAULT_CONTEXT_TOKENS);
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_CONTEXT_CHUNKS, DEFAULT_CONTEXT_CHUNKS);
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_REQUESTS_PER_MINUTE, DEFAULT_REQUESTS_PER_MINUTE);
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_CACHE_ENABLED, true);
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_CACHE_TTL, DEFAULT_CACHE_TTL);
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_CACHE_DISK, false);
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_COMPLETION_ENABLED, true);
+        preferences.setDefault(DeepSeekPreferencesPage.PREFERENCE_COMPLETION_DELAY, DEFAULT_COMPLETION_DELAY);
+    }
+    
     /**
      * Retrieves the stored DeepSeek API key.
      *
@@ -39,4 +95,160 @@ public class ConfigurationManager {
         IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
         preferences.setValue(DeepSeekPreferencesPage.PREFERENCE_API_KEY, apiKey);
     }
+    
+    /**
+     * Retrieves the configured chat completions endpoint.
+     * A blank or malformed value falls back to the public DeepSeek API.
+     *
+     * @return the endpoint URL
+     */
+    public static URI getApiEndpoint() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        String value = preferences.getString(DeepSeekPreferencesPage.PREFERENCE_API_ENDPOINT).trim();
+        try {
+            return EndpointProfile.parseEndpoint(value);
+        } catch (IllegalArgumentException exception) {
+            return URI.create(DEFAULT_API_ENDPOINT);
+        }
+    }
+    
+    /**
+     * Retrieves the model requested from the main endpoint.
+     * A blank value falls back to the default model.
+     *
+     * @return the model identifier
+     */
+    public static String getModel() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        String model = preferences.getString(DeepSeekPreferencesPage.PREFERENCE_MODEL).trim();
+        return model.isEmpty() ? DEFAULT_MODEL : model;
+    }
+    
+    /**
+     * Retrieves the endpoints requests may be routed to: the main endpoint
+     * with the configured model and API key, followed by the additional
+     * profiles. Malformed profile lines are skipped; the preference page
+     * does not store them.
+     *
+     * @return the endpoint profiles, the main endpoint first
+     */
+    public static List<EndpointProfile> getEndpointProfiles() {
+        List<EndpointProfile> profiles = new ArrayList<>();
+        profiles.add(new EndpointProfile(MAIN_PROFILE_NAME, getApiEndpoint(), getModel(), null));
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        for (String line : preferences.getString(DeepSeekPreferencesPage.PREFERENCE_ENDPOINT_PROFILES).split("\\R")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                profiles.add(EndpointProfile.parse(line));
+            } catch (IllegalArgumentException exception) {
+                // rejected by the preference page
+            }
+        }
+        return profiles;
+    }
+    
+    /**
+     * Retrieves the configured connection timeout.
+     *
+     * @return the connection timeout in seconds
+     */
+    public static int getConnectTimeout() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        return preferences.getInt(DeepSeekPreferencesPage.PREFERENCE_CONNECT_TIMEOUT);
+    }
+    
+    /**
+     * Retrieves the configured response timeout: the longest wait for the
+     * response headers, and then for each next bytes of the body. It does
+     * not limit a response that keeps arriving.
+     *
+     * @return the response timeout in seconds
+     */
+    public static int getReadTimeout() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        return preferences.getInt(DeepSeekPreferencesPage.PREFERENCE_READ_TIMEOUT);
+    }
+    
+    /**
+     * Retrieves the token budget for conversation history.
+     *
+     * @return the maximum estimated number of tokens sent per request
+     */
+    public static int getContextTokens() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        return preferences.getInt(DeepSeekPreferencesPage.PREFERENCE_CONTEXT_TOKENS);
+    }
+    
+    /**
+     * Retrieves the number of relevant workspace chunks attached to each prompt.
+     *
+     * @return the number of chunks, 0 if workspace context is disabled
+     */
+    public static int getContextChunks() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        return preferences.getInt(DeepSeekPreferencesPage.PREFERENCE_CONTEXT_CHUNKS);
+    }
+    
+    /**
+     * Retrieves the maximum request rate shared by all API clients.
+     *
+     * @return the maximum number of requests per minute
+     */
+    public static int getRequestsPerMinute() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        return preferences.getInt(DeepSeekPreferencesPage.PREFERENCE_REQUESTS_PER_MINUTE);
+    }
+    
+    /**
+     * Checks if answers to repeated prompts may be served from the cache.
+     *
+     * @return false if the cache is bypassed
+     */
+    public static boolean isCacheEnabled() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        return preferences.getBoolean(DeepSeekPreferencesPage.PREFERENCE_CACHE_ENABLED);
+    }
+    
+    /**
+     * Retrieves the lifetime of cached answers.
+     *
+     * @return the cache time-to-live in minutes
+     */
+    public static int getCacheTtl() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        return preferences.getInt(DeepSeekPreferencesPage.PREFERENCE_CACHE_TTL);
+    }
+    
+    /**
+     * Checks if cached answers are also kept on disk.
+     *
+     * @return true if the disk tier of the cache is enabled
+     */
+    public static boolean isCacheOnDisk() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        return preferences.getBoolean(DeepSeekPreferencesPage.PREFERENCE_CACHE_DISK);
+    }
+    
+    /**
+     * Checks if code completions are suggested in the Java editor.
+     *
+     * @return true if completions are enabled
+     */
+    public static boolean isCompletionEnabled() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        return preferences.getBoolean(DeepSeekPreferencesPage.PREFERENCE_COMPLETION_ENABLED);
+    }
+    
+    /**
+     * Retrieves the typing pause after which a completion is requested.
+     *
+     * @return the debounce delay in milliseconds
+     */
+    public static int getCompletionDelay() {
+        IPreferenceStore preferences = Activator.getDefault().getPreferenceStore();
+        return preferences.getInt(DeepSeekPreferencesPage.PREFERENCE_COMPLETION_DELAY);
+    }
 }
\ No newline at end of file
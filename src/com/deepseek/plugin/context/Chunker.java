@@ -0,0 +1,86 @@
+package com.deepseek.plugin.context;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a source file into chunks of consecutive lines.
+ *
+ * <p>Chunks are at most {@link #MAX_LINES} lines long. Rather than cutting
+ * in the middle of a method, a chunk ends at the last blank line or closing
+ * brace found in its final {@link #BOUNDARY_WINDOW} lines, when there is
+ * one, so chunks tend to hold whole declarations.</p>
+ */
+public final class Chunker {
+
+    /** The maximum number of lines of a chunk. */
+    public static final int MAX_LINES = 40;
+
+    /** The number of lines at the end of a chunk searched for a natural boundary. */
+    public static final int BOUNDARY_WINDOW = 15;
+
+    /**
+     * A chunk of a file.
+     *
+     * @param startLine the first line, starting at 1
+     * @param endLine   the last line, inclusive
+     * @param text      the text of the lines
+     */
+    public record TextChunk(int startLine, int endLine, String text) {
+    }
+
+    private Chunker() {
+    }
+
+    /**
+     * Splits a file into chunks. Chunks holding only whitespace are skipped.
+     *
+     * @param content the file content
+     * @return the chunks, in file order
+     */
+    public static List<TextChunk> split(String content) {
+        List<Integer> lineStarts = new ArrayList<>();
+        lineStarts.add(0);
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '\n') {
+                lineStarts.add(i + 1);
+            }
+        }
+        if (lineStarts.get(lineStarts.size() - 1) == content.length() && lineStarts.size() > 1) {
+            lineStarts.remove(lineStarts.size() - 1);
+        }
+        int lines = lineStarts.size();
+
+        List<TextChunk> chunks = new ArrayList<>(lines / MAX_LINES + 1);
+        int first = 0;
+        while (first < lines) {
+            int last = Math.min(first + MAX_LINES, lines) - 1;
+            if (last < lines - 1) {
+                for (int line = last; line > last - BOUNDARY_WINDOW && line > first; line--) {
+                    if (isBoundary(content, lineStarts, line)) {
+                        last = line;
+                        break;
+                    }
+                }
+            }
+            int start = lineStarts.get(first);
+            int end = last + 1 < lines ? lineStarts.get(last + 1) : content.length();
+            String text = content.substring(start, end);
+            if (!text.isBlank()) {
+                chunks.add(new TextChunk(first + 1, last + 1, text));
+            }
+            first = last + 1;
+        }
+        return chunks;
+    }
+
+    /**
+     * Checks if a line is blank or holds only a closing brace, optionally followed by a semicolon.
+     */
+    private static boolean isBoundary(String content, List<Integer> lineStarts, int line) {
+        int start = lineStarts.get(line);
+        int end = line + 1 < lineStarts.size() ? lineStarts.get(line + 1) : content.length();
+        String text = content.substring(start, end).strip();
+        return text.isEmpty() || text.equals("}") || text.equals("};");
+    }
+}
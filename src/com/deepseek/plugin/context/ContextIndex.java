@@ -0,0 +1,843 @@
+package com.deepseek.plugin.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent inverted index of workspace chunks, ranked with BM25.
+ *
+ * <p>The index is split into segments, in the manner of Lucene. New chunks
+ * go to a small {@link WriteBuffer} on the heap; once it holds
+ * {@link #MAX_BUFFERED_CHUNKS} chunks, or on {@link #commit()}, it is written
+ * to an immutable segment file and memory-mapped, so the postings of the
+ * workspace live in the page cache instead of the Java heap. Postings are
+ * stored as varint-encoded deltas. The heap only holds the write buffer and
+ * one deletion bit per chunk, whatever the size of the workspace.</p>
+ *
+ * <p>Updating a file marks its previous chunks as deleted, wherever they
+ * are. When there are more than {@link #MAX_SEGMENTS} segments, the smallest
+ * ones are merged into one, and deleted chunks are purged whenever a segment
+ * is rewritten.</p>
+ *
+ * <p>Commits are crash-safe: segment files are forced to disk before a
+ * commit file listing them with their deletions is written to a temporary
+ * file and atomically renamed. On {@link #open(Path)}, the last commit is
+ * loaded and every file it does not reference, such as a segment written
+ * after it, is deleted. The modification stamp of every file is stored, so
+ * the indexer only has to re-read the files changed since the last
+ * commit.</p>
+ *
+ * <p>The index stores line ranges, not text: callers read the text of the
+ * few chunks they retrieve from the files themselves.</p>
+ *
+ * <p>Instances are thread-safe. Searches run concurrently with each other,
+ * and with flushes and merges, and are only blocked while a change is
+ * applied; chunks are tokenized before the lock is taken. Changes are
+ * applied one at a time.</p>
+ */
+public class ContextIndex implements Closeable {
+
+    /** The BM25 term frequency saturation. */
+    public static final float K1 = 1.2f;
+
+    /** The BM25 length normalization. */
+    public static final float B = 0.75f;
+
+    /** The maximum number of distinct query terms considered by a search. */
+    public static final int MAX_QUERY_TERMS = 64;
+
+    /** The number of chunks buffered on the heap before they are written to a segment. */
+    public static final int MAX_BUFFERED_CHUNKS = 4096;
+
+    /** The number of segments above which the smallest ones are merged. */
+    public static final int MAX_SEGMENTS = 8;
+
+    /** The number of segments merged at once. */
+    public static final int MERGE_FACTOR = 4;
+
+    /** The stamp returned for files that are not indexed. */
+    public static final long NULL_STAMP = -1;
+
+    private static final String COMMIT_FILE = "commit";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int COMMIT_MAGIC = 0x44534943;
+    private static final int COMMIT_VERSION = 1;
+
+    /**
+     * A chunk matching a search.
+     *
+     * @param path      the workspace path of the file
+     * @param startLine the first line of the chunk, starting at 1
+     * @param endLine   the last line of the chunk, inclusive
+     * @param score     the BM25 score, higher is more relevant
+     */
+    public record Hit(String path, int startLine, int endLine, float score) {
+    }
+
+    /**
+     * Receives the postings of a term.
+     */
+    @FunctionalInterface
+    interface PostingConsumer {
+        void accept(int chunk, int frequency);
+    }
+
+    /**
+     * Adds up the BM25 scores of the live chunks of one segment or buffer.
+     */
+    private static final class Accumulator implements PostingConsumer {
+        final float[] scores;
+        final BitSet deleted;
+        final IntUnaryOperator lengths;
+        final float averageLength;
+        int[] touched = new int[64];
+        int touchedCount;
+        float idf;
+
+        Accumulator(int chunkCount, BitSet deleted, IntUnaryOperator lengths, float averageLength) {
+            this.scores = new float[chunkCount];
+            this.deleted = deleted;
+            this.lengths = lengths;
+            this.averageLength = averageLength;
+        }
+
+        @Override
+        public void accept(int chunk, int frequency) {
+            if (deleted.get(chunk)) {
+                return;
+            }
+            float norm = K1 * (1 - B + B * lengths.applyAsInt(chunk) / averageLength);
+            if (scores[chunk] == 0) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+                }
+                touched[touchedCount++] = chunk;
+            }
+            scores[chunk] += idf * frequency * (K1 + 1) / (frequency + norm);
+        }
+    }
+
+    /**
+     * A chunk ranked by a search, in the buffer when {@code segment} is null.
+     */
+    private record Candidate(Segment segment, int chunk, float score) {
+    }
+
+    private final Path directory;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Serializes changes, which may write files without holding the lock. */
+    private final Object writeMonitor = new Object();
+
+    private List<Segment> segments = List.of();
+    private WriteBuffer buffer = new WriteBuffer();
+    private final List<Segment> obsolete = new ArrayList<>();
+    private int nextSegment;
+    private long generation;
+    private boolean changed;
+
+    private ContextIndex(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the index stored in a directory, creating it if needed.
+     *
+     * <p>An unreadable commit is treated as an empty index, which the indexer
+     * then rebuilds.</p>
+     *
+     * @param directory the directory of the index
+     * @return the index
+     * @throws IOException if the directory cannot be created or listed
+     */
+    public static ContextIndex open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        ContextIndex index = new ContextIndex(directory);
+        try {
+            index.readCommit();
+        } catch (NoSuchFileException missing) {
+            // new index
+        } catch (IOException corrupt) {
+            index.segments = List.of();
+            index.nextSegment = 0;
+            index.generation = 0;
+        }
+        index.deleteUnreferencedFiles();
+        return index;
+    }
+
+    /**
+     * Replaces the chunks of a file.
+     *
+     * @param path   the workspace path of the file
+     * @param stamp  the modification stamp of the content the chunks were read from
+     * @param chunks the new chunks of the file
+     * @throws IOException if the write buffer could not be flushed to a segment
+     */
+    public void update(String path, long stamp, List<Chunker.TextChunk> chunks) throws IOException {
+        List<WriteBuffer.Document> documents = new ArrayList<>(chunks.size());
+        for (Chunker.TextChunk chunk : chunks) {
+            Map<String, int[]> frequencies = new HashMap<>();
+            int[] length = new int[1];
+            Tokenizer.tokenize(chunk.text(), term -> {
+                frequencies.computeIfAbsent(term, key -> new int[1])[0]++;
+                length[0]++;
+            });
+            if (length[0] > 0) {
+                documents.add(new WriteBuffer.Document(chunk, frequencies, length[0]));
+            }
+        }
+
+        synchronized (writeMonitor) {
+            lock.writeLock().lock();
+            try {
+                deleteFile(path);
+                if (!documents.isEmpty()) {
+                    buffer.add(path, stamp, documents);
+                }
+                changed = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (buffer.chunkCount() >= MAX_BUFFERED_CHUNKS) {
+                flush();
+                mergeIfNeeded();
+            }
+        }
+    }
+
+    /**
+     * Removes a file from the index.
+     *
+     * @param path the workspace path of the file
+     */
+    public void remove(String path) {
+        synchronized (writeMonitor) {
+            lock.writeLock().lock();
+            try {
+                changed |= deleteFile(path);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes every file below a folder, such as a closed or deleted project.
+     *
+     * @param prefix the workspace path of the folder, ending with a slash
+     */
+    public void removeAll(String prefix) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        synchronized (writeMonitor) {
+            lock.writeLock().lock();
+            try {
+                changed |= buffer.removeIf(path -> path.startsWith(prefix));
+                for (Segment segment : segments) {
+                    for (int file = segment.lowerBoundFile(bytes);
+                            file < segment.fileCount() && segment.fileStartsWith(file, bytes); file++) {
+                        changed |= segment.deleteFile(file);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes every file not accepted by a filter, such as the files deleted
+     * while the workbench was closed.
+     *
+     * @param filter accepts the workspace paths of the files to keep
+     */
+    public void retain(Predicate<String> filter) {
+        synchronized (writeMonitor) {
+            lock.writeLock().lock();
+            try {
+                changed |= buffer.removeIf(filter.negate());
+                for (Segment segment : segments) {
+                    for (int file = 0; file < segment.fileCount(); file++) {
+                        if (!segment.isFileDeleted(file) && !filter.test(segment.filePath(file))) {
+                            changed |= segment.deleteFile(file);
+                        }
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the modification stamp a file was indexed with.
+     *
+     * @param path the workspace path of the file
+     * @return the stamp, or {@link #NULL_STAMP} if the file is not indexed
+     */
+    public long getStamp(String path) {
+        lock.readLock().lock();
+        try {
+            Long stamp = buffer.stamp(path);
+            if (stamp != null) {
+                return stamp;
+            }
+            byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+            for (Segment segment : segments) {
+                int file = segment.findFile(bytes);
+                if (file >= 0 && !segment.isFileDeleted(file)) {
+                    return segment.fileStamp(file);
+                }
+            }
+            return NULL_STAMP;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the chunks most relevant to a text.
+     *
+     * @param query the text, typically the prompt about to be sent
+     * @param limit the maximum number of chunks to return
+     * @return the best matching chunks, most relevant first
+     */
+    public List<Hit> search(String query, int limit) {
+        Set<String> termSet = new LinkedHashSet<>();
+        Tokenizer.tokenize(query, term -> {
+            if (termSet.size() < MAX_QUERY_TERMS) {
+                termSet.add(term);
+            }
+        });
+        if (termSet.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String[] terms = termSet.toArray(String[]::new);
+
+        lock.readLock().lock();
+        try {
+            long liveChunks = buffer.liveChunks();
+            long liveLength = buffer.liveLength();
+            for (Segment segment : segments) {
+                liveChunks += segment.liveChunks();
+                liveLength += segment.liveLength();
+            }
+            if (liveChunks == 0) {
+                return List.of();
+            }
+            float averageLength = (float) liveLength / liveChunks;
+
+            // Document frequencies of segments include deleted chunks until they are merged.
+            int[][] termIndexes = new int[segments.size()][terms.length];
+            float[] idfs = new float[terms.length];
+            for (int t = 0; t < terms.length; t++) {
+                byte[] bytes = terms[t].getBytes(StandardCharsets.UTF_8);
+                long frequency = buffer.docFreq(terms[t]);
+                for (int s = 0; s < segments.size(); s++) {
+                    int index = segments.get(s).findTerm(bytes);
+                    termIndexes[s][t] = index;
+                    if (index >= 0) {
+                        frequency += segments.get(s).docFreq(index);
+                    }
+                }
+                idfs[t] = frequency == 0 ? 0
+                    : (float) Math.log(1 + (liveChunks - frequency + 0.5) / (frequency + 0.5));
+            }
+
+            PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, Comparator.comparing(Candidate::score));
+            Accumulator accumulator = new Accumulator(buffer.chunkCount(), buffer.deleted, buffer::chunkLength, averageLength);
+            for (int t = 0; t < terms.length; t++) {
+                if (idfs[t] != 0) {
+                    accumulator.idf = idfs[t];
+                    buffer.postings(terms[t], accumulator);
+                }
+            }
+            collect(accumulator, null, best, limit);
+            for (int s = 0; s < segments.size(); s++) {
+                Segment segment = segments.get(s);
+                accumulator = null;
+                for (int t = 0; t < terms.length; t++) {
+                    if (termIndexes[s][t] >= 0 && idfs[t] != 0) {
+                        if (accumulator == null) {
+                            accumulator = new Accumulator(segment.chunkCount(), segment.deleted, segment::chunkLength, averageLength);
+                        }
+                        accumulator.idf = idfs[t];
+                        segment.postings(termIndexes[s][t], accumulator);
+                    }
+                }
+                if (accumulator != null) {
+                    collect(accumulator, segment, best, limit);
+                }
+            }
+
+            Hit[] hits = new Hit[best.size()];
+            for (int i = hits.length - 1; i >= 0; i--) {
+                Candidate candidate = best.poll();
+                Segment segment = candidate.segment();
+                hits[i] = segment == null
+                    ? buffer.hit(candidate.chunk(), candidate.score())
+                    : new Hit(segment.filePath(segment.chunkFile(candidate.chunk())),
+                        segment.chunkStart(candidate.chunk()), segment.chunkEnd(candidate.chunk()), candidate.score());
+            }
+            return List.of(hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed files.
+     *
+     * @return the file count
+     */
+    public int getFileCount() {
+        lock.readLock().lock();
+        try {
+            int count = buffer.fileCount();
+            for (Segment segment : segments) {
+                count += segment.liveFiles();
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of indexed chunks, deleted ones excluded.
+     *
+     * @return the chunk count
+     */
+    public int getChunkCount() {
+        lock.readLock().lock();
+        try {
+            int count = buffer.liveChunks();
+            for (Segment segment : segments) {
+                count += segment.liveChunks();
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of segment files.
+     *
+     * @return the segment count
+     */
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes every change durable: flushes the write buffer, merges segments
+     * if needed and writes a new commit. Does nothing if nothing changed.
+     *
+     * @throws IOException if writing fails; the previous commit stays valid
+     */
+    public void commit() throws IOException {
+        synchronized (writeMonitor) {
+            if (!changed) {
+                return;
+            }
+            flush();
+            mergeIfNeeded();
+            writeCommit();
+            changed = false;
+            for (Segment segment : obsolete) {
+                try {
+                    Files.deleteIfExists(segment.file);
+                } catch (IOException exception) {
+                    // still mapped on some platforms; deleted when the index is next opened
+                }
+            }
+            obsolete.clear();
+        }
+    }
+
+    /**
+     * Commits pending changes.
+     *
+     * @throws IOException if the commit fails
+     */
+    @Override
+    public void close() throws IOException {
+        commit();
+    }
+
+    /**
+     * Marks the chunks of a file as deleted. Called with the write lock held.
+     *
+     * @return true if the file was indexed
+     */
+    private boolean deleteFile(String path) {
+        boolean deleted = buffer.remove(path);
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        for (Segment segment : segments) {
+            int file = segment.findFile(bytes);
+            if (file >= 0) {
+                deleted |= segment.deleteFile(file);
+            }
+        }
+        return deleted;
+    }
+
+    private void collect(Accumulator accumulator, Segment segment, PriorityQueue<Candidate> best, int limit) {
+        for (int i = 0; i < accumulator.touchedCount; i++) {
+            int chunk = accumulator.touched[i];
+            float score = accumulator.scores[chunk];
+            if (best.size() < limit) {
+                best.add(new Candidate(segment, chunk, score));
+            } else if (score > best.peek().score()) {
+                best.poll();
+                best.add(new Candidate(segment, chunk, score));
+            }
+        }
+    }
+
+    /**
+     * Writes the write buffer to a new segment and replaces it with an empty one.
+     * Called with the write monitor held.
+     */
+    private void flush() throws IOException {
+        if (buffer.chunkCount() == 0) {
+            return;
+        }
+        Segment segment = null;
+        if (buffer.fileCount() > 0) {
+            String name = newSegmentName();
+            Path file = directory.resolve(name + SEGMENT_SUFFIX);
+            try (SegmentWriter writer = new SegmentWriter(file)) {
+                buffer.writeTo(writer);
+                writer.finish();
+            }
+            segment = Segment.open(name, file);
+        }
+        lock.writeLock().lock();
+        try {
+            if (segment != null) {
+                List<Segment> updated = new ArrayList<>(segments);
+                updated.add(segment);
+                segments = List.copyOf(updated);
+            }
+            buffer = new WriteBuffer();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the smallest segments while there are too many, and rewrites
+     * segments that are mostly deleted. Called with the write monitor held.
+     */
+    private void mergeIfNeeded() throws IOException {
+        while (true) {
+            List<Segment> candidates = new ArrayList<>();
+            for (Segment segment : segments) {
+                if (segment.deletedCount * 2 > segment.chunkCount()) {
+                    candidates.add(segment);
+                }
+            }
+            if (segments.size() > MAX_SEGMENTS) {
+                List<Segment> bySize = new ArrayList<>(segments);
+                bySize.removeAll(candidates);
+                bySize.sort(Comparator.comparingInt(Segment::liveChunks));
+                candidates.addAll(bySize.subList(0, Math.min(bySize.size(), Math.max(0, MERGE_FACTOR - candidates.size()))));
+            }
+            if (candidates.isEmpty()) {
+                return;
+            }
+            merge(candidates);
+        }
+    }
+
+    /**
+     * Replaces segments with a single one holding their live chunks.
+     */
+    private void merge(List<Segment> sources) throws IOException {
+        int liveChunks = 0;
+        for (Segment source : sources) {
+            liveChunks += source.liveChunks();
+        }
+        Segment merged = null;
+        if (liveChunks > 0) {
+            String name = newSegmentName();
+            Path file = directory.resolve(name + SEGMENT_SUFFIX);
+            try (SegmentWriter writer = new SegmentWriter(file)) {
+                int[][] remap = mergeFiles(sources, writer);
+                mergeTerms(sources, remap, writer);
+                writer.finish();
+            }
+            merged = Segment.open(name, file);
+        }
+
+        lock.writeLock().lock();
+        try {
+            List<Segment> updated = new ArrayList<>(segments);
+            updated.removeAll(sources);
+            if (merged != null) {
+                updated.add(merged);
+            }
+            segments = List.copyOf(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        obsolete.addAll(sources);
+        changed = true;
+    }
+
+    /**
+     * Writes the live files of the sources in path order.
+     *
+     * @return for each source, the new number of each chunk, -1 for deleted chunks
+     */
+    private static int[][] mergeFiles(List<Segment> sources, SegmentWriter writer) throws IOException {
+        int[][] remap = new int[sources.size()][];
+        int[] positions = new int[sources.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Comparator.comparing(
+            (Integer s) -> sources.get(s).filePathBytes(positions[s]), Arrays::compareUnsigned));
+        for (int s = 0; s < sources.size(); s++) {
+            remap[s] = new int[sources.get(s).chunkCount()];
+            Arrays.fill(remap[s], -1);
+            if (sources.get(s).fileCount() > 0) {
+                heads.add(s);
+            }
+        }
+
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int[] lengths = new int[16];
+        while (!heads.isEmpty()) {
+            int s = heads.poll();
+            Segment source = sources.get(s);
+            int file = positions[s];
+            if (!source.isFileDeleted(file)) {
+                int first = source.fileFirstChunk(file);
+                int count = source.fileChunkCount(file);
+                if (count > starts.length) {
+                    starts = new int[count];
+                    ends = new int[count];
+                    lengths = new int[count];
+                }
+                int target = writer.chunkCount();
+                for (int i = 0; i < count; i++) {
+                    remap[s][first + i] = target + i;
+                    starts[i] = source.chunkStart(first + i);
+                    ends[i] = source.chunkEnd(first + i);
+                    lengths[i] = source.chunkLength(first + i);
+                }
+                writer.addFile(source.filePathBytes(file), source.fileStamp(file), starts, ends, lengths, count);
+            }
+            if (++positions[s] < source.fileCount()) {
+                heads.add(s);
+            }
+        }
+        return remap;
+    }
+
+    /**
+     * Writes the union of the terms of the sources in term order, with their live postings renumbered.
+     */
+    private static void mergeTerms(List<Segment> sources, int[][] remap, SegmentWriter writer) throws IOException {
+        int[] positions = new int[sources.size()];
+        byte[][] heads = new byte[sources.size()][];
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Comparator.comparing(
+            (Integer s) -> heads[s], Arrays::compareUnsigned));
+        for (int s = 0; s < sources.size(); s++) {
+            if (sources.get(s).termCount() > 0) {
+                heads[s] = sources.get(s).termAt(0);
+                queue.add(s);
+            }
+        }
+
+        long[][] packed = {new long[64]};
+        int[] count = new int[1];
+        int[] chunks = new int[64];
+        int[] frequencies = new int[64];
+        while (!queue.isEmpty()) {
+            byte[] term = heads[queue.peek()];
+            count[0] = 0;
+            while (!queue.isEmpty() && Arrays.equals(heads[queue.peek()], term)) {
+                int s = queue.poll();
+                int[] map = remap[s];
+                sources.get(s).postings(positions[s], (chunk, frequency) -> {
+                    if (map[chunk] >= 0) {
+                        if (count[0] == packed[0].length) {
+                            packed[0] = Arrays.copyOf(packed[0], count[0] * 2);
+                        }
+                        packed[0][count[0]++] = (long) map[chunk] << 32 | frequency;
+                    }
+                });
+                if (++positions[s] < sources.get(s).termCount()) {
+                    heads[s] = sources.get(s).termAt(positions[s]);
+                    queue.add(s);
+                }
+            }
+            int size = count[0];
+            if (size == 0) {
+                continue;
+            }
+            Arrays.sort(packed[0], 0, size);
+            if (size > chunks.length) {
+                chunks = new int[packed[0].length];
+                frequencies = new int[packed[0].length];
+            }
+            for (int i = 0; i < size; i++) {
+                chunks[i] = (int) (packed[0][i] >>> 32);
+                frequencies[i] = (int) packed[0][i];
+            }
+            writer.addTerm(term, chunks, frequencies, size);
+        }
+    }
+
+    private String newSegmentName() {
+        return "segment-" + nextSegment++;
+    }
+
+    /**
+     * Writes the segment list and the deletions to a temporary file, then
+     * atomically replaces the commit file. Called with the write monitor held.
+     */
+    private void writeCommit() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(COMMIT_MAGIC);
+        data.writeInt(COMMIT_VERSION);
+        data.writeLong(generation + 1);
+        data.writeInt(nextSegment);
+        data.writeInt(segments.size());
+        for (Segment segment : segments) {
+            data.writeUTF(segment.name);
+            data.writeInt(segment.chunkCount());
+            long[] words = segment.deleted.toLongArray();
+            data.writeInt(words.length);
+            for (long word : words) {
+                data.writeLong(word);
+            }
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes.toByteArray());
+        data.writeLong(checksum.getValue());
+
+        Path temporary = directory.resolve(COMMIT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer content = ByteBuffer.wrap(bytes.toByteArray());
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        Path target = directory.resolve(COMMIT_FILE);
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException unsupported) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        generation++;
+    }
+
+    /**
+     * Loads the segments and deletions of the last commit.
+     */
+    private void readCommit() throws IOException {
+        byte[] bytes = Files.readAllBytes(directory.resolve(COMMIT_FILE));
+        if (bytes.length < Long.BYTES) {
+            throw new IOException("Corrupt index commit");
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, bytes.length - Long.BYTES);
+        if (ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong() != checksum.getValue()) {
+            throw new IOException("Corrupt index commit");
+        }
+
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Long.BYTES));
+        if (data.readInt() != COMMIT_MAGIC || data.readInt() != COMMIT_VERSION) {
+            throw new IOException("Unsupported index commit");
+        }
+        long committedGeneration = data.readLong();
+        int committedNextSegment = data.readInt();
+        int count = data.readInt();
+        List<Segment> loaded = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = data.readUTF();
+            int chunkCount = data.readInt();
+            Segment segment = Segment.open(name, directory.resolve(name + SEGMENT_SUFFIX));
+            int wordCount = data.readInt();
+            if (segment.chunkCount() != chunkCount || wordCount < 0 || wordCount > (chunkCount + 63) / 64) {
+                throw new IOException("Index segment does not match the commit: " + name);
+            }
+            long[] words = new long[wordCount];
+            for (int w = 0; w < words.length; w++) {
+                words[w] = data.readLong();
+            }
+            BitSet deleted = BitSet.valueOf(words);
+            for (int file = 0; file < segment.fileCount(); file++) {
+                if (deleted.get(segment.fileFirstChunk(file))) {
+                    segment.deleteFile(file);
+                }
+            }
+            loaded.add(segment);
+        }
+        segments = List.copyOf(loaded);
+        nextSegment = committedNextSegment;
+        generation = committedGeneration;
+    }
+
+    /**
+     * Deletes the files left by an interrupted flush, merge or commit.
+     */
+    private void deleteUnreferencedFiles() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        referenced.add(COMMIT_FILE);
+        for (Segment segment : segments) {
+            referenced.add(segment.name + SEGMENT_SUFFIX);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException exception) {
+                        // retried when the index is next opened
+                    }
+                }
+            }
+        }
+    }
+}
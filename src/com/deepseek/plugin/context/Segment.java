@@ -0,0 +1,325 @@
+package com.deepseek.plugin.context;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * An immutable, memory-mapped segment of the {@link ContextIndex}.
+ *
+ * <p>A segment file is written once by {@link SegmentWriter} and only read
+ * afterwards, through a read-only mapping, so its content lives in the page
+ * cache rather than on the Java heap. It holds, after a fixed header:</p>
+ * <ul>
+ * <li>the chunk table: file number, first and last line and length in terms of each chunk;</li>
+ * <li>the file table, sorted by path: path, first chunk, chunk count and modification stamp;
+ *     the chunks of a file are contiguous;</li>
+ * <li>the term table, sorted by term: term, postings offset and document frequency;</li>
+ * <li>the UTF-8 bytes of the paths and terms;</li>
+ * <li>the postings: for each term, the ascending chunk numbers as varint-encoded
+ *     deltas, each followed by the varint term frequency.</li>
+ * </ul>
+ *
+ * <p>Paths and terms are compared as unsigned UTF-8 bytes. Deletions are
+ * not part of the file: the owning index tracks them in {@link #deleted}
+ * and persists them in its commit file.</p>
+ */
+final class Segment {
+
+    static final int MAGIC = 0x44534958;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int CHUNK_BYTES = 16;
+    static final int FILE_BYTES = 24;
+    static final int TERM_BYTES = 16;
+
+    final String name;
+    final Path file;
+
+    private final ByteBuffer buffer;
+    private final int chunkCount;
+    private final int fileCount;
+    private final int termCount;
+    private final long totalLength;
+    private final int chunks;
+    private final int files;
+    private final int paths;
+    private final int terms;
+    private final int termBytes;
+    private final int postings;
+
+    /** Chunks deleted since the segment was written; guarded by the index lock. */
+    final BitSet deleted;
+    int deletedCount;
+    int deletedFiles;
+    long deletedLength;
+
+    private Segment(String name, Path file, ByteBuffer buffer) throws IOException {
+        this.name = name;
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not an index segment: " + file);
+        }
+        chunkCount = buffer.getInt(8);
+        fileCount = buffer.getInt(12);
+        termCount = buffer.getInt(16);
+        totalLength = buffer.getLong(24);
+        chunks = buffer.getInt(32);
+        files = buffer.getInt(36);
+        paths = buffer.getInt(40);
+        terms = buffer.getInt(44);
+        termBytes = buffer.getInt(48);
+        postings = buffer.getInt(52);
+        if (chunks != HEADER_BYTES || chunkCount < 0 || fileCount < 0 || termCount < 0
+                || chunks + (long) chunkCount * CHUNK_BYTES > files
+                || files + (long) fileCount * FILE_BYTES > paths || paths > terms
+                || terms + (long) termCount * TERM_BYTES > termBytes || termBytes > postings
+                || postings > buffer.capacity()) {
+            throw new IOException("Corrupt index segment: " + file);
+        }
+        deleted = new BitSet(chunkCount);
+    }
+
+    /**
+     * Maps a segment file.
+     *
+     * @param name the segment name, recorded in commits
+     * @param file the segment file
+     * @return the segment
+     * @throws IOException if the file cannot be mapped or is not a segment
+     */
+    static Segment open(String name, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new Segment(name, file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    int chunkCount() {
+        return chunkCount;
+    }
+
+    int fileCount() {
+        return fileCount;
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    long totalLength() {
+        return totalLength;
+    }
+
+    int liveChunks() {
+        return chunkCount - deletedCount;
+    }
+
+    int liveFiles() {
+        return fileCount - deletedFiles;
+    }
+
+    long liveLength() {
+        return totalLength - deletedLength;
+    }
+
+    int chunkFile(int chunk) {
+        return buffer.getInt(chunks + chunk * CHUNK_BYTES);
+    }
+
+    int chunkStart(int chunk) {
+        return buffer.getInt(chunks + chunk * CHUNK_BYTES + 4);
+    }
+
+    int chunkEnd(int chunk) {
+        return buffer.getInt(chunks + chunk * CHUNK_BYTES + 8);
+    }
+
+    int chunkLength(int chunk) {
+        return buffer.getInt(chunks + chunk * CHUNK_BYTES + 12);
+    }
+
+    int fileFirstChunk(int index) {
+        return buffer.getInt(files + index * FILE_BYTES + 8);
+    }
+
+    int fileChunkCount(int index) {
+        return buffer.getInt(files + index * FILE_BYTES + 12);
+    }
+
+    long fileStamp(int index) {
+        return buffer.getLong(files + index * FILE_BYTES + 16);
+    }
+
+    boolean isFileDeleted(int index) {
+        return deleted.get(fileFirstChunk(index));
+    }
+
+    /**
+     * Marks the chunks of a file as deleted.
+     *
+     * @param index the file number
+     * @return false if the file was already deleted
+     */
+    boolean deleteFile(int index) {
+        int first = fileFirstChunk(index);
+        if (deleted.get(first)) {
+            return false;
+        }
+        int count = fileChunkCount(index);
+        deleted.set(first, first + count);
+        for (int chunk = first; chunk < first + count; chunk++) {
+            deletedLength += chunkLength(chunk);
+        }
+        deletedCount += count;
+        deletedFiles++;
+        return true;
+    }
+
+    String filePath(int index) {
+        return new String(filePathBytes(index), StandardCharsets.UTF_8);
+    }
+
+    byte[] filePathBytes(int index) {
+        int entry = files + index * FILE_BYTES;
+        byte[] bytes = new byte[buffer.getInt(entry + 4)];
+        buffer.get(paths + buffer.getInt(entry), bytes);
+        return bytes;
+    }
+
+    /**
+     * Finds a file by path.
+     *
+     * @param path the UTF-8 path
+     * @return the file number, or -1 if the segment has no such file
+     */
+    int findFile(byte[] path) {
+        int index = lowerBoundFile(path);
+        return index < fileCount && compareFile(index, path) == 0 ? index : -1;
+    }
+
+    /**
+     * Returns the first file whose path is not less than the given bytes.
+     *
+     * @param path the UTF-8 path or path prefix
+     * @return the file number, {@link #fileCount()} if every path is less
+     */
+    int lowerBoundFile(byte[] path) {
+        int low = 0;
+        int high = fileCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareFile(middle, path) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Checks if the path of a file starts with the given bytes.
+     */
+    boolean fileStartsWith(int index, byte[] prefix) {
+        int entry = files + index * FILE_BYTES;
+        int length = buffer.getInt(entry + 4);
+        if (length < prefix.length) {
+            return false;
+        }
+        int offset = paths + buffer.getInt(entry);
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(offset + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds a term.
+     *
+     * @param term the UTF-8 term
+     * @return the term number, or -1 if no chunk of the segment contains the term
+     */
+    int findTerm(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int entry = terms + middle * TERM_BYTES;
+            int comparison = compare(termBytes + buffer.getInt(entry), buffer.getInt(entry + 4), term);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    byte[] termAt(int index) {
+        int entry = terms + index * TERM_BYTES;
+        byte[] bytes = new byte[buffer.getInt(entry + 4)];
+        buffer.get(termBytes + buffer.getInt(entry), bytes);
+        return bytes;
+    }
+
+    int docFreq(int index) {
+        return buffer.getInt(terms + index * TERM_BYTES + 12);
+    }
+
+    /**
+     * Decodes the postings of a term, deleted chunks included.
+     *
+     * @param index    the term number
+     * @param consumer receives each chunk number, in ascending order, with the term frequency
+     */
+    void postings(int index, ContextIndex.PostingConsumer consumer) {
+        int entry = terms + index * TERM_BYTES;
+        int position = postings + buffer.getInt(entry + 8);
+        int count = buffer.getInt(entry + 12);
+        int chunk = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            int frequency = 0;
+            shift = 0;
+            do {
+                b = buffer.get(position++);
+                frequency |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            chunk += delta;
+            consumer.accept(chunk, frequency);
+        }
+    }
+
+    private int compareFile(int index, byte[] path) {
+        int entry = files + index * FILE_BYTES;
+        return compare(paths + buffer.getInt(entry), buffer.getInt(entry + 4), path);
+    }
+
+    private int compare(int offset, int length, byte[] key) {
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+}
@@ -0,0 +1,210 @@
+package com.deepseek.plugin.context;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a {@link Segment} file in a single pass with constant memory.
+ *
+ * <p>Files must be added in path order, then terms in term order, both
+ * compared as unsigned UTF-8 bytes. Each section is streamed to its own
+ * temporary file; {@link #finish()} concatenates them behind the header and
+ * forces the result to disk, so a segment is either complete and durable or
+ * never referenced by a commit.</p>
+ */
+final class SegmentWriter implements Closeable {
+
+    private static final int SECTIONS = 6;
+    private static final int CHUNKS = 0;
+    private static final int FILES = 1;
+    private static final int PATHS = 2;
+    private static final int TERMS = 3;
+    private static final int TERM_BYTES = 4;
+    private static final int POSTINGS = 5;
+
+    private final Path file;
+    private final Path[] sectionFiles = new Path[SECTIONS];
+    private final DataOutputStream[] sections = new DataOutputStream[SECTIONS];
+
+    private int chunkCount;
+    private int fileCount;
+    private int termCount;
+    private long totalLength;
+    private boolean finished;
+
+    /**
+     * Starts a segment.
+     *
+     * @param file the segment file to create
+     * @throws IOException if the temporary files cannot be created
+     */
+    SegmentWriter(Path file) throws IOException {
+        this.file = file;
+        try {
+            for (int i = 0; i < SECTIONS; i++) {
+                sectionFiles[i] = file.resolveSibling(file.getFileName() + "." + i + ".tmp");
+                sections[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(sectionFiles[i]), 1 << 16));
+            }
+        } catch (IOException exception) {
+            close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Adds a file and its chunks, which get the next chunk numbers.
+     *
+     * @param path    the UTF-8 path, greater than the previous one
+     * @param stamp   the modification stamp of the indexed content
+     * @param starts  the first line of each chunk
+     * @param ends    the last line of each chunk
+     * @param lengths the number of terms of each chunk
+     * @param count   the number of chunks
+     * @throws IOException if writing fails
+     */
+    void addFile(byte[] path, long stamp, int[] starts, int[] ends, int[] lengths, int count) throws IOException {
+        DataOutputStream chunks = sections[CHUNKS];
+        for (int i = 0; i < count; i++) {
+            chunks.writeInt(fileCount);
+            chunks.writeInt(starts[i]);
+            chunks.writeInt(ends[i]);
+            chunks.writeInt(lengths[i]);
+            totalLength += lengths[i];
+        }
+        DataOutputStream files = sections[FILES];
+        files.writeInt(sections[PATHS].size());
+        files.writeInt(path.length);
+        files.writeInt(chunkCount);
+        files.writeInt(count);
+        files.writeLong(stamp);
+        sections[PATHS].write(path);
+        chunkCount += count;
+        fileCount++;
+    }
+
+    /**
+     * Adds a term and its postings.
+     *
+     * @param term        the UTF-8 term, greater than the previous one
+     * @param chunks      the chunk numbers containing the term, ascending
+     * @param frequencies the frequency of the term in each chunk
+     * @param count       the number of postings, at least 1
+     * @throws IOException if writing fails
+     */
+    void addTerm(byte[] term, int[] chunks, int[] frequencies, int count) throws IOException {
+        DataOutputStream postings = sections[POSTINGS];
+        DataOutputStream terms = sections[TERMS];
+        terms.writeInt(sections[TERM_BYTES].size());
+        terms.writeInt(term.length);
+        terms.writeInt(postings.size());
+        terms.writeInt(count);
+        sections[TERM_BYTES].write(term);
+
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            writeVarint(postings, chunks[i] - previous);
+            writeVarint(postings, frequencies[i]);
+            previous = chunks[i];
+        }
+        termCount++;
+    }
+
+    /**
+     * Returns the number of chunks added so far.
+     *
+     * @return the chunk count
+     */
+    int chunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Assembles the segment file and forces it to disk.
+     *
+     * @throws IOException if writing fails or the segment would exceed 2 GB
+     */
+    void finish() throws IOException {
+        long[] sizes = new long[SECTIONS];
+        for (int i = 0; i < SECTIONS; i++) {
+            sections[i].close();
+            sizes[i] = Files.size(sectionFiles[i]);
+        }
+        int[] offsets = new int[SECTIONS];
+        long offset = Segment.HEADER_BYTES;
+        for (int i = 0; i < SECTIONS; i++) {
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("Index segment too large: " + file);
+            }
+            offsets[i] = (int) offset;
+            offset += sizes[i];
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(Segment.HEADER_BYTES);
+        header.putInt(Segment.MAGIC).putInt(Segment.VERSION)
+            .putInt(chunkCount).putInt(fileCount).putInt(termCount).putInt(0)
+            .putLong(totalLength);
+        for (int i = 0; i < SECTIONS; i++) {
+            header.putInt(offsets[i]);
+        }
+        header.rewind();
+
+        try (FileChannel out = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            for (int i = 0; i < SECTIONS; i++) {
+                try (FileChannel in = FileChannel.open(sectionFiles[i], StandardOpenOption.READ)) {
+                    long position = 0;
+                    while (position < sizes[i]) {
+                        position += in.transferTo(position, sizes[i] - position, out);
+                    }
+                }
+            }
+            out.force(true);
+        }
+        finished = true;
+        close();
+    }
+
+    /**
+     * Deletes the temporary files, and the segment file if it was not finished.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < SECTIONS; i++) {
+            try {
+                if (sections[i] != null) {
+                    sections[i].close();
+                }
+                if (sectionFiles[i] != null) {
+                    Files.deleteIfExists(sectionFiles[i]);
+                }
+            } catch (IOException exception) {
+                // leftovers are removed when the index is next opened
+            }
+        }
+        if (!finished) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException exception) {
+                // removed when the index is next opened
+            }
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,97 @@
+package com.deepseek.plugin.context;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Splits source code and prose into index terms.
+ *
+ * <p>Every run of letters, digits and underscores is an identifier. An
+ * identifier yields itself, lower-cased, and each of its camelCase and
+ * snake_case parts, so that {@code parseChunkHeader} matches queries for
+ * {@code parse}, {@code chunk} or {@code header} as well as the full name.
+ * Numbers, one-letter parts and very common keywords are dropped.</p>
+ */
+public final class Tokenizer {
+
+    /** The longest term kept; longer identifiers are only indexed by their parts. */
+    public static final int MAX_TERM_LENGTH = 48;
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "the", "and", "for", "with", "this", "that", "are", "not", "was", "from", "you", "your",
+        "public", "private", "protected", "static", "final", "void", "return", "new", "import",
+        "package", "class", "int", "if", "else", "null", "true", "false", "string", "of", "to",
+        "in", "is", "it", "be", "or", "as", "on", "an", "at", "by", "de", "da", "do", "que", "um", "uma");
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Delivers the terms of a text to a consumer, in order of appearance.
+     * The same term is delivered as many times as it occurs.
+     *
+     * @param text     the text to tokenize
+     * @param consumer receives each term
+     */
+    public static void tokenize(CharSequence text, Consumer<String> consumer) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isIdentifierPart(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && isIdentifierPart(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                identifier(text, start, i, consumer);
+            }
+        }
+    }
+
+    private static void identifier(CharSequence text, int start, int end, Consumer<String> consumer) {
+        int partStart = start;
+        for (int i = start; i <= end; i++) {
+            boolean underscore = i < end && text.charAt(i) == '_';
+            if (i == end || underscore || i > partStart && isWordBoundary(text, i, end)) {
+                if (i > partStart && (partStart != start || i != end)) {
+                    emit(text.subSequence(partStart, i), consumer);
+                }
+                partStart = underscore ? i + 1 : i;
+            }
+        }
+        emit(text.subSequence(start, end), consumer);
+    }
+
+    /**
+     * Checks if a camelCase part starts at the given position: a lower-case
+     * letter or digit followed by an upper-case one, or the last capital of
+     * an acronym followed by a lower-case letter, as in {@code HTTPClient}.
+     */
+    private static boolean isWordBoundary(CharSequence text, int i, int end) {
+        char previous = text.charAt(i - 1);
+        char current = text.charAt(i);
+        if (Character.isUpperCase(current) && !Character.isUpperCase(previous) && previous != '_') {
+            return true;
+        }
+        return Character.isUpperCase(previous) && Character.isUpperCase(current)
+            && i + 1 < end && Character.isLowerCase(text.charAt(i + 1));
+    }
+
+    private static void emit(CharSequence part, Consumer<String> consumer) {
+        int length = part.length();
+        if (length < 2 || length > MAX_TERM_LENGTH || Character.isDigit(part.charAt(0))) {
+            return;
+        }
+        String term = part.toString().toLowerCase(Locale.ROOT);
+        if (!STOP_WORDS.contains(term)) {
+            consumer.accept(term);
+        }
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
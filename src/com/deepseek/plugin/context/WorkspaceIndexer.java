@@ -0,0 +1,432 @@
+package com.deepseek.plugin.context;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.deepseek.plugin.Activator;
+import com.deepseek.plugin.api.ChatMessage;
+import com.deepseek.plugin.api.Conversation;
+
+/**
+ * Keeps a {@link ContextIndex} in sync with the source files of the workspace
+ * and attaches the most relevant chunks to outgoing prompts.
+ *
+ * <p>When started, the indexer scans every open project once, re-reading
+ * only the files whose modification stamp differs from the one stored in
+ * the index and dropping the files that no longer exist. It then listens
+ * to resource change deltas: only the files reported as added, changed,
+ * moved or removed are queued, and a low-priority background job re-reads
+ * and re-indexes them, then commits the index. Derived, hidden and team-private resources, files
+ * larger than {@link #MAX_FILE_BYTES} and files without a known source or
+ * text extension are ignored.</p>
+ */
+public class WorkspaceIndexer implements IResourceChangeListener {
+
+    /** Files larger than this are not indexed. */
+    public static final long MAX_FILE_BYTES = 512 * 1024;
+
+    /** The maximum length of a chunk attached to a prompt, in characters. */
+    public static final int MAX_SNIPPET_CHARS = 4000;
+
+    private static final Set<String> EXTENSIONS = Set.of(
+        "java", "kt", "scala", "groovy", "gradle", "xml", "properties", "md", "txt", "json", "yml", "yaml",
+        "js", "jsx", "ts", "tsx", "py", "rb", "go", "rs", "c", "h", "cpp", "hpp", "cs", "php", "sql",
+        "html", "css", "sh", "mf");
+
+    private static final Set<String> IGNORED_FOLDERS = Set.of("bin", "target", "build", "node_modules", "out");
+
+    private final IWorkspace workspace;
+    private final ContextIndex index;
+    private final Job job;
+
+    /** Pending paths, mapped to true to re-index them or to false to remove them. */
+    private final Map<String, Boolean> pending = new LinkedHashMap<>();
+    private final List<String> pendingFolders = new ArrayList<>();
+    private boolean fullScan;
+    private boolean started;
+
+    /**
+     * Creates an indexer. It does nothing until {@link #start()} is called.
+     *
+     * @param workspace the workspace to index
+     * @param index     the index to keep up to date
+     */
+    public WorkspaceIndexer(IWorkspace workspace, ContextIndex index) {
+        this.workspace = workspace;
+        this.index = index;
+        this.job = new Job("Indexing workspace for DeepSeek") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                return processPending(monitor);
+            }
+        };
+        job.setSystem(true);
+        job.setPriority(Job.DECORATE);
+    }
+
+    /**
+     * Starts listening to resource changes and schedules a scan of the workspace.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        workspace.addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+        fullScan = true;
+        job.schedule();
+    }
+
+    /**
+     * Stops listening to resource changes and cancels pending indexing work.
+     * The index keeps its current content and stays open.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+            started = false;
+            pending.clear();
+            pendingFolders.clear();
+            fullScan = false;
+        }
+        workspace.removeResourceChangeListener(this);
+        job.cancel();
+    }
+
+    /**
+     * Returns the index maintained by this indexer.
+     *
+     * @return the index
+     */
+    public ContextIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the messages to send with relevant workspace code attached.
+     *
+     * <p>The chunks best matching the last message are read from disk and
+     * sent as a system message placed just before it. The original list is
+     * returned unchanged when nothing relevant is found.</p>
+     *
+     * @param messages the request messages, ending with the user prompt
+     * @param limit    the maximum number of chunks to attach
+     * @return the messages to send
+     */
+    public List<ChatMessage> attachContext(List<ChatMessage> messages, int limit) {
+        if (messages.isEmpty() || limit <= 0) {
+            return messages;
+        }
+        ChatMessage prompt = messages.get(messages.size() - 1);
+        ChatMessage context = buildContext(prompt.content(), limit, null);
+        if (context == null) {
+            return messages;
+        }
+
+        List<ChatMessage> attached = new ArrayList<>(messages.size() + 1);
+        attached.addAll(messages.subList(0, messages.size() - 1));
+        attached.add(context);
+        attached.add(prompt);
+        return List.copyOf(attached);
+    }
+
+    /**
+     * Builds a system message holding the workspace code most relevant to a text.
+     *
+     * @param query        the text, typically a prompt or selected code
+     * @param limit        the maximum number of chunks to attach
+     * @param excludedPath the workspace path of a file whose chunks are skipped,
+     *                     because the prompt already quotes it, or null
+     * @return the message, or null if nothing relevant is found
+     */
+    public ChatMessage buildContext(String query, int limit, String excludedPath) {
+        if (limit <= 0) {
+            return null;
+        }
+        List<ContextIndex.Hit> hits = index.search(query, excludedPath != null ? limit * 2 : limit);
+
+        StringBuilder context = new StringBuilder();
+        int attached = 0;
+        for (ContextIndex.Hit hit : hits) {
+            if (attached == limit || hit.path().equals(excludedPath)) {
+                continue;
+            }
+            String snippet = readLines(hit.path(), hit.startLine(), hit.endLine());
+            if (snippet == null || snippet.isBlank()) {
+                continue;
+            }
+            if (context.isEmpty()) {
+                context.append("Relevant code from the user's workspace, which may help answer the next message:\n");
+            }
+            context.append("\n").append(hit.path()).append(" (lines ")
+                .append(hit.startLine()).append('-').append(hit.endLine()).append("):\n```\n")
+                .append(snippet.length() > MAX_SNIPPET_CHARS ? snippet.substring(0, MAX_SNIPPET_CHARS) : snippet)
+                .append(snippet.endsWith("\n") ? "" : "\n").append("```\n");
+            attached++;
+        }
+        return context.isEmpty() ? null : new ChatMessage(Conversation.ROLE_SYSTEM, context.toString(), null);
+    }
+
+    /**
+     * Queues the files touched by a change for re-indexing.
+     *
+     * @param event the resource change event
+     */
+    @Override
+    public void resourceChanged(IResourceChangeEvent event) {
+        IResourceDelta delta = event.getDelta();
+        if (delta == null) {
+            return;
+        }
+        boolean queued;
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+            int before = pending.size() + pendingFolders.size();
+            try {
+                delta.accept(this::visit);
+            } catch (CoreException exception) {
+                fullScan = true;
+            }
+            queued = fullScan || pending.size() + pendingFolders.size() > before;
+        }
+        if (queued) {
+            job.schedule(250);
+        }
+    }
+
+    private boolean visit(IResourceDelta delta) {
+        IResource resource = delta.getResource();
+        String path = resource.getFullPath().toPortableString();
+        switch (resource.getType()) {
+            case IResource.PROJECT -> {
+                IProject project = (IProject) resource;
+                boolean opened = (delta.getFlags() & IResourceDelta.OPEN) != 0;
+                if (delta.getKind() == IResourceDelta.REMOVED || opened && !project.isOpen()) {
+                    pending.put(path + "/", false);
+                    return false;
+                }
+                if (opened || delta.getKind() == IResourceDelta.ADDED) {
+                    pendingFolders.add(path);
+                    return false;
+                }
+                return true;
+            }
+            case IResource.FOLDER -> {
+                if (delta.getKind() == IResourceDelta.REMOVED) {
+                    pending.put(path + "/", false);
+                    return false;
+                }
+                return !isIgnored(resource);
+            }
+            case IResource.FILE -> {
+                int kind = delta.getKind();
+                int flags = delta.getFlags();
+                if (kind == IResourceDelta.REMOVED) {
+                    pending.put(path, false);
+                } else if (kind == IResourceDelta.ADDED
+                        || (flags & (IResourceDelta.CONTENT | IResourceDelta.REPLACED | IResourceDelta.ENCODING)) != 0) {
+                    pending.put(path, isIndexable(resource));
+                }
+                return false;
+            }
+            default -> {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Applies the queued changes. Runs in the background job.
+     */
+    private IStatus processPending(IProgressMonitor monitor) {
+        boolean scan;
+        List<String> folders;
+        Map<String, Boolean> paths;
+        synchronized (this) {
+            scan = fullScan;
+            fullScan = false;
+            folders = new ArrayList<>(pendingFolders);
+            pendingFolders.clear();
+            paths = new LinkedHashMap<>(pending);
+            pending.clear();
+        }
+
+        try {
+            Set<String> listed = scan ? new HashSet<>() : null;
+            if (scan) {
+                for (IProject project : workspace.getRoot().getProjects()) {
+                    if (project.isOpen()) {
+                        folders.add(project.getFullPath().toPortableString());
+                    }
+                }
+            }
+            for (String folder : folders) {
+                for (Map.Entry<String, Long> file : listFiles(folder).entrySet()) {
+                    if (monitor.isCanceled()) {
+                        return Status.CANCEL_STATUS;
+                    }
+                    if (listed != null) {
+                        listed.add(file.getKey());
+                    }
+                    if (index.getStamp(file.getKey()) != file.getValue()) {
+                        paths.put(file.getKey(), true);
+                    }
+                }
+            }
+            if (listed != null) {
+                index.retain(listed::contains);
+            }
+            for (Map.Entry<String, Boolean> entry : paths.entrySet()) {
+                if (monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                String path = entry.getKey();
+                if (path.endsWith("/")) {
+                    index.removeAll(path);
+                } else if (entry.getValue()) {
+                    indexFile(path);
+                } else {
+                    index.remove(path);
+                }
+            }
+            index.commit();
+        } catch (IOException | RuntimeException exception) {
+            Activator.logError("Workspace indexing failed", exception);
+        }
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * Lists the indexable files below a folder.
+     *
+     * @return the workspace path of each file, mapped to its modification stamp
+     */
+    private Map<String, Long> listFiles(String folder) {
+        Map<String, Long> files = new LinkedHashMap<>();
+        IResource root = workspace.getRoot().findMember(folder);
+        if (root == null || !root.isAccessible()) {
+            return files;
+        }
+        try {
+            root.accept((IResourceProxy proxy) -> {
+                if (proxy.isDerived() || proxy.isHidden() || proxy.isTeamPrivateMember() || proxy.getName().startsWith(".")) {
+                    return false;
+                }
+                if (proxy.getType() == IResource.FOLDER) {
+                    return !IGNORED_FOLDERS.contains(proxy.getName());
+                }
+                if (proxy.getType() == IResource.FILE) {
+                    if (hasIndexedExtension(proxy.getName())) {
+                        files.put(proxy.requestFullPath().toPortableString(), proxy.getModificationStamp());
+                    }
+                    return false;
+                }
+                return true;
+            }, IResource.NONE);
+        } catch (CoreException exception) {
+            Activator.logError("Could not scan " + folder, exception);
+        }
+        return files;
+    }
+
+    private void indexFile(String path) throws IOException {
+        IFile file = workspace.getRoot().getFile(Path.fromPortableString(path));
+        long stamp = file.getModificationStamp();
+        String content = isIndexable(file) ? read(file) : null;
+        if (content == null) {
+            index.remove(path);
+        } else {
+            index.update(path, stamp, Chunker.split(content));
+        }
+    }
+
+    private boolean isIndexable(IResource resource) {
+        if (!resource.exists() || isIgnored(resource) || !hasIndexedExtension(resource.getName())) {
+            return false;
+        }
+        File location = resource.getLocation() != null ? resource.getLocation().toFile() : null;
+        return location != null && location.length() <= MAX_FILE_BYTES;
+    }
+
+    private static boolean isIgnored(IResource resource) {
+        return resource.isDerived(IResource.CHECK_ANCESTORS)
+            || resource.isHidden(IResource.CHECK_ANCESTORS)
+            || resource.isTeamPrivateMember(IResource.CHECK_ANCESTORS)
+            || resource.getName().startsWith(".")
+            || resource.getType() == IResource.FOLDER && IGNORED_FOLDERS.contains(resource.getName());
+    }
+
+    private static boolean hasIndexedExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 && EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static String read(IFile file) {
+        try (InputStream in = file.getContents()) {
+            Charset charset;
+            try {
+                charset = Charset.forName(file.getCharset());
+            } catch (IllegalArgumentException unsupported) {
+                charset = StandardCharsets.UTF_8;
+            }
+            return new String(in.readAllBytes(), charset);
+        } catch (CoreException | IOException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a range of lines of a workspace file.
+     *
+     * @return the lines, or null if the file cannot be read
+     */
+    private String readLines(String path, int startLine, int endLine) {
+        IFile file = workspace.getRoot().getFile(Path.fromPortableString(path));
+        String content = read(file);
+        if (content == null) {
+            return null;
+        }
+        int line = 1;
+        int start = startLine == 1 ? 0 : -1;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '\n') {
+                line++;
+                if (line == startLine) {
+                    start = i + 1;
+                } else if (line == endLine + 1) {
+                    return start >= 0 ? content.substring(start, i + 1) : null;
+                }
+            }
+        }
+        return start >= 0 ? content.substring(start) : null;
+    }
+}
@@ -0,0 +1,288 @@
+package com.deepseek.plugin.context;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The most recently indexed chunks of a {@link ContextIndex}, kept on the heap
+ * until they are flushed into a {@link Segment}.
+ *
+ * <p>Chunks get consecutive numbers as they are added; for every term the
+ * buffer keeps the numbers of the chunks containing it, in ascending order,
+ * with the term frequency. Replaced chunks are only marked as deleted and
+ * dropped when the buffer is written, so the owner bounds the heap it uses
+ * by flushing it once {@link #chunkCount()} grows too large.</p>
+ *
+ * <p>Not thread-safe: the owning index guards it with its lock.</p>
+ */
+final class WriteBuffer {
+
+    /**
+     * A tokenized chunk, ready to be added.
+     *
+     * @param chunk       the chunk
+     * @param frequencies the frequency of each term in the chunk
+     * @param length      the number of terms in the chunk
+     */
+    record Document(Chunker.TextChunk chunk, Map<String, int[]> frequencies, int length) {
+    }
+
+    /**
+     * The chunks containing one term, as pairs of chunk number and term frequency.
+     */
+    private static final class Postings {
+        int[] data = new int[4];
+        int size;
+
+        void add(int chunk, int frequency) {
+            if (size + 2 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = chunk;
+            data[size++] = frequency;
+        }
+    }
+
+    private record FileEntry(long stamp, int[] chunks) {
+    }
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, FileEntry> files = new HashMap<>();
+
+    private String[] chunkPaths = new String[256];
+    private int[] chunkStarts = new int[256];
+    private int[] chunkEnds = new int[256];
+    private int[] chunkLengths = new int[256];
+    private int chunkCount;
+
+    /** The replaced chunks. */
+    final BitSet deleted = new BitSet();
+    private int liveChunks;
+    private long liveLength;
+
+    /**
+     * Adds the chunks of a file that is not in the buffer.
+     *
+     * @param path      the workspace path of the file
+     * @param stamp     the modification stamp of the indexed content
+     * @param documents the tokenized chunks, not empty
+     */
+    void add(String path, long stamp, List<Document> documents) {
+        int[] ids = new int[documents.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Document document = documents.get(i);
+            int id = allocate(path, document.chunk(), document.length());
+            ids[i] = id;
+            for (Map.Entry<String, int[]> entry : document.frequencies().entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(id, entry.getValue()[0]);
+            }
+        }
+        files.put(path, new FileEntry(stamp, ids));
+    }
+
+    /**
+     * Removes a file.
+     *
+     * @param path the workspace path of the file
+     * @return true if the buffer held the file
+     */
+    boolean remove(String path) {
+        FileEntry entry = files.remove(path);
+        if (entry == null) {
+            return false;
+        }
+        for (int id : entry.chunks()) {
+            deleted.set(id);
+            chunkPaths[id] = null;
+            liveChunks--;
+            liveLength -= chunkLengths[id];
+        }
+        return true;
+    }
+
+    /**
+     * Removes the files matching a filter.
+     *
+     * @param filter selects the paths to remove
+     * @return true if a file was removed
+     */
+    boolean removeIf(Predicate<String> filter) {
+        boolean removed = false;
+        for (String path : new ArrayList<>(files.keySet())) {
+            if (filter.test(path)) {
+                removed |= remove(path);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the stamp a file was indexed with.
+     *
+     * @param path the workspace path of the file
+     * @return the stamp, or null if the buffer does not hold the file
+     */
+    Long stamp(String path) {
+        FileEntry entry = files.get(path);
+        return entry != null ? entry.stamp() : null;
+    }
+
+    int chunkCount() {
+        return chunkCount;
+    }
+
+    int fileCount() {
+        return files.size();
+    }
+
+    int liveChunks() {
+        return liveChunks;
+    }
+
+    long liveLength() {
+        return liveLength;
+    }
+
+    int chunkLength(int chunk) {
+        return chunkLengths[chunk];
+    }
+
+    /**
+     * Counts the live chunks containing a term.
+     *
+     * @param term the term
+     * @return the document frequency
+     */
+    int docFreq(String term) {
+        Postings list = postings.get(term);
+        if (list == null) {
+            return 0;
+        }
+        int frequency = 0;
+        for (int i = 0; i < list.size; i += 2) {
+            if (!deleted.get(list.data[i])) {
+                frequency++;
+            }
+        }
+        return frequency;
+    }
+
+    /**
+     * Lists the postings of a term, deleted chunks included.
+     *
+     * @param term     the term
+     * @param consumer receives each chunk number, in ascending order, with the term frequency
+     */
+    void postings(String term, ContextIndex.PostingConsumer consumer) {
+        Postings list = postings.get(term);
+        if (list != null) {
+            for (int i = 0; i < list.size; i += 2) {
+                consumer.accept(list.data[i], list.data[i + 1]);
+            }
+        }
+    }
+
+    ContextIndex.Hit hit(int chunk, float score) {
+        return new ContextIndex.Hit(chunkPaths[chunk], chunkStarts[chunk], chunkEnds[chunk], score);
+    }
+
+    /**
+     * Writes the live files and chunks, renumbered in path order, as required by the segment format.
+     *
+     * @param writer the writer of the new segment
+     * @throws IOException if writing fails
+     */
+    void writeTo(SegmentWriter writer) throws IOException {
+        List<byte[]> paths = new ArrayList<>(files.size());
+        Map<byte[], FileEntry> entries = new HashMap<>();
+        for (Map.Entry<String, FileEntry> file : files.entrySet()) {
+            byte[] path = file.getKey().getBytes(StandardCharsets.UTF_8);
+            paths.add(path);
+            entries.put(path, file.getValue());
+        }
+        paths.sort(Arrays::compareUnsigned);
+
+        int[] remap = new int[chunkCount];
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        int[] lengths = new int[16];
+        for (byte[] path : paths) {
+            FileEntry entry = entries.get(path);
+            int[] ids = entry.chunks();
+            if (ids.length > starts.length) {
+                starts = new int[ids.length];
+                ends = new int[ids.length];
+                lengths = new int[ids.length];
+            }
+            int first = writer.chunkCount();
+            for (int i = 0; i < ids.length; i++) {
+                remap[ids[i]] = first + i;
+                starts[i] = chunkStarts[ids[i]];
+                ends[i] = chunkEnds[ids[i]];
+                lengths[i] = chunkLengths[ids[i]];
+            }
+            writer.addFile(path, entry.stamp(), starts, ends, lengths, ids.length);
+        }
+
+        List<byte[]> terms = new ArrayList<>(postings.size());
+        Map<byte[], Postings> lists = new HashMap<>();
+        for (Map.Entry<String, Postings> term : postings.entrySet()) {
+            byte[] bytes = term.getKey().getBytes(StandardCharsets.UTF_8);
+            terms.add(bytes);
+            lists.put(bytes, term.getValue());
+        }
+        terms.sort(Arrays::compareUnsigned);
+
+        long[] packed = new long[64];
+        int[] chunks = new int[64];
+        int[] frequencies = new int[64];
+        for (byte[] term : terms) {
+            Postings list = lists.get(term);
+            int count = 0;
+            if (list.size / 2 > packed.length) {
+                packed = new long[list.size / 2];
+                chunks = new int[packed.length];
+                frequencies = new int[packed.length];
+            }
+            for (int i = 0; i < list.size; i += 2) {
+                if (!deleted.get(list.data[i])) {
+                    packed[count++] = (long) remap[list.data[i]] << 32 | list.data[i + 1];
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            Arrays.sort(packed, 0, count);
+            for (int i = 0; i < count; i++) {
+                chunks[i] = (int) (packed[i] >>> 32);
+                frequencies[i] = (int) packed[i];
+            }
+            writer.addTerm(term, chunks, frequencies, count);
+        }
+    }
+
+    private int allocate(String path, Chunker.TextChunk chunk, int length) {
+        if (chunkCount == chunkPaths.length) {
+            int capacity = chunkCount * 2;
+            chunkPaths = Arrays.copyOf(chunkPaths, capacity);
+            chunkStarts = Arrays.copyOf(chunkStarts, capacity);
+            chunkEnds = Arrays.copyOf(chunkEnds, capacity);
+            chunkLengths = Arrays.copyOf(chunkLengths, capacity);
+        }
+        int id = chunkCount++;
+        chunkPaths[id] = path;
+        chunkStarts[id] = chunk.startLine();
+        chunkEnds[id] = chunk.endLine();
+        chunkLengths[id] = length;
+        liveChunks++;
+        liveLength += length;
+        return id;
+    }
+}
@@ -0,0 +1,76 @@
+package com.deepseek.plugin.editor;
+
+/**
+ * The editor commands that send the selected code to DeepSeek.
+ *
+ * <p>Each action is bound to a command declared in {@code plugin.xml} and
+ * carries the instruction that opens its prompt.</p>
+ */
+public enum EditorAction {
+
+    /** Explains what the selected code does. */
+    EXPLAIN("com.deepseek.plugin.commands.explainSelection", "Explain selection",
+        "Explain what the selected code does, step by step. Mention anything surprising or error-prone."),
+
+    /** Proposes a cleaner version of the selected code. */
+    REFACTOR("com.deepseek.plugin.commands.refactorSelection", "Refactor selection",
+        "Refactor the selected code to make it clearer and simpler without changing its behavior. "
+            + "Reply with the complete refactored code, then briefly list the changes."),
+
+    /** Writes unit tests for the selected code. */
+    GENERATE_TESTS("com.deepseek.plugin.commands.generateTests", "Generate tests",
+        "Write unit tests for the selected code, using the test framework the surrounding code suggests. "
+            + "Cover the normal cases, the edge cases and the error cases.");
+
+    private final String commandId;
+    private final String label;
+    private final String instruction;
+
+    EditorAction(String commandId, String label, String instruction) {
+        this.commandId = commandId;
+        this.label = label;
+        this.instruction = instruction;
+    }
+
+    /**
+     * Returns the ID of the command bound to this action.
+     *
+     * @return the command ID
+     */
+    public String getCommandId() {
+        return commandId;
+    }
+
+    /**
+     * Returns the label shown in the chat history.
+     *
+     * @return the label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the instruction opening the prompt.
+     *
+     * @return the instruction
+     */
+    public String getInstruction() {
+        return instruction;
+    }
+
+    /**
+     * Finds the action bound to a command.
+     *
+     * @param commandId the command ID
+     * @return the action, or null if no action is bound to the command
+     */
+    public static EditorAction fromCommandId(String commandId) {
+        for (EditorAction action : values()) {
+            if (action.commandId.equals(commandId)) {
+                return action;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+package com.deepseek.plugin.editor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IViewPart;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.handlers.HandlerUtil;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.deepseek.plugin.Activator;
+import com.deepseek.plugin.configuration.ConfigurationManager;
+import com.deepseek.plugin.views.DeepSeekView;
+
+/**
+ * Handles the editor commands: sends the selection of the active text
+ * editor, or the whole file when nothing is selected, to the DeepSeek view
+ * with the instruction of the matching {@link EditorAction}.
+ *
+ * <p>The prompt prepared in the background by the {@link PromptPrebuilder}
+ * is used when it matches the selection. Otherwise the selection is trimmed
+ * right away, which is cheap, and the workspace context is looked up on the
+ * request thread.</p>
+ */
+public class EditorActionHandler extends AbstractHandler {
+
+    /**
+     * Sends the selection of the active editor.
+     *
+     * @param event the command execution event
+     * @return null
+     * @throws ExecutionException if the DeepSeek view cannot be opened
+     */
+    @Override
+    public Object execute(ExecutionEvent event) throws ExecutionException {
+        Activator.getDefault().getEditorSelectionTracker().install();
+        EditorAction action = EditorAction.fromCommandId(event.getCommand().getId());
+        IEditorPart editor = HandlerUtil.getActiveEditor(event);
+        if (action == null || !(editor instanceof ITextEditor textEditor)) {
+            return null;
+        }
+        ISelection selection = HandlerUtil.getCurrentSelection(event);
+        if (!(selection instanceof ITextSelection)) {
+            selection = textEditor.getSelectionProvider().getSelection();
+        }
+        EditorSelection captured = EditorSelection.capture(textEditor,
+            selection instanceof ITextSelection textSelection ? textSelection : null);
+        if (captured == null) {
+            return null;
+        }
+
+        PromptPrebuilder prebuilder = Activator.getDefault().getPromptPrebuilder();
+        CompletableFuture<PreparedPrompt> pending = prebuilder != null ? prebuilder.prepare(captured) : null;
+        PreparedPrompt ready = pending != null && pending.isDone() && !pending.isCompletedExceptionally()
+            ? pending.join()
+            : null;
+        PreparedPrompt prompt = ready != null ? ready
+            : PromptAssembler.assemble(captured, ConfigurationManager.getContextTokens());
+
+        IViewPart view;
+        try {
+            view = HandlerUtil.getActiveWorkbenchWindowChecked(event).getActivePage().showView(DeepSeekView.ID);
+        } catch (PartInitException exception) {
+            throw new ExecutionException("Could not open the DeepSeek view", exception);
+        }
+        if (view instanceof DeepSeekView deepSeekView) {
+            deepSeekView.ask(prompt.summary(action), prompt.prompt(action),
+                messages -> (ready != null ? ready : awaitWorkspaceContext(prompt, pending)).attachTo(messages));
+        }
+        return null;
+    }
+
+    /**
+     * Returns a prompt with its workspace context. Called on the request thread,
+     * where waiting for the prompt still being prepared, or looking the context
+     * up, does not block the UI.
+     */
+    private static PreparedPrompt awaitWorkspaceContext(PreparedPrompt prompt, CompletableFuture<PreparedPrompt> pending) {
+        if (pending != null) {
+            try {
+                return pending.join();
+            } catch (CancellationException | CompletionException replaced) {
+                // the selection changed since; look the context up for this prompt
+            }
+        }
+        return PromptAssembler.withWorkspaceContext(prompt,
+            Activator.getDefault().getWorkspaceIndexer(), ConfigurationManager.getContextChunks());
+    }
+}
@@ -0,0 +1,110 @@
+package com.deepseek.plugin.editor;
+
+import java.util.Locale;
+import java.util.Objects;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+/**
+ * A snapshot of the code selected in a text editor, taken on the UI thread
+ * so prompts can be assembled from it on any thread.
+ *
+ * @param path         the workspace path of the edited file, or null if it is not a workspace file
+ * @param fileName     the name of the edited file
+ * @param documentText the full text of the document
+ * @param stamp        the modification stamp of the document, or
+ *                     {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP}
+ * @param offset       the offset of the selection
+ * @param length       the length of the selection
+ * @param startLine    the first selected line, starting at 1
+ * @param endLine      the last selected line, inclusive
+ */
+public record EditorSelection(String path, String fileName, String documentText, long stamp,
+                              int offset, int length, int startLine, int endLine) {
+
+    /**
+     * Captures the selection of an editor. An empty selection stands for the whole document.
+     *
+     * @param editor    the text editor
+     * @param selection the selection of the editor
+     * @return the snapshot, or null if the editor has no document
+     */
+    public static EditorSelection capture(ITextEditor editor, ITextSelection selection) {
+        IDocument document = editor.getDocumentProvider() != null
+            ? editor.getDocumentProvider().getDocument(editor.getEditorInput())
+            : null;
+        if (document == null) {
+            return null;
+        }
+        String text = document.get();
+        IFile file = editor.getEditorInput().getAdapter(IFile.class);
+        String path = file != null ? file.getFullPath().toPortableString() : null;
+        long stamp = document instanceof IDocumentExtension4 extension
+            ? extension.getModificationStamp()
+            : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+
+        int offset = selection != null ? selection.getOffset() : 0;
+        int length = selection != null ? selection.getLength() : 0;
+        if (length <= 0 || offset < 0 || offset + length > text.length()) {
+            int lines = 1;
+            for (int i = 0; i < text.length() - 1; i++) {
+                if (text.charAt(i) == '\n') {
+                    lines++;
+                }
+            }
+            return new EditorSelection(path, editor.getEditorInput().getName(), text, stamp, 0, text.length(), 1, lines);
+        }
+        return new EditorSelection(path, editor.getEditorInput().getName(), text, stamp,
+            offset, length, selection.getStartLine() + 1, selection.getEndLine() + 1);
+    }
+
+    /**
+     * Returns the selected text.
+     *
+     * @return the selected text
+     */
+    public String selectedText() {
+        return documentText.substring(offset, offset + length);
+    }
+
+    /**
+     * Checks if the selection covers the whole document.
+     *
+     * @return true for the whole document
+     */
+    public boolean isWholeDocument() {
+        return offset == 0 && length == documentText.length();
+    }
+
+    /**
+     * Returns the language of the file, as used to tag Markdown code blocks.
+     *
+     * @return the lower-case file extension, or an empty string
+     */
+    public String language() {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Checks if another snapshot selects the same text of the same document version,
+     * in which case a prompt prepared for one fits the other.
+     *
+     * @param other the other snapshot
+     * @return true if both prompts would be identical
+     */
+    public boolean sameAs(EditorSelection other) {
+        if (other == null || offset != other.offset || length != other.length
+                || !fileName.equals(other.fileName) || !Objects.equals(path, other.path)) {
+            return false;
+        }
+        if (stamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP && stamp == other.stamp) {
+            return true;
+        }
+        return documentText.equals(other.documentText);
+    }
+}
@@ -0,0 +1,80 @@
+package com.deepseek.plugin.editor;
+
+import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PlatformUI;
+
+import com.deepseek.plugin.Activator;
+import com.deepseek.plugin.completion.CompletionTracker;
+
+/**
+ * Connects the {@link PromptPrebuilder} and a {@link CompletionTracker} to
+ * the selection service of every workbench window, including windows opened later.
+ *
+ * <p>Installed on first use of the plugin, when the DeepSeek view opens or
+ * an editor command or content assist first runs, so the bundle is not
+ * activated at every workbench start.</p>
+ */
+public class EditorSelectionTracker implements IWindowListener {
+
+    private final CompletionTracker completionTracker = new CompletionTracker();
+
+    private boolean installed;
+
+    /**
+     * Starts tracking the selection and cursor of every workbench window.
+     * Calls after the first are ignored. May be called from any thread.
+     */
+    public void install() {
+        synchronized (this) {
+            if (installed) {
+                return;
+            }
+            installed = true;
+        }
+        IWorkbench workbench = PlatformUI.getWorkbench();
+        workbench.getDisplay().asyncExec(() -> {
+            workbench.addWindowListener(this);
+            for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+                windowOpened(window);
+            }
+        });
+    }
+
+    /**
+     * Starts tracking the selection and cursor of a new window.
+     *
+     * @param window the window
+     */
+    @Override
+    public void windowOpened(IWorkbenchWindow window) {
+        PromptPrebuilder prebuilder = Activator.getDefault().getPromptPrebuilder();
+        if (prebuilder != null) {
+            window.getSelectionService().addPostSelectionListener(prebuilder);
+        }
+        window.getSelectionService().addSelectionListener(completionTracker);
+    }
+
+    /**
+     * Stops tracking the selection and cursor of a closed window.
+     *
+     * @param window the window
+     */
+    @Override
+    public void windowClosed(IWorkbenchWindow window) {
+        PromptPrebuilder prebuilder = Activator.getDefault().getPromptPrebuilder();
+        if (prebuilder != null) {
+            window.getSelectionService().removePostSelectionListener(prebuilder);
+        }
+        window.getSelectionService().removeSelectionListener(completionTracker);
+    }
+
+    @Override
+    public void windowActivated(IWorkbenchWindow window) {
+    }
+
+    @Override
+    public void windowDeactivated(IWorkbenchWindow window) {
+    }
+}
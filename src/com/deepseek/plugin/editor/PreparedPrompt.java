@@ -0,0 +1,89 @@
+package com.deepseek.plugin.editor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.deepseek.plugin.api.ChatMessage;
+
+/**
+ * A prompt assembled from an editor selection, ready to be sent by any {@link EditorAction}.
+ *
+ * @param selection        the selection the prompt was assembled from
+ * @param code             the selected code, trimmed to its token budget
+ * @param before           the lines preceding the selection, trimmed to their token budget
+ * @param after            the lines following the selection, trimmed to their token budget
+ * @param workspaceContext a system message with related workspace code, or null
+ */
+public record PreparedPrompt(EditorSelection selection, String code, String before, String after,
+                             ChatMessage workspaceContext) {
+
+    /**
+     * Returns the user message asking for an action.
+     *
+     * @param action the action
+     * @return the message content
+     */
+    public String prompt(EditorAction action) {
+        String fence = "```" + selection.language() + "\n";
+        StringBuilder prompt = new StringBuilder(action.getInstruction()).append("\n\n")
+            .append("File: ").append(selection.path() != null ? selection.path() : selection.fileName());
+        if (selection.isWholeDocument()) {
+            prompt.append(" (whole file)\n\n");
+        } else {
+            prompt.append(" (lines ").append(selection.startLine()).append('-').append(selection.endLine())
+                .append(" selected)\n\n");
+        }
+        if (!before.isEmpty()) {
+            prompt.append("Code before the selection:\n").append(fence).append(before)
+                .append(before.endsWith("\n") ? "" : "\n").append("```\n\n");
+        }
+        prompt.append("Selected code:\n").append(fence).append(code)
+            .append(code.endsWith("\n") ? "" : "\n").append("```\n");
+        if (!after.isEmpty()) {
+            prompt.append("\nCode after the selection:\n").append(fence).append(after)
+                .append(after.endsWith("\n") ? "" : "\n").append("```\n");
+        }
+        return prompt.toString();
+    }
+
+    /**
+     * Returns the short description of a request shown in the chat history.
+     *
+     * @param action the action
+     * @return the description
+     */
+    public String summary(EditorAction action) {
+        if (selection.isWholeDocument()) {
+            return action.getLabel() + ": " + selection.fileName();
+        }
+        return action.getLabel() + ": " + selection.fileName()
+            + ", lines " + selection.startLine() + "-" + selection.endLine();
+    }
+
+    /**
+     * Returns the request messages with the workspace context placed before the last one.
+     *
+     * @param messages the request messages, ending with the prompt
+     * @return the messages to send
+     */
+    public List<ChatMessage> attachTo(List<ChatMessage> messages) {
+        if (workspaceContext == null || messages.isEmpty()) {
+            return messages;
+        }
+        List<ChatMessage> attached = new ArrayList<>(messages.size() + 1);
+        attached.addAll(messages.subList(0, messages.size() - 1));
+        attached.add(workspaceContext);
+        attached.add(messages.get(messages.size() - 1));
+        return List.copyOf(attached);
+    }
+
+    /**
+     * Returns a copy of this prompt with workspace context.
+     *
+     * @param context the system message with related workspace code, or null
+     * @return the new prompt
+     */
+    public PreparedPrompt withWorkspaceContext(ChatMessage context) {
+        return new PreparedPrompt(selection, code, before, after, context);
+    }
+}
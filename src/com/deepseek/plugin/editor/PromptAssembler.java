@@ -0,0 +1,107 @@
+package com.deepseek.plugin.editor;
+
+import com.deepseek.plugin.api.TokenEstimator;
+import com.deepseek.plugin.context.WorkspaceIndexer;
+
+/**
+ * Assembles prompts from editor selections within a token budget.
+ *
+ * <p>The selected code gets up to {@link #SELECTION_SHARE} of the budget and
+ * is cut at the end when it is longer. The surrounding lines, read outwards
+ * from the lines of the selection, get up to {@link #SURROUNDINGS_SHARE}, split evenly
+ * between the lines before and after it. The rest of the budget is left to
+ * the previous turns of the conversation. Sizes are estimated with
+ * {@link TokenEstimator} over ranges of the document, so assembling a prompt
+ * only copies the text that ends up in it.</p>
+ */
+public final class PromptAssembler {
+
+    /** The share of the token budget given to the selected code. */
+    public static final double SELECTION_SHARE = 0.5;
+
+    /** The share of the token budget given to the code around the selection. */
+    public static final double SURROUNDINGS_SHARE = 0.25;
+
+    private PromptAssembler() {
+    }
+
+    /**
+     * Assembles the prompt of a selection, without workspace context.
+     *
+     * @param selection   the selection
+     * @param tokenBudget the maximum estimated number of tokens per request
+     * @return the prompt
+     */
+    public static PreparedPrompt assemble(EditorSelection selection, int tokenBudget) {
+        String text = selection.documentText();
+        int selectionEnd = selection.offset() + selection.length();
+        int codeEnd = fitForward(text, selection.offset(), selectionEnd, (int) (tokenBudget * SELECTION_SHARE));
+        String code = text.substring(selection.offset(), codeEnd);
+        if (codeEnd < selectionEnd) {
+            code += "\n... (selection truncated)\n";
+        }
+
+        int sideBudget = (int) (tokenBudget * SURROUNDINGS_SHARE / 2);
+        int firstLineStart = text.lastIndexOf('\n', selection.offset() - 1) + 1;
+        int lastLineEnd = text.indexOf('\n', Math.max(selectionEnd - 1, selection.offset()));
+        lastLineEnd = lastLineEnd < 0 ? text.length() : lastLineEnd + 1;
+
+        int beforeStart = firstLineStart;
+        int cost = 0;
+        while (beforeStart > 0) {
+            int lineStart = text.lastIndexOf('\n', beforeStart - 2) + 1;
+            cost += TokenEstimator.estimate(text, lineStart, beforeStart);
+            if (cost > sideBudget) {
+                break;
+            }
+            beforeStart = lineStart;
+        }
+
+        int afterEnd = lastLineEnd;
+        cost = 0;
+        while (afterEnd < text.length()) {
+            int lineEnd = text.indexOf('\n', afterEnd);
+            lineEnd = lineEnd < 0 ? text.length() : lineEnd + 1;
+            cost += TokenEstimator.estimate(text, afterEnd, lineEnd);
+            if (cost > sideBudget) {
+                break;
+            }
+            afterEnd = lineEnd;
+        }
+
+        return new PreparedPrompt(selection, code,
+            text.substring(beforeStart, selection.offset()), text.substring(selectionEnd, afterEnd), null);
+    }
+
+    /**
+     * Adds the workspace code most related to the selection to a prompt.
+     * Reads files, so it should not run on the UI thread.
+     *
+     * @param prompt  the prompt
+     * @param indexer the workspace indexer, or null if there is none
+     * @param limit   the maximum number of chunks to attach
+     * @return the prompt with workspace context, or the given prompt if nothing relevant is found
+     */
+    public static PreparedPrompt withWorkspaceContext(PreparedPrompt prompt, WorkspaceIndexer indexer, int limit) {
+        if (indexer == null || limit <= 0) {
+            return prompt;
+        }
+        return prompt.withWorkspaceContext(indexer.buildContext(prompt.code(), limit, prompt.selection().path()));
+    }
+
+    /**
+     * Returns the end of the longest prefix of a range that fits a token budget,
+     * counting characters the way {@link TokenEstimator} does.
+     */
+    private static int fitForward(String text, int start, int end, int budget) {
+        long limit = budget * 10L - 9;
+        long cost = 0;
+        for (int i = start; i < end; i++) {
+            cost += text.charAt(i) < 0x80 ? 3 : 6;
+            if (cost > limit) {
+                return Character.isLowSurrogate(text.charAt(i)) ? i - 1 : i;
+            }
+        }
+        return end;
+    }
+}
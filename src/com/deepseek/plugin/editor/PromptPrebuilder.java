@@ -0,0 +1,131 @@
+package com.deepseek.plugin.editor;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.text.ITextSelection;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.ui.ISelectionListener;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.texteditor.ITextEditor;
+
+import com.deepseek.plugin.Activator;
+import com.deepseek.plugin.configuration.ConfigurationManager;
+
+/**
+ * Assembles the prompt of the current editor selection in the background,
+ * before any editor command asks for it.
+ *
+ * <p>Registered as a post-selection listener, which the workbench only
+ * notifies once the selection has stopped changing for a moment. A
+ * low-priority job then trims the selection and its surroundings to the
+ * token budget and looks up related workspace code, so that by the time an
+ * {@link EditorAction} runs, its prompt is usually ready and the request
+ * goes out immediately.</p>
+ *
+ * <p>Only the prompt of the latest selection is kept. Asking for another
+ * selection cancels the pending one, and the job always builds the latest
+ * request.</p>
+ */
+public class PromptPrebuilder implements ISelectionListener {
+
+    private final Job job;
+
+    private EditorSelection latest;
+    private CompletableFuture<PreparedPrompt> latestPrompt;
+
+    /**
+     * Creates a prebuilder. It does nothing until it receives selections.
+     */
+    public PromptPrebuilder() {
+        this.job = new Job("Preparing DeepSeek prompt") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                build();
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.setPriority(Job.SHORT);
+    }
+
+    /**
+     * Starts preparing the prompt of a settled, non-empty text editor selection.
+     *
+     * @param part      the part holding the selection
+     * @param selection the selection
+     */
+    @Override
+    public void selectionChanged(IWorkbenchPart part, ISelection selection) {
+        if (!(part instanceof ITextEditor editor)
+                || !(selection instanceof ITextSelection textSelection)
+                || textSelection.getLength() == 0) {
+            return;
+        }
+        EditorSelection captured = EditorSelection.capture(editor, textSelection);
+        if (captured != null) {
+            prepare(captured);
+        }
+    }
+
+    /**
+     * Returns the prompt of a selection, starting to build it unless it is
+     * already built or being built.
+     *
+     * @param selection the selection
+     * @return the prompt, completed in the background
+     */
+    public synchronized CompletableFuture<PreparedPrompt> prepare(EditorSelection selection) {
+        if (latestPrompt != null && selection.sameAs(latest) && !latestPrompt.isCompletedExceptionally()) {
+            return latestPrompt;
+        }
+        if (latestPrompt != null) {
+            latestPrompt.cancel(false);
+        }
+        latest = selection;
+        latestPrompt = new CompletableFuture<>();
+        job.schedule();
+        return latestPrompt;
+    }
+
+    /**
+     * Cancels pending work and drops the prepared prompt.
+     */
+    public void dispose() {
+        job.cancel();
+        synchronized (this) {
+            if (latestPrompt != null) {
+                latestPrompt.cancel(false);
+            }
+            latest = null;
+            latestPrompt = null;
+        }
+    }
+
+    /**
+     * Builds the latest requested prompt. Runs in the background job.
+     */
+    private void build() {
+        EditorSelection selection;
+        CompletableFuture<PreparedPrompt> prompt;
+        synchronized (this) {
+            selection = latest;
+            prompt = latestPrompt;
+        }
+        if (prompt == null || prompt.isDone()) {
+            return;
+        }
+        try {
+            PreparedPrompt prepared = PromptAssembler.assemble(selection, ConfigurationManager.getContextTokens());
+            if (!prompt.isDone()) {
+                prompt.complete(PromptAssembler.withWorkspaceContext(prepared,
+                    Activator.getDefault().getWorkspaceIndexer(), ConfigurationManager.getContextChunks()));
+            }
+        } catch (RuntimeException exception) {
+            prompt.completeExceptionally(exception);
+        }
+    }
+}
@@ -0,0 +1,775 @@
+package com.deepseek.plugin.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongPredicate;
+import java.util.zip.CRC32;
+
+import com.deepseek.plugin.api.ChatMessage;
+import com.deepseek.plugin.api.Conversation;
+
+/**
+ * Persistent, append-only log of all conversations.
+ *
+ * <p>Messages are appended to a segment file and located through a fixed-width
+ * offset index, so neither file is ever rewritten on append and any message
+ * can be read with a single positional read. Every index entry also holds
+ * the thread of its message and links to the previous message of that
+ * thread, so the messages of a thread are read by following the chain,
+ * without decoding the messages of other threads in between, which keeps
+ * startup time independent of the size of the history.</p>
+ *
+ * <p>Deleting a thread only records its id in a small tombstone file. The space
+ * its messages occupy is reclaimed by a background compaction that copies the
+ * live records into a new generation of files and then atomically switches
+ * to it.</p>
+ *
+ * <p>On-disk layout, for generation {@code g}:</p>
+ * <ul>
+ * <li>{@code history-g.log}: records of {@code [length][crc32][payload]}, where
+ * the payload holds version, sequence, thread id, timestamp, role and UTF-8 content</li>
+ * <li>{@code history-g.index}: one {@code [sequence][offset][thread id][previous]}
+ * entry per record, where {@code previous} is the entry of the previous
+ * message of the same thread, or -1</li>
+ * <li>{@code history.deleted}: ids of deleted threads, replaced atomically when compacted</li>
+ * <li>{@code history.current}: the active generation</li>
+ * </ul>
+ *
+ * <p>A record torn by a crash fails its checksum and is truncated on the next
+ * open; records missing from the index are re-indexed from the log.</p>
+ *
+ * <p>Every message is also added to a full-text {@link SearchIndex}, kept in
+ * the {@code search} subdirectory, as it is appended. On open, the messages
+ * stored after the last commit of that index are indexed again, so it never
+ * misses a message, whatever happened to it.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class ConversationStore implements Closeable {
+
+    private static final int RECORD_HEADER = 8;
+    private static final int INDEX_ENTRY = 32;
+    private static final int SCAN_BLOCK = 512;
+    private static final int PAYLOAD_FIXED = 1 + 8 + 8 + 8 + 1;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int MAX_RECORD = 64 * 1024 * 1024;
+
+    private static final String[] ROLES = {
+        Conversation.ROLE_SYSTEM, Conversation.ROLE_USER, Conversation.ROLE_ASSISTANT
+    };
+
+    private final Path directory;
+    private final SearchIndex searchIndex;
+    private final Set<Long> deletedThreads = new HashSet<>();
+    /** The last index entry of threads, filled as they are appended to or looked up. */
+    private final Map<Long, Long> threadHeads = new HashMap<>();
+    private final ExecutorService compactor;
+    private final AtomicBoolean compactionPending = new AtomicBoolean();
+
+    private int generation;
+    private FileChannel log;
+    private FileChannel index;
+    private FileChannel deleted;
+    private long logSize;
+    private long entryCount;
+    private long nextSequence;
+    private long lastThreadId;
+    private boolean closed;
+
+    private ConversationStore(Path directory, SearchIndex searchIndex) {
+        this.directory = directory;
+        this.searchIndex = searchIndex;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DeepSeek history compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the store in the given directory, creating it if needed, brings
+     * its search index up to date and schedules a compaction if deleted
+     * threads are waiting to be reclaimed.
+     *
+     * @param directory the directory holding the store files
+     * @return the opened store
+     * @throws IOException if the files cannot be opened or recovered
+     */
+    public static ConversationStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        ConversationStore store = new ConversationStore(directory, SearchIndex.open(directory.resolve("search")));
+        store.load();
+        store.updateSearchIndex();
+        if (!store.deletedThreads.isEmpty()) {
+            store.scheduleCompaction();
+        }
+        return store;
+    }
+
+    /**
+     * Returns an id for a new conversation thread. The thread exists once
+     * its first message is appended.
+     *
+     * @return a thread id greater than every id used so far
+     */
+    public synchronized long newThreadId() {
+        lastThreadId = Math.max(System.currentTimeMillis(), lastThreadId + 1);
+        return lastThreadId;
+    }
+
+    /**
+     * Returns the thread of the most recently appended message that was not deleted.
+     *
+     * @return the thread id, or -1 if the store holds no live messages
+     * @throws IOException if the store cannot be read
+     */
+    public synchronized long latestThreadId() throws IOException {
+        ensureOpen();
+        long ordinal = findLast(entryCount - 1, threadId -> !deletedThreads.contains(threadId));
+        return ordinal >= 0 ? readEntry(ordinal).getLong(16) : -1;
+    }
+
+    /**
+     * Appends a message to a thread without rewriting any existing data, and
+     * adds it to the search index. Failing to write the search index does
+     * not fail the append: the message is indexed again from the log when
+     * the store is next opened.
+     *
+     * @param threadId the thread the message belongs to
+     * @param message  the message to store
+     * @return the stored message, including its assigned sequence number
+     * @throws IOException if the message cannot be written
+     */
+    public synchronized StoredMessage append(long threadId, ChatMessage message) throws IOException {
+        ensureOpen();
+        StoredMessage stored = new StoredMessage(nextSequence, threadId, System.currentTimeMillis(), message);
+        ByteBuffer record = encode(stored);
+
+        long offset = logSize;
+        writeFully(log, record, offset);
+        logSize += record.capacity();
+        addEntry(stored.sequence(), offset, threadId);
+
+        nextSequence++;
+        lastThreadId = Math.max(lastThreadId, threadId);
+        try {
+            searchIndex.add(stored);
+        } catch (IOException e) {
+            // The message is stored; the index is brought up to date from the log on the next open.
+        }
+        return stored;
+    }
+
+    /**
+     * Loads the most recent messages of a thread, oldest first.
+     *
+     * @param threadId the thread to read
+     * @param limit    the maximum number of messages to return
+     * @return up to {@code limit} messages
+     * @throws IOException if the store cannot be read
+     */
+    public synchronized List<StoredMessage> loadRecent(long threadId, int limit) throws IOException {
+        ensureOpen();
+        return loadBackwards(threadId, lastOrdinal(threadId), limit);
+    }
+
+    /**
+     * Loads the messages of a thread that precede the given one, oldest first.
+     * Used to page further back into a history lazily.
+     *
+     * @param threadId       the thread to read
+     * @param beforeSequence the sequence number of the oldest message already loaded
+     * @param limit          the maximum number of messages to return
+     * @return up to {@code limit} older messages
+     * @throws IOException if the store cannot be read
+     */
+    public synchronized List<StoredMessage> loadBefore(long threadId, long beforeSequence, int limit) throws IOException {
+        ensureOpen();
+        long ordinal = findOrdinal(beforeSequence);
+        long start;
+        if (ordinal < entryCount && readSequence(ordinal) == beforeSequence
+                && readEntry(ordinal).getLong(16) == threadId) {
+            start = readEntry(ordinal).getLong(24);
+        } else {
+            start = findLast(ordinal - 1, id -> id == threadId);
+        }
+        return loadBackwards(threadId, start, limit);
+    }
+
+    /**
+     * Reads a single message by its sequence number.
+     *
+     * @param sequence the sequence number
+     * @return the message, or null if it does not exist or its thread was deleted
+     * @throws IOException if the store cannot be read
+     */
+    public synchronized StoredMessage read(long sequence) throws IOException {
+        ensureOpen();
+        long ordinal = findOrdinal(sequence);
+        if (ordinal >= entryCount || readSequence(ordinal) != sequence) {
+            return null;
+        }
+        StoredMessage message = readRecord(readOffset(ordinal));
+        return deletedThreads.contains(message.threadId()) ? null : message;
+    }
+
+    /**
+     * Finds the most recent messages matching a search query.
+     *
+     * <p>Only the postings of the query terms are read to find the messages,
+     * then one record per message found, so the time taken depends on how
+     * common the terms are rather than on the size of the history.</p>
+     *
+     * @param query the query
+     * @param limit the maximum number of messages to return
+     * @return the matching messages, most recent first
+     * @throws IOException if the store cannot be read
+     */
+    public List<StoredMessage> search(SearchQuery query, int limit) throws IOException {
+        long[] sequences = searchIndex.search(query, limit);
+        List<StoredMessage> messages = new ArrayList<>(sequences.length);
+        synchronized (this) {
+            for (long sequence : sequences) {
+                StoredMessage message = read(sequence);
+                if (message != null) {
+                    messages.add(message);
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Marks a thread as deleted. Its messages disappear immediately, from
+     * searches too, and their space is reclaimed by a background compaction.
+     *
+     * @param threadId the thread to delete
+     * @throws IOException if the tombstone cannot be written
+     */
+    public synchronized void deleteThread(long threadId) throws IOException {
+        ensureOpen();
+        if (deletedThreads.add(threadId)) {
+            searchIndex.deleteThread(threadId);
+            ByteBuffer tombstone = ByteBuffer.allocate(8).putLong(threadId).flip();
+            writeFully(deleted, tombstone, deleted.size());
+            scheduleCompaction();
+        }
+    }
+
+    /**
+     * Returns the size of the message log on disk.
+     *
+     * @return the log size in bytes
+     */
+    public synchronized long getLogSize() {
+        return logSize;
+    }
+
+    /**
+     * Waits for pending compactions, commits the search index, flushes all
+     * files to disk and closes them.
+     *
+     * @throws IOException if flushing or closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            log.force(false);
+            index.force(false);
+            deleted.force(false);
+            log.close();
+            index.close();
+            deleted.close();
+            searchIndex.close();
+        }
+    }
+
+    /**
+     * Queues a compaction unless one is already waiting to run.
+     */
+    private void scheduleCompaction() {
+        if (compactionPending.compareAndSet(false, true) && !compactor.isShutdown()) {
+            compactor.execute(() -> {
+                compactionPending.set(false);
+                try {
+                    compact();
+                } catch (IOException e) {
+                    // The old generation stays active; the next deletion retries.
+                }
+            });
+        }
+    }
+
+    /**
+     * Copies every live record into a new generation and switches to it.
+     *
+     * <p>The bulk of the copy runs without holding the store lock, so appends
+     * continue meanwhile; only the records appended during the copy are
+     * transferred while the lock is held, right before the switch.</p>
+     *
+     * @throws IOException if the new generation cannot be written
+     */
+    void compact() throws IOException {
+        Set<Long> reclaimed;
+        long copiedEntries;
+        FileChannel sourceLog;
+        FileChannel sourceIndex;
+        int nextGeneration;
+        synchronized (this) {
+            if (closed || deletedThreads.isEmpty()) {
+                return;
+            }
+            reclaimed = new HashSet<>(deletedThreads);
+            copiedEntries = entryCount;
+            sourceLog = log;
+            sourceIndex = index;
+            nextGeneration = generation + 1;
+        }
+
+        Path newLogPath = logPath(nextGeneration);
+        Path newIndexPath = indexPath(nextGeneration);
+        try (FileChannel newLog = FileChannel.open(newLogPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileChannel newIndex = FileChannel.open(newIndexPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            long[] cursor = new long[2];
+            Map<Long, Long> heads = new HashMap<>();
+            copyLive(sourceLog, sourceIndex, 0, copiedEntries, reclaimed, newLog, newIndex, cursor, heads);
+
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                copyLive(log, index, copiedEntries, entryCount, reclaimed, newLog, newIndex, cursor, heads);
+                newLog.force(true);
+                newIndex.force(true);
+
+                Path pointer = directory.resolve("history.current");
+                Path pointerTemp = directory.resolve("history.current.tmp");
+                Files.writeString(pointerTemp, Integer.toString(nextGeneration), StandardCharsets.US_ASCII);
+                Files.move(pointerTemp, pointer, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                int previousGeneration = generation;
+                log.close();
+                index.close();
+                generation = nextGeneration;
+                log = openChannel(logPath(generation));
+                index = openChannel(indexPath(generation));
+                logSize = cursor[0];
+                entryCount = cursor[1];
+                threadHeads.clear();
+                threadHeads.putAll(heads);
+                Files.deleteIfExists(logPath(previousGeneration));
+                Files.deleteIfExists(indexPath(previousGeneration));
+
+                // The tombstones are dropped, so the search index must not forget the deletions.
+                searchIndex.commit();
+                deletedThreads.removeAll(reclaimed);
+                rewriteTombstones();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(newLogPath);
+            Files.deleteIfExists(newIndexPath);
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces the tombstone file with the remaining deleted threads. The new
+     * content is written to a temporary file that atomically replaces the old
+     * one, so a crash never loses a tombstone that is still needed.
+     */
+    private void rewriteTombstones() throws IOException {
+        Path file = directory.resolve("history.deleted");
+        Path temp = directory.resolve("history.deleted.tmp");
+        ByteBuffer remaining = ByteBuffer.allocate(8 * deletedThreads.size());
+        for (long threadId : deletedThreads) {
+            remaining.putLong(threadId);
+        }
+        remaining.flip();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, remaining, 0);
+            channel.force(true);
+        }
+        deleted.close();
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            deleted = openChannel(file);
+        }
+    }
+
+    /**
+     * Copies the records of the given index range whose thread is not reclaimed.
+     * The cursor holds the write position in the new log and the new entry
+     * count; the heads map the threads copied so far to their last new entry.
+     */
+    private void copyLive(FileChannel sourceLog, FileChannel sourceIndex, long from, long to, Set<Long> reclaimed,
+            FileChannel targetLog, FileChannel targetIndex, long[] cursor, Map<Long, Long> heads) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        for (long ordinal = from; ordinal < to; ordinal++) {
+            entry.clear();
+            readFully(sourceIndex, entry, ordinal * INDEX_ENTRY);
+            long sequence = entry.getLong(0);
+            long offset = entry.getLong(8);
+            long threadId = entry.getLong(16);
+            if (reclaimed.contains(threadId)) {
+                continue;
+            }
+
+            header.clear();
+            readFully(sourceLog, header, offset);
+
+            int length = RECORD_HEADER + header.getInt(0);
+            long copied = 0;
+            while (copied < length) {
+                copied += sourceLog.transferTo(offset + copied, length - copied,
+                    targetLog.position(cursor[0] + copied));
+            }
+
+            entry.clear();
+            entry.putLong(sequence).putLong(cursor[0]).putLong(threadId)
+                .putLong(heads.getOrDefault(threadId, -1L)).flip();
+            writeFully(targetIndex, entry, cursor[1] * INDEX_ENTRY);
+            heads.put(threadId, cursor[1]);
+            cursor[0] += length;
+            cursor[1]++;
+        }
+    }
+
+    /**
+     * Opens the active generation and repairs any damage left by a crash.
+     */
+    private void load() throws IOException {
+        Path pointer = directory.resolve("history.current");
+        if (Files.exists(pointer)) {
+            generation = Integer.parseInt(Files.readString(pointer, StandardCharsets.US_ASCII).trim());
+        }
+        log = openChannel(logPath(generation));
+        index = openChannel(indexPath(generation));
+        deleted = openChannel(directory.resolve("history.deleted"));
+        Files.deleteIfExists(directory.resolve("history.deleted.tmp"));
+        removeStaleGenerations();
+
+        ByteBuffer tombstones = ByteBuffer.allocate((int) (deleted.size() / 8 * 8));
+        readFully(deleted, tombstones, 0);
+        tombstones.flip();
+        while (tombstones.remaining() >= 8) {
+            deletedThreads.add(tombstones.getLong());
+        }
+
+        recover();
+    }
+
+    /**
+     * Deletes files of other generations left behind by an interrupted
+     * compaction.
+     */
+    private void removeStaleGenerations() throws IOException {
+        Path activeLog = logPath(generation);
+        Path activeIndex = indexPath(generation);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "history-*.{log,index}")) {
+            for (Path file : files) {
+                if (!file.equals(activeLog) && !file.equals(activeIndex)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops index entries that point at missing or corrupt records, re-indexes
+     * intact records that were written after the last index entry, and cuts off
+     * a torn record at the end of the log.
+     */
+    private void recover() throws IOException {
+        long actualLogSize = log.size();
+        entryCount = index.size() / INDEX_ENTRY;
+
+        long validEnd = 0;
+        while (entryCount > 0) {
+            long offset = readOffset(entryCount - 1);
+            int length = validRecordLength(offset, actualLogSize);
+            if (length > 0) {
+                validEnd = offset + length;
+                break;
+            }
+            entryCount--;
+        }
+        index.truncate(entryCount * INDEX_ENTRY);
+
+        while (validEnd < actualLogSize) {
+            int length = validRecordLength(validEnd, actualLogSize);
+            if (length <= 0) {
+                break;
+            }
+            StoredMessage message = readRecord(validEnd);
+            addEntry(message.sequence(), validEnd, message.threadId());
+            validEnd += length;
+        }
+        log.truncate(validEnd);
+        logSize = validEnd;
+
+        if (entryCount > 0) {
+            StoredMessage last = readRecord(readOffset(entryCount - 1));
+            nextSequence = last.sequence() + 1;
+            lastThreadId = last.threadId();
+        }
+    }
+
+    /**
+     * Removes the deleted threads from the search index and indexes the
+     * messages stored after its last commit, typically the few appended
+     * since, or every message if the index was lost.
+     */
+    private void updateSearchIndex() throws IOException {
+        for (long ordinal = findOrdinal(searchIndex.getLastSequence() + 1); ordinal < entryCount; ordinal++) {
+            searchIndex.add(readRecord(readOffset(ordinal)));
+        }
+        for (long threadId : deletedThreads) {
+            searchIndex.deleteThread(threadId);
+        }
+        searchIndex.commit();
+    }
+
+    /**
+     * Returns the total length of the record at the given offset if it is
+     * complete and its checksum matches, or -1 otherwise.
+     */
+    private int validRecordLength(long offset, long limit) throws IOException {
+        if (offset < 0 || offset + RECORD_HEADER > limit) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        readFully(log, header, offset);
+        int payloadLength = header.getInt(0);
+        if (payloadLength < PAYLOAD_FIXED || payloadLength > MAX_RECORD
+                || offset + RECORD_HEADER + payloadLength > limit) {
+            return -1;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        readFully(log, payload, offset + RECORD_HEADER);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, payloadLength);
+        return (int) crc.getValue() == header.getInt(4) ? RECORD_HEADER + payloadLength : -1;
+    }
+
+    /**
+     * Reads the messages of a thread by following the chain of its index
+     * entries backwards, oldest first.
+     *
+     * @param threadId the thread
+     * @param ordinal  the entry of the newest message to read, or -1
+     * @param limit    the maximum number of messages to read
+     */
+    private List<StoredMessage> loadBackwards(long threadId, long ordinal, int limit) throws IOException {
+        if (deletedThreads.contains(threadId)) {
+            return List.of();
+        }
+        List<StoredMessage> messages = new ArrayList<>(Math.min(limit, 256));
+        while (ordinal >= 0 && messages.size() < limit) {
+            ByteBuffer entry = readEntry(ordinal);
+            messages.add(readRecord(entry.getLong(8)));
+            ordinal = entry.getLong(24);
+        }
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    /**
+     * Appends an index entry linked to the previous message of its thread.
+     */
+    private void addEntry(long sequence, long offset, long threadId) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY);
+        entry.putLong(sequence).putLong(offset).putLong(threadId).putLong(lastOrdinal(threadId)).flip();
+        writeFully(index, entry, entryCount * INDEX_ENTRY);
+        threadHeads.put(threadId, entryCount);
+        entryCount++;
+    }
+
+    /**
+     * Returns the entry of the newest message of a thread, or -1 if the
+     * thread has no message.
+     */
+    private long lastOrdinal(long threadId) throws IOException {
+        Long head = threadHeads.get(threadId);
+        if (head != null) {
+            return head;
+        }
+        long ordinal = findLast(entryCount - 1, id -> id == threadId);
+        if (ordinal >= 0) {
+            threadHeads.put(threadId, ordinal);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Returns the last entry, at or before the given one, whose thread is
+     * accepted by the filter, or -1. Only the index is read, in blocks.
+     */
+    private long findLast(long fromOrdinal, LongPredicate threadFilter) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK * INDEX_ENTRY);
+        for (long end = fromOrdinal + 1; end > 0; ) {
+            long start = Math.max(0, end - SCAN_BLOCK);
+            block.clear().limit((int) (end - start) * INDEX_ENTRY);
+            readFully(index, block, start * INDEX_ENTRY);
+            for (long ordinal = end - 1; ordinal >= start; ordinal--) {
+                if (threadFilter.test(block.getLong((int) (ordinal - start) * INDEX_ENTRY + 16))) {
+                    return ordinal;
+                }
+            }
+            end = start;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the ordinal of the first index entry whose sequence is not less
+     * than the given one, using a binary search over the index file.
+     */
+    private long findOrdinal(long sequence) throws IOException {
+        long low = 0;
+        long high = entryCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (readSequence(middle) < sequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private long readSequence(long ordinal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        readFully(index, buffer, ordinal * INDEX_ENTRY);
+        return buffer.getLong(0);
+    }
+
+    private long readOffset(long ordinal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        readFully(index, buffer, ordinal * INDEX_ENTRY + 8);
+        return buffer.getLong(0);
+    }
+
+    private ByteBuffer readEntry(long ordinal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_ENTRY);
+        readFully(index, buffer, ordinal * INDEX_ENTRY);
+        return buffer;
+    }
+
+    private StoredMessage readRecord(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        readFully(log, header, offset);
+        ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+        readFully(log, payload, offset + RECORD_HEADER);
+        payload.flip();
+
+        payload.get();
+        long sequence = payload.getLong();
+        long threadId = payload.getLong();
+        long timestamp = payload.getLong();
+        int role = payload.get();
+        String content = new String(payload.array(), payload.position(), payload.remaining(), StandardCharsets.UTF_8);
+        String roleName = role >= 0 && role < ROLES.length ? ROLES[role] : Conversation.ROLE_USER;
+        return new StoredMessage(sequence, threadId, timestamp, new ChatMessage(roleName, content, null));
+    }
+
+    private static ByteBuffer encode(StoredMessage stored) {
+        String content = stored.message().content();
+        byte[] text = content != null ? content.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int payloadLength = PAYLOAD_FIXED + text.length;
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payloadLength);
+        record.position(RECORD_HEADER);
+        record.put(FORMAT_VERSION);
+        record.putLong(stored.sequence());
+        record.putLong(stored.threadId());
+        record.putLong(stored.timestamp());
+        record.put(roleCode(stored.message().role()));
+        record.put(text);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER, payloadLength);
+        record.putInt(0, payloadLength);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    private static byte roleCode(String role) {
+        for (byte code = 0; code < ROLES.length; code++) {
+            if (ROLES[code].equals(role)) {
+                return code;
+            }
+        }
+        return 1;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Conversation store is closed");
+        }
+    }
+
+    private Path logPath(int generation) {
+        return directory.resolve("history-" + generation + ".log");
+    }
+
+    private Path indexPath(int generation) {
+        return directory.resolve("history-" + generation + ".index");
+    }
+
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of history file");
+            }
+            position += read;
+        }
+    }
+}
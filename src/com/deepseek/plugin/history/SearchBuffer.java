@@ -0,0 +1,231 @@
+package com.deepseek.plugin.history;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The most recently indexed messages of a {@link SearchIndex}, kept on the
+ * heap until they are flushed into a {@link SearchSegment}.
+ *
+ * <p>Messages get consecutive numbers as they are added, in sequence order.
+ * For every term the buffer keeps, for each message containing it, the
+ * message number, the term frequency and the positions. Terms are kept
+ * sorted so that prefixes can be expanded. Messages of deleted threads are
+ * only marked and dropped when the buffer is written, so the owner bounds
+ * the heap it uses by flushing it once {@link #docCount()} grows too large.</p>
+ *
+ * <p>Not thread-safe: the owning index guards it with its lock.</p>
+ */
+final class SearchBuffer implements SearchIndex.Source {
+
+    /**
+     * The messages containing one term, as runs of message number, term
+     * frequency and that many positions.
+     */
+    private static final class Postings {
+        int[] data = new int[8];
+        int size;
+
+        void add(int doc, int[] positions, int count) {
+            if (size + 2 + count > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + 2 + count));
+            }
+            data[size++] = doc;
+            data[size++] = count;
+            System.arraycopy(positions, 0, data, size, count);
+            size += count;
+        }
+    }
+
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+
+    private long[] sequences = new long[256];
+    private long[] threadIds = new long[256];
+    private int docCount;
+
+    /** The messages of deleted threads. */
+    final BitSet deleted = new BitSet();
+    private int deletedCount;
+
+    /**
+     * Adds a message with a sequence greater than every buffered one.
+     *
+     * @param sequence  the store sequence of the message
+     * @param threadId  the thread of the message
+     * @param positions the positions of each term of the message, ascending
+     */
+    void add(long sequence, long threadId, Map<String, PositionList> positions) {
+        if (docCount == sequences.length) {
+            sequences = Arrays.copyOf(sequences, docCount * 2);
+            threadIds = Arrays.copyOf(threadIds, docCount * 2);
+        }
+        int doc = docCount++;
+        sequences[doc] = sequence;
+        threadIds[doc] = threadId;
+        for (Map.Entry<String, PositionList> entry : positions.entrySet()) {
+            PositionList list = entry.getValue();
+            postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(doc, list.positions, list.size);
+        }
+    }
+
+    /**
+     * Marks the messages of a thread as deleted.
+     *
+     * @param threadId the thread
+     * @return true if a message was deleted
+     */
+    boolean deleteThread(long threadId) {
+        boolean changed = false;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (threadIds[doc] == threadId && !deleted.get(doc)) {
+                deleted.set(doc);
+                deletedCount++;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public int docCount() {
+        return docCount;
+    }
+
+    @Override
+    public BitSet deleted() {
+        return deleted;
+    }
+
+    int liveDocs() {
+        return docCount - deletedCount;
+    }
+
+    @Override
+    public long sequence(int doc) {
+        return sequences[doc];
+    }
+
+    @Override
+    public SearchIndex.Postings postings(String term) {
+        Postings list = postings.get(term);
+        return list != null ? new Cursor(list) : null;
+    }
+
+    @Override
+    public void prefixPostings(String prefix, int limit, List<SearchIndex.Postings> target) {
+        int count = 0;
+        for (Map.Entry<String, Postings> entry : postings.tailMap(prefix, true).entrySet()) {
+            if (count++ == limit || !entry.getKey().startsWith(prefix)) {
+                return;
+            }
+            target.add(new Cursor(entry.getValue()));
+        }
+    }
+
+    /**
+     * Writes the live messages, renumbered, and their terms in UTF-8 order,
+     * as required by the segment format.
+     *
+     * @param writer the writer of the new segment
+     * @throws IOException if writing fails
+     */
+    void writeTo(SearchSegmentWriter writer) throws IOException {
+        int[] remap = new int[docCount];
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted.get(doc)) {
+                remap[doc] = -1;
+            } else {
+                remap[doc] = writer.docCount();
+                writer.addDoc(sequences[doc], threadIds[doc]);
+            }
+        }
+
+        List<byte[]> terms = new ArrayList<>(postings.size());
+        Map<byte[], Postings> lists = new HashMap<>();
+        for (Map.Entry<String, Postings> term : postings.entrySet()) {
+            byte[] bytes = term.getKey().getBytes(StandardCharsets.UTF_8);
+            terms.add(bytes);
+            lists.put(bytes, term.getValue());
+        }
+        terms.sort(Arrays::compareUnsigned);
+
+        for (byte[] term : terms) {
+            Postings list = lists.get(term);
+            boolean started = false;
+            for (int i = 0; i < list.size; i += 2 + list.data[i + 1]) {
+                int doc = list.data[i];
+                if (remap[doc] < 0) {
+                    continue;
+                }
+                if (!started) {
+                    writer.startTerm(term);
+                    started = true;
+                }
+                writer.addPosting(remap[doc], list.data, i + 2, list.data[i + 1]);
+            }
+            if (started) {
+                writer.endTerm();
+            }
+        }
+    }
+
+    /**
+     * The ascending positions of a term in a message being added.
+     */
+    static final class PositionList {
+        int[] positions = new int[4];
+        int size;
+
+        void add(int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+    }
+
+    /**
+     * Iterates over the postings of one buffered term.
+     */
+    private static final class Cursor implements SearchIndex.Postings {
+        private final Postings list;
+        private int next;
+        private int doc = -1;
+        private int frequency;
+        private int positionAt;
+
+        Cursor(Postings list) {
+            this.list = list;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (next >= list.size) {
+                doc = NO_MORE_DOCS;
+                return doc;
+            }
+            doc = list.data[next];
+            frequency = list.data[next + 1];
+            positionAt = next + 2;
+            next = positionAt + frequency;
+            return doc;
+        }
+
+        @Override
+        public int frequency() {
+            return frequency;
+        }
+
+        @Override
+        public int nextPosition() {
+            return list.data[positionAt++];
+        }
+    }
+}
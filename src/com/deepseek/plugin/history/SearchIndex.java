@@ -0,0 +1,793 @@
+package com.deepseek.plugin.history;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import com.deepseek.plugin.metrics.Metrics;
+
+/**
+ * A persistent full-text index of the messages of the {@link ConversationStore}.
+ *
+ * <p>The index is organized like the workspace context index: new messages
+ * go to a small {@link SearchBuffer} on the heap, which is searchable at
+ * once; once it holds {@link #MAX_BUFFERED_MESSAGES} messages, or on
+ * {@link #commit()}, it is written to an immutable segment file and
+ * memory-mapped. When there are more than {@link #MAX_SEGMENTS} segments,
+ * the smallest ones are merged into one, and the messages of deleted threads
+ * are purged whenever a segment is rewritten. The heap only holds the write
+ * buffer and one deletion bit per message, and a search reads nothing but
+ * postings: the store reads the text of the few messages it returns.</p>
+ *
+ * <p>Postings record the position of every term, so that phrases can be
+ * matched without reading the messages. The messages matching a query are
+ * collected into one bit set per segment; results are the most recent
+ * matching messages, which is what a chat history is searched for.</p>
+ *
+ * <p>The store is the source of truth. Each commit records the last sequence
+ * it covers, and {@link ConversationStore#open(Path)} indexes the messages
+ * stored after it again, so a crash, or an unreadable commit, only costs
+ * re-indexing. Commits are crash-safe in the same way as those of the
+ * context index: segments are forced to disk before a commit file listing
+ * them is atomically renamed into place, and files not referenced by the
+ * last commit are deleted on open.</p>
+ *
+ * <p>Instances are thread-safe. Searches run concurrently with each other,
+ * and with flushes and merges, and are only blocked while a change is
+ * applied; messages are tokenized before the lock is taken.</p>
+ */
+public class SearchIndex implements Closeable {
+
+    /** The number of messages buffered on the heap before they are written to a segment. */
+    public static final int MAX_BUFFERED_MESSAGES = 1024;
+
+    /** The number of segments above which the smallest ones are merged. */
+    public static final int MAX_SEGMENTS = 8;
+
+    /** The number of segments merged at once. */
+    public static final int MERGE_FACTOR = 4;
+
+    /** The maximum number of terms a prefix expands to, per segment. */
+    public static final int MAX_PREFIX_TERMS = 1024;
+
+    private static final String COMMIT_FILE = "commit";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int COMMIT_MAGIC = 0x44534843;
+    private static final int COMMIT_VERSION = 1;
+
+    /**
+     * The postings of one term in a segment or the buffer, deleted messages
+     * included. The positions of the current message may be read, or skipped
+     * by moving on to the next message.
+     */
+    interface Postings {
+
+        /** Returned by {@link #nextDoc()} after the last message. */
+        int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+        /**
+         * Moves to the next message containing the term.
+         *
+         * @return its number, or {@link #NO_MORE_DOCS}
+         */
+        int nextDoc();
+
+        /**
+         * Returns the number of times the term occurs in the current message.
+         *
+         * @return the term frequency
+         */
+        int frequency();
+
+        /**
+         * Returns the next position of the term in the current message; may
+         * be called {@link #frequency()} times.
+         *
+         * @return the position, ascending
+         */
+        int nextPosition();
+    }
+
+    /**
+     * Messages numbered from 0, with their postings: a segment or the buffer.
+     */
+    interface Source {
+
+        int docCount();
+
+        BitSet deleted();
+
+        long sequence(int doc);
+
+        /**
+         * Returns the postings of a term.
+         *
+         * @param term the term
+         * @return the postings, or null if no message contains the term
+         */
+        Postings postings(String term);
+
+        /**
+         * Adds the postings of the terms starting with a prefix.
+         *
+         * @param prefix the prefix
+         * @param limit  the maximum number of terms
+         * @param target receives the postings
+         */
+        void prefixPostings(String prefix, int limit, List<Postings> target);
+    }
+
+    private final Path directory;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Serializes changes, which may write files without holding the lock. */
+    private final Object writeMonitor = new Object();
+
+    private List<SearchSegment> segments = List.of();
+    private SearchBuffer buffer = new SearchBuffer();
+    private final List<SearchSegment> obsolete = new ArrayList<>();
+    private int nextSegment;
+    private long generation;
+    private long lastSequence = -1;
+    private boolean changed;
+
+    private SearchIndex(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Opens the index stored in a directory, creating it if needed.
+     *
+     * <p>An unreadable commit is treated as an empty index, which the store
+     * then rebuilds.</p>
+     *
+     * @param directory the directory of the index
+     * @return the index
+     * @throws IOException if the directory cannot be created or listed
+     */
+    public static SearchIndex open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        SearchIndex index = new SearchIndex(directory);
+        try {
+            index.readCommit();
+        } catch (NoSuchFileException missing) {
+            // new index
+        } catch (IOException corrupt) {
+            index.segments = List.of();
+            index.nextSegment = 0;
+            index.generation = 0;
+            index.lastSequence = -1;
+        }
+        index.deleteUnreferencedFiles();
+        return index;
+    }
+
+    /**
+     * Returns the sequence of the most recent message indexed.
+     *
+     * @return the sequence, or -1 if the index is empty
+     */
+    public long getLastSequence() {
+        lock.readLock().lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a message. Messages must be added in sequence order; a message
+     * that is not more recent than the last one indexed is ignored.
+     *
+     * @param message the stored message
+     * @throws IOException if the write buffer could not be flushed to a segment
+     */
+    public void add(StoredMessage message) throws IOException {
+        Map<String, SearchBuffer.PositionList> positions = new HashMap<>();
+        String content = message.message().content();
+        if (content != null) {
+            SearchQuery.tokenize(content, (term, position, start, end) -> {
+                if (term != null) {
+                    positions.computeIfAbsent(term, key -> new SearchBuffer.PositionList()).add(position);
+                }
+            });
+        }
+
+        synchronized (writeMonitor) {
+            lock.writeLock().lock();
+            try {
+                if (message.sequence() <= lastSequence) {
+                    return;
+                }
+                buffer.add(message.sequence(), message.threadId(), positions);
+                lastSequence = message.sequence();
+                changed = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (buffer.docCount() >= MAX_BUFFERED_MESSAGES) {
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Removes the messages of a thread from the results. They are purged
+     * when their segment is next rewritten.
+     *
+     * @param threadId the deleted thread
+     */
+    public void deleteThread(long threadId) {
+        synchronized (writeMonitor) {
+            lock.writeLock().lock();
+            try {
+                changed |= buffer.deleteThread(threadId);
+                for (SearchSegment segment : segments) {
+                    changed |= segment.deleteThread(threadId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Finds the most recent messages matching a query.
+     *
+     * <p>Segments are searched from the one holding the most recent message,
+     * and segments holding only messages older than every result found so
+     * far are skipped, so queries matching many messages stop early.</p>
+     *
+     * @param query the query
+     * @param limit the maximum number of messages to return
+     * @return the sequences of the matching messages, most recent first
+     */
+    public long[] search(SearchQuery query, int limit) {
+        if (query.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            List<Source> sources = new ArrayList<>(segments.size() + 1);
+            for (Source source : segments) {
+                if (source.docCount() > 0) {
+                    sources.add(source);
+                }
+            }
+            if (buffer.docCount() > 0) {
+                sources.add(buffer);
+            }
+            sources.sort(Comparator.comparingLong((Source source) -> source.sequence(source.docCount() - 1)).reversed());
+
+            PriorityQueue<Long> best = new PriorityQueue<>(limit + 1);
+            for (Source source : sources) {
+                if (best.size() == limit && source.sequence(source.docCount() - 1) < best.peek()) {
+                    continue;
+                }
+                BitSet matches = match(source, query.clauses());
+                for (int doc = matches.previousSetBit(source.docCount() - 1); doc >= 0;
+                        doc = matches.previousSetBit(doc - 1)) {
+                    long sequence = source.sequence(doc);
+                    if (best.size() == limit) {
+                        if (sequence < best.peek()) {
+                            break;
+                        }
+                        best.poll();
+                    }
+                    best.add(sequence);
+                }
+            }
+            long[] result = new long[best.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = best.poll();
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+            Metrics.HISTORY_SEARCH_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Returns the number of indexed messages, deleted ones excluded.
+     *
+     * @return the message count
+     */
+    public int getMessageCount() {
+        lock.readLock().lock();
+        try {
+            int count = buffer.liveDocs();
+            for (SearchSegment segment : segments) {
+                count += segment.liveDocs();
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of segment files.
+     *
+     * @return the segment count
+     */
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes every change durable: flushes the write buffer, merges segments
+     * if needed and writes a new commit. Does nothing if nothing changed.
+     *
+     * @throws IOException if writing fails; the previous commit stays valid
+     */
+    public void commit() throws IOException {
+        synchronized (writeMonitor) {
+            if (!changed) {
+                return;
+            }
+            flush();
+            mergeIfNeeded();
+            writeCommit();
+            changed = false;
+            for (SearchSegment segment : obsolete) {
+                try {
+                    Files.deleteIfExists(segment.file);
+                } catch (IOException exception) {
+                    // still mapped on some platforms; deleted when the index is next opened
+                }
+            }
+            obsolete.clear();
+        }
+    }
+
+    /**
+     * Commits pending changes.
+     *
+     * @throws IOException if the commit fails
+     */
+    @Override
+    public void close() throws IOException {
+        commit();
+    }
+
+    /**
+     * Collects the live messages of a source matching every clause. Phrases
+     * are matched last, so that only the positions of the messages matching
+     * every other clause are read.
+     */
+    private static BitSet match(Source source, List<SearchQuery.Clause> clauses) {
+        List<SearchQuery.Clause> ordered = new ArrayList<>(clauses);
+        ordered.sort(Comparator.comparing(SearchQuery.Clause::isPhrase));
+        BitSet result = null;
+        for (SearchQuery.Clause clause : ordered) {
+            BitSet docs = new BitSet(source.docCount());
+            if (clause.isPhrase()) {
+                matchPhrase(source, clause.terms(), result, source.deleted(), docs);
+            } else if (clause.prefix()) {
+                List<Postings> expansions = new ArrayList<>();
+                source.prefixPostings(clause.terms()[0], MAX_PREFIX_TERMS, expansions);
+                for (Postings postings : expansions) {
+                    collect(postings, docs);
+                }
+            } else {
+                Postings postings = source.postings(clause.terms()[0]);
+                if (postings != null) {
+                    collect(postings, docs);
+                }
+            }
+            if (result == null) {
+                result = docs;
+            } else {
+                result.and(docs);
+            }
+            if (result.isEmpty()) {
+                return result;
+            }
+        }
+        result.andNot(source.deleted());
+        return result;
+    }
+
+    private static void collect(Postings postings, BitSet docs) {
+        for (int doc = postings.nextDoc(); doc != Postings.NO_MORE_DOCS; doc = postings.nextDoc()) {
+            docs.set(doc);
+        }
+    }
+
+    /**
+     * Collects the messages containing the terms of a phrase one after the other,
+     * stepping through the postings of all terms together.
+     *
+     * @param candidates the messages worth checking, or null for all
+     * @param deleted    the messages not worth checking
+     */
+    private static void matchPhrase(Source source, String[] terms, BitSet candidates, BitSet deleted, BitSet docs) {
+        Postings[] postings = new Postings[terms.length];
+        int[] current = new int[terms.length];
+        Arrays.fill(current, -1);
+        for (int t = 0; t < terms.length; t++) {
+            postings[t] = source.postings(terms[t]);
+            if (postings[t] == null) {
+                return;
+            }
+        }
+        int[][] positions = new int[terms.length][8];
+
+        int doc = postings[0].nextDoc();
+        candidates:
+        while (doc != Postings.NO_MORE_DOCS) {
+            for (int t = 1; t < terms.length; t++) {
+                while (current[t] < doc) {
+                    current[t] = postings[t].nextDoc();
+                }
+                if (current[t] == Postings.NO_MORE_DOCS) {
+                    return;
+                }
+                if (current[t] > doc) {
+                    while (doc < current[t]) {
+                        doc = postings[0].nextDoc();
+                    }
+                    continue candidates;
+                }
+            }
+            if (candidates != null && !candidates.get(doc) || deleted.get(doc)) {
+                doc = postings[0].nextDoc();
+                continue;
+            }
+
+            int[] lengths = new int[terms.length];
+            for (int t = 0; t < terms.length; t++) {
+                int frequency = postings[t].frequency();
+                if (positions[t].length < frequency) {
+                    positions[t] = new int[frequency];
+                }
+                for (int i = 0; i < frequency; i++) {
+                    positions[t][i] = postings[t].nextPosition();
+                }
+                lengths[t] = frequency;
+            }
+            for (int i = 0; i < lengths[0]; i++) {
+                int first = positions[0][i];
+                boolean found = true;
+                for (int t = 1; t < terms.length && found; t++) {
+                    found = Arrays.binarySearch(positions[t], 0, lengths[t], first + t) >= 0;
+                }
+                if (found) {
+                    docs.set(doc);
+                    break;
+                }
+            }
+            doc = postings[0].nextDoc();
+        }
+    }
+
+    /**
+     * Writes the write buffer to a new segment and replaces it with an empty one.
+     * Called with the write monitor held.
+     */
+    private void flush() throws IOException {
+        if (buffer.docCount() == 0) {
+            return;
+        }
+        SearchSegment segment = null;
+        if (buffer.liveDocs() > 0) {
+            String name = newSegmentName();
+            Path file = directory.resolve(name + SEGMENT_SUFFIX);
+            try (SearchSegmentWriter writer = new SearchSegmentWriter(file)) {
+                buffer.writeTo(writer);
+                writer.finish();
+            }
+            segment = SearchSegment.open(name, file);
+        }
+        lock.writeLock().lock();
+        try {
+            if (segment != null) {
+                List<SearchSegment> updated = new ArrayList<>(segments);
+                updated.add(segment);
+                segments = List.copyOf(updated);
+            }
+            buffer = new SearchBuffer();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the smallest segments while there are too many, and rewrites
+     * segments that are mostly deleted. Called with the write monitor held.
+     */
+    private void mergeIfNeeded() throws IOException {
+        while (true) {
+            List<SearchSegment> candidates = new ArrayList<>();
+            for (SearchSegment segment : segments) {
+                if (segment.deletedCount * 2 > segment.docCount()) {
+                    candidates.add(segment);
+                }
+            }
+            if (segments.size() > MAX_SEGMENTS) {
+                List<SearchSegment> bySize = new ArrayList<>(segments);
+                bySize.removeAll(candidates);
+                bySize.sort(Comparator.comparingInt(SearchSegment::liveDocs));
+                candidates.addAll(bySize.subList(0, Math.min(bySize.size(), Math.max(0, MERGE_FACTOR - candidates.size()))));
+            }
+            if (candidates.isEmpty()) {
+                return;
+            }
+            merge(candidates);
+        }
+    }
+
+    /**
+     * Replaces segments with a single one holding their live messages.
+     */
+    private void merge(List<SearchSegment> sources) throws IOException {
+        int liveDocs = 0;
+        for (SearchSegment source : sources) {
+            liveDocs += source.liveDocs();
+        }
+        SearchSegment merged = null;
+        if (liveDocs > 0) {
+            String name = newSegmentName();
+            Path file = directory.resolve(name + SEGMENT_SUFFIX);
+            try (SearchSegmentWriter writer = new SearchSegmentWriter(file)) {
+                int[][] remap = mergeDocs(sources, writer);
+                mergeTerms(sources, remap, writer);
+                writer.finish();
+            }
+            merged = SearchSegment.open(name, file);
+        }
+
+        lock.writeLock().lock();
+        try {
+            List<SearchSegment> updated = new ArrayList<>(segments);
+            updated.removeAll(sources);
+            if (merged != null) {
+                updated.add(merged);
+            }
+            segments = List.copyOf(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        obsolete.addAll(sources);
+        changed = true;
+    }
+
+    /**
+     * Writes the live messages of the sources in sequence order.
+     *
+     * @return for each source, the new number of each message, -1 for deleted messages
+     */
+    private static int[][] mergeDocs(List<SearchSegment> sources, SearchSegmentWriter writer) throws IOException {
+        int[][] remap = new int[sources.size()][];
+        int[] positions = new int[sources.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Comparator.comparingLong(
+            (Integer s) -> sources.get(s).sequence(positions[s])));
+        for (int s = 0; s < sources.size(); s++) {
+            remap[s] = new int[sources.get(s).docCount()];
+            Arrays.fill(remap[s], -1);
+            if (sources.get(s).docCount() > 0) {
+                heads.add(s);
+            }
+        }
+        while (!heads.isEmpty()) {
+            int s = heads.poll();
+            SearchSegment source = sources.get(s);
+            int doc = positions[s];
+            if (!source.deleted.get(doc)) {
+                remap[s][doc] = writer.docCount();
+                writer.addDoc(source.sequence(doc), source.threadId(doc));
+            }
+            if (++positions[s] < source.docCount()) {
+                heads.add(s);
+            }
+        }
+        return remap;
+    }
+
+    /**
+     * Writes the union of the terms of the sources in term order, with their
+     * live postings renumbered.
+     */
+    private static void mergeTerms(List<SearchSegment> sources, int[][] remap, SearchSegmentWriter writer) throws IOException {
+        int[] positions = new int[sources.size()];
+        byte[][] heads = new byte[sources.size()][];
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Comparator.comparing(
+            (Integer s) -> heads[s], Arrays::compareUnsigned));
+        for (int s = 0; s < sources.size(); s++) {
+            if (sources.get(s).termCount() > 0) {
+                heads[s] = sources.get(s).termAt(0);
+                queue.add(s);
+            }
+        }
+
+        long[] packed = new long[64];
+        int[] data = new int[256];
+        while (!queue.isEmpty()) {
+            byte[] term = heads[queue.peek()];
+            int count = 0;
+            int size = 0;
+            while (!queue.isEmpty() && Arrays.equals(heads[queue.peek()], term)) {
+                int s = queue.poll();
+                int[] map = remap[s];
+                Postings postings = sources.get(s).postings(positions[s]);
+                for (int doc = postings.nextDoc(); doc != Postings.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                    if (map[doc] < 0) {
+                        continue;
+                    }
+                    int frequency = postings.frequency();
+                    if (size + 1 + frequency > data.length) {
+                        data = Arrays.copyOf(data, Math.max(data.length * 2, size + 1 + frequency));
+                    }
+                    if (count == packed.length) {
+                        packed = Arrays.copyOf(packed, count * 2);
+                    }
+                    packed[count++] = (long) map[doc] << 32 | size;
+                    data[size++] = frequency;
+                    for (int i = 0; i < frequency; i++) {
+                        data[size++] = postings.nextPosition();
+                    }
+                }
+                if (++positions[s] < sources.get(s).termCount()) {
+                    heads[s] = sources.get(s).termAt(positions[s]);
+                    queue.add(s);
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+            Arrays.sort(packed, 0, count);
+            writer.startTerm(term);
+            for (int i = 0; i < count; i++) {
+                int offset = (int) packed[i];
+                writer.addPosting((int) (packed[i] >>> 32), data, offset + 1, data[offset]);
+            }
+            writer.endTerm();
+        }
+    }
+
+    private String newSegmentName() {
+        return "segment-" + nextSegment++;
+    }
+
+    /**
+     * Writes the segment list and the deletions to a temporary file, then
+     * atomically replaces the commit file. Called with the write monitor held.
+     */
+    private void writeCommit() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(COMMIT_MAGIC);
+        data.writeInt(COMMIT_VERSION);
+        data.writeLong(generation + 1);
+        data.writeInt(nextSegment);
+        data.writeLong(lastSequence);
+        data.writeInt(segments.size());
+        for (SearchSegment segment : segments) {
+            data.writeUTF(segment.name);
+            data.writeInt(segment.docCount());
+            long[] words = segment.deleted.toLongArray();
+            data.writeInt(words.length);
+            for (long word : words) {
+                data.writeLong(word);
+            }
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes.toByteArray());
+        data.writeLong(checksum.getValue());
+
+        Path temporary = directory.resolve(COMMIT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer content = ByteBuffer.wrap(bytes.toByteArray());
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        Path target = directory.resolve(COMMIT_FILE);
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException unsupported) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        generation++;
+    }
+
+    /**
+     * Loads the segments and deletions of the last commit.
+     */
+    private void readCommit() throws IOException {
+        byte[] bytes = Files.readAllBytes(directory.resolve(COMMIT_FILE));
+        if (bytes.length < Long.BYTES) {
+            throw new IOException("Corrupt search index commit");
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, bytes.length - Long.BYTES);
+        if (ByteBuffer.wrap(bytes, bytes.length - Long.BYTES, Long.BYTES).getLong() != checksum.getValue()) {
+            throw new IOException("Corrupt search index commit");
+        }
+
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - Long.BYTES));
+        if (data.readInt() != COMMIT_MAGIC || data.readInt() != COMMIT_VERSION) {
+            throw new IOException("Unsupported search index commit");
+        }
+        long committedGeneration = data.readLong();
+        int committedNextSegment = data.readInt();
+        long committedSequence = data.readLong();
+        int count = data.readInt();
+        List<SearchSegment> loaded = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = data.readUTF();
+            int docCount = data.readInt();
+            SearchSegment segment = SearchSegment.open(name, directory.resolve(name + SEGMENT_SUFFIX));
+            int wordCount = data.readInt();
+            if (segment.docCount() != docCount || wordCount < 0 || wordCount > (docCount + 63) / 64) {
+                throw new IOException("Search segment does not match the commit: " + name);
+            }
+            long[] words = new long[wordCount];
+            for (int w = 0; w < words.length; w++) {
+                words[w] = data.readLong();
+            }
+            segment.delete(BitSet.valueOf(words));
+            loaded.add(segment);
+        }
+        segments = List.copyOf(loaded);
+        nextSegment = committedNextSegment;
+        generation = committedGeneration;
+        lastSequence = committedSequence;
+    }
+
+    /**
+     * Deletes the files left by an interrupted flush, merge or commit.
+     */
+    private void deleteUnreferencedFiles() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        referenced.add(COMMIT_FILE);
+        for (SearchSegment segment : segments) {
+            referenced.add(segment.name + SEGMENT_SUFFIX);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (!referenced.contains(file.getFileName().toString())) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException exception) {
+                        // retried when the index is next opened
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.deepseek.plugin.history;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A parsed search over the conversation history.
+ *
+ * <p>A query is a list of clauses that must all match a message:</p>
+ * <ul>
+ * <li>a word, such as {@code tycho}, matches messages containing it;</li>
+ * <li>a word ending with {@code *}, such as {@code tyc*}, matches messages
+ *     containing any word starting with it;</li>
+ * <li>quoted words, such as {@code "tycho build"}, match messages containing
+ *     these words one after the other. A word joining several terms, such as
+ *     {@code maven-tycho}, is a phrase too.</li>
+ * </ul>
+ *
+ * <p>Messages and queries are split into terms by the same rules: every run
+ * of letters and digits is a term, lower-cased. Terms are numbered by their
+ * position in the message, which is what phrases are matched against.
+ * Terms longer than {@link #MAX_TERM_LENGTH} still take a position but are
+ * not indexed, so they never match.</p>
+ */
+public final class SearchQuery {
+
+    /** The longest term indexed. */
+    public static final int MAX_TERM_LENGTH = 64;
+
+    /** The maximum number of clauses considered; further clauses are ignored. */
+    public static final int MAX_CLAUSES = 16;
+
+    /**
+     * Receives the terms of a text.
+     */
+    @FunctionalInterface
+    public interface TermConsumer {
+
+        /**
+         * Accepts a term.
+         *
+         * @param term     the lower-cased term, or null if it is too long to be indexed
+         * @param position the number of the term in the text, starting at 0
+         * @param start    the offset of its first character in the text
+         * @param end      the offset after its last character
+         */
+        void accept(String term, int position, int start, int end);
+    }
+
+    /**
+     * A condition on the terms of a message.
+     *
+     * @param terms  the terms that must follow each other, at least one
+     * @param prefix whether the single term is a prefix of the matching terms
+     */
+    record Clause(String[] terms, boolean prefix) {
+
+        boolean isPhrase() {
+            return terms.length > 1;
+        }
+    }
+
+    private final String text;
+    private final List<Clause> clauses;
+
+    private SearchQuery(String text, List<Clause> clauses) {
+        this.text = text;
+        this.clauses = clauses;
+    }
+
+    /**
+     * Parses a query.
+     *
+     * @param text the query as typed
+     * @return the query, empty if the text holds no term
+     */
+    public static SearchQuery parse(String text) {
+        List<Clause> clauses = new ArrayList<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length && clauses.size() < MAX_CLAUSES) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = length;
+                }
+                addClause(clauses, text.substring(i + 1, end), false);
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < length && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != '"') {
+                    end++;
+                }
+                String word = text.substring(i, end);
+                boolean prefix = word.endsWith("*");
+                addClause(clauses, prefix ? word.substring(0, word.length() - 1) : word, prefix);
+                i = end;
+            }
+        }
+        return new SearchQuery(text, List.copyOf(clauses));
+    }
+
+    private static void addClause(List<Clause> clauses, String words, boolean prefix) {
+        List<String> terms = new ArrayList<>();
+        tokenize(words, (term, position, start, end) -> terms.add(term));
+        if (terms.isEmpty() || terms.contains(null)) {
+            return;
+        }
+        clauses.add(new Clause(terms.toArray(String[]::new), prefix && terms.size() == 1));
+    }
+
+    /**
+     * Delivers the terms of a text to a consumer, in order of appearance.
+     *
+     * @param text     the text to split
+     * @param consumer receives each term with its position and offsets
+     */
+    public static void tokenize(CharSequence text, TermConsumer consumer) {
+        int length = text.length();
+        int position = 0;
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                String term = i - start <= MAX_TERM_LENGTH
+                    ? text.subSequence(start, i).toString().toLowerCase(Locale.ROOT)
+                    : null;
+                consumer.accept(term, position++, start, i);
+            }
+        }
+    }
+
+    /**
+     * Returns the query as typed.
+     *
+     * @return the query text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Checks if the query has no clause, in which case it matches nothing.
+     *
+     * @return true if the query is empty
+     */
+    public boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    List<Clause> clauses() {
+        return clauses;
+    }
+
+    /**
+     * Finds the terms of a text that match a clause of this query, such as
+     * the text of a message it found.
+     *
+     * @param text the text
+     * @return the offset and length of each matching term, in pairs and in order
+     */
+    public int[] highlights(String text) {
+        List<String> terms = new ArrayList<>();
+        List<int[]> spans = new ArrayList<>();
+        tokenize(text, (term, position, start, end) -> {
+            terms.add(term);
+            spans.add(new int[] {start, end});
+        });
+
+        boolean[] matched = new boolean[terms.size()];
+        for (Clause clause : clauses) {
+            String[] words = clause.terms();
+            for (int t = 0; t + words.length <= terms.size(); t++) {
+                if (matches(clause, terms, t)) {
+                    Arrays.fill(matched, t, t + words.length, true);
+                }
+            }
+        }
+
+        int[] ranges = new int[terms.size() * 2];
+        int count = 0;
+        for (int t = 0; t < matched.length; t++) {
+            if (matched[t]) {
+                int[] span = spans.get(t);
+                ranges[count++] = span[0];
+                ranges[count++] = span[1] - span[0];
+            }
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+
+    private static boolean matches(Clause clause, List<String> terms, int from) {
+        String[] words = clause.terms();
+        if (clause.prefix()) {
+            String term = terms.get(from);
+            return term != null && term.startsWith(words[0]);
+        }
+        for (int w = 0; w < words.length; w++) {
+            if (!words[w].equals(terms.get(from + w))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,300 @@
+package com.deepseek.plugin.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An immutable, memory-mapped segment of the {@link SearchIndex}.
+ *
+ * <p>A segment file is written once by {@link SearchSegmentWriter} and only
+ * read afterwards, through a read-only mapping, so the postings of the
+ * history live in the page cache rather than on the Java heap. It holds,
+ * after a fixed header:</p>
+ * <ul>
+ * <li>the message table, in ascending sequence order: sequence and thread id of each message;</li>
+ * <li>the term table, sorted by term: term, postings offset and document frequency;</li>
+ * <li>the UTF-8 bytes of the terms;</li>
+ * <li>the postings: for each term and each message containing it, in ascending
+ *     message order, the varint-encoded message delta, term frequency and byte
+ *     length of the positions, followed by the positions as varint deltas.</li>
+ * </ul>
+ *
+ * <p>The byte length lets a search skip the positions of the messages it only
+ * needs to find. Terms are compared as unsigned UTF-8 bytes. Deletions are
+ * not part of the file: the owning index tracks them in {@link #deleted}
+ * and persists them in its commit file.</p>
+ */
+final class SearchSegment implements SearchIndex.Source {
+
+    static final int MAGIC = 0x44534853;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int DOC_BYTES = 16;
+    static final int TERM_BYTES = 16;
+
+    final String name;
+    final Path file;
+
+    private final ByteBuffer buffer;
+    private final int docCount;
+    private final int termCount;
+    private final int docs;
+    private final int terms;
+    private final int termBytes;
+    private final int postings;
+
+    /** Messages deleted since the segment was written; guarded by the index lock. */
+    final BitSet deleted;
+    int deletedCount;
+
+    private SearchSegment(String name, Path file, ByteBuffer buffer) throws IOException {
+        this.name = name;
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a search segment: " + file);
+        }
+        docCount = buffer.getInt(8);
+        termCount = buffer.getInt(12);
+        docs = buffer.getInt(16);
+        terms = buffer.getInt(20);
+        termBytes = buffer.getInt(24);
+        postings = buffer.getInt(28);
+        if (docs != HEADER_BYTES || docCount < 0 || termCount < 0
+                || docs + (long) docCount * DOC_BYTES > terms
+                || terms + (long) termCount * TERM_BYTES > termBytes || termBytes > postings
+                || postings > buffer.capacity()) {
+            throw new IOException("Corrupt search segment: " + file);
+        }
+        deleted = new BitSet(docCount);
+    }
+
+    /**
+     * Maps a segment file.
+     *
+     * @param name the segment name, recorded in commits
+     * @param file the segment file
+     * @return the segment
+     * @throws IOException if the file cannot be mapped or is not a segment
+     */
+    static SearchSegment open(String name, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new SearchSegment(name, file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    @Override
+    public int docCount() {
+        return docCount;
+    }
+
+    @Override
+    public BitSet deleted() {
+        return deleted;
+    }
+
+    int termCount() {
+        return termCount;
+    }
+
+    int liveDocs() {
+        return docCount - deletedCount;
+    }
+
+    @Override
+    public long sequence(int doc) {
+        return buffer.getLong(docs + doc * DOC_BYTES);
+    }
+
+    long threadId(int doc) {
+        return buffer.getLong(docs + doc * DOC_BYTES + 8);
+    }
+
+    /**
+     * Marks the messages of a thread as deleted.
+     *
+     * @param threadId the thread
+     * @return true if a message was deleted
+     */
+    boolean deleteThread(long threadId) {
+        boolean changed = false;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (threadId(doc) == threadId && !deleted.get(doc)) {
+                deleted.set(doc);
+                deletedCount++;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Marks messages as deleted, as recorded in a commit.
+     *
+     * @param docs the deleted messages
+     */
+    void delete(BitSet docs) {
+        deleted.or(docs);
+        deletedCount = deleted.cardinality();
+    }
+
+    @Override
+    public SearchIndex.Postings postings(String term) {
+        int index = findTerm(term.getBytes(StandardCharsets.UTF_8));
+        return index >= 0 ? postings(index) : null;
+    }
+
+    @Override
+    public void prefixPostings(String prefix, int limit, List<SearchIndex.Postings> target) {
+        byte[] bytes = prefix.getBytes(StandardCharsets.UTF_8);
+        int count = 0;
+        for (int index = lowerBoundTerm(bytes); index < termCount && termStartsWith(index, bytes)
+                && count < limit; index++, count++) {
+            target.add(postings(index));
+        }
+    }
+
+    /**
+     * Returns a cursor over the postings of a term, deleted messages included.
+     *
+     * @param index the term number
+     * @return the postings
+     */
+    SearchIndex.Postings postings(int index) {
+        int entry = terms + index * TERM_BYTES;
+        return new Cursor(postings + buffer.getInt(entry + 8), buffer.getInt(entry + 12));
+    }
+
+    byte[] termAt(int index) {
+        int entry = terms + index * TERM_BYTES;
+        byte[] bytes = new byte[buffer.getInt(entry + 4)];
+        buffer.get(termBytes + buffer.getInt(entry), bytes);
+        return bytes;
+    }
+
+    /**
+     * Finds a term.
+     *
+     * @param term the UTF-8 term
+     * @return the term number, or -1 if no message of the segment contains the term
+     */
+    int findTerm(byte[] term) {
+        int index = lowerBoundTerm(term);
+        return index < termCount && compareTerm(index, term) == 0 ? index : -1;
+    }
+
+    /**
+     * Returns the first term that is not less than the given bytes.
+     */
+    private int lowerBoundTerm(byte[] term) {
+        int low = 0;
+        int high = termCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareTerm(middle, term) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private boolean termStartsWith(int index, byte[] prefix) {
+        int entry = terms + index * TERM_BYTES;
+        if (buffer.getInt(entry + 4) < prefix.length) {
+            return false;
+        }
+        int offset = termBytes + buffer.getInt(entry);
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(offset + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int compareTerm(int index, byte[] key) {
+        int entry = terms + index * TERM_BYTES;
+        int offset = termBytes + buffer.getInt(entry);
+        int length = buffer.getInt(entry + 4);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Decodes the postings of one term straight from the mapping.
+     */
+    private final class Cursor implements SearchIndex.Postings {
+        private int next;
+        private int remaining;
+        private int doc = -1;
+        private int frequency;
+        private int positionsAt;
+        private int position;
+
+        Cursor(int offset, int count) {
+            this.next = offset;
+            this.remaining = count;
+        }
+
+        @Override
+        public int nextDoc() {
+            if (remaining == 0) {
+                doc = NO_MORE_DOCS;
+                return doc;
+            }
+            remaining--;
+            doc = (doc < 0 ? 0 : doc) + readVarint();
+            frequency = readVarint();
+            int length = readVarint();
+            positionsAt = next;
+            next += length;
+            position = 0;
+            return doc;
+        }
+
+        @Override
+        public int frequency() {
+            return frequency;
+        }
+
+        @Override
+        public int nextPosition() {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(positionsAt++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            position += delta;
+            return position;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(next++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
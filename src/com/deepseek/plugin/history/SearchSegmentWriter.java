@@ -0,0 +1,224 @@
+package com.deepseek.plugin.history;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a {@link SearchSegment} file in a single pass with constant memory.
+ *
+ * <p>Messages must be added in sequence order, then terms in term order,
+ * compared as unsigned UTF-8 bytes, each with its postings in message order.
+ * Each section is streamed to its own temporary file; {@link #finish()}
+ * concatenates them behind the header and forces the result to disk, so a
+ * segment is either complete and durable or never referenced by a commit.</p>
+ */
+final class SearchSegmentWriter implements Closeable {
+
+    private static final int SECTIONS = 4;
+    private static final int DOCS = 0;
+    private static final int TERMS = 1;
+    private static final int TERM_BYTES = 2;
+    private static final int POSTINGS = 3;
+
+    private final Path file;
+    private final Path[] sectionFiles = new Path[SECTIONS];
+    private final DataOutputStream[] sections = new DataOutputStream[SECTIONS];
+
+    private int docCount;
+    private int termCount;
+    private int termDocs;
+    private int previousDoc;
+    private byte[] positions = new byte[64];
+    private boolean finished;
+
+    /**
+     * Starts a segment.
+     *
+     * @param file the segment file to create
+     * @throws IOException if the temporary files cannot be created
+     */
+    SearchSegmentWriter(Path file) throws IOException {
+        this.file = file;
+        try {
+            for (int i = 0; i < SECTIONS; i++) {
+                sectionFiles[i] = file.resolveSibling(file.getFileName() + "." + i + ".tmp");
+                sections[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(sectionFiles[i]), 1 << 16));
+            }
+        } catch (IOException exception) {
+            close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Adds a message, which gets the next message number.
+     *
+     * @param sequence the store sequence of the message, greater than the previous one
+     * @param threadId the thread of the message
+     * @throws IOException if writing fails
+     */
+    void addDoc(long sequence, long threadId) throws IOException {
+        sections[DOCS].writeLong(sequence);
+        sections[DOCS].writeLong(threadId);
+        docCount++;
+    }
+
+    /**
+     * Starts the postings of a term.
+     *
+     * @param term the UTF-8 term, greater than the previous one
+     * @throws IOException if writing fails
+     */
+    void startTerm(byte[] term) throws IOException {
+        DataOutputStream terms = sections[TERMS];
+        terms.writeInt(sections[TERM_BYTES].size());
+        terms.writeInt(term.length);
+        terms.writeInt(sections[POSTINGS].size());
+        sections[TERM_BYTES].write(term);
+        termDocs = 0;
+        previousDoc = 0;
+    }
+
+    /**
+     * Adds a message containing the current term.
+     *
+     * @param doc       the message number, greater than the previous one of the term
+     * @param data      the array holding the positions
+     * @param offset    the index of the first position in {@code data}
+     * @param frequency the number of positions, at least 1
+     * @throws IOException if writing fails
+     */
+    void addPosting(int doc, int[] data, int offset, int frequency) throws IOException {
+        int length = 0;
+        int previous = 0;
+        for (int i = 0; i < frequency; i++) {
+            if (positions.length - length < 5) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            int value = data[offset + i] - previous;
+            previous = data[offset + i];
+            while ((value & ~0x7F) != 0) {
+                positions[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            positions[length++] = (byte) value;
+        }
+
+        DataOutputStream postings = sections[POSTINGS];
+        writeVarint(postings, doc - previousDoc);
+        writeVarint(postings, frequency);
+        writeVarint(postings, length);
+        postings.write(positions, 0, length);
+        previousDoc = doc;
+        termDocs++;
+    }
+
+    /**
+     * Ends the postings of the current term.
+     *
+     * @throws IOException if writing fails
+     */
+    void endTerm() throws IOException {
+        sections[TERMS].writeInt(termDocs);
+        termCount++;
+    }
+
+    /**
+     * Returns the number of messages added so far.
+     *
+     * @return the message count
+     */
+    int docCount() {
+        return docCount;
+    }
+
+    /**
+     * Assembles the segment file and forces it to disk.
+     *
+     * @throws IOException if writing fails or the segment would exceed 2 GB
+     */
+    void finish() throws IOException {
+        long[] sizes = new long[SECTIONS];
+        for (int i = 0; i < SECTIONS; i++) {
+            sections[i].close();
+            sizes[i] = Files.size(sectionFiles[i]);
+        }
+        int[] offsets = new int[SECTIONS];
+        long offset = SearchSegment.HEADER_BYTES;
+        for (int i = 0; i < SECTIONS; i++) {
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("Search segment too large: " + file);
+            }
+            offsets[i] = (int) offset;
+            offset += sizes[i];
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(SearchSegment.HEADER_BYTES);
+        header.putInt(SearchSegment.MAGIC).putInt(SearchSegment.VERSION)
+            .putInt(docCount).putInt(termCount);
+        for (int i = 0; i < SECTIONS; i++) {
+            header.putInt(offsets[i]);
+        }
+        header.rewind();
+
+        try (FileChannel out = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            for (int i = 0; i < SECTIONS; i++) {
+                try (FileChannel in = FileChannel.open(sectionFiles[i], StandardOpenOption.READ)) {
+                    long position = 0;
+                    while (position < sizes[i]) {
+                        position += in.transferTo(position, sizes[i] - position, out);
+                    }
+                }
+            }
+            out.force(true);
+        }
+        finished = true;
+        close();
+    }
+
+    /**
+     * Deletes the temporary files, and the segment file if it was not finished.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < SECTIONS; i++) {
+            try {
+                if (sections[i] != null) {
+                    sections[i].close();
+                }
+                if (sectionFiles[i] != null) {
+                    Files.deleteIfExists(sectionFiles[i]);
+                }
+            } catch (IOException exception) {
+                // leftovers are removed when the index is next opened
+            }
+        }
+        if (!finished) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException exception) {
+                // removed when the index is next opened
+            }
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,14 @@
+package com.deepseek.plugin.history;
+
+import com.deepseek.plugin.api.ChatMessage;
+
+/**
+ * A chat message as persisted in the {@link ConversationStore}.
+ *
+ * @param sequence  the store-wide sequence number, increasing in append order
+ * @param threadId  the conversation thread the message belongs to
+ * @param timestamp the time the message was stored, in epoch milliseconds
+ * @param message   the message itself
+ */
+public record StoredMessage(long sequence, long threadId, long timestamp, ChatMessage message) {
+}
@@ -0,0 +1,337 @@
+package com.deepseek.plugin.markdown;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The languages whose fenced code blocks are highlighted, with a small
+ * line-by-line tokenizer for each.
+ *
+ * <p>Tokenizing is resumable: each line is tokenized from the state the
+ * previous line ended in, such as an open block comment, and returns the
+ * state it ends in, so a block can be tokenized one line at a time as it
+ * streams in.</p>
+ */
+enum CodeLanguage {
+
+    /** Java and the languages sharing its lexical structure. */
+    C_LIKE(Set.of(
+        "abstract", "as", "assert", "async", "await", "boolean", "break", "byte", "case", "catch", "char",
+        "class", "const", "continue", "def", "default", "delete", "do", "double", "else", "enum", "export",
+        "extends", "false", "final", "finally", "float", "fn", "for", "from", "fun", "func", "function",
+        "go", "goto", "if", "impl", "implements", "import", "in", "instanceof", "int", "interface", "is",
+        "let", "long", "match", "module", "mut", "namespace", "native", "new", "null", "nil", "object",
+        "override", "package", "permits", "private", "protected", "pub", "public", "record", "return",
+        "sealed", "short", "static", "strictfp", "struct", "super", "switch", "synchronized", "this",
+        "throw", "throws", "trait", "transient", "true", "try", "type", "typeof", "undefined", "use",
+        "val", "var", "void", "volatile", "when", "where", "while", "yield")),
+
+    /** Python. */
+    PYTHON(Set.of(
+        "False", "None", "True", "and", "as", "assert", "async", "await", "break", "class", "continue",
+        "def", "del", "elif", "else", "except", "finally", "for", "from", "global", "if", "import", "in",
+        "is", "lambda", "nonlocal", "not", "or", "pass", "raise", "return", "self", "try", "while",
+        "with", "yield")),
+
+    /** POSIX shells and shell sessions. */
+    SHELL(Set.of(
+        "break", "case", "continue", "do", "done", "elif", "else", "esac", "exit", "export", "fi", "for",
+        "function", "if", "in", "local", "readonly", "return", "select", "shift", "then", "unset", "until",
+        "while")),
+
+    /** SQL, whose keywords are case-insensitive. */
+    SQL(Set.of(
+        "add", "all", "alter", "and", "as", "asc", "begin", "between", "by", "case", "commit", "create",
+        "delete", "desc", "distinct", "drop", "else", "end", "exists", "foreign", "from", "group", "having",
+        "in", "index", "inner", "insert", "into", "is", "join", "key", "left", "like", "limit", "not", "null",
+        "on", "or", "order", "outer", "primary", "references", "right", "rollback", "select", "set", "table",
+        "then", "union", "update", "values", "view", "when", "where", "with")),
+
+    /** JSON. */
+    JSON(Set.of("false", "null", "true")),
+
+    /** XML, HTML and other markup. */
+    XML(Set.of()),
+
+    /** Any other language, shown without highlighting. */
+    PLAIN(Set.of());
+
+    /** The state between tokens. */
+    static final int NORMAL = 0;
+
+    /** Inside a block comment. */
+    static final int BLOCK_COMMENT = 1;
+
+    /** Inside a string delimited by three double quotes. */
+    static final int TRIPLE_DOUBLE = 2;
+
+    /** Inside a string delimited by three single quotes. */
+    static final int TRIPLE_SINGLE = 3;
+
+    /** Inside a markup tag, among its attributes. */
+    static final int IN_TAG = 4;
+
+    private final Set<String> keywords;
+
+    CodeLanguage(Set<String> keywords) {
+        this.keywords = keywords;
+    }
+
+    /**
+     * Returns the language named by the info string of a code fence.
+     *
+     * @param info the text after the opening fence, such as {@code java} or {@code bash}
+     * @return the language, {@link #PLAIN} if it is unknown
+     */
+    static CodeLanguage of(String info) {
+        int end = 0;
+        while (end < info.length() && !Character.isWhitespace(info.charAt(end)) && info.charAt(end) != '{') {
+            end++;
+        }
+        return switch (info.substring(0, end).toLowerCase(Locale.ROOT)) {
+            case "java", "kotlin", "kt", "scala", "groovy", "gradle", "c", "h", "cpp", "c++", "cc", "hpp",
+                 "cs", "csharp", "c#", "js", "javascript", "jsx", "ts", "typescript", "tsx", "go", "golang",
+                 "rust", "rs", "swift", "dart", "php" -> C_LIKE;
+            case "python", "py", "python3" -> PYTHON;
+            case "sh", "bash", "zsh", "shell", "console", "shellsession", "ksh" -> SHELL;
+            case "sql", "mysql", "postgresql", "psql", "plsql" -> SQL;
+            case "json", "jsonc", "json5" -> JSON;
+            case "xml", "html", "xhtml", "htm", "svg", "pom", "xsd", "xsl", "fxml", "vue" -> XML;
+            default -> PLAIN;
+        };
+    }
+
+    /**
+     * Tokenizes one line of code.
+     *
+     * @param text  the text holding the line
+     * @param start the offset of the line
+     * @param end   the offset of its end, excluding the line break
+     * @param state the state the previous line ended in
+     * @param sink  receives the tokens
+     * @return the state this line ends in
+     */
+    int tokenizeLine(String text, int start, int end, int state, SpanSink sink) {
+        if (this == PLAIN) {
+            return NORMAL;
+        }
+        return this == XML ? tokenizeMarkup(text, start, end, state, sink) : tokenizeCode(text, start, end, state, sink);
+    }
+
+    private int tokenizeCode(String text, int start, int end, int state, SpanSink sink) {
+        int i = start;
+        if (state == BLOCK_COMMENT) {
+            int close = indexOf(text, "*/", i, end);
+            if (close < 0) {
+                sink.span(i, end, StyleKind.COMMENT);
+                return BLOCK_COMMENT;
+            }
+            sink.span(i, close + 2, StyleKind.COMMENT);
+            i = close + 2;
+        } else if (state == TRIPLE_DOUBLE || state == TRIPLE_SINGLE) {
+            int close = indexOf(text, state == TRIPLE_DOUBLE ? "\"\"\"" : "'''", i, end);
+            if (close < 0) {
+                sink.span(i, end, StyleKind.STRING);
+                return state;
+            }
+            sink.span(i, close + 3, StyleKind.STRING);
+            i = close + 3;
+        }
+
+        while (i < end) {
+            char c = text.charAt(i);
+            if (startsLineComment(text, i, start, end)) {
+                sink.span(i, end, StyleKind.COMMENT);
+                return NORMAL;
+            }
+            if ((this == C_LIKE || this == SQL) && text.startsWith("/*", i) && i + 1 < end) {
+                int close = indexOf(text, "*/", i + 2, end);
+                if (close < 0) {
+                    sink.span(i, end, StyleKind.COMMENT);
+                    return BLOCK_COMMENT;
+                }
+                sink.span(i, close + 2, StyleKind.COMMENT);
+                i = close + 2;
+            } else if (c == '"' || c == '\'' || (c == '`' && this == C_LIKE)) {
+                int triple = (this == PYTHON || (this == C_LIKE && c == '"')) && i + 2 < end
+                    && text.charAt(i + 1) == c && text.charAt(i + 2) == c ? (c == '"' ? TRIPLE_DOUBLE : TRIPLE_SINGLE) : NORMAL;
+                if (triple != NORMAL) {
+                    int close = indexOf(text, c == '"' ? "\"\"\"" : "'''", i + 3, end);
+                    if (close < 0) {
+                        sink.span(i, end, StyleKind.STRING);
+                        return triple;
+                    }
+                    sink.span(i, close + 3, StyleKind.STRING);
+                    i = close + 3;
+                } else {
+                    int close = stringEnd(text, i + 1, end, c);
+                    sink.span(i, close, StyleKind.STRING);
+                    i = close;
+                }
+            } else if (this == SHELL && c == '$' && i + 1 < end) {
+                int close = variableEnd(text, i + 1, end);
+                if (close > i + 1) {
+                    sink.span(i, close, StyleKind.VARIABLE);
+                }
+                i = Math.max(close, i + 1);
+            } else if ((this == C_LIKE || this == PYTHON) && c == '@' && i + 1 < end
+                    && Character.isJavaIdentifierStart(text.charAt(i + 1))) {
+                int close = identifierEnd(text, i + 1, end);
+                sink.span(i, close, StyleKind.ANNOTATION);
+                i = close;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < end && Character.isDigit(text.charAt(i + 1)))) {
+                int close = i + 1;
+                while (close < end && (Character.isLetterOrDigit(text.charAt(close)) || text.charAt(close) == '_'
+                        || text.charAt(close) == '.')) {
+                    close++;
+                }
+                sink.span(i, close, StyleKind.NUMBER);
+                i = close;
+            } else if (Character.isJavaIdentifierStart(c) && c != '$') {
+                int close = identifierEnd(text, i + 1, end);
+                String word = text.substring(i, close);
+                if (keywords.contains(this == SQL ? word.toLowerCase(Locale.ROOT) : word)) {
+                    sink.span(i, close, StyleKind.KEYWORD);
+                }
+                i = close;
+            } else {
+                i++;
+            }
+        }
+        return NORMAL;
+    }
+
+    private int tokenizeMarkup(String text, int start, int end, int state, SpanSink sink) {
+        int i = start;
+        if (state == BLOCK_COMMENT) {
+            int close = indexOf(text, "-->", i, end);
+            if (close < 0) {
+                sink.span(i, end, StyleKind.COMMENT);
+                return BLOCK_COMMENT;
+            }
+            sink.span(i, close + 3, StyleKind.COMMENT);
+            i = close + 3;
+            state = NORMAL;
+        }
+
+        while (i < end) {
+            char c = text.charAt(i);
+            if (state == IN_TAG) {
+                if (c == '>' || (c == '/' || c == '?') && i + 1 < end && text.charAt(i + 1) == '>') {
+                    int close = c == '>' ? i + 1 : i + 2;
+                    sink.span(i, close, StyleKind.TAG);
+                    i = close;
+                    state = NORMAL;
+                } else if (c == '"' || c == '\'') {
+                    int close = text.indexOf(c, i + 1);
+                    close = close < 0 || close >= end ? end : close + 1;
+                    sink.span(i, close, StyleKind.STRING);
+                    i = close;
+                } else if (isNameChar(c)) {
+                    int close = i + 1;
+                    while (close < end && isNameChar(text.charAt(close))) {
+                        close++;
+                    }
+                    sink.span(i, close, StyleKind.ATTRIBUTE);
+                    i = close;
+                } else {
+                    i++;
+                }
+            } else if (text.startsWith("<!--", i) && i + 3 < end) {
+                int close = indexOf(text, "-->", i + 4, end);
+                if (close < 0) {
+                    sink.span(i, end, StyleKind.COMMENT);
+                    return BLOCK_COMMENT;
+                }
+                sink.span(i, close + 3, StyleKind.COMMENT);
+                i = close + 3;
+            } else if (c == '<' && i + 1 < end && (Character.isLetter(text.charAt(i + 1))
+                    || "/?!".indexOf(text.charAt(i + 1)) >= 0)) {
+                int close = i + 2;
+                while (close < end && isNameChar(text.charAt(close))) {
+                    close++;
+                }
+                sink.span(i, close, StyleKind.TAG);
+                i = close;
+                state = IN_TAG;
+            } else {
+                i++;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Checks whether a line comment starts at an offset.
+     */
+    private boolean startsLineComment(String text, int i, int lineStart, int end) {
+        return switch (this) {
+            case C_LIKE -> text.startsWith("//", i) && i + 1 < end;
+            case SQL -> text.startsWith("--", i) && i + 1 < end;
+            case PYTHON -> text.charAt(i) == '#';
+            case SHELL -> text.charAt(i) == '#' && (i == lineStart || Character.isWhitespace(text.charAt(i - 1)));
+            default -> false;
+        };
+    }
+
+    /**
+     * Returns the end of a string literal, after its closing quote, or the
+     * end of the line if it is not closed.
+     */
+    private static int stringEnd(String text, int from, int end, char quote) {
+        for (int i = from; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the end of a shell variable whose name starts at an offset.
+     */
+    private static int variableEnd(String text, int from, int end) {
+        char c = text.charAt(from);
+        if (c == '{') {
+            int close = text.indexOf('}', from);
+            return close < 0 || close >= end ? end : close + 1;
+        }
+        if (Character.isDigit(c) || "?#@*!$-".indexOf(c) >= 0) {
+            return from + 1;
+        }
+        int i = from;
+        while (i < end && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int identifierEnd(String text, int from, int end) {
+        int i = from;
+        while (i < end && Character.isJavaIdentifierPart(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == ':' || c == '.';
+    }
+
+    /**
+     * Finds a string within a range, without searching past its end.
+     *
+     * @return the offset of the string, or -1
+     */
+    static int indexOf(String text, String needle, int from, int end) {
+        for (int i = from, last = end - needle.length(); i <= last; i++) {
+            if (text.startsWith(needle, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
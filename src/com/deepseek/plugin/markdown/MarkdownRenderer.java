@@ -0,0 +1,375 @@
+package com.deepseek.plugin.markdown;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.swt.custom.StyleRange;
+
+/**
+ * Styles the Markdown of one message as style ranges over its source text.
+ *
+ * <p>The text itself is left as it is, so that it can be selected and
+ * copied verbatim and streamed text can be appended in place; Markdown
+ * syntax is dimmed, headings and emphasis are styled, and fenced code is
+ * shown in the code font and tokenized for its language (see
+ * {@link CodeLanguage}).</p>
+ *
+ * <p>Rendering is incremental for text that only grows, as a streamed
+ * answer does. Every construct is confined to a line, and what a line
+ * depends on from the lines before it, such as being inside a code fence or
+ * a block comment, is carried over in a small state. So each completed line
+ * is a stable boundary: its ranges are kept, and the next call only renders
+ * the text after the last complete line. {@link Result} tells which ranges
+ * changed so the UI can replace just those.</p>
+ *
+ * <p>Meant to run off the UI thread; calls are serialized.</p>
+ */
+public final class MarkdownRenderer {
+
+    /**
+     * The ranges of a rendered text.
+     *
+     * @param start   the offset from which the ranges changed since the previous result
+     * @param end     the length of the rendered text
+     * @param changed the ranges from {@code start} to {@code end}, replacing all previous ones there
+     * @param all     all ranges of the text
+     */
+    public record Result(int start, int end, StyleRange[] changed, StyleRange[] all) {
+    }
+
+    /**
+     * What a line depends on from the lines before it.
+     *
+     * @param fenceChar   the character of the open code fence
+     * @param fenceLength the length of the open code fence, 0 outside code blocks
+     * @param language    the language of the open code block
+     * @param lexerState  the tokenizer state the previous code line ended in
+     */
+    private record LineState(char fenceChar, int fenceLength, CodeLanguage language, int lexerState) {
+        static final LineState TEXT = new LineState('\0', 0, null, CodeLanguage.NORMAL);
+
+        boolean inFence() {
+            return fenceLength > 0;
+        }
+    }
+
+    /**
+     * Emits spans of a base kind in the gaps between the spans it forwards.
+     */
+    private static final class GapFiller implements SpanSink {
+        private final SpanSink target;
+        private final StyleKind base;
+        private int position;
+
+        GapFiller(SpanSink target, StyleKind base, int start) {
+            this.target = target;
+            this.base = base;
+            this.position = start;
+        }
+
+        @Override
+        public void span(int start, int end, StyleKind kind) {
+            fill(start);
+            target.span(start, end, kind);
+            position = end;
+        }
+
+        void fill(int end) {
+            if (base != null && end > position) {
+                target.span(position, end, base);
+            }
+            position = Math.max(position, end);
+        }
+    }
+
+    private final StylePalette palette;
+    private final List<StyleRange> stable = new ArrayList<>();
+    private int stableOffset;
+    private LineState stableState = LineState.TEXT;
+
+    /**
+     * Creates a renderer for one message.
+     *
+     * @param palette the look of the styled text
+     */
+    public MarkdownRenderer(StylePalette palette) {
+        this.palette = palette;
+    }
+
+    /**
+     * Renders a text that continues the text of the previous call, or any
+     * text after {@link #reset()}.
+     *
+     * @param text the full text of the message
+     * @return its ranges
+     */
+    public synchronized Result render(String text) {
+        if (text.length() < stableOffset) {
+            reset();
+        }
+        int start = stableOffset;
+        int firstChanged = stable.size();
+        List<StyleRange> tail = new ArrayList<>();
+        SpanSink sink = (spanStart, spanEnd, kind) -> {
+            StyleRange range = spanEnd > spanStart ? palette.create(spanStart, spanEnd - spanStart, kind) : null;
+            if (range != null) {
+                tail.add(range);
+            }
+        };
+
+        int lineStart = stableOffset;
+        LineState state = stableState;
+        while (lineStart < text.length()) {
+            int newline = text.indexOf('\n', lineStart);
+            int lineEnd = newline < 0 ? text.length() : newline;
+            if (lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            LineState next = renderLine(text, lineStart, lineEnd, state, sink);
+            if (newline < 0) {
+                break;
+            }
+            stable.addAll(tail);
+            tail.clear();
+            state = next;
+            lineStart = newline + 1;
+            stableOffset = lineStart;
+            stableState = state;
+        }
+
+        List<StyleRange> changed = new ArrayList<>(stable.size() - firstChanged + tail.size());
+        changed.addAll(stable.subList(firstChanged, stable.size()));
+        changed.addAll(tail);
+        StyleRange[] all = new StyleRange[stable.size() + tail.size()];
+        for (int i = 0; i < stable.size(); i++) {
+            all[i] = stable.get(i);
+        }
+        for (int i = 0; i < tail.size(); i++) {
+            all[stable.size() + i] = tail.get(i);
+        }
+        return new Result(start, text.length(), changed.toArray(new StyleRange[0]), all);
+    }
+
+    /**
+     * Forgets the rendered text, so that the next call renders a new text from the start.
+     */
+    public synchronized void reset() {
+        stable.clear();
+        stableOffset = 0;
+        stableState = LineState.TEXT;
+    }
+
+    /**
+     * Renders one line.
+     *
+     * @return the state of the next line
+     */
+    private static LineState renderLine(String text, int start, int end, LineState state, SpanSink sink) {
+        int indent = start;
+        while (indent < end && indent - start < 3 && text.charAt(indent) == ' ') {
+            indent++;
+        }
+        char first = indent < end ? text.charAt(indent) : '\0';
+
+        if (state.inFence()) {
+            int run = run(text, indent, end, state.fenceChar());
+            if (first == state.fenceChar() && run >= state.fenceLength() && text.substring(indent + run, end).isBlank()) {
+                sink.span(start, end, StyleKind.MARKUP);
+                return LineState.TEXT;
+            }
+            GapFiller code = new GapFiller(sink, StyleKind.CODE, start);
+            int lexerState = state.language().tokenizeLine(text, start, end, state.lexerState(), code);
+            code.fill(end);
+            return lexerState == state.lexerState()
+                ? state
+                : new LineState(state.fenceChar(), state.fenceLength(), state.language(), lexerState);
+        }
+
+        if (first == '`' || first == '~') {
+            int run = run(text, indent, end, first);
+            String info = text.substring(indent + run, end).strip();
+            if (run >= 3 && (first == '~' || info.indexOf('`') < 0)) {
+                sink.span(start, end, StyleKind.MARKUP);
+                return new LineState(first, run, CodeLanguage.of(info), CodeLanguage.NORMAL);
+            }
+        }
+
+        if (first == '#') {
+            int hashes = run(text, indent, end, '#');
+            if (hashes <= 6 && (indent + hashes == end || text.charAt(indent + hashes) == ' ')) {
+                sink.span(start, indent + hashes, StyleKind.MARKUP);
+                renderInline(text, indent + hashes, end, StyleKind.HEADING, sink);
+                return LineState.TEXT;
+            }
+        }
+
+        if (isThematicBreak(text, indent, end)) {
+            sink.span(start, end, StyleKind.MARKUP);
+            return LineState.TEXT;
+        }
+
+        if (first == '>') {
+            sink.span(start, indent + 1, StyleKind.MARKUP);
+            renderInline(text, indent + 1, end, StyleKind.QUOTE, sink);
+            return LineState.TEXT;
+        }
+
+        int marker = listMarkerEnd(text, start, end);
+        if (marker > 0) {
+            sink.span(start, marker, StyleKind.MARKUP);
+            renderInline(text, marker, end, null, sink);
+            return LineState.TEXT;
+        }
+
+        renderInline(text, start, end, null, sink);
+        return LineState.TEXT;
+    }
+
+    /**
+     * Renders code spans, emphasis, strike-through and links within a line,
+     * styling the rest with a base kind.
+     */
+    private static void renderInline(String text, int start, int end, StyleKind base, SpanSink sink) {
+        GapFiller out = new GapFiller(sink, base, start);
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < end) {
+                i += 2;
+            } else if (c == '`') {
+                int ticks = run(text, i, end, '`');
+                int close = findRun(text, i + ticks, end, '`', ticks);
+                if (close >= 0) {
+                    out.span(i, i + ticks, StyleKind.MARKUP);
+                    out.span(i + ticks, close, StyleKind.INLINE_CODE);
+                    out.span(close, close + ticks, StyleKind.MARKUP);
+                    i = close + ticks;
+                } else {
+                    i += ticks;
+                }
+            } else if (c == '*' || c == '_' || c == '~') {
+                int count = run(text, i, end, c);
+                int width = c == '~' ? (count >= 2 ? 2 : 0) : Math.min(count, 2);
+                int contentStart = i + width;
+                boolean opens = width > 0 && i + count < end && !Character.isWhitespace(text.charAt(i + count))
+                    && (c != '_' || i == start || !Character.isLetterOrDigit(text.charAt(i - 1)));
+                int close = opens ? findClosing(text, contentStart, end, c, width) : -1;
+                if (close > contentStart) {
+                    StyleKind kind = c == '~' ? StyleKind.STRIKEOUT : width == 2 ? StyleKind.STRONG : StyleKind.EMPHASIS;
+                    out.span(i, contentStart, StyleKind.MARKUP);
+                    out.span(contentStart, close, kind);
+                    out.span(close, close + width, StyleKind.MARKUP);
+                    i = close + width;
+                } else {
+                    i += count;
+                }
+            } else if (c == '[') {
+                int label = CodeLanguage.indexOf(text, "](", i + 1, end);
+                int close = label < 0 ? -1 : CodeLanguage.indexOf(text, ")", label + 2, end);
+                if (close > 0) {
+                    out.span(i, i + 1, StyleKind.MARKUP);
+                    out.span(i + 1, label, StyleKind.LINK);
+                    out.span(label, close + 1, StyleKind.MARKUP);
+                    i = close + 1;
+                } else {
+                    i++;
+                }
+            } else {
+                i++;
+            }
+        }
+        out.fill(end);
+    }
+
+    /**
+     * Returns the end of the marker of a list item, including the space after it, or -1.
+     */
+    private static int listMarkerEnd(String text, int start, int end) {
+        int i = start;
+        while (i < end && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+            i++;
+        }
+        if (i >= end) {
+            return -1;
+        }
+        char c = text.charAt(i);
+        int markerEnd;
+        if (c == '-' || c == '*' || c == '+') {
+            markerEnd = i + 1;
+        } else {
+            int digits = i;
+            while (digits < end && digits - i < 9 && Character.isDigit(text.charAt(digits))) {
+                digits++;
+            }
+            if (digits == i || digits >= end || (text.charAt(digits) != '.' && text.charAt(digits) != ')')) {
+                return -1;
+            }
+            markerEnd = digits + 1;
+        }
+        return markerEnd < end && text.charAt(markerEnd) == ' ' ? markerEnd + 1 : -1;
+    }
+
+    /**
+     * Checks whether a line is a thematic break, three or more of the same
+     * of {@code -}, {@code *} or {@code _}, optionally separated by spaces.
+     */
+    private static boolean isThematicBreak(String text, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        char c = text.charAt(start);
+        if (c != '-' && c != '*' && c != '_') {
+            return false;
+        }
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            char current = text.charAt(i);
+            if (current == c) {
+                count++;
+            } else if (current != ' ' && current != '\t') {
+                return false;
+            }
+        }
+        return count >= 3;
+    }
+
+    /**
+     * Returns the number of consecutive occurrences of a character from an offset.
+     */
+    private static int run(String text, int from, int end, char c) {
+        int i = from;
+        while (i < end && text.charAt(i) == c) {
+            i++;
+        }
+        return i - from;
+    }
+
+    /**
+     * Finds a run of exactly {@code length} occurrences of a character, or returns -1.
+     */
+    private static int findRun(String text, int from, int end, char c, int length) {
+        int i = from;
+        while (i < end) {
+            int run = run(text, i, end, c);
+            if (run == length) {
+                return i;
+            }
+            i += Math.max(run, 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the closing delimiter of emphasis: {@code width} occurrences of
+     * a character following a character that is not a space, or returns -1.
+     */
+    private static int findClosing(String text, int from, int end, char c, int width) {
+        for (int i = from + 1; i + width <= end; i++) {
+            if (text.charAt(i) == c && run(text, i, i + width, c) == width
+                    && !Character.isWhitespace(text.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,17 @@
+package com.deepseek.plugin.markdown;
+
+/**
+ * Receives styled spans in document order, without overlaps.
+ */
+@FunctionalInterface
+interface SpanSink {
+
+    /**
+     * Receives a span.
+     *
+     * @param start the offset of the first character
+     * @param end   the offset after the last character
+     * @param kind  the kind of text
+     */
+    void span(int start, int end, StyleKind kind);
+}
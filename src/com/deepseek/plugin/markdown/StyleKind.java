@@ -0,0 +1,41 @@
+package com.deepseek.plugin.markdown;
+
+/**
+ * The kinds of text the {@link MarkdownRenderer} styles.
+ */
+public enum StyleKind {
+    /** Markdown syntax, such as heading hashes, emphasis markers and fences. */
+    MARKUP,
+    /** The text of a heading. */
+    HEADING,
+    /** Strongly emphasized text. */
+    STRONG,
+    /** Emphasized text. */
+    EMPHASIS,
+    /** Struck-out text. */
+    STRIKEOUT,
+    /** The text of a link. */
+    LINK,
+    /** The text of a block quote. */
+    QUOTE,
+    /** Code inside a line of text. */
+    INLINE_CODE,
+    /** Code of a fenced block not covered by a token. */
+    CODE,
+    /** A keyword in a code block. */
+    KEYWORD,
+    /** A string or character literal in a code block. */
+    STRING,
+    /** A comment in a code block. */
+    COMMENT,
+    /** A number in a code block. */
+    NUMBER,
+    /** An annotation or decorator in a code block. */
+    ANNOTATION,
+    /** A markup tag in a code block. */
+    TAG,
+    /** A markup attribute name in a code block. */
+    ATTRIBUTE,
+    /** A shell variable in a code block. */
+    VARIABLE
+}
@@ -0,0 +1,53 @@
+package com.deepseek.plugin.markdown;
+
+import java.util.Map;
+
+import org.eclipse.swt.custom.StyleRange;
+
+/**
+ * The look of every {@link StyleKind}, turned into style ranges.
+ *
+ * <p>The templates hold graphics resources created on the UI thread. The
+ * palette only copies their references into new ranges, so it may be used
+ * by the renderer on any thread.</p>
+ */
+public final class StylePalette {
+
+    private final StyleRange[] templates = new StyleRange[StyleKind.values().length];
+
+    /**
+     * Creates a palette.
+     *
+     * @param templates the look of each kind; kinds without a template are not styled
+     */
+    public StylePalette(Map<StyleKind, StyleRange> templates) {
+        for (Map.Entry<StyleKind, StyleRange> template : templates.entrySet()) {
+            this.templates[template.getKey().ordinal()] = template.getValue();
+        }
+    }
+
+    /**
+     * Creates the style range of a span.
+     *
+     * @param start  the offset of the first character
+     * @param length the number of characters
+     * @param kind   the kind of text
+     * @return the range, or null if the kind is not styled
+     */
+    public StyleRange create(int start, int length, StyleKind kind) {
+        StyleRange template = templates[kind.ordinal()];
+        if (template == null) {
+            return null;
+        }
+        StyleRange range = new StyleRange();
+        range.start = start;
+        range.length = length;
+        range.foreground = template.foreground;
+        range.background = template.background;
+        range.fontStyle = template.fontStyle;
+        range.font = template.font;
+        range.underline = template.underline;
+        range.strikeout = template.strikeout;
+        return range;
+    }
+}
@@ -0,0 +1,71 @@
+package com.deepseek.plugin.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event covering one call to the DeepSeek API, from the
+ * request to the last byte of the answer.
+ */
+@Name("com.deepseek.plugin.ApiRequest")
+@Label("DeepSeek API Request")
+@Category({ "DeepSeek", "API" })
+@Description("A chat completion request, including retries")
+public class ApiRequestEvent extends Event {
+
+    @Label("Streaming")
+    public boolean streaming;
+
+    @Label("Cache Hit")
+    public boolean cacheHit;
+
+    @Label("Coalesced")
+    @Description("Whether the request shared the call of an identical request in flight")
+    public boolean coalesced;
+
+    @Label("Status Code")
+    public int statusCode;
+
+    @Label("Retries")
+    public int retries;
+
+    @Label("Endpoint")
+    @Description("Name of the endpoint profile that answered")
+    public String endpoint;
+
+    @Label("Hedged")
+    @Description("Whether the request was also sent to a second endpoint because it was slow")
+    public boolean hedged;
+
+    @Label("Failovers")
+    @Description("Number of times the request moved to another endpoint after a failure")
+    public int failovers;
+
+    @Label("Bytes Out")
+    @DataAmount
+    public long bytesOut;
+
+    @Label("Bytes In")
+    @DataAmount
+    public long bytesIn;
+
+    @Label("Time to Headers")
+    @Timespan
+    public long timeToHeaders;
+
+    @Label("Time to First Token")
+    @Timespan
+    public long timeToFirstToken;
+
+    @Label("Tokens")
+    @Description("Estimated number of answer tokens")
+    public long tokens;
+
+    @Label("Error")
+    public String error;
+}
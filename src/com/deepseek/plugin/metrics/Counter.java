@@ -0,0 +1,62 @@
+package com.deepseek.plugin.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count, cheap to update from many threads.
+ */
+public final class Counter {
+
+    private final String name;
+    private final LongAdder value = new LongAdder();
+
+    /**
+     * Creates a counter at zero.
+     *
+     * @param name the metric name
+     */
+    public Counter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds one.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Adds an amount.
+     *
+     * @param amount the amount to add
+     */
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    /**
+     * Returns the current count.
+     *
+     * @return the sum of all updates since creation or the last reset
+     */
+    public long get() {
+        return value.sum();
+    }
+
+    /**
+     * Sets the count back to zero.
+     */
+    public void reset() {
+        value.reset();
+    }
+
+    /**
+     * Returns the metric name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,175 @@
+package com.deepseek.plugin.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values with bounded relative error.
+ *
+ * <p>Values are counted in log-linear buckets in the manner of HdrHistogram:
+ * every power of two is split into 32 linear sub-buckets, so any recorded
+ * value is reported within about 3% of its true value while the whole range
+ * of {@code long} fits in under 2,000 counters. Recording is a few integer
+ * operations and one atomic increment, cheap enough for hot paths.</p>
+ *
+ * <p>Instances are thread-safe; snapshots taken while values are recorded
+ * may be slightly inconsistent.</p>
+ */
+public final class Histogram {
+
+    /**
+     * Summary statistics of a histogram.
+     *
+     * @param count the number of recorded values
+     * @param mean  the mean value
+     * @param p50   the median
+     * @param p90   the 90th percentile
+     * @param p99   the 99th percentile
+     * @param max   the largest recorded value
+     */
+    public record Snapshot(long count, double mean, long p50, long p90, long p99, long max) {
+    }
+
+    private static final int LINEAR = 64;
+    private static final int HALF = LINEAR / 2;
+    private static final int SHIFT = Integer.numberOfTrailingZeros(HALF);
+    private static final int BUCKETS = LINEAR + (63 - SHIFT - 1) * HALF;
+
+    private final String name;
+    private final String unit;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param name the metric name
+     * @param unit the unit of recorded values, for display
+     */
+    public Histogram(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    /**
+     * Records a value; negative values are recorded as zero.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()} reading.
+     *
+     * @param startNanos the start time
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the value below which the given fraction of recorded values fall.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the approximate value, or 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(valueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns summary statistics of the recorded values.
+     *
+     * @return a snapshot
+     */
+    public Snapshot snapshot() {
+        long total = count.sum();
+        double mean = total == 0 ? 0 : (double) sum.sum() / total;
+        return new Snapshot(total, mean, percentile(50), percentile(90), percentile(99), max.get());
+    }
+
+    /**
+     * Discards all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * Returns the metric name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the unit of recorded values.
+     *
+     * @return the unit, such as {@code ns} or {@code tokens/s}
+     */
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Returns the bucket of a value: values below 64 have their own bucket,
+     * larger ones share a bucket with the values having the same 6 leading bits.
+     */
+    static int indexOf(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value) - SHIFT;
+        int sub = (int) (value >>> magnitude);
+        return LINEAR + (magnitude - 1) * HALF + (sub - HALF);
+    }
+
+    /**
+     * Returns the midpoint of the values counted in a bucket.
+     */
+    static long valueOf(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int magnitude = (index - LINEAR) / HALF + 1;
+        long sub = (index - LINEAR) % HALF + HALF;
+        return (sub << magnitude) + ((1L << magnitude) >>> 1);
+    }
+}
@@ -0,0 +1,164 @@
+package com.deepseek.plugin.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The plugin's performance metrics.
+ *
+ * <p>Metrics are plain static fields so that instrumented code records
+ * without any lookup. Latencies are recorded in nanoseconds. Each API
+ * request additionally emits an {@link ApiRequestEvent} and each UI update
+ * a {@link UiUpdateEvent}, so a Java Flight Recorder recording of a running
+ * Eclipse captures them next to the JVM's own events.</p>
+ *
+ * <p>The Java HTTP client does not report DNS resolution, TCP connect and
+ * TLS handshake separately; they are included in {@link #API_TIME_TO_HEADERS}
+ * whenever a request has to open a new connection.</p>
+ */
+public final class Metrics {
+
+    private static final List<Histogram> HISTOGRAMS = new ArrayList<>();
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+
+    /** Whole request, from the call to the last byte of the answer, including retries. */
+    public static final Histogram API_REQUEST_TIME = histogram("api.request.time", "ns");
+
+    /** Time from sending one attempt to receiving the response headers. */
+    public static final Histogram API_TIME_TO_HEADERS = histogram("api.time-to-headers", "ns");
+
+    /** Time from sending a streaming request to receiving its first content. */
+    public static final Histogram API_TIME_TO_FIRST_TOKEN = histogram("api.time-to-first-token", "ns");
+
+    /** Time spent reading the response body, including parsing. */
+    public static final Histogram API_BODY_TIME = histogram("api.body.time", "ns");
+
+    /** Time spent parsing streamed chunks, per request. */
+    public static final Histogram API_PARSE_TIME = histogram("api.parse.time", "ns");
+
+    /** Estimated answer tokens per second of request time. */
+    public static final Histogram API_TOKENS_PER_SECOND = histogram("api.tokens-per-second", "tokens/s");
+
+    /** Time of one coalesced streaming update of the chat view. */
+    public static final Histogram UI_FLUSH_TIME = histogram("ui.flush.time", "ns");
+
+    /** Time of one layout pass of the chat history. */
+    public static final Histogram UI_REFRESH_TIME = histogram("ui.refresh.time", "ns");
+
+    /** Time of rendering the Markdown of one message update, off the UI thread. */
+    public static final Histogram UI_RENDER_TIME = histogram("ui.render.time", "ns");
+
+    /** Time of one full bubble relayout. */
+    public static final Histogram UI_LAYOUT_TIME = histogram("ui.layout.time", "ns");
+
+    /** Time of one search of the conversation history, excluding reading the messages found. */
+    public static final Histogram HISTORY_SEARCH_TIME = histogram("history.search.time", "ns");
+
+    /** Requests sent to the API, excluding retries and cache hits. */
+    public static final Counter API_REQUESTS = counter("api.requests");
+
+    /** Attempts repeated after a transient failure. */
+    public static final Counter API_RETRIES = counter("api.retries");
+
+    /** Requests also sent to a second endpoint because the first was slow to answer. */
+    public static final Counter API_HEDGES = counter("api.hedges");
+
+    /** Requests moved to another endpoint after the chosen one failed. */
+    public static final Counter API_FAILOVERS = counter("api.failovers");
+
+    /** Requests that joined an identical request in flight instead of calling the API. */
+    public static final Counter API_COALESCED = counter("api.coalesced");
+
+    /** Requests that ended with an error. */
+    public static final Counter API_FAILURES = counter("api.failures");
+
+    /** Request body bytes sent, including retries. */
+    public static final Counter API_BYTES_OUT = counter("api.bytes.out");
+
+    /** Response body bytes received. */
+    public static final Counter API_BYTES_IN = counter("api.bytes.in");
+
+    /** Estimated answer tokens received. */
+    public static final Counter API_TOKENS = counter("api.tokens");
+
+    /** Answers served from the response cache. */
+    public static final Counter CACHE_HITS = counter("cache.hits");
+
+    /** Cache lookups that found no answer. */
+    public static final Counter CACHE_MISSES = counter("cache.misses");
+
+    /** Bubble sizes served from the text measurement cache. */
+    public static final Counter UI_MEASURE_HITS = counter("ui.measure.hits");
+
+    /** Bubble sizes that had to be measured. */
+    public static final Counter UI_MEASURE_MISSES = counter("ui.measure.misses");
+
+    private Metrics() {
+    }
+
+    private static Histogram histogram(String name, String unit) {
+        Histogram histogram = new Histogram(name, unit);
+        HISTOGRAMS.add(histogram);
+        return histogram;
+    }
+
+    private static Counter counter(String name) {
+        Counter counter = new Counter(name);
+        COUNTERS.add(counter);
+        return counter;
+    }
+
+    /**
+     * Returns all histograms.
+     *
+     * @return an unmodifiable list of histograms
+     */
+    public static List<Histogram> histograms() {
+        return Collections.unmodifiableList(HISTOGRAMS);
+    }
+
+    /**
+     * Returns all counters.
+     *
+     * @return an unmodifiable list of counters
+     */
+    public static List<Counter> counters() {
+        return Collections.unmodifiableList(COUNTERS);
+    }
+
+    /**
+     * Resets every metric to zero.
+     */
+    public static void reset() {
+        HISTOGRAMS.forEach(Histogram::reset);
+        COUNTERS.forEach(Counter::reset);
+    }
+
+    /**
+     * Formats all metrics as text, one per line. Nanosecond latencies are
+     * shown in milliseconds.
+     *
+     * @return the report
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        for (Histogram histogram : HISTOGRAMS) {
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            if (snapshot.count() == 0) continue;
+            boolean nanos = "ns".equals(histogram.getUnit());
+            double scale = nanos ? 1e6 : 1;
+            String unit = nanos ? "ms" : histogram.getUnit();
+            report.append(String.format(Locale.ROOT,
+                "%-26s n=%-7d mean=%.2f p50=%.2f p90=%.2f p99=%.2f max=%.2f %s%n",
+                histogram.getName(), snapshot.count(), snapshot.mean() / scale,
+                snapshot.p50() / scale, snapshot.p90() / scale, snapshot.p99() / scale,
+                snapshot.max() / scale, unit));
+        }
+        for (Counter counter : COUNTERS) {
+            report.append(String.format(Locale.ROOT, "%-26s %d%n", counter.getName(), counter.get()));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,211 @@
+package com.deepseek.plugin.metrics;
+
+/**
+ * Collects the measurements of one API call and publishes them to
+ * {@link Metrics} and as an {@link ApiRequestEvent} when the call ends.
+ *
+ * <p>A recorder is created when the call starts. Attempts may complete on
+ * HTTP client threads, so the per-attempt updates are safe to make from
+ * any thread; {@link #finish()} must be called exactly once.</p>
+ */
+public final class RequestRecorder {
+
+    private final ApiRequestEvent event = new ApiRequestEvent();
+    private final long startNanos;
+
+    private volatile int retries;
+    private volatile int failovers;
+    private volatile boolean hedged;
+    private volatile String endpoint;
+    private volatile boolean coalesced;
+    private boolean requestCounted;
+    private volatile long timeToHeaders;
+    private volatile long bytesOut;
+    private long timeToFirstToken;
+    private long bodyStartNanos;
+    private long parseNanos;
+    private long bytesIn;
+    private long tokens;
+    private int statusCode;
+    private boolean cacheHit;
+    private String error;
+
+    /**
+     * Starts recording a call.
+     *
+     * @param streaming whether the answer is streamed
+     */
+    public RequestRecorder(boolean streaming) {
+        event.begin();
+        event.streaming = streaming;
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records the result of the cache lookup.
+     *
+     * @param hit whether the answer came from the cache
+     */
+    public void cacheLookup(boolean hit) {
+        cacheHit = hit;
+        (hit ? Metrics.CACHE_HITS : Metrics.CACHE_MISSES).increment();
+        if (!hit) {
+            Metrics.API_REQUESTS.increment();
+            requestCounted = true;
+        }
+    }
+
+    /**
+     * Records that the call shares the call of an identical request in
+     * flight, so it sends nothing itself.
+     */
+    public void coalesced() {
+        coalesced = true;
+        Metrics.API_COALESCED.increment();
+        if (requestCounted) {
+            Metrics.API_REQUESTS.add(-1);
+            requestCounted = false;
+        }
+    }
+
+    /**
+     * Records a request body about to be sent.
+     *
+     * @param bytes the body size
+     */
+    public void sent(long bytes) {
+        bytesOut += bytes;
+        Metrics.API_BYTES_OUT.add(bytes);
+    }
+
+    /**
+     * Records the response headers of one attempt.
+     *
+     * @param sendNanos the {@link System#nanoTime()} at which the attempt was sent
+     */
+    public void headersReceived(long sendNanos) {
+        long elapsed = System.nanoTime() - sendNanos;
+        timeToHeaders = elapsed;
+        Metrics.API_TIME_TO_HEADERS.record(elapsed);
+    }
+
+    /**
+     * Records that an attempt is repeated.
+     */
+    public void retried() {
+        retries++;
+        Metrics.API_RETRIES.increment();
+    }
+
+    /**
+     * Records that the request is also sent to a second endpoint.
+     */
+    public void hedged() {
+        hedged = true;
+        Metrics.API_HEDGES.increment();
+    }
+
+    /**
+     * Records that the request moves to another endpoint after a failure.
+     */
+    public void failedOver() {
+        failovers++;
+        Metrics.API_FAILOVERS.increment();
+    }
+
+    /**
+     * Records the endpoint whose response is used.
+     *
+     * @param name the name of the endpoint profile
+     */
+    public void routed(String name) {
+        endpoint = name;
+    }
+
+    /**
+     * Records the final response status and the start of the body download.
+     *
+     * @param status the HTTP status
+     */
+    public void bodyStarted(int status) {
+        statusCode = status;
+        bodyStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Records streamed content, measuring the time to the first token.
+     *
+     * @param estimatedTokens the estimated tokens of the content
+     */
+    public void content(long estimatedTokens) {
+        if (timeToFirstToken == 0) {
+            timeToFirstToken = System.nanoTime() - startNanos;
+            Metrics.API_TIME_TO_FIRST_TOKEN.record(timeToFirstToken);
+        }
+        tokens += estimatedTokens;
+    }
+
+    /**
+     * Records time spent parsing.
+     *
+     * @param nanos the parse time
+     */
+    public void parsed(long nanos) {
+        parseNanos += nanos;
+    }
+
+    /**
+     * Records the size of the response body.
+     *
+     * @param bytes the number of bytes read
+     */
+    public void received(long bytes) {
+        bytesIn = bytes;
+        Metrics.API_BYTES_IN.add(bytes);
+    }
+
+    /**
+     * Records that the call failed.
+     *
+     * @param message the error description
+     */
+    public void failed(String message) {
+        error = message;
+        Metrics.API_FAILURES.increment();
+    }
+
+    /**
+     * Publishes the measurements of the call.
+     */
+    public void finish() {
+        long elapsed = System.nanoTime() - startNanos;
+        if (!cacheHit && !coalesced) {
+            Metrics.API_REQUEST_TIME.record(elapsed);
+            if (bodyStartNanos != 0) {
+                Metrics.API_BODY_TIME.recordSince(bodyStartNanos);
+            }
+            if (parseNanos > 0) {
+                Metrics.API_PARSE_TIME.record(parseNanos);
+            }
+            if (tokens > 0 && error == null) {
+                Metrics.API_TOKENS.add(tokens);
+                Metrics.API_TOKENS_PER_SECOND.record(tokens * 1_000_000_000L / Math.max(1, elapsed));
+            }
+        }
+
+        event.cacheHit = cacheHit;
+        event.coalesced = coalesced;
+        event.statusCode = statusCode;
+        event.retries = retries;
+        event.endpoint = endpoint;
+        event.hedged = hedged;
+        event.failovers = failovers;
+        event.bytesOut = bytesOut;
+        event.bytesIn = bytesIn;
+        event.timeToHeaders = timeToHeaders;
+        event.timeToFirstToken = timeToFirstToken;
+        event.tokens = tokens;
+        event.error = error;
+        event.commit();
+    }
+}
@@ -0,0 +1,29 @@
+package com.deepseek.plugin.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering one update of the chat view on the UI thread.
+ */
+@Name("com.deepseek.plugin.UiUpdate")
+@Label("DeepSeek UI Update")
+@Category({ "DeepSeek", "UI" })
+@Description("Work done on the UI thread to show chat content")
+public class UiUpdateEvent extends Event {
+
+    @Label("Kind")
+    @Description("flush, refresh or layout")
+    public String kind;
+
+    @Label("Characters")
+    @Description("Number of characters appended, for streaming flushes")
+    public int characters;
+
+    @Label("Bubbles")
+    @Description("Number of bubbles positioned, for refreshes")
+    public int bubbles;
+}
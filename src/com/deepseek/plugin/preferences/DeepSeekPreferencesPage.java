@@ -1,6 +1,8 @@
 package com.deepseek.plugin.preferences;
 
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.jface.preference.StringFieldEditor;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Label;
@@ -14,6 +16,19 @@ import org.eclipse.ui.IWorkbenchPreferencePage;
 public class DeepSeekPreferencesPage extends FieldEditorPreferencePage implements IWorkbenchPreferencePage {
     
     public static final String PREFERENCE_API_KEY = "DEEPSEEK_API_KEY";
+    public static final String PREFERENCE_API_ENDPOINT = "DEEPSEEK_API_ENDPOINT";
+    public static final String PREFERENCE_MODEL = "DEEPSEEK_MODEL";
+    public static final String PREFERENCE_ENDPOINT_PROFILES = "DEEPSEEK_ENDPOINT_PROFILES";
+    public static final String PREFERENCE_CONNECT_TIMEOUT = "DEEPSEEK_CONNECT_TIMEOUT";
+    public static final String PREFERENCE_READ_TIMEOUT = "DEEPSEEK_READ_TIMEOUT";
+    public static final String PREFERENCE_CONTEXT_TOKENS = "DEEPSEEK_CONTEXT_TOKENS";
+    public static final String PREFERENCE_CONTEXT_CHUNKS = "DEEPSEEK_CONTEXT_CHUNKS";
+    public static final String PREFERENCE_REQUESTS_PER_MINUTE = "DEEPSEEK_REQUESTS_PER_MINUTE";
+    public static final String PREFERENCE_CACHE_ENABLED = "DEEPSEEK_CACHE_ENABLED";
+    public static final String PREFERENCE_CACHE_TTL = "DEEPSEEK_CACHE_TTL";
+    public static final String PREFERENCE_CACHE_DISK = "DEEPSEEK_CACHE_DISK";
+    public static final String PREFERENCE_COMPLETION_ENABLED = "DEEPSEEK_COMPLETION_ENABLED";
+    public static final String PREFERENCE_COMPLETION_DELAY = "DEEPSEEK_COMPLETION_DELAY";
     
     /**
      * Constructs the preferences page with grid layout.
@@ -37,6 +52,98 @@ public class DeepSeekPreferencesPage extends FieldEditorPreferencePage implement
         apiKeyField.getTextControl(getFieldEditorParent()).setEchoChar('*');
         addField(apiKeyField);
         
+        addField(new StringFieldEditor(
+            PREFERENCE_API_ENDPOINT,
+            "API endpoint:",
+            getFieldEditorParent()
+        ));
+        
+        addField(new StringFieldEditor(
+            PREFERENCE_MODEL,
+            "Model:",
+            getFieldEditorParent()
+        ));
+        
+        addField(new EndpointProfilesFieldEditor(
+            PREFERENCE_ENDPOINT_PROFILES,
+            "Additional endpoints, one per line (name | url | model [| api key]):",
+            getFieldEditorParent()
+        ));
+        
+        IntegerFieldEditor connectTimeoutField = new IntegerFieldEditor(
+            PREFERENCE_CONNECT_TIMEOUT,
+            "Connect timeout (seconds):",
+            getFieldEditorParent()
+        );
+        connectTimeoutField.setValidRange(1, 600);
+        addField(connectTimeoutField);
+        
+        IntegerFieldEditor readTimeoutField = new IntegerFieldEditor(
+            PREFERENCE_READ_TIMEOUT,
+            "Read timeout (seconds):",
+            getFieldEditorParent()
+        );
+        readTimeoutField.setValidRange(1, 3600);
+        addField(readTimeoutField);
+        
+        IntegerFieldEditor contextTokensField = new IntegerFieldEditor(
+            PREFERENCE_CONTEXT_TOKENS,
+            "History token budget:",
+            getFieldEditorParent()
+        );
+        contextTokensField.setValidRange(256, 128000);
+        addField(contextTokensField);
+        
+        IntegerFieldEditor contextChunksField = new IntegerFieldEditor(
+            PREFERENCE_CONTEXT_CHUNKS,
+            "Workspace snippets per prompt (0 disables):",
+            getFieldEditorParent()
+        );
+        contextChunksField.setValidRange(0, 20);
+        addField(contextChunksField);
+        
+        IntegerFieldEditor requestsPerMinuteField = new IntegerFieldEditor(
+            PREFERENCE_REQUESTS_PER_MINUTE,
+            "Maximum requests per minute:",
+            getFieldEditorParent()
+        );
+        requestsPerMinuteField.setValidRange(1, 10000);
+        addField(requestsPerMinuteField);
+        
+        addField(new BooleanFieldEditor(
+            PREFERENCE_CACHE_ENABLED,
+            "Reuse answers to repeated prompts",
+            getFieldEditorParent()
+        ));
+        
+        IntegerFieldEditor cacheTtlField = new IntegerFieldEditor(
+            PREFERENCE_CACHE_TTL,
+            "Cached answer lifetime (minutes):",
+            getFieldEditorParent()
+        );
+        cacheTtlField.setValidRange(1, 43200);
+        addField(cacheTtlField);
+        
+        addField(new BooleanFieldEditor(
+            PREFERENCE_CACHE_DISK,
+            "Keep cached answers on disk",
+            getFieldEditorParent()
+        ));
+        
+        addField(new BooleanFieldEditor(
+            PREFERENCE_COMPLETION_ENABLED,
+            "Suggest code completions in the Java editor",
+            getFieldEditorParent()
+        ));
+        
+        IntegerFieldEditor completionDelayField = new IntegerFieldEditor(
+            PREFERENCE_COMPLETION_DELAY,
+            "Typing pause before requesting a completion (ms):",
+            getFieldEditorParent()
+        );
+        completionDelayField.setValidRange(0, 5000);
+        addField(completionDelayField);
+        
         Label informationLabel = new Label(getFieldEditorParent(), SWT.NONE);
         informationLabel.setText("Obtain your API key from: https://platform.deepseek.com/api_keys");
     }
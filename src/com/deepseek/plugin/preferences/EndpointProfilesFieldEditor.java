@@ -0,0 +1,106 @@
+package com.deepseek.plugin.preferences;
+
+import org.eclipse.jface.preference.FieldEditor;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Text;
+
+import com.deepseek.plugin.api.EndpointProfile;
+
+/**
+ * Field editor for additional endpoint profiles, one per line as
+ * {@code name | url | model [| apiKey]}.
+ *
+ * <p>The text is checked with {@link EndpointProfile#parseList(String)} as it
+ * is edited; the page cannot be applied while a line is invalid.</p>
+ */
+public final class EndpointProfilesFieldEditor extends FieldEditor {
+
+    private static final int VISIBLE_LINES = 4;
+
+    private Text text;
+    private boolean valid = true;
+
+    /**
+     * Creates the field editor.
+     *
+     * @param name   the preference name
+     * @param label  the label shown above the text
+     * @param parent the parent of the controls
+     */
+    public EndpointProfilesFieldEditor(String name, String label, Composite parent) {
+        init(name, label);
+        createControl(parent);
+    }
+
+    @Override
+    protected void adjustForNumColumns(int numColumns) {
+        ((GridData) getLabelControl().getLayoutData()).horizontalSpan = numColumns;
+        ((GridData) text.getLayoutData()).horizontalSpan = numColumns;
+    }
+
+    @Override
+    protected void doFillIntoGrid(Composite parent, int numColumns) {
+        Label label = getLabelControl(parent);
+        label.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, numColumns, 1));
+
+        text = new Text(parent, SWT.MULTI | SWT.BORDER | SWT.V_SCROLL | SWT.H_SCROLL);
+        GridData data = new GridData(SWT.FILL, SWT.FILL, true, false, numColumns, 1);
+        data.heightHint = text.getLineHeight() * VISIBLE_LINES;
+        text.setLayoutData(data);
+        text.setMessage("gateway | https://llm.example.com/v1/chat/completions | deepseek-chat");
+        text.addModifyListener(event -> checkState());
+    }
+
+    @Override
+    protected void doLoad() {
+        text.setText(getPreferenceStore().getString(getPreferenceName()));
+        checkState();
+    }
+
+    @Override
+    protected void doLoadDefault() {
+        text.setText(getPreferenceStore().getDefaultString(getPreferenceName()));
+        checkState();
+    }
+
+    @Override
+    protected void doStore() {
+        getPreferenceStore().setValue(getPreferenceName(), text.getText());
+    }
+
+    @Override
+    public int getNumberOfControls() {
+        return 1;
+    }
+
+    @Override
+    public boolean isValid() {
+        return valid;
+    }
+
+    @Override
+    protected void refreshValidState() {
+        checkState();
+    }
+
+    /**
+     * Validates the profiles and reports a change of validity to the page.
+     */
+    private void checkState() {
+        boolean wasValid = valid;
+        try {
+            EndpointProfile.parseList(text.getText());
+            valid = true;
+            clearErrorMessage();
+        } catch (IllegalArgumentException exception) {
+            valid = false;
+            showErrorMessage("Endpoint profiles: " + exception.getMessage());
+        }
+        if (valid != wasValid) {
+            fireStateChanged(IS_VALID, wasValid, valid);
+        }
+    }
+}
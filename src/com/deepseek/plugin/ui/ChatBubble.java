@@ -1,9 +1,10 @@
 package com.deepseek.plugin.ui;
 
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyleRange;
 import org.eclipse.swt.custom.StyledText;
 import org.eclipse.swt.graphics.Color;
-import org.eclipse.swt.graphics.FontMetrics;
+import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.Rectangle;
@@ -11,10 +12,12 @@ import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
-import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.MenuItem;
 
+import com.deepseek.plugin.metrics.Metrics;
+import com.deepseek.plugin.metrics.UiUpdateEvent;
+
 /**
  * A custom chat bubble widget used to display user and AI messages.
  * Provides selectable, non-editable text and draws a rounded visual bubble
@@ -22,7 +25,16 @@ import org.eclipse.swt.widgets.MenuItem;
  * 
  * <p>This widget supports custom coloring based on the bubble type,
  * automatic sizing based on text content, and optional context-menu
- * operations for copy and text selection.</p>
+ * operations for copy and text selection. Colors, font metrics and
+ * measured sizes come from the {@link RenderingResources} shared by all
+ * bubbles, so creating, recycling and laying out bubbles allocates no
+ * graphics resources and does not measure a text twice at the same width.</p>
+ *
+ * <p>The text can be styled with ranges rendered elsewhere, typically from
+ * its Markdown (see {@link #setStyles(StyleRange[], boolean)}), and parts of
+ * it marked, such as the terms matching a search (see {@link #setHighlights(int[])}).
+ * Marks are painted over the text rather than being style ranges, so they
+ * neither interfere with the styles nor change the size of the text.</p>
  */
 public class ChatBubble extends Composite {
 
@@ -30,16 +42,25 @@ public class ChatBubble extends Composite {
         USER, AI
     }
 
-    private final BubbleType type;
-    private final String message;
-    private final String sender;
+    private BubbleType type;
+    private String message;
+    private String sender;
     private StyledText messageText;
     private Canvas bubbleCanvas;
 
+    private final RenderingResources resources;
     private Color bubbleColor;
     private Color selectionColor;
     private int padding = 15;
 
+    private int[] highlights;
+
+    private boolean styled;
+    private boolean stylesComplete = true;
+
+    private long contentId = -1;
+    private int contentVersion;
+
     /**
      * Creates a new chat bubble for displaying message content.
      * 
@@ -58,33 +79,21 @@ public class ChatBubble extends Composite {
         this.sender = sender;
         this.message = message;
 
+        this.resources = RenderingResources.get(parent.getDisplay());
+
         setBackground(parent.getDisplay().getSystemColor(SWT.COLOR_TRANSPARENT));
         initializeColors();
         createControls();
-
-        addDisposeListener(e -> {
-            if (bubbleColor != null && !bubbleColor.isDisposed()) {
-                bubbleColor.dispose();
-            }
-            if (selectionColor != null && !selectionColor.isDisposed()) {
-                selectionColor.dispose();
-            }
-        });
     }
 
     /**
-     * Initializes the bubble and selection colors based on the bubble type.
+     * Looks up the shared bubble and selection colors of the bubble type.
      */
     private void initializeColors() {
-        Display display = getDisplay();
-
-        if (type == BubbleType.USER) {
-            bubbleColor = new Color(display, 100, 170, 255);
-        } else {
-            bubbleColor = new Color(display, 100, 200, 100);
-        }
-
-        selectionColor = new Color(display, 220, 220, 220);
+        bubbleColor = resources.getColor(type == BubbleType.USER
+            ? RenderingResources.USER_BUBBLE
+            : RenderingResources.AI_BUBBLE);
+        selectionColor = resources.getColor(RenderingResources.SELECTION);
     }
 
     /**
@@ -118,6 +127,7 @@ public class ChatBubble extends Composite {
         messageText.setEditable(false);
 
         createContextMenu();
+        messageText.addPaintListener(e -> drawHighlights(e.gc));
 
         bubbleCanvas.addPaintListener(e -> {
             drawBubble(e.gc, bubbleCanvas.getClientArea());
@@ -191,6 +201,29 @@ public class ChatBubble extends Composite {
         gc.drawRoundRectangle(area.x, area.y, area.width - 1, area.height - 1, 20, 20);
     }
 
+    /**
+     * Lays the highlight color over the marked parts of the text. Each part
+     * is expected to lie on one line, as single terms do.
+     *
+     * @param gc the graphics context of the text widget
+     */
+    private void drawHighlights(GC gc) {
+        if (highlights == null) return;
+
+        int length = messageText.getCharCount();
+        gc.setAlpha(96);
+        gc.setBackground(resources.getColor(RenderingResources.SEARCH_MATCH));
+        for (int i = 0; i + 1 < highlights.length; i += 2) {
+            int start = highlights[i];
+            int end = Math.min(start + highlights[i + 1], length);
+            if (start < end) {
+                Rectangle bounds = messageText.getTextBounds(start, end - 1);
+                gc.fillRectangle(bounds);
+            }
+        }
+        gc.setAlpha(255);
+    }
+
     /**
      * Positions the text widget inside the bubble with consistent padding.
      */
@@ -213,6 +246,10 @@ public class ChatBubble extends Composite {
      * Adjusts the bubble size based on the actual content of the message.
      */
     public void adjustBubbleToTextContent() {
+        UiUpdateEvent event = new UiUpdateEvent();
+        event.begin();
+        long start = System.nanoTime();
+
         int idealHeight = computeBubbleHeight();
         Point textSize = messageText.computeSize(SWT.DEFAULT, idealHeight);
 
@@ -223,11 +260,23 @@ public class ChatBubble extends Composite {
         if (getParent() != null) {
             getParent().layout(true, true);
         }
+
+        Metrics.UI_LAYOUT_TIME.recordSince(start);
+        event.kind = "layout";
+        event.bubbles = 1;
+        event.commit();
     }
 
     /**
      * Computes the preferred bubble size used by SWT layout managers.
      *
+     * <p>The size of the text at the resulting wrap width is taken from the
+     * shared measurement cache when this text, identified by its
+     * {@linkplain #setContentKey(long, int) content key}, was already
+     * measured at that width with the same font and styling, and cached
+     * otherwise. Text without a key or whose styles do not cover it yet is
+     * measured without the cache.</p>
+     *
      * @param wHint   width hint
      * @param hHint   height hint
      * @param changed whether the control has changed
@@ -237,11 +286,20 @@ public class ChatBubble extends Composite {
     public Point computeSize(int wHint, int hHint, boolean changed) {
         if (messageText != null && !messageText.isDisposed()) {
             int maxWidth = (wHint != SWT.DEFAULT
-                ? wHint
+                ? wHint - padding * 2
                 : getParent().getClientArea().width - padding * 4);
 
-            Point textPreferredSize =
-                messageText.computeSize(maxWidth, SWT.DEFAULT, true);
+            Font font = messageText.getFont();
+            boolean cached = stylesComplete && contentId >= 0;
+            Point textPreferredSize = cached
+                ? resources.getTextSize(contentId, contentVersion, styled, maxWidth, font)
+                : null;
+            if (textPreferredSize == null) {
+                textPreferredSize = messageText.computeSize(maxWidth, SWT.DEFAULT, true);
+                if (cached) {
+                    resources.putTextSize(contentId, contentVersion, styled, maxWidth, font, textPreferredSize);
+                }
+            }
 
             int width = textPreferredSize.x + (padding * 2);
             int height = textPreferredSize.y + (padding * 2);
@@ -266,6 +324,9 @@ public class ChatBubble extends Composite {
      * @return the message text
      */
     public String getMessage() {
+        if (message == null) {
+            message = messageText.getText();
+        }
         return message;
     }
 
@@ -285,26 +346,174 @@ public class ChatBubble extends Composite {
      */
     public void updateMessage(String newMessage) {
         if (messageText != null && !messageText.isDisposed()) {
+            message = newMessage;
+            contentId = -1;
             messageText.setText(newMessage);
+            clearStyleState();
             adjustBubbleToTextContent();
         }
     }
 
+    /**
+     * Appends streamed text to the end of the message.
+     *
+     * <p>The text is appended to the text widget in place, so only the lines
+     * touched by the new text are laid out again. The bubble is neither
+     * resized nor is its parent laid out; the owner is expected to query
+     * {@link #computeAppendedHeight(int)} and position it.</p>
+     *
+     * @param delta the text to append
+     */
+    public void appendMessage(String delta) {
+        if (messageText != null && !messageText.isDisposed() && !delta.isEmpty()) {
+            message = null;
+            contentId = -1;
+            messageText.append(delta);
+            if (styled) {
+                stylesComplete = false;
+            }
+        }
+    }
+
+    /**
+     * Returns the bubble height after text was appended with
+     * {@link #appendMessage(String)}.
+     *
+     * <p>When the text widget is already laid out at the given width, the
+     * height is read from its line offsets, which reuses the cached height
+     * of every line except the ones that changed. Otherwise the whole text
+     * is measured as in {@link #computeSize(int, int)}.</p>
+     *
+     * @param width the bubble width
+     * @return the bubble height in pixels
+     */
+    public int computeAppendedHeight(int width) {
+        if (messageText.getBounds().width != width - padding * 2) {
+            return computeSize(width, SWT.DEFAULT).y;
+        }
+        int textHeight = messageText.getLinePixel(messageText.getLineCount())
+            + messageText.getBottomMargin();
+        return textHeight + padding * 2;
+    }
+
+    /**
+     * Rebinds this bubble to another message so the widget can be recycled.
+     *
+     * <p>Unlike {@link #updateMessage(String)}, this does not resize the bubble
+     * or lay out its parent; the owner is expected to position it.</p>
+     *
+     * @param newType    the bubble type (USER or AI)
+     * @param newSender  the message sender label
+     * @param newMessage the message text
+     */
+    public void setContent(BubbleType newType, String newSender, String newMessage) {
+        if (newType != type) {
+            type = newType;
+            initializeColors();
+            bubbleCanvas.setBackground(bubbleColor);
+            messageText.setSelectionBackground(selectionColor);
+            forceTransparency();
+        }
+        sender = newSender;
+        if (!newMessage.equals(message)) {
+            message = newMessage;
+            contentId = -1;
+            messageText.setText(newMessage);
+            clearStyleState();
+        }
+        bubbleCanvas.redraw();
+    }
+
+    /**
+     * Identifies the text shown, so its measurements can be shared through
+     * the {@link RenderingResources}. Changing the text removes the key;
+     * the owner sets it again, with a new version.
+     *
+     * @param id      the identifier of the text, from {@link RenderingResources#newContentId()}
+     * @param version the version of the text, changed with every edit
+     */
+    public void setContentKey(long id, int version) {
+        contentId = id;
+        contentVersion = version;
+    }
+
+    /**
+     * Replaces all styles of the text.
+     *
+     * <p>Like {@link #appendMessage(String)}, this does not resize the bubble.</p>
+     *
+     * @param ranges   the ranges, sorted and not overlapping, or null to remove all styles
+     * @param complete whether the ranges were rendered from the whole current text
+     */
+    public void setStyles(StyleRange[] ranges, boolean complete) {
+        if (messageText != null && !messageText.isDisposed()) {
+            messageText.setStyleRanges(ranges != null ? ranges : new StyleRange[0]);
+            styled = ranges != null && ranges.length > 0;
+            stylesComplete = complete || !styled;
+        }
+    }
+
+    /**
+     * Replaces the styles of a part of the text, leaving the styles of the
+     * rest as they are. This is how the styles of a growing text are updated
+     * without restyling what did not change.
+     *
+     * @param start    the start of the replaced part
+     * @param length   the length of the replaced part
+     * @param ranges   the new ranges of that part, sorted and not overlapping
+     * @param complete whether the styles now cover the whole current text
+     */
+    public void replaceStyles(int start, int length, StyleRange[] ranges, boolean complete) {
+        if (messageText != null && !messageText.isDisposed()) {
+            messageText.replaceStyleRanges(start, length, ranges);
+            styled = styled || ranges.length > 0;
+            stylesComplete = complete || !styled;
+        }
+    }
+
+    /**
+     * Marks parts of the text, replacing the previous marks. Marks are
+     * removed when the text is replaced.
+     *
+     * @param ranges the offset and length of each part, in pairs, or null to remove all marks
+     */
+    public void setHighlights(int[] ranges) {
+        if (messageText != null && !messageText.isDisposed()
+                && (highlights != null || ranges != null && ranges.length > 0)) {
+            highlights = ranges != null && ranges.length > 0 ? ranges : null;
+            messageText.redraw();
+        }
+    }
+
+    /**
+     * Returns the length of the text shown, including appended text.
+     *
+     * @return the number of characters
+     */
+    public int getTextLength() {
+        return messageText.getCharCount();
+    }
+
+    /**
+     * Forgets the styles, which setting the text of the widget removes, and the marks.
+     */
+    private void clearStyleState() {
+        styled = false;
+        stylesComplete = true;
+        highlights = null;
+    }
+
     /**
      * Computes and returns the required height for the bubble
      * based on the current font metrics and padding.
      *
-     * <p>The height is calculated using the font's line height
-     * plus vertical padding applied to the bubble.</p>
+     * <p>The height is calculated using the font's line height, read from
+     * the shared font metrics, plus vertical padding applied to the bubble.</p>
      *
      * @return the calculated bubble height in pixels
      */
     private int computeBubbleHeight() {
-        GC gc = new GC(messageText);
-        FontMetrics fm = gc.getFontMetrics();
-        int lineHeight = fm.getHeight();
-        gc.dispose();
-
+        int lineHeight = resources.getFontMetrics(messageText.getFont()).getHeight();
         return padding * 2 + lineHeight;
     }
 }
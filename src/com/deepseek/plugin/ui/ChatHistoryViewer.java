@@ -0,0 +1,582 @@
+package com.deepseek.plugin.ui;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.FontMetrics;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.ScrollBar;
+
+import com.deepseek.plugin.markdown.MarkdownRenderer;
+import com.deepseek.plugin.metrics.Metrics;
+import com.deepseek.plugin.metrics.UiUpdateEvent;
+
+/**
+ * A virtualized, scrollable list of chat messages.
+ *
+ * <p>Messages are kept as plain model entries; {@link ChatBubble} widgets are
+ * only created for the entries inside or just around the viewport, and are
+ * recycled for other entries while scrolling. Each entry caches its measured
+ * height together with the width it was measured at, so adding a message,
+ * scrolling or resizing only measures and positions the visible bubbles.
+ * Entries that were never measured use an estimate derived from the font
+ * metrics until they scroll into view. Bubbles look their sizes up in the
+ * shared {@link RenderingResources} first, so after a resize, a message
+ * only has its text measured again at a width it was never shown at.</p>
+ *
+ * <p>The viewer sticks to the bottom while the user is at the bottom, so new
+ * and growing messages stay visible.</p>
+ *
+ * <p>The Markdown of AI messages is rendered by a {@link MarkdownStyler} in
+ * the background, when a message is first shown and whenever it changes.
+ * Changes are collected until the next refresh, so the text of a streamed
+ * answer is joined and handed to the styler once per refresh rather than
+ * once per chunk. Each message keeps its own incremental
+ * {@link MarkdownRenderer}, so only its last line is rendered again, and the
+ * UI thread only replaces the style ranges that changed.</p>
+ */
+public final class ChatHistoryViewer extends Composite {
+
+    /**
+     * A message to display.
+     *
+     * @param type       the bubble type (USER or AI)
+     * @param sender     the message sender label
+     * @param message    the message text
+     * @param highlights the parts of the text to mark, as offset and length
+     *                   pairs (see {@link ChatBubble#setHighlights(int[])}), or null
+     */
+    public record Item(ChatBubble.BubbleType type, String sender, String message, int[] highlights) {
+
+        /**
+         * Creates an item without marks.
+         *
+         * @param type    the bubble type (USER or AI)
+         * @param sender  the message sender label
+         * @param message the message text
+         */
+        public Item(ChatBubble.BubbleType type, String sender, String message) {
+            this(type, sender, message, null);
+        }
+    }
+
+    /**
+     * Model entry with its cached layout information.
+     */
+    private static final class Entry {
+        final long id;
+        int version;
+        ChatBubble.BubbleType type;
+        String sender;
+        String message;
+        int[] highlights;
+        StringBuilder tail;
+        int height;
+        int measuredWidth = -1;
+        boolean appended;
+        boolean stylesRequested;
+        MarkdownRenderer renderer;
+        MarkdownRenderer.Result styles;
+        ChatBubble styledBubble;
+
+        Entry(Item item, long id) {
+            this.id = id;
+            this.type = item.type();
+            this.sender = item.sender();
+            this.message = item.message();
+            this.highlights = item.highlights();
+        }
+
+        /**
+         * Returns the full text, joining text appended since the last call.
+         */
+        String message() {
+            if (tail != null) {
+                message = message + tail;
+                tail = null;
+            }
+            return message;
+        }
+
+        void append(String delta) {
+            if (tail == null) {
+                tail = new StringBuilder(Math.max(64, delta.length()));
+            }
+            tail.append(delta);
+        }
+    }
+
+    private static final int MARGIN = 5;
+    private static final int SPACING = 5;
+    private static final int OVERSCAN = 400;
+    private static final int MAX_POOL = 16;
+    private static final int BUBBLE_PADDING = 15;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private int[] tops = new int[64];
+    private int validTops;
+
+    private Map<Entry, ChatBubble> bound = new IdentityHashMap<>();
+    private final ArrayDeque<ChatBubble> pool = new ArrayDeque<>();
+
+    private int scrollTop;
+    private boolean stickToBottom = true;
+    private boolean refreshPending;
+    private Runnable topReachedListener;
+
+    private int lineHeight = -1;
+    private double averageCharWidth;
+
+    private final MarkdownStyler<Entry> styler;
+    private final List<Entry> styleRequests = new ArrayList<>();
+
+    /**
+     * Creates an empty history viewer.
+     *
+     * @param parent the parent composite
+     * @param style  additional style bits; a vertical scroll bar is always added
+     */
+    public ChatHistoryViewer(Composite parent, int style) {
+        super(parent, style | SWT.V_SCROLL);
+        setBackground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
+
+        ScrollBar bar = getVerticalBar();
+        bar.addListener(SWT.Selection, e -> {
+            scrollTop = bar.getSelection();
+            stickToBottom = scrollTop + getClientArea().height >= totalHeight() - 1;
+            refresh();
+            if (scrollTop == 0 && topReachedListener != null) {
+                topReachedListener.run();
+            }
+        });
+        addListener(SWT.Resize, e -> refresh());
+
+        styler = new MarkdownStyler<>(getDisplay(), this::applyStyles);
+        addDisposeListener(e -> styler.dispose());
+    }
+
+    /**
+     * Appends a message at the end of the history.
+     *
+     * @param item the message to display
+     * @return the index of the new message
+     */
+    public int add(Item item) {
+        entries.add(newEntry(item));
+        scheduleRefresh();
+        return entries.size() - 1;
+    }
+
+    /**
+     * Inserts older messages before the first one, keeping the visible
+     * messages at the same place on screen.
+     *
+     * @param items the messages to insert, oldest first
+     */
+    public void prepend(List<Item> items) {
+        if (items.isEmpty()) return;
+
+        int previousTotal = totalHeight();
+        List<Entry> inserted = new ArrayList<>(items.size());
+        for (Item item : items) {
+            inserted.add(newEntry(item));
+        }
+        entries.addAll(0, inserted);
+        validTops = 0;
+        scrollTop += totalHeight() - previousTotal;
+        refresh();
+    }
+
+    /**
+     * Replaces the text of a message.
+     *
+     * @param index   the message index
+     * @param message the new text
+     */
+    public void setMessage(int index, String message) {
+        Entry entry = entries.get(index);
+        entry.message = message;
+        entry.version++;
+        entry.highlights = null;
+        entry.tail = null;
+        entry.measuredWidth = -1;
+        entry.appended = false;
+        entry.renderer = null;
+        entry.styles = null;
+        entry.styledBubble = null;
+        ChatBubble bubble = bound.get(entry);
+        if (bubble != null) {
+            bubble.setContent(entry.type, entry.sender, message);
+            bubble.setContentKey(entry.id, entry.version);
+            bubble.setHighlights(null);
+            bubble.setStyles(null, true);
+            requestStyles(entry);
+        }
+        scheduleRefresh();
+    }
+
+    /**
+     * Appends streamed text to a message.
+     *
+     * <p>A visible bubble receives only the new text and is remeasured from
+     * its cached line heights on the next refresh, so streaming an answer
+     * does not lay out the whole message for every chunk.</p>
+     *
+     * @param index the message index
+     * @param delta the text to append
+     */
+    public void appendMessage(int index, String delta) {
+        if (delta.isEmpty()) return;
+
+        Entry entry = entries.get(index);
+        entry.append(delta);
+        entry.version++;
+        ChatBubble bubble = bound.get(entry);
+        if (bubble != null) {
+            bubble.appendMessage(delta);
+            bubble.setContentKey(entry.id, entry.version);
+            entry.appended = true;
+            requestStyles(entry);
+        } else {
+            entry.measuredWidth = -1;
+        }
+        scheduleRefresh();
+    }
+
+    /**
+     * Returns the text of a message.
+     *
+     * @param index the message index
+     * @return the message text
+     */
+    public String getMessage(int index) {
+        return entries.get(index).message();
+    }
+
+    /**
+     * Returns the number of messages, including those without a widget.
+     *
+     * @return the message count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all messages and recycles their bubbles.
+     */
+    public void clear() {
+        styler.clear();
+        for (Entry entry : styleRequests) {
+            entry.stylesRequested = false;
+        }
+        styleRequests.clear();
+        entries.clear();
+        validTops = 0;
+        scrollTop = 0;
+        stickToBottom = true;
+        refresh();
+    }
+
+    /**
+     * Scrolls to the last message and keeps following new content.
+     */
+    public void scrollToBottom() {
+        stickToBottom = true;
+        scheduleRefresh();
+    }
+
+    /**
+     * Sets the callback run when the user scrolls to the very top, typically
+     * used to load older messages lazily.
+     *
+     * @param listener the callback, or null to remove it
+     */
+    public void setTopReachedListener(Runnable listener) {
+        this.topReachedListener = listener;
+    }
+
+    /**
+     * Coalesces model changes made in the same UI event into a single refresh.
+     */
+    private void scheduleRefresh() {
+        if (refreshPending) return;
+        refreshPending = true;
+        getDisplay().asyncExec(() -> {
+            refreshPending = false;
+            if (!isDisposed()) {
+                refresh();
+            }
+        });
+    }
+
+    /**
+     * Binds, measures and positions the bubbles of the visible entries and
+     * recycles all other bubbles. Runs in time proportional to the number of
+     * visible entries, plus the arithmetic to update entry offsets.
+     */
+    private void refresh() {
+        UiUpdateEvent event = new UiUpdateEvent();
+        event.begin();
+        long start = System.nanoTime();
+
+        Rectangle area = getClientArea();
+        int width = Math.max(area.width - MARGIN * 2, 50);
+        int viewportHeight = area.height;
+
+        ensureTops();
+        int total = totalHeight();
+        if (stickToBottom) {
+            scrollTop = Math.max(0, total - viewportHeight);
+        }
+        scrollTop = Math.max(0, Math.min(scrollTop, Math.max(0, total - viewportHeight)));
+
+        // Offsets after a remeasured entry are stale until the loop ends, so
+        // the visible entries are positioned from a running offset instead.
+        Map<Entry, ChatBubble> visible = new IdentityHashMap<>();
+        int index = firstIndexAt(Math.max(0, scrollTop - OVERSCAN));
+        int bottom = scrollTop + viewportHeight + OVERSCAN;
+        int top = index < entries.size() ? tops[index] : 0;
+
+        while (index < entries.size() && top < bottom) {
+            Entry entry = entries.get(index);
+            ChatBubble bubble = bound.remove(entry);
+            if (bubble == null) {
+                bubble = acquireBubble(entry);
+            }
+            visible.put(entry, bubble);
+
+            if (entry.measuredWidth != width || entry.appended) {
+                int height = entry.appended && entry.measuredWidth == width
+                    ? bubble.computeAppendedHeight(width)
+                    : bubble.computeSize(width, SWT.DEFAULT).y;
+                entry.measuredWidth = width;
+                entry.appended = false;
+                if (height != entry.height) {
+                    entry.height = height;
+                    validTops = Math.min(validTops, index + 1);
+                }
+            }
+
+            bubble.setBounds(MARGIN, top - scrollTop, width, entry.height);
+            top += entry.height + SPACING;
+            index++;
+        }
+        ensureTops();
+
+        for (Map.Entry<Entry, ChatBubble> hidden : bound.entrySet()) {
+            if (hidden.getKey().appended) {
+                hidden.getKey().appended = false;
+                hidden.getKey().measuredWidth = -1;
+            }
+            releaseBubble(hidden.getValue());
+        }
+        bound = visible;
+
+        total = totalHeight();
+        if (stickToBottom) {
+            int bottomTop = Math.max(0, total - viewportHeight);
+            if (bottomTop != scrollTop) {
+                int delta = bottomTop - scrollTop;
+                scrollTop = bottomTop;
+                for (ChatBubble bubble : bound.values()) {
+                    Rectangle bounds = bubble.getBounds();
+                    bubble.setBounds(bounds.x, bounds.y - delta, bounds.width, bounds.height);
+                }
+            }
+        }
+
+        ScrollBar bar = getVerticalBar();
+        bar.setValues(scrollTop, 0, Math.max(total, 1), Math.max(Math.min(viewportHeight, total), 1),
+            20, Math.max(viewportHeight, 1));
+        flushStyleRequests();
+
+        Metrics.UI_REFRESH_TIME.recordSince(start);
+        event.kind = "refresh";
+        event.bubbles = bound.size();
+        event.commit();
+    }
+
+    /**
+     * Creates the entry of a message, with an identifier for its measurements.
+     */
+    private Entry newEntry(Item item) {
+        return new Entry(item, RenderingResources.get(getDisplay()).newContentId());
+    }
+
+    /**
+     * Returns a bubble for the entry, reusing a pooled one when possible.
+     */
+    private ChatBubble acquireBubble(Entry entry) {
+        ChatBubble bubble = pool.poll();
+        if (bubble == null) {
+            bubble = new ChatBubble(this, entry.type, entry.sender, entry.message());
+        } else {
+            bubble.setContent(entry.type, entry.sender, entry.message());
+            bubble.setVisible(true);
+        }
+        bubble.setContentKey(entry.id, entry.version);
+        bubble.setHighlights(entry.highlights);
+        bindStyles(entry, bubble);
+        return bubble;
+    }
+
+    /**
+     * Shows the latest rendered styles of an entry in its new bubble, and
+     * requests a render if they do not cover the text.
+     */
+    private void bindStyles(Entry entry, ChatBubble bubble) {
+        if (entry.styles == null) {
+            bubble.setStyles(null, true);
+            entry.styledBubble = null;
+        } else {
+            bubble.setStyles(entry.styles.all(), entry.styles.end() == bubble.getTextLength());
+            entry.styledBubble = bubble;
+        }
+        if (entry.styles == null || entry.styles.end() != bubble.getTextLength()) {
+            requestStyles(entry);
+        }
+    }
+
+    /**
+     * Requests the rendering of the Markdown of an AI message on the next
+     * refresh, which callers schedule.
+     */
+    private void requestStyles(Entry entry) {
+        if (entry.type != ChatBubble.BubbleType.AI || entry.stylesRequested) return;
+        entry.stylesRequested = true;
+        styleRequests.add(entry);
+    }
+
+    /**
+     * Hands the latest text of every message whose rendering was requested
+     * since the last refresh to the styler.
+     */
+    private void flushStyleRequests() {
+        for (Entry entry : styleRequests) {
+            entry.stylesRequested = false;
+            if (entry.renderer == null) {
+                entry.renderer = new MarkdownRenderer(RenderingResources.get(getDisplay()).getStylePalette());
+            }
+            styler.render(entry, entry.renderer, entry.message());
+        }
+        styleRequests.clear();
+    }
+
+    /**
+     * Applies rendered styles to the bubble of their entry, if it still shows
+     * the text they were rendered from. Runs on the UI thread.
+     */
+    private void applyStyles(Entry entry, MarkdownRenderer renderer, MarkdownRenderer.Result result) {
+        if (isDisposed() || entry.renderer != renderer) return;
+
+        ChatBubble bubble = bound.get(entry);
+        if (bubble == null) {
+            entry.styles = result;
+            entry.styledBubble = null;
+            return;
+        }
+        boolean complete = result.end() == bubble.getTextLength();
+        if (entry.styledBubble == bubble && entry.styles != null) {
+            bubble.replaceStyles(result.start(), result.end() - result.start(), result.changed(), complete);
+        } else {
+            bubble.setStyles(result.all(), complete);
+        }
+        entry.styles = result;
+        entry.styledBubble = bubble;
+        entry.appended = true;
+        scheduleRefresh();
+    }
+
+    /**
+     * Hides a bubble that is no longer visible and keeps it for reuse.
+     */
+    private void releaseBubble(ChatBubble bubble) {
+        if (pool.size() >= MAX_POOL) {
+            bubble.dispose();
+        } else {
+            bubble.setVisible(false);
+            pool.push(bubble);
+        }
+    }
+
+    /**
+     * Recomputes entry offsets from the first invalid one, estimating the
+     * height of entries that were never measured.
+     */
+    private void ensureTops() {
+        int count = entries.size();
+        if (tops.length < count + 1) {
+            int[] larger = new int[Math.max(count + 1, tops.length * 2)];
+            System.arraycopy(tops, 0, larger, 0, validTops + 1);
+            tops = larger;
+        }
+        if (validTops == 0) {
+            tops[0] = MARGIN;
+        }
+        for (int i = validTops; i < count; i++) {
+            Entry entry = entries.get(i);
+            if (entry.height == 0) {
+                entry.height = estimateHeight(entry.message());
+            }
+            tops[i + 1] = tops[i] + entry.height + SPACING;
+        }
+        validTops = count;
+    }
+
+    /**
+     * Returns the total height of all entries, including margins.
+     */
+    private int totalHeight() {
+        ensureTops();
+        return tops[entries.size()] + MARGIN;
+    }
+
+    /**
+     * Returns the index of the entry containing the given vertical offset.
+     */
+    private int firstIndexAt(int y) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tops[middle + 1] <= y) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Estimates the height of a bubble from the font metrics, without creating a widget.
+     */
+    private int estimateHeight(String message) {
+        if (lineHeight < 0) {
+            FontMetrics metrics = RenderingResources.get(getDisplay()).getFontMetrics(getFont());
+            lineHeight = metrics.getHeight();
+            averageCharWidth = Math.max(1, metrics.getAverageCharacterWidth());
+        }
+
+        int textWidth = Math.max(getClientArea().width - MARGIN * 2 - BUBBLE_PADDING * 2, 50);
+        int charsPerLine = Math.max(1, (int) (textWidth / averageCharWidth));
+        int lines = 0;
+        int lineLength = 0;
+        for (int i = 0; i < message.length(); i++) {
+            if (message.charAt(i) == '\n') {
+                lines += 1 + lineLength / charsPerLine;
+                lineLength = 0;
+            } else {
+                lineLength++;
+            }
+        }
+        lines += 1 + lineLength / charsPerLine;
+        return lines * lineHeight + BUBBLE_PADDING * 2;
+    }
+}
@@ -0,0 +1,105 @@
+package com.deepseek.plugin.ui;
+
+import java.util.function.Consumer;
+
+import org.eclipse.swt.widgets.Display;
+
+import com.deepseek.plugin.metrics.Metrics;
+import com.deepseek.plugin.metrics.UiUpdateEvent;
+
+/**
+ * Batches text produced on a worker thread into at most one UI update per frame.
+ *
+ * <p>Streamed chunks are appended from any thread and collected in a buffer.
+ * The first chunk after an update schedules a single flush on the UI thread,
+ * delayed so that updates are at least {@link #FRAME_MILLIS} apart; all
+ * chunks received meanwhile are delivered together to the consumer.</p>
+ */
+public class FrameCoalescer {
+
+    /** Minimum interval between two updates, about one frame at 60 Hz. */
+    public static final int FRAME_MILLIS = 16;
+
+    private final Display display;
+    private final Consumer<String> consumer;
+
+    private final StringBuilder pending = new StringBuilder();
+    private boolean scheduled;
+    private boolean cancelled;
+
+    private long lastFlush;
+
+    /**
+     * Creates a coalescer delivering batched text on the display thread.
+     *
+     * @param display  the display whose UI thread runs the consumer
+     * @param consumer receives the text collected since the previous update
+     */
+    public FrameCoalescer(Display display, Consumer<String> consumer) {
+        this.display = display;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Queues text for the next update. May be called from any thread.
+     *
+     * @param text the text to append
+     */
+    public void append(String text) {
+        synchronized (this) {
+            if (cancelled || text.isEmpty()) return;
+            pending.append(text);
+            if (scheduled) return;
+            scheduled = true;
+        }
+        if (!display.isDisposed()) {
+            display.asyncExec(this::flushWhenDue);
+        }
+    }
+
+    /**
+     * Delivers all queued text immediately. Must be called on the UI thread,
+     * typically once the stream has completed.
+     */
+    public void flush() {
+        String text;
+        synchronized (this) {
+            scheduled = false;
+            if (cancelled || pending.isEmpty()) return;
+            text = pending.toString();
+            pending.setLength(0);
+        }
+        lastFlush = System.currentTimeMillis();
+
+        UiUpdateEvent event = new UiUpdateEvent();
+        event.begin();
+        long start = System.nanoTime();
+        consumer.accept(text);
+        Metrics.UI_FLUSH_TIME.recordSince(start);
+        event.kind = "flush";
+        event.characters = text.length();
+        event.commit();
+    }
+
+    /**
+     * Discards queued text and ignores any text appended afterwards. A flush
+     * already scheduled delivers nothing.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        pending.setLength(0);
+    }
+
+    /**
+     * Flushes now if the last update is at least a frame old, otherwise
+     * defers the flush to the end of the frame.
+     */
+    private void flushWhenDue() {
+        long wait = FRAME_MILLIS - (System.currentTimeMillis() - lastFlush);
+        if (wait > 0) {
+            display.timerExec((int) wait, this::flush);
+        } else {
+            flush();
+        }
+    }
+}
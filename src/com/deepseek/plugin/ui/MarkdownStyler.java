@@ -0,0 +1,135 @@
+package com.deepseek.plugin.ui;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+
+import com.deepseek.plugin.markdown.MarkdownRenderer;
+import com.deepseek.plugin.metrics.Metrics;
+
+/**
+ * Renders the Markdown of messages in a background job and hands the
+ * resulting style ranges to the UI thread.
+ *
+ * <p>Only the latest text of each message is rendered: a message whose
+ * text changes again before the job got to it is rendered once, with its
+ * latest text. Results are delivered on the UI thread, in the order they
+ * were rendered, so that the changed ranges of a result can be applied on
+ * top of the previous result of the same renderer.</p>
+ *
+ * @param <K> the type identifying a message
+ */
+final class MarkdownStyler<K> {
+
+    /**
+     * Receives rendered styles on the UI thread.
+     *
+     * @param <K> the type identifying a message
+     */
+    interface Listener<K> {
+
+        /**
+         * Called with the result of a render.
+         *
+         * @param key      the message
+         * @param renderer the renderer that produced the result
+         * @param result   the rendered ranges
+         */
+        void rendered(K key, MarkdownRenderer renderer, MarkdownRenderer.Result result);
+    }
+
+    /**
+     * A pending render.
+     */
+    private record Request(MarkdownRenderer renderer, String text) {
+    }
+
+    private final Display display;
+    private final Listener<K> listener;
+    private final Job job;
+    private final Map<K, Request> pending = new LinkedHashMap<>();
+    private boolean disposed;
+
+    /**
+     * Creates a styler delivering results on the UI thread of a display.
+     *
+     * @param display  the display
+     * @param listener receives the results
+     */
+    MarkdownStyler(Display display, Listener<K> listener) {
+        this.display = display;
+        this.listener = listener;
+        this.job = new Job("Rendering DeepSeek messages") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                drain(monitor);
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.setPriority(Job.SHORT);
+    }
+
+    /**
+     * Requests the rendering of the latest text of a message, replacing a
+     * pending request for the same message.
+     *
+     * @param key      the message
+     * @param renderer the renderer of the message
+     * @param text     the full text of the message
+     */
+    synchronized void render(K key, MarkdownRenderer renderer, String text) {
+        if (disposed) return;
+        pending.put(key, new Request(renderer, text));
+        job.schedule();
+    }
+
+    /**
+     * Drops all pending requests.
+     */
+    synchronized void clear() {
+        pending.clear();
+    }
+
+    /**
+     * Drops all pending requests and stops rendering.
+     */
+    void dispose() {
+        synchronized (this) {
+            disposed = true;
+            pending.clear();
+        }
+        job.cancel();
+    }
+
+    /**
+     * Renders pending requests until there are none left. Runs in the job.
+     */
+    private void drain(IProgressMonitor monitor) {
+        while (!monitor.isCanceled()) {
+            K key;
+            Request request;
+            synchronized (this) {
+                Iterator<Map.Entry<K, Request>> iterator = pending.entrySet().iterator();
+                if (!iterator.hasNext()) return;
+                Map.Entry<K, Request> next = iterator.next();
+                iterator.remove();
+                key = next.getKey();
+                request = next.getValue();
+            }
+
+            long start = System.nanoTime();
+            MarkdownRenderer.Result result = request.renderer().render(request.text());
+            Metrics.UI_RENDER_TIME.recordSince(start);
+
+            if (display.isDisposed()) return;
+            display.asyncExec(() -> listener.rendered(key, request.renderer(), result));
+        }
+    }
+}
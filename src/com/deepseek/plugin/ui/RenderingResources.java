@@ -0,0 +1,266 @@
+package com.deepseek.plugin.ui;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jface.resource.JFaceResources;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyleRange;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.FontData;
+import org.eclipse.swt.graphics.FontMetrics;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.widgets.Display;
+
+import com.deepseek.plugin.markdown.StyleKind;
+import com.deepseek.plugin.markdown.StylePalette;
+import com.deepseek.plugin.metrics.Metrics;
+
+/**
+ * Colors, fonts and text measurements shared by all chat widgets of a display.
+ *
+ * <p>Resources are allocated the first time they are asked for and kept
+ * until the display is disposed, so widgets neither allocate nor dispose
+ * them; a widget must not dispose a resource obtained here. Font metrics
+ * are read once per font, and the {@link StylePalette} of rendered
+ * Markdown is built once, using the workbench text font for code.</p>
+ *
+ * <p>The preferred sizes of wrapped texts are cached by the identifier and
+ * version of the text, its styling, wrap width and font, up to
+ * {@link #MAX_MEASUREMENTS} of them, least recently used first out. Owners
+ * of texts get identifiers from {@link #newContentId()} and change the
+ * version with every edit, so a lookup costs the same for a long answer as
+ * for a short one. Laying out a message again at a width it was already
+ * measured at, for example when the view is resized back or a recycled
+ * bubble shows a message again, reuses the cached size instead of measuring
+ * the text.</p>
+ *
+ * <p>Instances are confined to the UI thread of their display.</p>
+ */
+public final class RenderingResources {
+
+    /** The background of the bubbles of user messages. */
+    public static final RGB USER_BUBBLE = new RGB(100, 170, 255);
+
+    /** The background of the bubbles of AI messages. */
+    public static final RGB AI_BUBBLE = new RGB(100, 200, 100);
+
+    /** The background of selected text in bubbles. */
+    public static final RGB SELECTION = new RGB(220, 220, 220);
+
+    /** The color laid over the terms matching a history search. */
+    public static final RGB SEARCH_MATCH = new RGB(255, 210, 0);
+
+    /** The maximum number of cached text measurements. */
+    public static final int MAX_MEASUREMENTS = 4096;
+
+    private static final Map<Display, RenderingResources> INSTANCES = new HashMap<>();
+
+    /**
+     * The key of a cached text measurement.
+     */
+    private record Measurement(long contentId, int version, boolean styled, int wrapWidth, Font font) {
+    }
+
+    /**
+     * The key of a shared font.
+     */
+    private record FontKey(String name, int height, int style) {
+    }
+
+    private final Display display;
+    private final Map<RGB, Color> colors = new HashMap<>();
+    private final Map<FontKey, Font> fonts = new HashMap<>();
+    private final Map<Font, FontMetrics> fontMetrics = new HashMap<>();
+    private StylePalette stylePalette;
+    private long lastContentId;
+    private final Map<Measurement, Point> measurements = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Measurement, Point> eldest) {
+            return size() > MAX_MEASUREMENTS;
+        }
+    };
+
+    private RenderingResources(Display display) {
+        this.display = display;
+    }
+
+    /**
+     * Returns the resources of a display, creating them on first use.
+     *
+     * @param display the display
+     * @return the shared resources of the display
+     */
+    public static synchronized RenderingResources get(Display display) {
+        RenderingResources resources = INSTANCES.get(display);
+        if (resources == null) {
+            RenderingResources created = new RenderingResources(display);
+            INSTANCES.put(display, created);
+            display.disposeExec(() -> {
+                synchronized (RenderingResources.class) {
+                    INSTANCES.remove(display);
+                }
+                created.dispose();
+            });
+            resources = created;
+        }
+        return resources;
+    }
+
+    /**
+     * Returns the shared color of an RGB value.
+     *
+     * @param rgb the color value
+     * @return the color, owned by this registry
+     */
+    public Color getColor(RGB rgb) {
+        return colors.computeIfAbsent(rgb, value -> new Color(display, value));
+    }
+
+    /**
+     * Returns a shared font.
+     *
+     * @param name   the font family
+     * @param height the height in points
+     * @param style  a combination of {@code SWT.NORMAL}, {@code SWT.BOLD} and {@code SWT.ITALIC}
+     * @return the font, owned by this registry
+     */
+    public Font getFont(String name, int height, int style) {
+        return fonts.computeIfAbsent(new FontKey(name, height, style),
+            key -> new Font(display, new FontData(key.name(), key.height(), key.style())));
+    }
+
+    /**
+     * Returns the metrics of a font, measuring them on first use.
+     *
+     * @param font the font
+     * @return its metrics
+     */
+    public FontMetrics getFontMetrics(Font font) {
+        FontMetrics metrics = fontMetrics.get(font);
+        if (metrics == null) {
+            GC gc = new GC(display);
+            try {
+                gc.setFont(font);
+                metrics = gc.getFontMetrics();
+            } finally {
+                gc.dispose();
+            }
+            fontMetrics.put(font, metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the look of rendered Markdown, creating its resources on first use.
+     *
+     * @return the palette
+     */
+    public StylePalette getStylePalette() {
+        if (stylePalette == null) {
+            Font codeFont = JFaceResources.getTextFont();
+            Color codeBackground = getColor(new RGB(245, 245, 245));
+            Map<StyleKind, StyleRange> templates = new EnumMap<>(StyleKind.class);
+            templates.put(StyleKind.MARKUP, style(new RGB(90, 90, 90), null, SWT.NORMAL, null));
+            templates.put(StyleKind.HEADING, style(null, null, SWT.BOLD, null));
+            templates.put(StyleKind.STRONG, style(null, null, SWT.BOLD, null));
+            templates.put(StyleKind.EMPHASIS, style(null, null, SWT.ITALIC, null));
+            StyleRange strikeout = style(null, null, SWT.NORMAL, null);
+            strikeout.strikeout = true;
+            templates.put(StyleKind.STRIKEOUT, strikeout);
+            StyleRange link = style(new RGB(0, 0, 170), null, SWT.NORMAL, null);
+            link.underline = true;
+            templates.put(StyleKind.LINK, link);
+            templates.put(StyleKind.QUOTE, style(new RGB(60, 60, 60), null, SWT.ITALIC, null));
+            templates.put(StyleKind.INLINE_CODE, style(null, codeBackground, SWT.NORMAL, codeFont));
+            templates.put(StyleKind.CODE, style(null, codeBackground, SWT.NORMAL, codeFont));
+            templates.put(StyleKind.KEYWORD, style(new RGB(127, 0, 85), codeBackground, SWT.NORMAL, codeFont));
+            templates.put(StyleKind.STRING, style(new RGB(42, 0, 255), codeBackground, SWT.NORMAL, codeFont));
+            templates.put(StyleKind.COMMENT, style(new RGB(63, 127, 95), codeBackground, SWT.NORMAL, codeFont));
+            templates.put(StyleKind.NUMBER, style(new RGB(0, 100, 150), codeBackground, SWT.NORMAL, codeFont));
+            templates.put(StyleKind.ANNOTATION, style(new RGB(100, 100, 100), codeBackground, SWT.NORMAL, codeFont));
+            templates.put(StyleKind.TAG, style(new RGB(63, 127, 127), codeBackground, SWT.NORMAL, codeFont));
+            templates.put(StyleKind.ATTRIBUTE, style(new RGB(127, 0, 127), codeBackground, SWT.NORMAL, codeFont));
+            templates.put(StyleKind.VARIABLE, style(new RGB(0, 0, 192), codeBackground, SWT.NORMAL, codeFont));
+            stylePalette = new StylePalette(templates);
+        }
+        return stylePalette;
+    }
+
+    /**
+     * Returns a new identifier of a text whose measurements are cached.
+     *
+     * @return an identifier unique on this display
+     */
+    public long newContentId() {
+        return ++lastContentId;
+    }
+
+    /**
+     * Returns the cached preferred size of a wrapped text.
+     *
+     * @param contentId the identifier of the text, from {@link #newContentId()}
+     * @param version   the version of the text, changed by its owner with every edit
+     * @param styled    whether the text has style ranges, which change its size
+     * @param wrapWidth the width the text is wrapped at
+     * @param font      the font of the text
+     * @return the size, or null if it was not measured yet
+     */
+    public Point getTextSize(long contentId, int version, boolean styled, int wrapWidth, Font font) {
+        Point size = measurements.get(new Measurement(contentId, version, styled, wrapWidth, font));
+        if (size != null) {
+            Metrics.UI_MEASURE_HITS.increment();
+        } else {
+            Metrics.UI_MEASURE_MISSES.increment();
+        }
+        return size;
+    }
+
+    /**
+     * Caches the preferred size of a wrapped text.
+     *
+     * @param contentId the identifier of the text
+     * @param version   the version of the text
+     * @param styled    whether the text has style ranges
+     * @param wrapWidth the width the text is wrapped at
+     * @param font      the font of the text
+     * @param size      its measured size
+     */
+    public void putTextSize(long contentId, int version, boolean styled, int wrapWidth, Font font, Point size) {
+        measurements.put(new Measurement(contentId, version, styled, wrapWidth, font), new Point(size.x, size.y));
+    }
+
+    /**
+     * Creates the template of a style.
+     */
+    private StyleRange style(RGB foreground, Color background, int fontStyle, Font font) {
+        StyleRange style = new StyleRange();
+        style.foreground = foreground != null ? getColor(foreground) : null;
+        style.background = background;
+        style.fontStyle = fontStyle;
+        style.font = font;
+        return style;
+    }
+
+    /**
+     * Releases every resource. Runs when the display is disposed.
+     */
+    private void dispose() {
+        for (Color color : colors.values()) {
+            color.dispose();
+        }
+        for (Font font : fonts.values()) {
+            font.dispose();
+        }
+        colors.clear();
+        fonts.clear();
+        fontMetrics.clear();
+        measurements.clear();
+        stylePalette = null;
+    }
+}
@@ -1,51 +1,111 @@
 package com.deepseek.plugin.views;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.UnaryOperator;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.custom.ScrolledComposite;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
-import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.part.ViewPart;
 
+import com.deepseek.plugin.Activator;
+import com.deepseek.plugin.api.ChatMessage;
+import com.deepseek.plugin.api.Conversation;
 import com.deepseek.plugin.api.DeepSeekAPIClient;
+import com.deepseek.plugin.api.StreamListener;
+import com.deepseek.plugin.concurrent.CancellationToken;
 import com.deepseek.plugin.configuration.ConfigurationManager;
+import com.deepseek.plugin.context.WorkspaceIndexer;
+import com.deepseek.plugin.history.ConversationStore;
+import com.deepseek.plugin.history.SearchQuery;
+import com.deepseek.plugin.history.StoredMessage;
 import com.deepseek.plugin.ui.ChatBubble;
+import com.deepseek.plugin.ui.ChatHistoryViewer;
+import com.deepseek.plugin.ui.FrameCoalescer;
 
 /**
  * Main view of the DeepSeek Eclipse Plugin.
  * Displays the conversation history and provides controls
  * to send user messages to the DeepSeek API.
  * 
- * <p>This view includes a scrollable chat interface constructed
- * using custom ChatBubble widgets, along with an input field and
- * actions for sending and canceling API requests.</p>
+ * <p>This view includes a virtualized chat history that only creates
+ * ChatBubble widgets for the visible messages, along with an input field
+ * and actions for sending and canceling API requests. A search box above
+ * the history finds messages of all stored conversations; while it holds
+ * a query, the history shows the matching messages with the matching
+ * terms marked.</p>
+ *
+ * <p>Messages are stored, threads deleted and searches run in background
+ * jobs rather than on the UI thread. Writes run one at a time, in the
+ * order they were made.</p>
  */
 public class DeepSeekView extends ViewPart {
 
     /** The Eclipse view ID. */
     public static final String ID = "com.deepseek.plugin.views.DeepSeekView";
 
+    /** Number of stored messages restored when the view opens. */
+    private static final int HISTORY_PAGE_SIZE = 50;
+
+    /** Maximum number of messages shown for a search. */
+    private static final int SEARCH_RESULTS = 100;
+
+    /** Typing pause after which the search box runs its query, in milliseconds. */
+    private static final int SEARCH_DELAY = 250;
+
+    private Text searchText;
+    private Label outputLabel;
     private Text inputText;
     private Button sendButton;
     private Button cancelButton;
+    private Button clearButton;
 
     private boolean isProcessing;
-    private Thread apiThread;
-    private DeepSeekAPIClient apiClient;
+    private CancellationToken requestToken;
+    private FrameCoalescer streamCoalescer;
+    private Conversation conversation;
+    private ConversationStore conversationStore;
+    private long threadId;
+
+    private ChatHistoryViewer historyViewer;
+    private long oldestLoadedSequence = -1;
+
+    private final Runnable searchTask = this::runSearch;
+    private boolean showingResults;
+    /** Counts the searches started, so the results of a superseded search are dropped. */
+    private long searchCount;
+
+    /** Makes the jobs writing the conversation history run one at a time. */
+    private final ISchedulingRule historyRule = new ISchedulingRule() {
+        @Override
+        public boolean contains(ISchedulingRule rule) {
+            return rule == this;
+        }
 
-    private Composite messageContainer;
-    private ScrolledComposite scroller;
+        @Override
+        public boolean isConflicting(ISchedulingRule rule) {
+            return rule == this;
+        }
+    };
 
     /**
      * Creates the UI structure for the DeepSeek view.
      *
      * <p>This method sets up the conversation history panel, input controls,
-     * and the initial welcome message.</p>
+     * and either the most recent stored messages or a welcome message.</p>
      *
      * @param parent the parent composite into which the view is created
      */
@@ -55,21 +115,22 @@ public class DeepSeekView extends ViewPart {
         Composite main = new Composite(parent, SWT.NONE);
         main.setLayout(new GridLayout(1, false));
 
-        Label outputLabel = new Label(main, SWT.NONE);
+        searchText = new Text(main, SWT.SEARCH | SWT.ICON_SEARCH | SWT.ICON_CANCEL);
+        searchText.setMessage("Search conversations (\"phrase\", prefix*)");
+        searchText.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
+        searchText.addListener(SWT.Modify, e -> searchText.getDisplay().timerExec(SEARCH_DELAY, searchTask));
+        searchText.addListener(SWT.DefaultSelection, e -> {
+            searchText.getDisplay().timerExec(-1, searchTask);
+            runSearch();
+        });
+
+        outputLabel = new Label(main, SWT.NONE);
         outputLabel.setText("History:");
         outputLabel.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
 
-        scroller = new ScrolledComposite(main, SWT.V_SCROLL | SWT.H_SCROLL | SWT.BORDER);
-        scroller.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
-        scroller.setExpandVertical(true);
-        scroller.setExpandHorizontal(true);
-
-        messageContainer = new Composite(scroller, SWT.NONE);
-        messageContainer.setLayout(new GridLayout(1, false));
-        messageContainer.setBackground(parent.getDisplay().getSystemColor(SWT.COLOR_WHITE));
-
-        scroller.setContent(messageContainer);
-        scroller.setMinSize(messageContainer.computeSize(SWT.DEFAULT, SWT.DEFAULT));
+        historyViewer = new ChatHistoryViewer(main, SWT.BORDER);
+        historyViewer.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true));
+        historyViewer.setTopReachedListener(this::loadOlderHistory);
 
         Label inputLabel = new Label(main, SWT.NONE);
         inputLabel.setText("New Question:");
@@ -82,7 +143,7 @@ public class DeepSeekView extends ViewPart {
 
         Composite buttonBar = new Composite(main, SWT.NONE);
         buttonBar.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
-        buttonBar.setLayout(new GridLayout(2, true));
+        buttonBar.setLayout(new GridLayout(3, true));
 
         sendButton = new Button(buttonBar, SWT.PUSH);
         sendButton.setText("Send");
@@ -95,6 +156,266 @@ public class DeepSeekView extends ViewPart {
         cancelButton.setEnabled(false);
         cancelButton.addListener(SWT.Selection, e -> cancelRequest());
 
+        clearButton = new Button(buttonBar, SWT.PUSH);
+        clearButton.setText("Clear");
+        clearButton.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+        clearButton.addListener(SWT.Selection, e -> clearHistory());
+
+        conversation = new Conversation(null, ConfigurationManager.getContextTokens());
+
+        restoreHistory();
+        if (historyViewer.size() == 0) {
+            addBubble(ChatBubble.BubbleType.AI, "Welcome to DeepSeek Assistant!");
+        }
+        Activator.getDefault().getEditorSelectionTracker().install();
+    }
+
+    /**
+     * Restores the latest stored conversation thread.
+     *
+     * <p>Only the last {@link #HISTORY_PAGE_SIZE} messages are read, so opening
+     * the view costs the same no matter how long the stored history is.</p>
+     */
+    private void restoreHistory() {
+        conversationStore = Activator.getDefault().getConversationStore();
+        if (conversationStore == null) return;
+
+        try {
+            threadId = conversationStore.latestThreadId();
+            if (threadId < 0) {
+                threadId = conversationStore.newThreadId();
+                return;
+            }
+            for (StoredMessage stored : showRecentHistory()) {
+                conversation.add(stored.message());
+            }
+        } catch (IOException exception) {
+            Activator.logError("Could not restore the conversation history", exception);
+        }
+    }
+
+    /**
+     * Shows the last {@link #HISTORY_PAGE_SIZE} messages of the current thread.
+     *
+     * @return the messages shown, oldest first
+     * @throws IOException if the store cannot be read
+     */
+    private List<StoredMessage> showRecentHistory() throws IOException {
+        List<StoredMessage> recent = conversationStore.loadRecent(threadId, HISTORY_PAGE_SIZE);
+        if (!recent.isEmpty()) {
+            oldestLoadedSequence = recent.get(0).sequence();
+        }
+        for (StoredMessage stored : recent) {
+            historyViewer.add(toItem(stored.message()));
+        }
+        return recent;
+    }
+
+    /**
+     * Runs the query of the search box and shows the most recent matching
+     * messages of all threads, oldest first like the history, or goes back
+     * to the current thread when the search box is empty.
+     */
+    private void runSearch() {
+        if (searchText.isDisposed() || conversationStore == null || isProcessing) return;
+
+        long search = ++searchCount;
+        SearchQuery query = SearchQuery.parse(searchText.getText());
+        if (query.isEmpty()) {
+            if (showingResults) showCurrentThread();
+            return;
+        }
+
+        ConversationStore store = conversationStore;
+        Display display = searchText.getDisplay();
+        runInBackground("Searching DeepSeek conversations", null, () -> {
+            List<StoredMessage> results;
+            try {
+                results = store.search(query, SEARCH_RESULTS);
+            } catch (IOException exception) {
+                Activator.logError("Could not search the conversation history", exception);
+                return;
+            }
+            if (!display.isDisposed()) {
+                display.asyncExec(() -> showSearchResults(search, query, results));
+            }
+        });
+    }
+
+    /**
+     * Shows the results of a search, unless another search was started
+     * since, the search was left, or a request started streaming.
+     *
+     * @param search  the number of the search
+     * @param query   the query, to mark the matching terms
+     * @param results the matching messages, most recent first
+     */
+    private void showSearchResults(long search, SearchQuery query, List<StoredMessage> results) {
+        if (historyViewer.isDisposed() || search != searchCount || isProcessing) return;
+
+        showingResults = true;
+        historyViewer.clear();
+        oldestLoadedSequence = -1;
+        for (int i = results.size() - 1; i >= 0; i--) {
+            ChatMessage message = results.get(i).message();
+            ChatHistoryViewer.Item item = toItem(message);
+            historyViewer.add(new ChatHistoryViewer.Item(item.type(), item.sender(), item.message(),
+                    query.highlights(message.content())));
+        }
+        outputLabel.setText(results.isEmpty()
+                ? "No messages found"
+                : "Search results (" + results.size() + "):");
+        historyViewer.scrollToBottom();
+    }
+
+    /**
+     * Leaves the search results and shows the current thread again.
+     */
+    private void showCurrentThread() {
+        showingResults = false;
+        outputLabel.setText("History:");
+        historyViewer.clear();
+        oldestLoadedSequence = -1;
+        try {
+            showRecentHistory();
+        } catch (IOException exception) {
+            Activator.logError("Could not restore the conversation history", exception);
+        }
+        if (historyViewer.size() == 0) {
+            addBubble(ChatBubble.BubbleType.AI, "Welcome to DeepSeek Assistant!");
+        }
+        historyViewer.scrollToBottom();
+    }
+
+    /**
+     * Clears the search box and shows the current thread if search results are shown.
+     */
+    private void leaveSearch() {
+        if (searchText.getText().isEmpty() && !showingResults) return;
+
+        searchText.setText("");
+        searchText.getDisplay().timerExec(-1, searchTask);
+        searchCount++;
+        if (showingResults) showCurrentThread();
+    }
+
+    /**
+     * Loads the previous page of the current thread when the user scrolls
+     * to the top of the history.
+     */
+    private void loadOlderHistory() {
+        if (conversationStore == null || oldestLoadedSequence < 0 || showingResults) return;
+
+        try {
+            List<StoredMessage> older = conversationStore.loadBefore(threadId, oldestLoadedSequence, HISTORY_PAGE_SIZE);
+            if (older.isEmpty()) {
+                oldestLoadedSequence = -1;
+                return;
+            }
+            oldestLoadedSequence = older.get(0).sequence();
+            List<ChatHistoryViewer.Item> items = new ArrayList<>(older.size());
+            for (StoredMessage stored : older) {
+                items.add(toItem(stored.message()));
+            }
+            historyViewer.prepend(items);
+        } catch (IOException exception) {
+            Activator.logError("Could not load the conversation history", exception);
+        }
+    }
+
+    /**
+     * Converts a stored message into a history item.
+     *
+     * @param message the message
+     * @return the item to display
+     */
+    private ChatHistoryViewer.Item toItem(ChatMessage message) {
+        ChatBubble.BubbleType type = Conversation.ROLE_USER.equals(message.role())
+                ? ChatBubble.BubbleType.USER
+                : ChatBubble.BubbleType.AI;
+        return new ChatHistoryViewer.Item(type, senderOf(type), message.content());
+    }
+
+    /**
+     * Returns the sender label of a bubble type.
+     *
+     * @param type the bubble type
+     * @return the sender label
+     */
+    private String senderOf(ChatBubble.BubbleType type) {
+        return type == ChatBubble.BubbleType.USER ? "User" : "DeepSeek";
+    }
+
+    /**
+     * Stores a completed question and answer in the current thread, in the
+     * background.
+     *
+     * @param question the user question
+     * @param answer   the assistant answer
+     */
+    private void persistExchange(String question, String answer) {
+        if (conversationStore == null) return;
+
+        ConversationStore store = conversationStore;
+        long thread = threadId;
+        runInBackground("Storing DeepSeek conversation", historyRule, () -> {
+            try {
+                store.append(thread, new ChatMessage(Conversation.ROLE_USER, question, null));
+                store.append(thread, new ChatMessage(Conversation.ROLE_ASSISTANT, answer, null));
+            } catch (IOException exception) {
+                Activator.logError("Could not store the conversation history", exception);
+            }
+        });
+    }
+
+    /**
+     * Runs work on the conversation history in a system job.
+     *
+     * @param name the name of the job
+     * @param rule the rule serializing the job, or null
+     * @param work the work to run
+     */
+    private static void runInBackground(String name, ISchedulingRule rule, Runnable work) {
+        Job job = new Job(name) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                work.run();
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.setRule(rule);
+        job.schedule();
+    }
+
+    /**
+     * Deletes the current conversation thread and starts a new, empty one.
+     * While search results are shown, only leaves the search.
+     */
+    private void clearHistory() {
+        if (isProcessing) return;
+
+        if (showingResults) {
+            leaveSearch();
+            return;
+        }
+
+        if (conversationStore != null) {
+            ConversationStore store = conversationStore;
+            long thread = threadId;
+            runInBackground("Deleting DeepSeek conversation", historyRule, () -> {
+                try {
+                    store.deleteThread(thread);
+                } catch (IOException exception) {
+                    Activator.logError("Could not delete the conversation history", exception);
+                }
+            });
+            threadId = conversationStore.newThreadId();
+        }
+
+        historyViewer.clear();
+        oldestLoadedSequence = -1;
+        conversation = new Conversation(null, ConfigurationManager.getContextTokens());
         addBubble(ChatBubble.BubbleType.AI, "Welcome to DeepSeek Assistant!");
     }
 
@@ -105,19 +426,8 @@ public class DeepSeekView extends ViewPart {
      * @param msg  the message content
      */
     private void addBubble(ChatBubble.BubbleType type, String msg) {
-        ChatBubble bubble = new ChatBubble(
-                messageContainer,
-                type,
-                type == ChatBubble.BubbleType.USER ? "User" : "DeepSeek",
-                msg
-        );
-
-        bubble.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
-        bubble.adjustBubbleToTextContent();
-
-        messageContainer.layout(true, true);
-        scroller.setMinSize(messageContainer.computeSize(SWT.DEFAULT, SWT.DEFAULT));
-        scrollToBottom();
+        historyViewer.add(new ChatHistoryViewer.Item(type, senderOf(type), msg));
+        historyViewer.scrollToBottom();
     }
 
     /**
@@ -126,23 +436,27 @@ public class DeepSeekView extends ViewPart {
      * @param newMessage the new text to display in the last bubble
      */
     private void replaceLastBubble(String newMessage) {
-        Control[] children = messageContainer.getChildren();
-        if (children.length == 0) return;
+        int count = historyViewer.size();
+        if (count == 0) return;
 
-        Control last = children[children.length - 1];
-        if (last instanceof ChatBubble bubble) {
-            bubble.updateMessage(newMessage);
-            messageContainer.layout(true, true);
-            scroller.setMinSize(messageContainer.computeSize(SWT.DEFAULT, SWT.DEFAULT));
-            scrollToBottom();
-        }
+        historyViewer.setMessage(count - 1, newMessage);
     }
 
     /**
-     * Sends a user question to the DeepSeek API.
+     * Appends streamed text to the latest bubble without re-rendering it.
      *
-     * <p>This method creates a new thread for the API request,
-     * manages UI updates, and handles success and error responses.</p>
+     * @param delta the text to append to the last bubble
+     */
+    private void appendToLastBubble(String delta) {
+        int count = historyViewer.size();
+        if (count == 0) return;
+
+        historyViewer.appendMessage(count - 1, delta);
+    }
+
+    /**
+     * Sends the question typed in the input field to the DeepSeek API,
+     * with the workspace code most relevant to it.
      */
     private void sendMessage() {
         String question = inputText.getText().trim();
@@ -155,63 +469,172 @@ public class DeepSeekView extends ViewPart {
         }
 
         inputText.setText("");
-        addBubble(ChatBubble.BubbleType.USER, question);
+        leaveSearch();
+        submit(question, question, DeepSeekView::withWorkspaceContext);
+    }
+
+    /**
+     * Sends a prompt assembled outside the view, such as by an editor command.
+     *
+     * <p>The prompt is added to the conversation like a typed question, but
+     * the history shows the given summary instead of the whole prompt.</p>
+     *
+     * @param summary the text shown in the user bubble
+     * @param prompt  the user message sent to the API
+     * @param prepare completes the request messages on the request thread,
+     *                typically by attaching workspace context
+     */
+    public void ask(String summary, String prompt, UnaryOperator<List<ChatMessage>> prepare) {
+        if (!ConfigurationManager.hasApiKey()) {
+            addBubble(ChatBubble.BubbleType.AI,
+                    "Erro: Configure sua API Key primeiro.\nWindow → Preferences → DeepSeek Plugin");
+            return;
+        }
+        if (isProcessing) {
+            addBubble(ChatBubble.BubbleType.AI, "Erro: Aguarde o fim da requisição atual.");
+            return;
+        }
+        leaveSearch();
+        submit(summary, prompt, prepare);
+    }
+
+    /**
+     * Sends a user question to the DeepSeek API.
+     *
+     * <p>This method appends the question to the conversation, submits the
+     * API request with the conversation window to the plugin-wide request
+     * scheduler, and streams the answer into the last bubble as it is
+     * generated. Streamed chunks are batched into at most one UI update per
+     * frame. Callbacks of a request that was cancelled in the meantime are
+     * ignored, so they can never touch the bubble of a newer request.</p>
+     *
+     * @param summary  the text shown in the user bubble
+     * @param question the user message sent to the API and stored in the history
+     * @param prepare  completes the request messages on the request thread
+     */
+    private void submit(String summary, String question, UnaryOperator<List<ChatMessage>> prepare) {
+        addBubble(ChatBubble.BubbleType.USER, summary);
         addBubble(ChatBubble.BubbleType.AI, "Processando...");
 
         setProcessingState(true);
 
-        apiThread = new Thread(() -> {
-            try {
-                apiClient = new DeepSeekAPIClient(ConfigurationManager.getApiKey());
-                String result = apiClient.sendMessage(question);
-
-                if (!apiThread.isInterrupted()) {
-                    Display.getDefault().asyncExec(() -> {
-                        replaceLastBubble(result);
-                        setProcessingState(false);
-                    });
-                }
-
-            } catch (Exception ex) {
-                if (!apiThread.isInterrupted()) {
-                    Display.getDefault().asyncExec(() -> {
-                        replaceLastBubble("Erro: " + ex.getMessage());
-                        setProcessingState(false);
-                    });
-                }
+        int tokenBudget = ConfigurationManager.getContextTokens();
+        if (conversation.getTokenBudget() != tokenBudget) {
+            conversation.setTokenBudget(tokenBudget);
+        }
+        conversation.addUser(question);
+        List<ChatMessage> messages = conversation.window();
+
+        StringBuilder answer = new StringBuilder();
+        FrameCoalescer coalescer = new FrameCoalescer(Display.getDefault(), chunk -> {
+            if (!isProcessing || historyViewer.isDisposed()) return;
+            if (answer.length() == 0) {
+                replaceLastBubble(chunk);
+            } else {
+                appendToLastBubble(chunk);
             }
+            answer.append(chunk);
         });
-
-        apiThread.start();
+        streamCoalescer = coalescer;
+
+        CancellationToken token = new CancellationToken();
+        requestToken = token;
+        try {
+            Activator.getDefault().getRequestScheduler().submit(token, () -> {
+                try {
+                    DeepSeekAPIClient client = new DeepSeekAPIClient(ConfigurationManager.getApiKey());
+                    client.sendMessageStreaming(prepare.apply(messages), new StreamListener() {
+                        @Override
+                        public void onDelta(String delta) {
+                            if (token.isCancelled()) return;
+                            coalescer.append(delta);
+                        }
+
+                        @Override
+                        public void onComplete() {
+                            if (token.isCancelled()) return;
+                            Display.getDefault().asyncExec(() -> {
+                                if (token.isCancelled()) return;
+                                coalescer.flush();
+                                requestToken = null;
+                                String result = answer.toString();
+                                conversation.addAssistant(result);
+                                persistExchange(question, result);
+                                setProcessingState(false);
+                            });
+                        }
+
+                        @Override
+                        public void onError(String message) {
+                            if (token.isCancelled()) return;
+                            coalescer.cancel();
+                            Display.getDefault().asyncExec(() -> {
+                                if (token.isCancelled()) return;
+                                failRequest(message);
+                            });
+                        }
+                    }, token);
+
+                } catch (Exception ex) {
+                    if (!token.isCancelled()) {
+                        coalescer.cancel();
+                        Display.getDefault().asyncExec(() -> {
+                            if (token.isCancelled()) return;
+                            failRequest("Erro: " + ex.getMessage());
+                        });
+                    }
+                }
+            });
+        } catch (RejectedExecutionException rejected) {
+            failRequest("Erro: " + rejected.getMessage());
+        }
     }
 
     /**
-     * Cancels the active API request, if any.
+     * Attaches the workspace code most relevant to the prompt, when enabled.
+     * Called on the request thread since it reads files.
      *
-     * <p>This method interrupts the worker thread, cancels the
-     * API client request, and updates the UI accordingly.</p>
+     * @param messages the request messages
+     * @return the messages to send
      */
-    private void cancelRequest() {
-        if (!isProcessing) return;
-
-        if (apiThread != null) apiThread.interrupt();
-        if (apiClient != null) apiClient.cancelRequest();
+    private static List<ChatMessage> withWorkspaceContext(List<ChatMessage> messages) {
+        int chunks = ConfigurationManager.getContextChunks();
+        WorkspaceIndexer indexer = Activator.getDefault().getWorkspaceIndexer();
+        if (chunks <= 0 || indexer == null) {
+            return messages;
+        }
+        return indexer.attachContext(messages, chunks);
+    }
 
-        replaceLastBubble("Requisição cancelada pelo usuário.");
+    /**
+     * Ends the active request with an error shown in the last bubble.
+     *
+     * @param message the error message
+     */
+    private void failRequest(String message) {
+        requestToken.cancel();
+        conversation.removeLast();
+        replaceLastBubble(message);
         setProcessingState(false);
     }
 
     /**
-     * Scrolls the view to the bottom of the conversation history.
+     * Cancels the active API request, if any.
+     *
+     * <p>This method cancels the request's token, which aborts its network
+     * exchange, drops pending streamed text, and updates the UI accordingly.</p>
      */
-    private void scrollToBottom() {
-        scroller.getVerticalBar().setSelection(
-            scroller.getVerticalBar().getMaximum()
-        );
+    private void cancelRequest() {
+        if (!isProcessing) return;
+
+        if (streamCoalescer != null) streamCoalescer.cancel();
+
+        failRequest("Requisição cancelada pelo usuário.");
     }
 
     /**
      * Updates the processing state and enables/disables UI controls.
+     * Searching is disabled while a request streams into the history.
      *
      * @param p true if an API request is running
      */
@@ -219,6 +642,8 @@ public class DeepSeekView extends ViewPart {
         this.isProcessing = p;
         sendButton.setEnabled(!p);
         cancelButton.setEnabled(p);
+        clearButton.setEnabled(!p);
+        searchText.setEnabled(!p);
     }
 
     /**
@@ -228,4 +653,15 @@ public class DeepSeekView extends ViewPart {
     public void setFocus() {
         inputText.setFocus();
     }
+
+    /**
+     * Cancels the request started by this view, if any, when it is closed,
+     * and drops its streamed text not yet shown.
+     */
+    @Override
+    public void dispose() {
+        if (requestToken != null) requestToken.cancel();
+        if (streamCoalescer != null) streamCoalescer.cancel();
+        super.dispose();
+    }
 }
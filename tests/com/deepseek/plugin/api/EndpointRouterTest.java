@@ -0,0 +1,141 @@
+package com.deepseek.plugin.api;
+
+import static com.deepseek.plugin.tests.Assert.assertEquals;
+import static com.deepseek.plugin.tests.Assert.assertThrows;
+
+import java.net.URI;
+import java.util.List;
+
+import com.deepseek.plugin.tests.Test;
+
+/**
+ * Tests of the {@link EndpointRouter}: latency ranking, failover and the
+ * delay after which a request is hedged to the next endpoint.
+ */
+public class EndpointRouterTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    private final EndpointProfile a = profile("a");
+    private final EndpointProfile b = profile("b");
+    private final EndpointProfile c = profile("c");
+
+    @Test
+    public void keepsConfigurationOrderUntilMeasured() {
+        EndpointRouter router = new EndpointRouter(List.of(a, b, c));
+        assertEquals(List.of(a, b, c), router.route());
+        assertEquals(List.of(a, b, c), router.getProfiles());
+        assertThrows(IllegalArgumentException.class, () -> new EndpointRouter(List.of()));
+    }
+
+    @Test
+    public void ranksByMedianLatency() {
+        EndpointRouter router = new EndpointRouter(List.of(a, b, c));
+        record(router, a, 100, 100, 100);
+        record(router, b, 300, 10, 10);
+        record(router, c, 50, 50);
+        // c has too few samples to be ranked, so it is tried first to be measured
+        assertEquals(List.of(c, b, a), router.route());
+        record(router, c, 50);
+        assertEquals(List.of(b, c, a), router.route());
+    }
+
+    @Test
+    public void penalizesErrors() {
+        EndpointRouter router = new EndpointRouter(List.of(a, b));
+        record(router, a, 10, 10, 10);
+        record(router, b, 20, 20, 20);
+        assertEquals(List.of(a, b), router.route());
+        router.failed(a);
+        router.failed(a);
+        assertEquals(List.of(b, a), router.route());
+    }
+
+    @Test
+    public void failsOverAfterConsecutiveFailures() {
+        EndpointRouter router = new EndpointRouter(List.of(a, b, c));
+        record(router, a, 1, 1, 1);
+        record(router, b, 500, 500, 500);
+        record(router, c, 900, 900, 900);
+        for (int i = 0; i < EndpointRouter.FAILURES_TO_OPEN - 1; i++) {
+            router.failed(a);
+            router.succeeded(a, MILLIS);
+        }
+        assertEquals(a, router.route().get(0));
+
+        for (int i = 0; i < EndpointRouter.FAILURES_TO_OPEN; i++) {
+            router.failed(a);
+        }
+        assertEquals(List.of(b, c, a), router.route());
+
+        // the endpoint cooling down the longest comes last
+        for (int i = 0; i < EndpointRouter.FAILURES_TO_OPEN + 1; i++) {
+            router.failed(b);
+        }
+        assertEquals(List.of(c, a, b), router.route());
+
+        router.succeeded(a, MILLIS);
+        assertEquals(List.of(a, c, b), router.route());
+    }
+
+    @Test
+    public void hedgesAtHighPercentile() {
+        EndpointRouter router = new EndpointRouter(List.of(a, b));
+        for (int i = 1; i < EndpointRouter.MIN_HEDGE_SAMPLES; i++) {
+            router.succeeded(a, 100 * i * MILLIS);
+        }
+        assertEquals(-1L, router.hedgeDelayNanos(a));
+        for (int i = EndpointRouter.MIN_HEDGE_SAMPLES; i <= 20; i++) {
+            router.succeeded(a, 100 * i * MILLIS);
+        }
+        assertEquals(1900 * MILLIS, router.hedgeDelayNanos(a));
+
+        // the hedge goes to the next endpoint of the route
+        assertEquals(List.of(b, a), router.route());
+        record(router, b, 5000, 5000, 5000);
+        assertEquals(List.of(a, b), router.route());
+    }
+
+    @Test
+    public void keepsOnlyRecentWindow() {
+        EndpointRouter router = new EndpointRouter(List.of(a, b));
+        for (int i = 0; i < EndpointRouter.WINDOW; i++) {
+            router.succeeded(a, 10_000 * MILLIS);
+        }
+        for (int i = 0; i < EndpointRouter.WINDOW; i++) {
+            router.succeeded(a, 100 * MILLIS);
+        }
+        assertEquals(100 * MILLIS, router.hedgeDelayNanos(a));
+    }
+
+    @Test
+    public void floorsHedgeDelay() {
+        EndpointRouter router = new EndpointRouter(List.of(a, b));
+        for (int i = 0; i < EndpointRouter.MIN_HEDGE_SAMPLES; i++) {
+            router.succeeded(a, MILLIS);
+        }
+        assertEquals(EndpointRouter.MIN_HEDGE_DELAY_NANOS, router.hedgeDelayNanos(a));
+    }
+
+    @Test
+    public void neverHedgesSingleEndpoint() {
+        EndpointRouter router = EndpointRouter.of(a);
+        for (int i = 0; i < EndpointRouter.MIN_HEDGE_SAMPLES * 2; i++) {
+            router.succeeded(a, 100 * MILLIS);
+        }
+        router.failed(a);
+        assertEquals(-1L, router.hedgeDelayNanos(a));
+        assertEquals(List.of(a), router.route());
+        assertEquals(-1L, new EndpointRouter(List.of(a, b)).hedgeDelayNanos(c));
+    }
+
+    private static void record(EndpointRouter router, EndpointProfile profile, long... millis) {
+        for (long latency : millis) {
+            router.succeeded(profile, latency * MILLIS);
+        }
+    }
+
+    private static EndpointProfile profile(String name) {
+        return new EndpointProfile(name, URI.create("https://" + name + ".example.com/chat/completions"), "deepseek-chat", "key-" + name);
+    }
+}
@@ -0,0 +1,168 @@
+package com.deepseek.plugin.api;
+
+import static com.deepseek.plugin.tests.Assert.assertEquals;
+import static com.deepseek.plugin.tests.Assert.assertThrows;
+import static com.deepseek.plugin.tests.Assert.assertTrue;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.deepseek.plugin.tests.Test;
+
+/**
+ * Tests of the {@link RateLimiter} token bucket and of its parsing of
+ * rate-limit headers.
+ */
+public class RateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    /** Leeway for the time elapsed between a change and the reservation checking it. */
+    private static final long SLACK = SECOND / 10;
+
+    @Test
+    public void grantsBurstThenSpacesRequests() {
+        RateLimiter limiter = new RateLimiter(60, 3);
+        assertEquals(0L, limiter.reserve());
+        assertEquals(0L, limiter.reserve());
+        assertEquals(0L, limiter.reserve());
+        assertAround(SECOND, limiter.reserve());
+        assertAround(2 * SECOND, limiter.reserve());
+        assertAround(3 * SECOND, limiter.reserve());
+    }
+
+    @Test
+    public void rejectsInvalidRates() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(10, 0));
+    }
+
+    @Test
+    public void appliesNewRate() {
+        RateLimiter limiter = new RateLimiter(60, 1);
+        limiter.reserve();
+        limiter.setRate(600);
+        assertAround(SECOND / 10, limiter.reserve());
+        assertAround(2 * SECOND / 10, limiter.reserve());
+    }
+
+    @Test
+    public void pausesAndResumesAtSteadyRate() {
+        RateLimiter limiter = new RateLimiter(60, 5);
+        limiter.pauseFor(Duration.ofSeconds(4));
+        assertAround(5 * SECOND, limiter.reserve());
+        assertAround(6 * SECOND, limiter.reserve());
+    }
+
+    @Test
+    public void pausesOnRetryAfter() {
+        RateLimiter limiter = new RateLimiter(6000, 10);
+        limiter.update(429, headers(Map.of("Retry-After", List.of("3"))));
+        long delay = limiter.reserve();
+        assertTrue(delay > 3 * SECOND - SLACK && delay <= 3 * SECOND + SECOND / 50, "paused for 3 s: " + delay);
+
+        RateLimiter ignored = new RateLimiter(6000, 10);
+        ignored.update(503, headers(Map.of("Retry-After", List.of("3"))));
+        assertEquals(0L, ignored.reserve());
+    }
+
+    @Test
+    public void pausesOnExhaustedLimitHeaders() {
+        RateLimiter limiter = new RateLimiter(6000, 10);
+        limiter.update(200, headers(Map.of(
+            "x-ratelimit-remaining-tokens", List.of("0"),
+            "x-ratelimit-reset-tokens", List.of("1.5s"))));
+        long delay = limiter.reserve();
+        assertTrue(delay > 3 * SECOND / 2 - SLACK && delay < 2 * SECOND, "paused for 1.5 s: " + delay);
+
+        RateLimiter unaffected = new RateLimiter(6000, 10);
+        unaffected.update(200, headers(Map.of(
+            "x-ratelimit-remaining-requests", List.of("12"),
+            "x-ratelimit-reset-requests", List.of("20s"))));
+        assertEquals(0L, unaffected.reserve());
+    }
+
+    @Test
+    public void parsesRetryAfter() {
+        assertEquals(Optional.of(Duration.ofMillis(2500)), RateLimiter.retryAfter(headers(Map.of("Retry-After", List.of("2.5")))));
+        assertEquals(Optional.empty(), RateLimiter.retryAfter(headers(Map.of())));
+        assertEquals(Optional.empty(), RateLimiter.retryAfter(headers(Map.of("Retry-After", List.of("logo")))));
+
+        String past = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).minusHours(1));
+        assertEquals(Optional.of(Duration.ZERO), RateLimiter.retryAfter(headers(Map.of("Retry-After", List.of(past)))));
+
+        String future = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(120));
+        Duration delay = RateLimiter.retryAfter(headers(Map.of("Retry-After", List.of(future)))).orElseThrow();
+        assertTrue(delay.compareTo(Duration.ofSeconds(118)) > 0 && delay.compareTo(Duration.ofSeconds(120)) <= 0,
+            "date in two minutes: " + delay);
+    }
+
+    @Test
+    public void rejectsInvalidRetryAfter() {
+        for (String value : List.of("Infinity", "-Infinity", "NaN", "-5")) {
+            assertEquals(Optional.empty(), RateLimiter.retryAfter(headers(Map.of("Retry-After", List.of(value)))));
+        }
+        Duration huge = RateLimiter.retryAfter(headers(Map.of("Retry-After", List.of("1e300")))).orElseThrow();
+        assertTrue(huge.compareTo(Duration.ofDays(365)) > 0, "huge delays saturate: " + huge);
+    }
+
+    @Test
+    public void boundsPauses() {
+        RateLimiter limiter = new RateLimiter(6000, 10);
+        limiter.update(429, headers(Map.of("Retry-After", List.of("1e12"))));
+        long delay = limiter.reserve();
+        long max = RateLimiter.MAX_PAUSE.toNanos();
+        assertTrue(delay > max - SLACK && delay <= max + SECOND / 50, "pause is capped: " + delay);
+
+        RateLimiter saturated = new RateLimiter(6000, 10);
+        saturated.pauseFor(Duration.ofSeconds(Long.MAX_VALUE));
+        saturated.update(200, headers(Map.of(
+            "x-ratelimit-remaining-requests", List.of("0"),
+            "x-ratelimit-reset-requests", List.of("99999999999999999999h"))));
+        delay = saturated.reserve();
+        assertTrue(delay > max - SLACK && delay <= max + SECOND / 50, "pause is capped: " + delay);
+
+        RateLimiter ignored = new RateLimiter(6000, 10);
+        ignored.update(429, headers(Map.of("Retry-After", List.of("Infinity"))));
+        assertEquals(0L, ignored.reserve());
+
+        RateLimiter past = new RateLimiter(6000, 10);
+        past.pauseFor(Duration.ofSeconds(-5));
+        delay = past.reserve();
+        assertTrue(delay <= SECOND / 100, "a pause in the past only spends the permits: " + delay);
+    }
+
+    @Test
+    public void parsesResetDurations() {
+        assertEquals(Duration.ofSeconds(20), RateLimiter.parseDuration("20"));
+        assertEquals(Duration.ofMillis(1500), RateLimiter.parseDuration(" 1.5s "));
+        assertEquals(Duration.ofMillis(250), RateLimiter.parseDuration("250ms"));
+        assertEquals(Duration.ofMinutes(6), RateLimiter.parseDuration("6m0s"));
+        assertEquals(Duration.ofMinutes(62).plusMillis(500), RateLimiter.parseDuration("1h2m500ms"));
+        assertEquals(null, RateLimiter.parseDuration("5x"));
+        assertEquals(null, RateLimiter.parseDuration("s"));
+        assertEquals(null, RateLimiter.parseDuration("10s later"));
+        assertEquals(null, RateLimiter.parseDuration("Infinity"));
+        assertEquals(null, RateLimiter.parseDuration("NaN"));
+        assertEquals(null, RateLimiter.parseDuration("-1"));
+    }
+
+    private static HttpHeaders headers(Map<String, List<String>> values) {
+        return HttpHeaders.of(values, (name, value) -> true);
+    }
+
+    /**
+     * Checks a delay reserved right after the limiter changed, which time
+     * passing since can only shorten.
+     */
+    private static void assertAround(long expected, long actual) {
+        assertTrue(actual <= expected + 1 && actual > expected - SLACK,
+            "expected a delay of about " + expected + " ns but was " + actual);
+    }
+}
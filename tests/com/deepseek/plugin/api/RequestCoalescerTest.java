@@ -0,0 +1,275 @@
+package com.deepseek.plugin.api;
+
+import static com.deepseek.plugin.tests.Assert.assertEquals;
+import static com.deepseek.plugin.tests.Assert.assertFalse;
+import static com.deepseek.plugin.tests.Assert.assertThrows;
+import static com.deepseek.plugin.tests.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import com.deepseek.plugin.concurrent.CancellationToken;
+import com.deepseek.plugin.tests.Test;
+
+/**
+ * Tests of the {@link RequestCoalescer}: sharing one upstream call, counting
+ * cancellations per request, and replaying a stream to late requests.
+ */
+public class RequestCoalescerTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+
+    @Test
+    public void sharesOneCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(1);
+        RequestCoalescer.Call call = token -> {
+            calls.incrementAndGet();
+            await(release);
+            return "resposta";
+        };
+
+        ExecutorService requests = Executors.newCachedThreadPool();
+        try {
+            Future<String> first = requests.submit(() -> coalescer.complete("k", new CancellationToken(), call, fail()));
+            waitUntil(() -> coalescer.size() == 1);
+            Future<String> second = requests.submit(() -> coalescer.complete("k", new CancellationToken(), call, joined::countDown));
+            await(joined);
+            Future<String> other = requests.submit(() -> coalescer.complete("outra", new CancellationToken(), token -> "independente", fail()));
+            assertEquals("independente", get(other));
+
+            release.countDown();
+            assertEquals("resposta", get(first));
+            assertEquals("resposta", get(second));
+            assertEquals(1, calls.get());
+            assertEquals(0, coalescer.size());
+
+            assertEquals("resposta", coalescer.complete("k", new CancellationToken(), call, fail()));
+            assertEquals(2, calls.get());
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    @Test
+    public void sharesFailures() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(1);
+        RequestCoalescer.Call call = token -> {
+            await(release);
+            throw new IOException("falhou");
+        };
+
+        ExecutorService requests = Executors.newCachedThreadPool();
+        try {
+            Future<String> first = requests.submit(() -> coalescer.complete("k", new CancellationToken(), call, fail()));
+            waitUntil(() -> coalescer.size() == 1);
+            Future<String> second = requests.submit(() -> coalescer.complete("k", new CancellationToken(), call, joined::countDown));
+            await(joined);
+            release.countDown();
+            for (Future<String> request : List.of(first, second)) {
+                ExecutionException failure = assertThrows(ExecutionException.class, () -> get(request));
+                assertTrue(failure.getCause() instanceof IOException, "the call's failure is rethrown: " + failure.getCause());
+                assertEquals("falhou", failure.getCause().getMessage());
+            }
+            assertEquals(0, coalescer.size());
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancelsUpstreamWithLastRequest() throws Exception {
+        CountDownLatch joined = new CountDownLatch(1);
+        CountDownLatch upstreamCancelled = new CountDownLatch(1);
+        RequestCoalescer.Call call = token -> {
+            token.onCancel(upstreamCancelled::countDown);
+            await(upstreamCancelled);
+            return "tarde demais";
+        };
+        CancellationToken firstToken = new CancellationToken();
+        CancellationToken secondToken = new CancellationToken();
+
+        ExecutorService requests = Executors.newCachedThreadPool();
+        try {
+            Future<String> first = requests.submit(() -> coalescer.complete("k", firstToken, call, fail()));
+            waitUntil(() -> coalescer.size() == 1);
+            Future<String> second = requests.submit(() -> coalescer.complete("k", secondToken, call, joined::countDown));
+            await(joined);
+
+            firstToken.cancel();
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> get(first));
+            assertTrue(failure.getCause() instanceof CancellationException, "the request is cancelled: " + failure.getCause());
+            assertFalse(upstreamCancelled.await(100, TimeUnit.MILLISECONDS), "the upstream call outlives one request");
+            assertEquals(1, coalescer.size());
+
+            secondToken.cancel();
+            assertThrows(ExecutionException.class, () -> get(second));
+            assertTrue(upstreamCancelled.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "the upstream call is cancelled with the last request");
+            assertEquals(0, coalescer.size());
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    @Test
+    public void replaysStreamToLateRequest() throws Exception {
+        CountDownLatch streamed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        RequestCoalescer.StreamCall call = (listener, token) -> {
+            calls.incrementAndGet();
+            listener.onDelta("Olá");
+            listener.onDelta(", mundo");
+            streamed.countDown();
+            await(release);
+            listener.onDelta("!");
+            listener.onComplete();
+        };
+        Recorder early = new Recorder();
+        Recorder late = new Recorder();
+
+        ExecutorService requests = Executors.newCachedThreadPool();
+        try {
+            Future<?> first = requests.submit(() -> coalescer.stream("k", early, new CancellationToken(), call, fail()));
+            await(streamed);
+            Future<?> second = requests.submit(() -> coalescer.stream("k", late, new CancellationToken(), call, joined::countDown));
+            await(joined);
+            release.countDown();
+            get(first);
+            get(second);
+
+            assertEquals(List.of("Olá", ", mundo", "!", "complete"), early.events());
+            assertEquals(List.of("Olá, mundo", "!", "complete"), late.events());
+            assertEquals(1, calls.get());
+            assertEquals(0, coalescer.size());
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancelsStreamPerRequest() throws Exception {
+        CountDownLatch streamed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch joined = new CountDownLatch(1);
+        CountDownLatch upstreamCancelled = new CountDownLatch(1);
+        RequestCoalescer.StreamCall call = (listener, token) -> {
+            token.onCancel(upstreamCancelled::countDown);
+            listener.onDelta("parcial");
+            streamed.countDown();
+            await(release);
+            listener.onError("Erro: servidor indisponível.");
+        };
+        Recorder cancelled = new Recorder();
+        Recorder kept = new Recorder();
+        CancellationToken cancelledToken = new CancellationToken();
+
+        ExecutorService requests = Executors.newCachedThreadPool();
+        try {
+            Future<?> first = requests.submit(() -> coalescer.stream("k", cancelled, cancelledToken, call, fail()));
+            await(streamed);
+            Future<?> second = requests.submit(() -> coalescer.stream("k", kept, new CancellationToken(), call, joined::countDown));
+            await(joined);
+
+            cancelledToken.cancel();
+            get(first);
+            assertEquals(List.of("parcial", "error: Requisição cancelada."), cancelled.events());
+            assertEquals(1L, upstreamCancelled.getCount());
+
+            release.countDown();
+            get(second);
+            assertEquals(List.of("parcial", "error: Erro: servidor indisponível."), kept.events());
+            assertEquals(1L, upstreamCancelled.getCount());
+            assertEquals(0, coalescer.size());
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    @Test
+    public void reportsCallEndingWithoutOutcome() {
+        Recorder recorder = new Recorder();
+        coalescer.stream("k", recorder, new CancellationToken(), (listener, token) -> listener.onDelta("meio"), fail());
+        assertEquals(2, recorder.events().size());
+        assertTrue(recorder.events().get(1).startsWith("error: "), "a stream without outcome fails: " + recorder.events());
+        assertEquals(0, coalescer.size());
+    }
+
+    /**
+     * Records the calls of a listener, in order.
+     */
+    private static final class Recorder implements StreamListener {
+
+        private final List<String> events = new ArrayList<>();
+
+        @Override
+        public synchronized void onDelta(String delta) {
+            events.add(delta);
+        }
+
+        @Override
+        public synchronized void onComplete() {
+            events.add("complete");
+        }
+
+        @Override
+        public synchronized void onError(String message) {
+            events.add("error: " + message);
+        }
+
+        synchronized List<String> events() {
+            return List.copyOf(events);
+        }
+    }
+
+    private static Runnable fail() {
+        return () -> {
+            throw new AssertionError("the leading request must not join a flight");
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new AssertionError("timed out");
+            }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("interrupted", interrupted);
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws Exception {
+        try {
+            return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException timeout) {
+            throw new AssertionError("timed out", timeout);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("timed out");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
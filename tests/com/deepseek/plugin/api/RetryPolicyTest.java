@@ -0,0 +1,80 @@
+package com.deepseek.plugin.api;
+
+import static com.deepseek.plugin.tests.Assert.assertFalse;
+import static com.deepseek.plugin.tests.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+
+import com.deepseek.plugin.tests.Test;
+
+/**
+ * Tests of the {@link RetryPolicy} attempt limit and backoff.
+ */
+public class RetryPolicyTest {
+
+    private static final int SAMPLES = 2000;
+
+    private final RetryPolicy policy = new RetryPolicy(4, Duration.ofMillis(100), Duration.ofMillis(1000));
+
+    @Test
+    public void limitsAttempts() {
+        assertTrue(policy.canRetry(1), "the first attempt may be retried");
+        assertTrue(policy.canRetry(3), "the third attempt may be retried");
+        assertFalse(policy.canRetry(4), "the last attempt is final");
+        assertFalse(new RetryPolicy(1, Duration.ZERO, Duration.ZERO).canRetry(1), "a single attempt is final");
+    }
+
+    @Test
+    public void growsBoundExponentially() {
+        long[] bounds = {100, 200, 400, 800, 1000, 1000};
+        for (int attempt = 1; attempt <= bounds.length; attempt++) {
+            long max = 0;
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < SAMPLES; i++) {
+                long millis = policy.delay(attempt, null).toMillis();
+                max = Math.max(max, millis);
+                min = Math.min(min, millis);
+            }
+            long bound = bounds[attempt - 1];
+            assertTrue(min >= 0 && max <= bound, "attempt " + attempt + " stays within [0, " + bound + "]: " + min + ".." + max);
+            assertTrue(max > bound * 3 / 4 && min < bound / 4, "attempt " + attempt + " spreads over its range: " + min + ".." + max);
+        }
+    }
+
+    @Test
+    public void survivesLargeAttemptNumbers() {
+        for (int attempt : new int[] {30, 64, Integer.MAX_VALUE}) {
+            long millis = policy.delay(attempt, null).toMillis();
+            assertTrue(millis >= 0 && millis <= 1000, "attempt " + attempt + " is capped: " + millis);
+        }
+    }
+
+    @Test
+    public void refusesServerDelayBeyondMaximum() {
+        assertTrue(policy.canRetry(1, null), "no server delay");
+        assertTrue(policy.canRetry(1, Duration.ofMillis(1000)), "server delay at the maximum");
+        assertFalse(policy.canRetry(1, Duration.ofMillis(1001)), "server delay beyond the maximum");
+        assertFalse(policy.canRetry(1, Duration.ofSeconds(Long.MAX_VALUE)), "huge server delay");
+        assertFalse(policy.canRetry(4, Duration.ZERO), "the last attempt is final");
+    }
+
+    @Test
+    public void boundsServerDelay() {
+        for (Duration requested : List.of(Duration.ofHours(1), Duration.ofSeconds(Long.MAX_VALUE))) {
+            Duration delay = policy.delay(1, requested);
+            assertTrue(delay.compareTo(Duration.ofMillis(1000)) >= 0 && delay.compareTo(Duration.ofMillis(1250)) <= 0,
+                "server delay is cut to the maximum: " + delay);
+        }
+    }
+
+    @Test
+    public void prefersServerDelay() {
+        Duration requested = Duration.ofMillis(700);
+        for (int i = 0; i < SAMPLES; i++) {
+            Duration delay = policy.delay(1, requested);
+            assertTrue(delay.compareTo(requested) >= 0 && delay.compareTo(requested.plusMillis(250)) <= 0,
+                "server delay plus jitter: " + delay);
+        }
+    }
+}
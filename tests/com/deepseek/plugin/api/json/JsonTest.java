@@ -0,0 +1,216 @@
+package com.deepseek.plugin.api.json;
+
+import static com.deepseek.plugin.tests.Assert.assertEquals;
+import static com.deepseek.plugin.tests.Assert.assertFalse;
+import static com.deepseek.plugin.tests.Assert.assertThrows;
+import static com.deepseek.plugin.tests.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import com.deepseek.plugin.api.json.JsonReader.Token;
+import com.deepseek.plugin.tests.Test;
+
+/**
+ * Tests of the streaming {@link JsonReader} and {@link JsonWriter}.
+ */
+public class JsonTest {
+
+    private static final String AWKWARD = "aspas \" barra \\ linha\n tab\t ctrl\u0001 ç 中 \uD83D\uDE00";
+
+    @Test
+    public void readsNestedDocument() throws IOException {
+        JsonReader reader = new JsonReader(
+            "{\"id\":\"x\",\"n\":-42,\"f\":1.9e1,\"ok\":true,\"none\":null,\"list\":[1,[],{}]}");
+        reader.beginObject();
+        assertEquals("id", reader.nextName());
+        assertEquals("x", reader.nextString());
+        assertEquals("n", reader.nextName());
+        assertEquals(-42L, reader.nextLong());
+        assertEquals("f", reader.nextName());
+        assertEquals(19, reader.nextInt());
+        assertEquals("ok", reader.nextName());
+        assertTrue(reader.nextBoolean(), "ok is true");
+        assertEquals("none", reader.nextName());
+        assertEquals(null, reader.nextStringOrNull());
+        assertEquals("list", reader.nextName());
+        reader.beginArray();
+        assertEquals(Token.NUMBER, reader.peek());
+        assertEquals("1", reader.nextString());
+        reader.beginArray();
+        assertFalse(reader.hasNext(), "empty array has no elements");
+        reader.endArray();
+        reader.beginObject();
+        reader.endObject();
+        reader.endArray();
+        reader.endObject();
+        assertEquals(Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void skipsValues() throws IOException {
+        JsonReader reader = new JsonReader("{\"a\":{\"b\":[\"}\",\"\\\"\",{\"c\":null}]},\"d\":7}");
+        reader.beginObject();
+        assertEquals("a", reader.nextName());
+        reader.skipValue();
+        assertEquals("d", reader.nextName());
+        assertEquals(7L, reader.nextLong());
+        reader.endObject();
+    }
+
+    @Test
+    public void decodesEscapes() throws IOException {
+        JsonReader reader = new JsonReader("[\"\\u00e7\\n\\t\\\\\\/\\\"\"]");
+        reader.beginArray();
+        assertEquals("ç\n\t\\/\"", reader.nextString());
+        reader.endArray();
+    }
+
+    @Test
+    public void readsAcrossBufferRefills() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"text\":\"linha ").append(i).append(" \\u00e9\"}");
+        }
+        json.append(']');
+        JsonReader reader = new JsonReader(new OneCharReader(json.toString()));
+        reader.beginArray();
+        int count = 0;
+        while (reader.hasNext()) {
+            reader.beginObject();
+            assertEquals("text", reader.nextName());
+            assertEquals("linha " + count + " é", reader.nextString());
+            reader.endObject();
+            count++;
+        }
+        reader.endArray();
+        assertEquals(2000, count);
+    }
+
+    @Test
+    public void rejectsMalformedInput() {
+        assertThrows(MalformedJsonException.class, () -> read("{\"a\" 1}"));
+        assertThrows(MalformedJsonException.class, () -> read("{1:2}"));
+        assertThrows(MalformedJsonException.class, () -> read("[1 2]"));
+        assertThrows(MalformedJsonException.class, () -> read("{\"a\":\"open"));
+        assertThrows(MalformedJsonException.class, () -> read("{\"a\":\"\\uZZZZ\"}"));
+        assertThrows(MalformedJsonException.class, () -> read("{\"a\":tru}"));
+        assertThrows(MalformedJsonException.class, () -> read("{} {}"));
+    }
+
+    @Test
+    public void rejectsWrongTokenType() {
+        assertThrows(MalformedJsonException.class, () -> {
+            JsonReader reader = new JsonReader("[true]");
+            reader.beginArray();
+            reader.nextString();
+        });
+        assertThrows(MalformedJsonException.class, () -> new JsonReader("[]").beginObject());
+    }
+
+    @Test
+    public void writesCompactDocument() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject()
+                .name("s").value("x")
+                .name("n").value(-3L)
+                .name("d").value(0.5)
+                .name("b").value(false)
+                .name("z").nullValue()
+                .name("missing").value((String) null)
+                .name("a").beginArray().value(1L).beginObject().endObject().endArray()
+                .endObject();
+        }
+        assertEquals("{\"s\":\"x\",\"n\":-3,\"d\":0.5,\"b\":false,\"z\":null,\"missing\":null,\"a\":[1,{}]}",
+            out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void rejectsNonFiniteNumbers() {
+        JsonWriter writer = new JsonWriter(new ByteArrayOutputStream());
+        assertThrows(IllegalArgumentException.class, () -> writer.value(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> writer.value(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void roundTripsStrings() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject().name(AWKWARD).value(AWKWARD).endObject();
+        }
+        String json = out.toString(StandardCharsets.UTF_8);
+        assertFalse(json.contains("\n") || json.contains("\u0001"), "control characters are escaped");
+
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.beginObject();
+        assertEquals(AWKWARD, reader.nextName());
+        assertEquals(AWKWARD, reader.nextString());
+        reader.endObject();
+        assertEquals(Token.END_DOCUMENT, reader.peek());
+    }
+
+    /**
+     * Decodes a whole document, unlike {@link JsonReader#skipValue()} which
+     * does not validate escapes and literals.
+     */
+    private static void read(String json) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        do {
+            readValue(reader);
+        } while (reader.peek() != Token.END_DOCUMENT);
+    }
+
+    private static void readValue(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT -> {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    reader.nextName();
+                    readValue(reader);
+                }
+                reader.endObject();
+            }
+            case BEGIN_ARRAY -> {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readValue(reader);
+                }
+                reader.endArray();
+            }
+            case BOOLEAN -> reader.nextBoolean();
+            case NULL -> reader.nextNull();
+            default -> reader.nextString();
+        }
+    }
+
+    /**
+     * A reader handing out one character per read, so that every token
+     * straddles a buffer refill.
+     */
+    private static final class OneCharReader extends Reader {
+
+        private final String text;
+        private int position;
+
+        OneCharReader(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == text.length()) {
+                return -1;
+            }
+            buffer[offset] = text.charAt(position++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
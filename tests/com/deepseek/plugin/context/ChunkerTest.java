@@ -0,0 +1,74 @@
+package com.deepseek.plugin.context;
+
+import static com.deepseek.plugin.tests.Assert.assertEquals;
+
+import java.util.List;
+
+import com.deepseek.plugin.context.Chunker.TextChunk;
+import com.deepseek.plugin.tests.Test;
+
+/**
+ * Tests of the {@link Chunker}: chunk size, natural boundaries and line
+ * numbering.
+ */
+public class ChunkerTest {
+
+    @Test
+    public void keepsShortFileWhole() {
+        assertEquals(List.of(new TextChunk(1, 3, "a\nb\nc\n")), Chunker.split("a\nb\nc\n"));
+        assertEquals(List.of(new TextChunk(1, 2, "a\nb")), Chunker.split("a\nb"));
+        assertEquals(List.of(), Chunker.split(""));
+    }
+
+    @Test
+    public void cutsAtMaximumWithoutBoundary() {
+        List<TextChunk> chunks = Chunker.split(lines(1, 100));
+        assertEquals(3, chunks.size());
+        assertChunk(chunks.get(0), 1, 40);
+        assertChunk(chunks.get(1), 41, 80);
+        assertChunk(chunks.get(2), 81, 100);
+    }
+
+    @Test
+    public void endsAtLastBoundaryOfWindow() {
+        String content = lines(1, 27) + "}\n" + lines(29, 29) + "\n" + lines(31, 70);
+        List<TextChunk> chunks = Chunker.split(content);
+        assertEquals(2, chunks.size());
+        assertEquals(1, chunks.get(0).startLine());
+        assertEquals(30, chunks.get(0).endLine());
+        assertChunk(chunks.get(1), 31, 70);
+        assertEquals(content, chunks.get(0).text() + chunks.get(1).text());
+    }
+
+    @Test
+    public void ignoresBoundaryBeforeWindow() {
+        String content = lines(1, 9) + "};\n" + lines(11, 60);
+        List<TextChunk> chunks = Chunker.split(content);
+        assertEquals(40, chunks.get(0).endLine());
+    }
+
+    @Test
+    public void skipsBlankChunks() {
+        List<TextChunk> chunks = Chunker.split("code\n" + "\n".repeat(80) + "  \t\n");
+        assertEquals(1, chunks.size());
+        assertEquals(1, chunks.get(0).startLine());
+        assertEquals(40, chunks.get(0).endLine());
+    }
+
+    /**
+     * Returns lines {@code "line first"} to {@code "line last"}, inclusive, each ending with a newline.
+     */
+    private static String lines(int first, int last) {
+        StringBuilder text = new StringBuilder();
+        for (int i = first; i <= last; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void assertChunk(TextChunk chunk, int startLine, int endLine) {
+        assertEquals(startLine, chunk.startLine());
+        assertEquals(endLine, chunk.endLine());
+        assertEquals(lines(startLine, endLine), chunk.text());
+    }
+}
@@ -0,0 +1,203 @@
+package com.deepseek.plugin.context;
+
+import static com.deepseek.plugin.tests.Assert.assertEquals;
+import static com.deepseek.plugin.tests.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.deepseek.plugin.tests.TemporaryDirectory;
+import com.deepseek.plugin.tests.Test;
+
+/**
+ * Tests of the {@link ContextIndex}: BM25 ranking, and the write buffer and
+ * segment files giving the same results.
+ */
+public class ContextIndexTest {
+
+    private static final float TOLERANCE = 1e-4f;
+
+    @Test
+    public void ranksWithBm25() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory();
+                ContextIndex index = ContextIndex.open(directory.path())) {
+            addSmallCorpus(index);
+            assertSmallCorpusRanking(index.search("alpha delta", 10));
+        }
+    }
+
+    @Test
+    public void segmentsRankLikeBuffer() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            try (ContextIndex index = ContextIndex.open(directory.path())) {
+                addSmallCorpus(index);
+                index.commit();
+                assertEquals(1, index.getSegmentCount());
+                assertSmallCorpusRanking(index.search("alpha delta", 10));
+            }
+            try (ContextIndex index = ContextIndex.open(directory.path())) {
+                assertEquals(3, index.getFileCount());
+                assertEquals(3, index.getChunkCount());
+                assertEquals(7L, index.getStamp("/p/b.txt"));
+                assertEquals(ContextIndex.NULL_STAMP, index.getStamp("/p/missing.txt"));
+                assertSmallCorpusRanking(index.search("alpha delta", 10));
+            }
+        }
+    }
+
+    @Test
+    public void limitsAndOrdersHits() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory();
+                ContextIndex index = ContextIndex.open(directory.path())) {
+            addSmallCorpus(index);
+            List<ContextIndex.Hit> hits = index.search("alpha delta", 1);
+            assertEquals(1, hits.size());
+            assertEquals("/p/b.txt", hits.get(0).path());
+            assertEquals(List.of(), index.search("ausente", 10));
+            assertEquals(List.of(), index.search("the and", 10));
+        }
+    }
+
+    @Test
+    public void matchesIdentifierParts() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory();
+                ContextIndex index = ContextIndex.open(directory.path())) {
+            index.update("/p/Parser.java", 1, List.of(
+                new Chunker.TextChunk(10, 20, "void parseChunkHeader(HTTPClient client_pool)")));
+            index.update("/p/Other.java", 1, List.of(new Chunker.TextChunk(1, 5, "unrelated words here")));
+            for (String query : List.of("chunk", "header", "parsechunkheader", "http", "client", "pool")) {
+                List<ContextIndex.Hit> hits = index.search(query, 10);
+                assertEquals(1, hits.size());
+                assertEquals(new ContextIndex.Hit("/p/Parser.java", 10, 20, hits.get(0).score()), hits.get(0));
+            }
+        }
+    }
+
+    @Test
+    public void replacesAndRemovesFiles() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            try (ContextIndex index = ContextIndex.open(directory.path())) {
+                index.update("/a/One.java", 1, List.of(new Chunker.TextChunk(1, 3, "antigo conteudo")));
+                index.update("/a/Two.java", 1, List.of(new Chunker.TextChunk(1, 3, "conteudo mantido")));
+                index.update("/b/Three.java", 1, List.of(new Chunker.TextChunk(1, 3, "conteudo externo")));
+                index.commit();
+                index.update("/a/One.java", 2, List.of(new Chunker.TextChunk(4, 9, "novo conteudo")));
+                assertEquals(2L, index.getStamp("/a/One.java"));
+                assertEquals(List.of(), index.search("antigo", 10));
+                assertEquals(List.of("/a/One.java"), paths(index.search("novo", 10)));
+                index.remove("/a/Two.java");
+                index.commit();
+            }
+            try (ContextIndex index = ContextIndex.open(directory.path())) {
+                assertEquals(List.of("/a/One.java", "/b/Three.java"), sortedPaths(index.search("conteudo", 10)));
+                index.removeAll("/b/");
+                assertEquals(List.of("/a/One.java"), paths(index.search("conteudo", 10)));
+                index.retain(path -> !path.endsWith("One.java"));
+                assertEquals(0, index.getFileCount());
+                assertEquals(List.of(), index.search("conteudo", 10));
+            }
+        }
+    }
+
+    @Test
+    public void mergesSegments() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            int commits = ContextIndex.MAX_SEGMENTS * 3;
+            try (ContextIndex index = ContextIndex.open(directory.path())) {
+                for (int commit = 0; commit < commits; commit++) {
+                    index.update("/p/File" + commit + ".java", commit,
+                        Chunker.split("comum\nlinha" + commit + "\nlote especial" + (commit % 2 == 0 ? "" : " impar")));
+                    index.commit();
+                    assertTrue(index.getSegmentCount() <= ContextIndex.MAX_SEGMENTS,
+                        "segments are merged: " + index.getSegmentCount());
+                }
+                index.update("/p/File0.java", 100, Chunker.split("substituido"));
+                index.commit();
+            }
+            try (ContextIndex index = ContextIndex.open(directory.path())) {
+                assertEquals(commits, index.getFileCount());
+                assertEquals(commits - 1, index.search("comum", 100).size());
+                assertEquals(commits / 2, index.search("impar", 100).size());
+                assertEquals(List.of("/p/File5.java"), paths(index.search("linha5", 10)));
+                assertEquals(100L, index.getStamp("/p/File0.java"));
+                try (var files = Files.list(directory.path())) {
+                    long segmentFiles = files.filter(file -> file.toString().endsWith(".seg")).count();
+                    assertEquals((long) index.getSegmentCount(), segmentFiles);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void treatsCorruptCommitAsEmpty() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            try (ContextIndex index = ContextIndex.open(directory.path())) {
+                addSmallCorpus(index);
+            }
+            Path commit = directory.path().resolve("commit");
+            byte[] bytes = Files.readAllBytes(commit);
+            bytes[bytes.length - 1] ^= 0x55;
+            Files.write(commit, bytes);
+            try (ContextIndex index = ContextIndex.open(directory.path())) {
+                assertEquals(0, index.getFileCount());
+                assertEquals(List.of(), index.search("alpha", 10));
+            }
+        }
+    }
+
+    /**
+     * Adds three one-chunk files: a and b share {@code alpha}, b holds it
+     * twice and also the rare {@code delta}, and c is twice as long.
+     */
+    private static void addSmallCorpus(ContextIndex index) throws IOException {
+        index.update("/p/a.txt", 5, List.of(new Chunker.TextChunk(1, 1, "alpha beta gamma")));
+        index.update("/p/b.txt", 7, List.of(new Chunker.TextChunk(2, 4, "alpha alpha delta")));
+        index.update("/p/c.txt", 9, List.of(new Chunker.TextChunk(1, 8, "epsilon zeta eta theta iota kappa")));
+    }
+
+    private static void assertSmallCorpusRanking(List<ContextIndex.Hit> hits) {
+        float averageLength = (3 + 3 + 6) / 3f;
+        float alpha = idf(3, 2);
+        float delta = idf(3, 1);
+        float b = term(alpha, 2, 3, averageLength) + term(delta, 1, 3, averageLength);
+        float a = term(alpha, 1, 3, averageLength);
+
+        assertEquals(2, hits.size());
+        assertEquals("/p/b.txt", hits.get(0).path());
+        assertEquals(2, hits.get(0).startLine());
+        assertEquals(4, hits.get(0).endLine());
+        assertClose(b, hits.get(0).score());
+        assertEquals("/p/a.txt", hits.get(1).path());
+        assertClose(a, hits.get(1).score());
+    }
+
+    private static float idf(long chunks, long frequency) {
+        return (float) Math.log(1 + (chunks - frequency + 0.5) / (frequency + 0.5));
+    }
+
+    private static float term(float idf, int frequency, int length, float averageLength) {
+        float norm = ContextIndex.K1 * (1 - ContextIndex.B + ContextIndex.B * length / averageLength);
+        return idf * frequency * (ContextIndex.K1 + 1) / (frequency + norm);
+    }
+
+    private static void assertClose(float expected, float actual) {
+        assertTrue(Math.abs(expected - actual) < TOLERANCE, "expected score " + expected + " but was " + actual);
+    }
+
+    private static List<String> paths(List<ContextIndex.Hit> hits) {
+        List<String> paths = new ArrayList<>();
+        for (ContextIndex.Hit hit : hits) {
+            paths.add(hit.path());
+        }
+        return paths;
+    }
+
+    private static List<String> sortedPaths(List<ContextIndex.Hit> hits) {
+        List<String> paths = paths(hits);
+        paths.sort(null);
+        return paths;
+    }
+}
@@ -0,0 +1,244 @@
+package com.deepseek.plugin.history;
+
+import static com.deepseek.plugin.tests.Assert.assertEquals;
+import static com.deepseek.plugin.tests.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.deepseek.plugin.api.ChatMessage;
+import com.deepseek.plugin.api.Conversation;
+import com.deepseek.plugin.tests.TemporaryDirectory;
+import com.deepseek.plugin.tests.Test;
+
+/**
+ * Tests of the {@link ConversationStore} log: reading threads back, recovery
+ * from a torn or corrupt tail, and compaction of deleted threads.
+ */
+public class ConversationStoreTest {
+
+    @Test
+    public void roundTripsThreads() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            long first;
+            long second;
+            try (ConversationStore store = ConversationStore.open(directory.path())) {
+                first = store.newThreadId();
+                second = store.newThreadId();
+                assertTrue(second > first, "thread ids increase");
+                for (int i = 0; i < 50; i++) {
+                    store.append(first, message(i, "primeira conversa"));
+                    store.append(second, message(i, "segunda conversa"));
+                }
+                assertThread(store.loadRecent(first, 100), first, 0, 50, "primeira conversa");
+            }
+
+            try (ConversationStore store = ConversationStore.open(directory.path())) {
+                assertThread(store.loadRecent(first, 100), first, 0, 50, "primeira conversa");
+                assertThread(store.loadRecent(second, 10), second, 40, 50, "segunda conversa");
+                assertEquals(second, store.latestThreadId());
+                assertTrue(store.newThreadId() > second, "new thread ids exceed stored ones");
+
+                StoredMessage stored = store.read(3);
+                assertEquals(second, stored.threadId());
+                assertEquals(Conversation.ROLE_ASSISTANT, stored.message().role());
+                assertEquals("1 segunda conversa", stored.message().content());
+
+                StoredMessage appended = store.append(first, message(50, "primeira conversa"));
+                assertEquals(100L, appended.sequence());
+            }
+        }
+    }
+
+    @Test
+    public void pagesBackwardsWithinThread() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory();
+                ConversationStore store = ConversationStore.open(directory.path())) {
+            long thread = store.newThreadId();
+            long other = store.newThreadId();
+            for (int i = 0; i < 30; i++) {
+                store.append(thread, message(i, "alvo"));
+                store.append(other, message(i, "outra"));
+                store.append(other, message(i, "outra"));
+            }
+
+            List<StoredMessage> page = store.loadRecent(thread, 10);
+            List<String> contents = new ArrayList<>();
+            while (!page.isEmpty()) {
+                for (int i = page.size() - 1; i >= 0; i--) {
+                    assertEquals(thread, page.get(i).threadId());
+                    contents.add(0, page.get(i).message().content());
+                }
+                page = store.loadBefore(thread, page.get(0).sequence(), 10);
+            }
+            assertEquals(30, contents.size());
+            for (int i = 0; i < 30; i++) {
+                assertEquals(i + " alvo", contents.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void recoversFromTornTail() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            long thread;
+            try (ConversationStore store = ConversationStore.open(directory.path())) {
+                thread = store.newThreadId();
+                for (int i = 0; i < 5; i++) {
+                    store.append(thread, message(i, "intacta"));
+                }
+            }
+            Path log = directory.path().resolve("history-0.log");
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 3);
+            }
+
+            try (ConversationStore store = ConversationStore.open(directory.path())) {
+                assertThread(store.loadRecent(thread, 10), thread, 0, 4, "intacta");
+                assertEquals(Files.size(log), store.getLogSize());
+                assertEquals(4L, store.append(thread, message(4, "intacta")).sequence());
+            }
+            try (ConversationStore store = ConversationStore.open(directory.path())) {
+                assertThread(store.loadRecent(thread, 10), thread, 0, 5, "intacta");
+            }
+        }
+    }
+
+    @Test
+    public void recoversFromCorruptTail() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            long thread;
+            long size;
+            try (ConversationStore store = ConversationStore.open(directory.path())) {
+                thread = store.newThreadId();
+                for (int i = 0; i < 5; i++) {
+                    store.append(thread, message(i, "intacta"));
+                }
+                size = store.getLogSize();
+            }
+            Path log = directory.path().resolve("history-0.log");
+            ByteBuffer garbage = ByteBuffer.allocate(40).putInt(32).putInt(0xBADC0DE).flip();
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.write(garbage);
+            }
+
+            try (ConversationStore store = ConversationStore.open(directory.path())) {
+                assertEquals(size, store.getLogSize());
+                assertThread(store.loadRecent(thread, 10), thread, 0, 5, "intacta");
+                assertEquals(5L, store.append(thread, message(5, "intacta")).sequence());
+            }
+        }
+    }
+
+    @Test
+    public void rebuildsMissingIndex() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            long first;
+            long second;
+            try (ConversationStore store = ConversationStore.open(directory.path())) {
+                first = store.newThreadId();
+                second = store.newThreadId();
+                for (int i = 0; i < 20; i++) {
+                    store.append(i % 3 == 0 ? second : first, message(i, "texto"));
+                }
+            }
+            Files.delete(directory.path().resolve("history-0.index"));
+
+            try (ConversationStore store = ConversationStore.open(directory.path())) {
+                assertEquals(13, store.loadRecent(first, 100).size());
+                assertEquals(7, store.loadRecent(second, 100).size());
+                assertEquals("18 texto", store.read(18).message().content());
+            }
+        }
+    }
+
+    @Test
+    public void compactsDeletedThreads() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            long kept;
+            long removed;
+            long sizeBefore;
+            try (ConversationStore store = ConversationStore.open(directory.path())) {
+                kept = store.newThreadId();
+                removed = store.newThreadId();
+                for (int i = 0; i < 100; i++) {
+                    store.append(removed, message(i, "descartada girafa"));
+                    store.append(kept, message(i, "mantida girafa"));
+                }
+                sizeBefore = store.getLogSize();
+                store.deleteThread(removed);
+
+                assertEquals(0, store.loadRecent(removed, 10).size());
+                assertEquals(null, store.read(0));
+                assertEquals(kept, store.latestThreadId());
+                assertEquals(10, store.search(SearchQuery.parse("girafa"), 10).size());
+                for (StoredMessage found : store.search(SearchQuery.parse("girafa"), 200)) {
+                    assertEquals(kept, found.threadId());
+                }
+            }
+
+            try (ConversationStore store = ConversationStore.open(directory.path())) {
+                assertTrue(Files.exists(directory.path().resolve("history-1.log")), "a new generation was written");
+                assertTrue(Files.notExists(directory.path().resolve("history-0.log")), "the old generation was removed");
+                assertTrue(Files.notExists(directory.path().resolve("history.deleted.tmp")), "no tombstone leftovers");
+                assertTrue(store.getLogSize() < sizeBefore * 6 / 10, "the log shrank: " + store.getLogSize());
+                assertThread(store.loadRecent(kept, 200), kept, 0, 100, "mantida girafa");
+                assertEquals(0, store.loadRecent(removed, 10).size());
+                assertEquals(100, store.search(SearchQuery.parse("girafa"), 200).size());
+                assertEquals(200L, store.append(kept, message(100, "mantida girafa")).sequence());
+            }
+        }
+    }
+
+    @Test
+    public void searchesMessages() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory();
+                ConversationStore store = ConversationStore.open(directory.path())) {
+            long thread = store.newThreadId();
+            store.append(thread, new ChatMessage(Conversation.ROLE_USER, "Como configurar o proxy HTTP?", null));
+            store.append(thread, new ChatMessage(Conversation.ROLE_ASSISTANT, "Abra as preferências do proxy.", null));
+            store.append(thread, new ChatMessage(Conversation.ROLE_USER, "E o timeout de leitura?", null));
+
+            assertEquals(List.of(1L, 0L), sequences(store.search(SearchQuery.parse("proxy"), 10)));
+            assertEquals(List.of(0L), sequences(store.search(SearchQuery.parse("\"proxy http\""), 10)));
+            assertEquals(List.of(2L), sequences(store.search(SearchQuery.parse("time*"), 10)));
+            assertEquals(List.of(1L), sequences(store.search(SearchQuery.parse("proxy"), 1)));
+            assertEquals(List.of(), sequences(store.search(SearchQuery.parse("inexistente"), 10)));
+        }
+    }
+
+    private static ChatMessage message(int i, String text) {
+        String role = i % 2 == 0 ? Conversation.ROLE_USER : Conversation.ROLE_ASSISTANT;
+        return new ChatMessage(role, i + " " + text, null);
+    }
+
+    /**
+     * Checks that messages are those numbered {@code from} to {@code to},
+     * exclusive, of a thread, in order.
+     */
+    private static void assertThread(List<StoredMessage> messages, long threadId, int from, int to, String text) {
+        assertEquals(to - from, messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            StoredMessage stored = messages.get(i);
+            assertEquals(threadId, stored.threadId());
+            assertEquals(message(from + i, text), stored.message());
+            if (i > 0) {
+                assertTrue(stored.sequence() > messages.get(i - 1).sequence(), "messages are in order");
+            }
+        }
+    }
+
+    private static List<Long> sequences(List<StoredMessage> messages) {
+        List<Long> sequences = new ArrayList<>();
+        for (StoredMessage message : messages) {
+            sequences.add(message.sequence());
+        }
+        return sequences;
+    }
+}
@@ -0,0 +1,110 @@
+package com.deepseek.plugin.history;
+
+import static com.deepseek.plugin.tests.Assert.assertArrayEquals;
+import static com.deepseek.plugin.tests.Assert.assertEquals;
+import static com.deepseek.plugin.tests.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import com.deepseek.plugin.api.ChatMessage;
+import com.deepseek.plugin.api.Conversation;
+import com.deepseek.plugin.tests.TemporaryDirectory;
+import com.deepseek.plugin.tests.Test;
+
+/**
+ * Tests of the {@link SearchIndex} and of its segment files.
+ */
+public class SearchIndexTest {
+
+    @Test
+    public void matchesTermsPrefixesAndPhrases() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory();
+                SearchIndex index = SearchIndex.open(directory.path())) {
+            index.add(message(0, 1, "O Compilador reclama do tipo genérico"));
+            index.add(message(1, 1, "tipo genérico sem compilador"));
+            index.add(message(2, 2, "compilação incremental lenta"));
+
+            assertArrayEquals(new long[] {1, 0}, index.search(SearchQuery.parse("compilador"), 10));
+            assertArrayEquals(new long[] {2, 1, 0}, index.search(SearchQuery.parse("compila*"), 10));
+            assertArrayEquals(new long[] {0}, index.search(SearchQuery.parse("\"compilador reclama\""), 10));
+            assertArrayEquals(new long[] {1, 0}, index.search(SearchQuery.parse("genérico TIPO"), 10));
+            assertArrayEquals(new long[] {}, index.search(SearchQuery.parse("\"genérico tipo\""), 10));
+            assertArrayEquals(new long[] {}, index.search(SearchQuery.parse("   "), 10));
+        }
+    }
+
+    @Test
+    public void persistsCommittedSegments() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            try (SearchIndex index = SearchIndex.open(directory.path())) {
+                for (int i = 0; i < 10; i++) {
+                    index.add(message(i, 1, "mensagem número " + i));
+                }
+                index.commit();
+                assertEquals(1, index.getSegmentCount());
+                index.add(message(10, 2, "mensagem na memória"));
+                index.add(message(5, 2, "fora de ordem"));
+            }
+
+            try (SearchIndex index = SearchIndex.open(directory.path())) {
+                assertEquals(10L, index.getLastSequence());
+                assertEquals(11, index.getMessageCount());
+                assertArrayEquals(new long[] {10, 9, 8}, index.search(SearchQuery.parse("mensagem"), 3));
+                assertArrayEquals(new long[] {7}, index.search(SearchQuery.parse("\"número 7\""), 10));
+                assertArrayEquals(new long[] {}, index.search(SearchQuery.parse("ordem"), 10));
+            }
+        }
+    }
+
+    @Test
+    public void mergesSegments() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            int total = 0;
+            try (SearchIndex index = SearchIndex.open(directory.path())) {
+                for (int commit = 0; commit < SearchIndex.MAX_SEGMENTS * 3; commit++) {
+                    for (int i = 0; i < 5; i++) {
+                        index.add(message(total, commit, "lote " + commit + " comum"));
+                        total++;
+                    }
+                    index.commit();
+                    assertTrue(index.getSegmentCount() <= SearchIndex.MAX_SEGMENTS,
+                        "segments are merged: " + index.getSegmentCount());
+                }
+            }
+            try (SearchIndex index = SearchIndex.open(directory.path())) {
+                assertEquals(total, index.getMessageCount());
+                assertEquals(total, index.search(SearchQuery.parse("comum"), 1000).length);
+                assertArrayEquals(new long[] {19, 18, 17, 16, 15}, index.search(SearchQuery.parse("\"lote 3\""), 10));
+                try (var files = Files.list(directory.path())) {
+                    long segmentFiles = files.filter(file -> file.toString().endsWith(".seg")).count();
+                    assertTrue(segmentFiles <= SearchIndex.MAX_SEGMENTS, "unreferenced segments are deleted");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void purgesDeletedThreads() throws IOException {
+        try (TemporaryDirectory directory = new TemporaryDirectory()) {
+            try (SearchIndex index = SearchIndex.open(directory.path())) {
+                for (int i = 0; i < 20; i++) {
+                    index.add(message(i, i % 2, "palavra"));
+                }
+                index.commit();
+                index.add(message(20, 1, "palavra"));
+                index.deleteThread(1);
+                assertEquals(10, index.getMessageCount());
+                assertArrayEquals(new long[] {18, 16}, index.search(SearchQuery.parse("palavra"), 2));
+            }
+            try (SearchIndex index = SearchIndex.open(directory.path())) {
+                assertEquals(10, index.getMessageCount());
+                assertEquals(10, index.search(SearchQuery.parse("palavra"), 100).length);
+            }
+        }
+    }
+
+    private static StoredMessage message(long sequence, long threadId, String content) {
+        return new StoredMessage(sequence, threadId, 0, new ChatMessage(Conversation.ROLE_USER, content, null));
+    }
+}
@@ -0,0 +1,103 @@
+package com.deepseek.plugin.tests;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The assertions of the tests. A failed assertion throws an
+ * {@link AssertionError} describing the expected and the actual value.
+ */
+public final class Assert {
+
+    /**
+     * Code expected to throw.
+     */
+    @FunctionalInterface
+    public interface Executable {
+
+        /**
+         * Runs the code.
+         *
+         * @throws Throwable anything
+         */
+        void run() throws Throwable;
+    }
+
+    private Assert() {
+    }
+
+    /**
+     * Fails the test.
+     *
+     * @param message the reason
+     */
+    public static void fail(String message) {
+        throw new AssertionError(message);
+    }
+
+    /**
+     * Checks that a condition holds.
+     *
+     * @param condition the condition
+     * @param message   the description of the condition
+     */
+    public static void assertTrue(boolean condition, String message) {
+        if (!condition) {
+            fail(message);
+        }
+    }
+
+    /**
+     * Checks that a condition does not hold.
+     *
+     * @param condition the condition
+     * @param message   the description of the condition
+     */
+    public static void assertFalse(boolean condition, String message) {
+        assertTrue(!condition, message);
+    }
+
+    /**
+     * Checks that two values are equal.
+     *
+     * @param expected the expected value
+     * @param actual   the actual value
+     */
+    public static void assertEquals(Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            fail("expected <" + expected + "> but was <" + actual + ">");
+        }
+    }
+
+    /**
+     * Checks that two arrays hold the same values.
+     *
+     * @param expected the expected values
+     * @param actual   the actual values
+     */
+    public static void assertArrayEquals(long[] expected, long[] actual) {
+        if (!Arrays.equals(expected, actual)) {
+            fail("expected " + Arrays.toString(expected) + " but was " + Arrays.toString(actual));
+        }
+    }
+
+    /**
+     * Checks that code throws an exception of a type.
+     *
+     * @param <T>        the exception type
+     * @param type       the expected type, or a supertype of it
+     * @param executable the code
+     * @return the exception thrown
+     */
+    public static <T extends Throwable> T assertThrows(Class<T> type, Executable executable) {
+        try {
+            executable.run();
+        } catch (Throwable thrown) {
+            if (type.isInstance(thrown)) {
+                return type.cast(thrown);
+            }
+            throw new AssertionError("expected " + type.getSimpleName() + " but was " + thrown, thrown);
+        }
+        throw new AssertionError("expected " + type.getSimpleName() + " but nothing was thrown");
+    }
+}
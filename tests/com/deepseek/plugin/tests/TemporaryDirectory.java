@@ -0,0 +1,42 @@
+package com.deepseek.plugin.tests;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * A directory created for a test and deleted, with its content, when closed.
+ */
+public final class TemporaryDirectory implements AutoCloseable {
+
+    private final Path path;
+
+    /**
+     * Creates an empty directory.
+     *
+     * @throws IOException if the directory cannot be created
+     */
+    public TemporaryDirectory() throws IOException {
+        this.path = Files.createTempDirectory("deepseek-test-");
+    }
+
+    /**
+     * Returns the directory.
+     *
+     * @return the path of the directory
+     */
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.deepseek.plugin.tests;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a public, parameterless instance method as a test run by the
+ * {@link TestRunner}. Every test runs on a new instance of its class.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Test {
+}
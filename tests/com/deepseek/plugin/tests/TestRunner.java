@@ -0,0 +1,106 @@
+package com.deepseek.plugin.tests;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import com.deepseek.plugin.api.EndpointRouterTest;
+import com.deepseek.plugin.api.RateLimiterTest;
+import com.deepseek.plugin.api.RequestCoalescerTest;
+import com.deepseek.plugin.api.RetryPolicyTest;
+import com.deepseek.plugin.api.json.JsonTest;
+import com.deepseek.plugin.context.ChunkerTest;
+import com.deepseek.plugin.context.ContextIndexTest;
+import com.deepseek.plugin.history.ConversationStoreTest;
+import com.deepseek.plugin.history.SearchIndexTest;
+
+/**
+ * A small headless test runner.
+ *
+ * <p>Runs every method annotated with {@link Test} of the test classes, each
+ * on a new instance, and prints one line per test followed by a summary.
+ * The process exits with status 1 if a test failed, so the runner can gate
+ * a build.</p>
+ *
+ * <p>Usage: {@code TestRunner [filter...]}, where each filter selects the
+ * tests whose {@code Class.method} name contains it.</p>
+ */
+public final class TestRunner {
+
+    private static final List<Class<?>> TEST_CLASSES = List.of(
+        JsonTest.class,
+        ConversationStoreTest.class,
+        RateLimiterTest.class,
+        RetryPolicyTest.class,
+        ChunkerTest.class,
+        ContextIndexTest.class,
+        SearchIndexTest.class,
+        EndpointRouterTest.class,
+        RequestCoalescerTest.class);
+
+    private TestRunner() {
+    }
+
+    /**
+     * Runs the tests.
+     *
+     * @param args the filters selecting the tests to run, all tests if none
+     * @throws Exception if a test class cannot be instantiated
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> filters = Arrays.asList(args);
+        int passed = 0;
+        List<String> failures = new ArrayList<>();
+        for (Class<?> testClass : TEST_CLASSES) {
+            List<Method> tests = new ArrayList<>();
+            for (Method method : testClass.getMethods()) {
+                String name = testClass.getSimpleName() + "." + method.getName();
+                if (method.isAnnotationPresent(Test.class) && !Modifier.isStatic(method.getModifiers())
+                        && (filters.isEmpty() || filters.stream().anyMatch(name::contains))) {
+                    tests.add(method);
+                }
+            }
+            tests.sort(Comparator.comparing(Method::getName));
+            for (Method test : tests) {
+                String name = testClass.getSimpleName() + "." + test.getName();
+                long start = System.nanoTime();
+                Throwable failure = run(testClass, test);
+                String millis = String.format(Locale.ROOT, "%6.1f ms", (System.nanoTime() - start) / 1e6);
+                if (failure == null) {
+                    passed++;
+                    System.out.println("PASS " + millis + "  " + name);
+                } else {
+                    failures.add(name);
+                    System.out.println("FAIL " + millis + "  " + name);
+                    failure.printStackTrace(System.out);
+                }
+            }
+        }
+        System.out.println();
+        System.out.println(passed + " passed, " + failures.size() + " failed");
+        for (String failure : failures) {
+            System.out.println("  " + failure);
+        }
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Runs one test.
+     *
+     * @return the failure, or null if the test passed
+     */
+    private static Throwable run(Class<?> testClass, Method test) throws Exception {
+        Object instance = testClass.getDeclaredConstructor().newInstance();
+        try {
+            test.invoke(instance);
+            return null;
+        } catch (InvocationTargetException exception) {
+            return exception.getCause();
+        }
+    }
+}
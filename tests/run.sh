@@ -0,0 +1,18 @@
+#!/bin/sh
+# Compiles the unit tests together with the plugin classes they exercise and
+# runs them headless. Arguments are passed to TestRunner, for example:
+#
+#   tests/run.sh JsonTest.reads JsonTest.rejects
+#
+# Only the pure Java classes are compiled, so no Eclipse installation is
+# needed. Set JAVA_HOME to choose the JDK.
+set -e
+cd "$(dirname "$0")/.."
+
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+JAVAC="${JAVA_HOME:+$JAVA_HOME/bin/}javac"
+OUT=bin-tests
+
+"$JAVAC" -encoding UTF-8 -d "$OUT" -sourcepath src:tests \
+    tests/com/deepseek/plugin/tests/TestRunner.java
+exec "$JAVA" -cp "$OUT" com.deepseek.plugin.tests.TestRunner "$@"
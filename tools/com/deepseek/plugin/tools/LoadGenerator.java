@@ -0,0 +1,449 @@
+package com.deepseek.plugin.tools;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.deepseek.plugin.api.ApiException;
+import com.deepseek.plugin.api.ChatMessage;
+import com.deepseek.plugin.api.Conversation;
+import com.deepseek.plugin.api.DeepSeekAPIClient;
+import com.deepseek.plugin.api.HttpTransport;
+import com.deepseek.plugin.api.RateLimiter;
+import com.deepseek.plugin.api.StreamListener;
+import com.deepseek.plugin.api.json.JsonWriter;
+import com.deepseek.plugin.concurrent.CancellationToken;
+import com.deepseek.plugin.metrics.Histogram;
+import com.deepseek.plugin.metrics.Metrics;
+
+/**
+ * A headless load generator driving {@link DeepSeekAPIClient} with many
+ * concurrent conversations, without SWT or a running workbench.
+ *
+ * <p>The load is applied in stages of increasing concurrency. During a stage,
+ * each simulated conversation runs on its own virtual thread and sends one
+ * request after the other; an optional target rate spaces the requests of
+ * all conversations evenly, in which case the achieved throughput shows
+ * whether the client kept up. When a stage ends, no new request is started
+ * and the requests in flight are given the read timeout to finish before
+ * they are cancelled.</p>
+ *
+ * <p>For every stage the generator reports throughput, latency percentiles
+ * up to p99.9, time to first token when streaming, error and retry counts,
+ * the peak heap usage and the garbage collections. Results are printed and
+ * can be written as JSON so that versions can be compared.</p>
+ *
+ * <p>Unless {@code -endpoint} is given, an embedded {@link MockDeepSeekServer}
+ * serves the requests; see {@link #main(String[])} for the options.</p>
+ */
+public class LoadGenerator {
+
+    /**
+     * The measurements of one stage.
+     *
+     * @param concurrency      the number of concurrent conversations
+     * @param seconds          the measured duration
+     * @param requests         the number of completed requests
+     * @param errors           the number of failed requests
+     * @param errorKinds       the failed requests by cause
+     * @param retries          the number of retried attempts
+     * @param latency          the request latency, in nanoseconds
+     * @param timeToFirstToken the time to the first streamed delta, in nanoseconds
+     * @param maxHeapBytes     the peak heap usage sampled during the stage
+     * @param heapAfterBytes   the heap usage at the end of the stage
+     * @param gcCount          the number of collections during the stage
+     * @param gcMillis         the accumulated collection time during the stage
+     */
+    public record StageResult(int concurrency, double seconds, long requests, long errors,
+            Map<String, Long> errorKinds, long retries, Histogram latency, Histogram timeToFirstToken,
+            long maxHeapBytes, long heapAfterBytes, long gcCount, long gcMillis) {
+
+        /**
+         * Returns the completed requests per second, failures included.
+         *
+         * @return the throughput
+         */
+        public double throughput() {
+            return seconds > 0 ? requests / seconds : 0;
+        }
+
+        /**
+         * Returns the fraction of requests that failed.
+         *
+         * @return the error rate between 0 and 1
+         */
+        public double errorRate() {
+            return requests > 0 ? (double) errors / requests : 0;
+        }
+    }
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private final DeepSeekAPIClient client;
+    private final boolean streaming;
+    private final double targetRate;
+    private final int promptBytes;
+    private final Duration drainTimeout;
+
+    /**
+     * Creates a generator.
+     *
+     * @param client       the client under test
+     * @param streaming    whether requests are streamed
+     * @param targetRate   the requests per second to aim for across all conversations, or 0 for as fast as possible
+     * @param promptBytes  the approximate size of each prompt
+     * @param drainTimeout how long requests in flight may take to finish at the end of a stage
+     */
+    public LoadGenerator(DeepSeekAPIClient client, boolean streaming, double targetRate, int promptBytes,
+            Duration drainTimeout) {
+        this.client = client;
+        this.streaming = streaming;
+        this.targetRate = targetRate;
+        this.promptBytes = promptBytes;
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * <p>Options: {@code -stages 50,100,250,500} (the concurrency of each
+     * stage), {@code -stage-seconds n} (default 10), {@code -rate n} (target
+     * requests per second, default unlimited), {@code -stream},
+     * {@code -prompt-bytes n} (default 512), {@code -timeout seconds}
+     * (default 120), {@code -json file} and {@code -endpoint url}. Without an
+     * endpoint, a mock server is started and configured with
+     * {@code -latency ms}, {@code -jitter ms}, {@code -chunk characters},
+     * {@code -chunk-delay ms}, {@code -rate-limit ratio},
+     * {@code -server-error ratio} and {@code -seed n}.</p>
+     *
+     * @param args the options
+     * @throws Exception if the test cannot run
+     */
+    public static void main(String[] args) throws Exception {
+        List<Integer> stages = List.of(50, 100, 250, 500);
+        long stageSeconds = 10;
+        double rate = 0;
+        boolean stream = false;
+        int promptBytes = 512;
+        long timeout = 120;
+        Path json = null;
+        URI endpoint = null;
+        long latency = 200;
+        long jitter = 100;
+        int chunk = 8;
+        long chunkDelay = 10;
+        double rateLimit = 0;
+        double serverError = 0;
+        long seed = 42;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-stages" -> stages = parseStages(args[++i]);
+                case "-stage-seconds" -> stageSeconds = Long.parseLong(args[++i]);
+                case "-rate" -> rate = Double.parseDouble(args[++i]);
+                case "-stream" -> stream = true;
+                case "-prompt-bytes" -> promptBytes = Integer.parseInt(args[++i]);
+                case "-timeout" -> timeout = Long.parseLong(args[++i]);
+                case "-json" -> json = Path.of(args[++i]);
+                case "-endpoint" -> endpoint = URI.create(args[++i]);
+                case "-latency" -> latency = Long.parseLong(args[++i]);
+                case "-jitter" -> jitter = Long.parseLong(args[++i]);
+                case "-chunk" -> chunk = Integer.parseInt(args[++i]);
+                case "-chunk-delay" -> chunkDelay = Long.parseLong(args[++i]);
+                case "-rate-limit" -> rateLimit = Double.parseDouble(args[++i]);
+                case "-server-error" -> serverError = Double.parseDouble(args[++i]);
+                case "-seed" -> seed = Long.parseLong(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        MockDeepSeekServer server = null;
+        if (endpoint == null) {
+            server = new MockDeepSeekServer(0, seed);
+            server.setLatency(Duration.ofMillis(latency), Duration.ofMillis(jitter));
+            server.setChunking(chunk, Duration.ofMillis(chunkDelay));
+            server.setRateLimitRatio(rateLimit, Duration.ofMillis(500));
+            server.setServerErrorRatio(serverError);
+            server.start();
+            endpoint = server.getEndpoint();
+        }
+
+        int maxConcurrency = stages.stream().mapToInt(Integer::intValue).max().orElse(1);
+        RateLimiter limiter = new RateLimiter(Integer.MAX_VALUE, maxConcurrency);
+        HttpTransport transport = new HttpTransport(Duration.ofSeconds(10), Duration.ofSeconds(timeout), limiter);
+        DeepSeekAPIClient client = new DeepSeekAPIClient("load-test", endpoint, transport, null);
+        LoadGenerator generator = new LoadGenerator(client, stream, rate, promptBytes, Duration.ofSeconds(timeout));
+
+        System.out.printf(Locale.ROOT, "Endpoint %s, %s, target rate %s%n", endpoint,
+            stream ? "streaming" : "non-streaming", rate > 0 ? rate + " req/s" : "unlimited");
+        System.out.printf(Locale.ROOT, "%6s %10s %9s %8s %8s %8s %8s %8s %8s %10s %5s%n",
+            "conc", "req/s", "errors", "retries", "p50 ms", "p99 ms", "p999 ms", "max ms", "ttft ms", "heap MB", "GCs");
+        List<StageResult> results = new ArrayList<>();
+        try {
+            for (int concurrency : stages) {
+                StageResult result = generator.runStage(concurrency, Duration.ofSeconds(stageSeconds));
+                results.add(result);
+                System.out.printf(Locale.ROOT, "%6d %10.1f %8.2f%% %8d %8.1f %8.1f %8.1f %8.1f %8.1f %10.1f %5d%n",
+                    result.concurrency(), result.throughput(), result.errorRate() * 100, result.retries(),
+                    millis(result.latency().percentile(50)), millis(result.latency().percentile(99)),
+                    millis(result.latency().percentile(99.9)), millis(result.latency().snapshot().max()),
+                    millis(result.timeToFirstToken().percentile(50)),
+                    result.maxHeapBytes() / (1024.0 * 1024.0), result.gcCount());
+            }
+        } finally {
+            transport.shutdown();
+            if (server != null) {
+                server.close();
+            }
+        }
+        if (json != null) {
+            writeJson(json, endpoint, stream, rate, results);
+        }
+    }
+
+    /**
+     * Runs one stage.
+     *
+     * @param concurrency the number of concurrent conversations
+     * @param duration    how long new requests are started
+     * @return the measurements of the stage
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public StageResult runStage(int concurrency, Duration duration) throws InterruptedException {
+        Histogram latency = new Histogram("load.latency", "ns");
+        Histogram timeToFirstToken = new Histogram("load.time-to-first-token", "ns");
+        LongAdder requests = new LongAdder();
+        LongAdder errors = new LongAdder();
+        Map<String, LongAdder> errorKinds = new ConcurrentHashMap<>();
+        CancellationToken stageToken = new CancellationToken();
+        AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+        long interval = targetRate > 0 ? (long) (1e9 / targetRate) : 0;
+
+        long retriesBefore = Metrics.API_RETRIES.get();
+        long[] gcBefore = gcTotals();
+        AtomicLong maxHeap = new AtomicLong(MEMORY.getHeapMemoryUsage().getUsed());
+        Thread sampler = Thread.ofPlatform().daemon().name("load-heap-sampler").start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                maxHeap.accumulateAndGet(MEMORY.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        });
+
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        List<Thread> conversations = new ArrayList<>(concurrency);
+        for (int c = 0; c < concurrency; c++) {
+            int conversation = c;
+            conversations.add(Thread.ofVirtual().name("load-conversation-", c).start(() -> {
+                for (int turn = 0; !stageToken.isCancelled(); turn++) {
+                    if (interval > 0) {
+                        long slot = nextSlot.getAndUpdate(previous -> Math.max(previous, System.nanoTime()) + interval);
+                        long wait = Math.max(slot, System.nanoTime()) - System.nanoTime();
+                        if (wait > 0) {
+                            try {
+                                TimeUnit.NANOSECONDS.sleep(wait);
+                            } catch (InterruptedException interrupted) {
+                                return;
+                            }
+                        }
+                    }
+                    if (System.nanoTime() >= end) {
+                        return;
+                    }
+
+                    List<ChatMessage> messages = List.of(
+                        new ChatMessage(Conversation.ROLE_USER, prompt(conversation, turn), null));
+                    long sent = System.nanoTime();
+                    String failure = streaming
+                        ? sendStreaming(messages, stageToken, sent, timeToFirstToken)
+                        : send(messages, stageToken);
+                    if (stageToken.isCancelled()) {
+                        return;
+                    }
+                    latency.recordSince(sent);
+                    requests.increment();
+                    if (failure != null) {
+                        errors.increment();
+                        errorKinds.computeIfAbsent(failure, kind -> new LongAdder()).increment();
+                    }
+                }
+            }));
+        }
+
+        Thread.sleep(Math.max(0, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime())));
+        long drainDeadline = System.nanoTime() + drainTimeout.toNanos();
+        for (Thread conversation : conversations) {
+            long remaining = drainDeadline - System.nanoTime();
+            if (remaining <= 0 || !conversation.join(Duration.ofNanos(remaining))) {
+                break;
+            }
+        }
+        stageToken.cancel();
+        for (Thread conversation : conversations) {
+            conversation.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        sampler.interrupt();
+        sampler.join();
+        long[] gcAfter = gcTotals();
+        Map<String, Long> kinds = new TreeMap<>();
+        errorKinds.forEach((kind, count) -> kinds.put(kind, count.sum()));
+        return new StageResult(concurrency, seconds, requests.sum(), errors.sum(), kinds,
+            Metrics.API_RETRIES.get() - retriesBefore, latency, timeToFirstToken,
+            maxHeap.get(), MEMORY.getHeapMemoryUsage().getUsed(),
+            gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+    }
+
+    /**
+     * Sends a request and returns the kind of failure, or null on success.
+     */
+    private String send(List<ChatMessage> messages, CancellationToken token) {
+        try {
+            client.complete(messages, token);
+            return null;
+        } catch (ApiException apiException) {
+            return "HTTP " + apiException.getStatusCode();
+        } catch (Exception exception) {
+            return exception.getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * Streams a request, recording the time to the first delta, and returns
+     * the error message, or null on success.
+     */
+    private String sendStreaming(List<ChatMessage> messages, CancellationToken token, long sent, Histogram firstToken) {
+        String[] failure = new String[1];
+        client.sendMessageStreaming(messages, new StreamListener() {
+            private boolean first = true;
+
+            @Override
+            public void onDelta(String delta) {
+                if (first) {
+                    firstToken.recordSince(sent);
+                    first = false;
+                }
+            }
+
+            @Override
+            public void onComplete() {
+            }
+
+            @Override
+            public void onError(String message) {
+                failure[0] = message;
+            }
+        }, token);
+        return failure[0];
+    }
+
+    private String prompt(int conversation, int turn) {
+        StringBuilder prompt = new StringBuilder(promptBytes + 64);
+        prompt.append("Conversa ").append(conversation).append(", pergunta ").append(turn).append(": ");
+        while (prompt.length() < promptBytes) {
+            prompt.append("Explique o que este código faz e como melhorá-lo. ");
+        }
+        return prompt.toString();
+    }
+
+    private static List<Integer> parseStages(String value) {
+        List<Integer> stages = new ArrayList<>();
+        for (String part : value.split(",")) {
+            stages.add(Integer.parseInt(part.trim()));
+        }
+        return stages;
+    }
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return new long[] { count, time };
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static void writeJson(Path file, URI endpoint, boolean stream, double rate, List<StageResult> results)
+            throws IOException {
+        try (OutputStream out = Files.newOutputStream(file);
+             JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("timestamp").value(Instant.now().toString());
+            writer.name("java").value(Runtime.version().toString());
+            writer.name("endpoint").value(endpoint.toString());
+            writer.name("streaming").value(stream);
+            writer.name("targetRate").value(rate);
+            writer.name("stages").beginArray();
+            for (StageResult result : results) {
+                writer.beginObject();
+                writer.name("concurrency").value(result.concurrency());
+                writer.name("seconds").value(result.seconds());
+                writer.name("requests").value(result.requests());
+                writer.name("throughput").value(result.throughput());
+                writer.name("errors").value(result.errors());
+                writer.name("errorRate").value(result.errorRate());
+                writer.name("errorKinds").beginObject();
+                for (Map.Entry<String, Long> kind : result.errorKinds().entrySet()) {
+                    writer.name(kind.getKey()).value(kind.getValue());
+                }
+                writer.endObject();
+                writer.name("retries").value(result.retries());
+                writer.name("latencyMillis");
+                writePercentiles(writer, result.latency());
+                if (stream) {
+                    writer.name("timeToFirstTokenMillis");
+                    writePercentiles(writer, result.timeToFirstToken());
+                }
+                writer.name("heap").beginObject();
+                writer.name("maxUsedBytes").value(result.maxHeapBytes());
+                writer.name("usedAfterBytes").value(result.heapAfterBytes());
+                writer.endObject();
+                writer.name("gc").beginObject();
+                writer.name("count").value(result.gcCount());
+                writer.name("timeMillis").value(result.gcMillis());
+                writer.endObject();
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+    }
+
+    private static void writePercentiles(JsonWriter writer, Histogram histogram) throws IOException {
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        writer.beginObject();
+        writer.name("count").value(snapshot.count());
+        writer.name("mean").value(snapshot.mean() / 1e6);
+        writer.name("p50").value(millis(snapshot.p50()));
+        writer.name("p90").value(millis(snapshot.p90()));
+        writer.name("p99").value(millis(snapshot.p99()));
+        writer.name("p999").value(millis(histogram.percentile(99.9)));
+        writer.name("max").value(millis(snapshot.max()));
+        writer.endObject();
+    }
+}
@@ -0,0 +1,533 @@
+package com.deepseek.plugin.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.deepseek.plugin.api.json.JsonReader;
+import com.deepseek.plugin.api.json.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the DeepSeek chat completions endpoint.
+ *
+ * <p>The server answers every {@code POST} to a path ending in
+ * {@code /chat/completions} with a canned answer, either as a single JSON
+ * body or, when the request asks for {@code "stream": true}, as server-sent
+ * events followed by {@code data: [DONE]}. Its behavior can be changed while
+ * it runs:</p>
+ * <ul>
+ * <li>a latency, with optional jitter, before the response headers;</li>
+ * <li>the number of characters per streamed event and the delay between events;</li>
+ * <li>slow-drip bodies, written a few bytes at a time with a delay in between;</li>
+ * <li>random {@code 429} answers carrying {@code Retry-After} and random
+ *     {@code 5xx} answers, at configurable ratios and with a reproducible seed;</li>
+ * <li>scripted failures returned by the next requests, see {@link #failNext(int, int)}.</li>
+ * </ul>
+ *
+ * <p>Each exchange runs on its own virtual thread, so hundreds of slow
+ * concurrent streams cost little. Point the plugin at the server through the
+ * <i>API endpoint</i> preference or by passing {@link #getEndpoint()} to
+ * {@link com.deepseek.plugin.api.DeepSeekAPIClient}.</p>
+ *
+ * <p>Run it from the command line with {@code tools/mock-server.sh}; see
+ * {@link #main(String[])} for the options.</p>
+ */
+public class MockDeepSeekServer implements AutoCloseable {
+
+    /** The answer returned when none is configured. */
+    public static final String DEFAULT_ANSWER =
+        "Claro! Aqui está um exemplo:\n\n```java\nSystem.out.println(\"Olá, mundo! 🚀\");\n```\n\n"
+        + "O método imprime a mensagem no console. Você pode adaptá-lo conforme necessário.";
+
+    private static final String MODEL = "deepseek-chat";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Random random;
+    private final Queue<Integer> scripted = new ConcurrentLinkedQueue<>();
+
+    private volatile String answer = DEFAULT_ANSWER;
+    private volatile boolean echo;
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Duration latencyJitter = Duration.ZERO;
+    private volatile int chunkCharacters = 8;
+    private volatile Duration chunkDelay = Duration.ofMillis(20);
+    private volatile int dripBytes;
+    private volatile Duration dripDelay = Duration.ZERO;
+    private volatile double rateLimitRatio;
+    private volatile double serverErrorRatio;
+    private volatile Duration retryAfter = Duration.ofSeconds(1);
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong streams = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Creates a server listening on the loopback interface. The server does
+     * not accept requests until {@link #start()} is called.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @param seed the seed of the random failure injection
+     * @throws IOException if the port cannot be bound
+     */
+    public MockDeepSeekServer(int port, long seed) throws IOException {
+        this.random = new Random(seed);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, aborting the exchanges still in progress.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the URL to configure as the chat completions endpoint.
+     *
+     * @return the endpoint of this server
+     */
+    public URI getEndpoint() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + "/chat/completions");
+    }
+
+    /**
+     * Sets the canned answer.
+     *
+     * @param answer the answer returned for every request
+     */
+    public void setAnswer(String answer) {
+        this.answer = answer;
+    }
+
+    /**
+     * Makes every answer repeat the last message of its request instead of
+     * the canned answer, so that concurrent answers can be told apart.
+     *
+     * @param echo whether answers echo the prompt
+     */
+    public void setEcho(boolean echo) {
+        this.echo = echo;
+    }
+
+    /**
+     * Sets the delay before the response headers are sent.
+     *
+     * @param latency the minimum delay
+     * @param jitter  the maximum random delay added to it
+     */
+    public void setLatency(Duration latency, Duration jitter) {
+        this.latency = latency;
+        this.latencyJitter = jitter;
+    }
+
+    /**
+     * Sets how streamed answers are split.
+     *
+     * @param characters the number of characters per event
+     * @param delay      the delay between two events
+     */
+    public void setChunking(int characters, Duration delay) {
+        this.chunkCharacters = Math.max(1, characters);
+        this.chunkDelay = delay;
+    }
+
+    /**
+     * Makes non-streamed bodies arrive slowly.
+     *
+     * @param bytes the number of bytes written at a time, or 0 to write the body at once
+     * @param delay the delay between two writes
+     */
+    public void setDrip(int bytes, Duration delay) {
+        this.dripBytes = bytes;
+        this.dripDelay = delay;
+    }
+
+    /**
+     * Sets the ratio of requests answered with {@code 429 Too Many Requests}.
+     *
+     * @param ratio      a value between 0 and 1
+     * @param retryAfter the delay sent in the {@code Retry-After} header
+     */
+    public void setRateLimitRatio(double ratio, Duration retryAfter) {
+        this.rateLimitRatio = ratio;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Sets the ratio of requests answered with a {@code 500}, {@code 502} or {@code 503} status.
+     *
+     * @param ratio a value between 0 and 1
+     */
+    public void setServerErrorRatio(double ratio) {
+        this.serverErrorRatio = ratio;
+    }
+
+    /**
+     * Answers the next requests with the given error status, before any
+     * random failure is considered.
+     *
+     * @param statusCode the status to return, such as 429 or 503
+     * @param count      the number of requests to fail
+     */
+    public void failNext(int statusCode, int count) {
+        for (int i = 0; i < count; i++) {
+            scripted.add(statusCode);
+        }
+    }
+
+    /**
+     * Returns the number of requests received.
+     *
+     * @return the request count
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of requests answered with a stream.
+     *
+     * @return the streamed answer count
+     */
+    public long getStreamCount() {
+        return streams.get();
+    }
+
+    /**
+     * Returns the number of requests answered with an injected failure.
+     *
+     * @return the failure count
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * Runs the server until the process is stopped.
+     *
+     * <p>Options: {@code -port n} (default 8089), {@code -latency ms},
+     * {@code -jitter ms}, {@code -chunk characters}, {@code -chunk-delay ms},
+     * {@code -drip bytes}, {@code -drip-delay ms}, {@code -rate-limit ratio},
+     * {@code -retry-after ms}, {@code -server-error ratio}, {@code -seed n},
+     * {@code -answer file} and {@code -echo}.</p>
+     *
+     * @param args the options
+     * @throws IOException if the server cannot start or the answer cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        int port = 8089;
+        long seed = 42;
+        long latency = 0;
+        long jitter = 0;
+        int chunk = 8;
+        long chunkDelay = 20;
+        int drip = 0;
+        long dripDelay = 0;
+        double rateLimit = 0;
+        long retryAfter = 1000;
+        double serverError = 0;
+        String answer = DEFAULT_ANSWER;
+        boolean echo = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-port" -> port = Integer.parseInt(args[++i]);
+                case "-seed" -> seed = Long.parseLong(args[++i]);
+                case "-latency" -> latency = Long.parseLong(args[++i]);
+                case "-jitter" -> jitter = Long.parseLong(args[++i]);
+                case "-chunk" -> chunk = Integer.parseInt(args[++i]);
+                case "-chunk-delay" -> chunkDelay = Long.parseLong(args[++i]);
+                case "-drip" -> drip = Integer.parseInt(args[++i]);
+                case "-drip-delay" -> dripDelay = Long.parseLong(args[++i]);
+                case "-rate-limit" -> rateLimit = Double.parseDouble(args[++i]);
+                case "-retry-after" -> retryAfter = Long.parseLong(args[++i]);
+                case "-server-error" -> serverError = Double.parseDouble(args[++i]);
+                case "-answer" -> answer = Files.readString(Path.of(args[++i]));
+                case "-echo" -> echo = true;
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        MockDeepSeekServer server = new MockDeepSeekServer(port, seed);
+        server.setAnswer(answer);
+        server.setEcho(echo);
+        server.setLatency(Duration.ofMillis(latency), Duration.ofMillis(jitter));
+        server.setChunking(chunk, Duration.ofMillis(chunkDelay));
+        server.setDrip(drip, Duration.ofMillis(dripDelay));
+        server.setRateLimitRatio(rateLimit, Duration.ofMillis(retryAfter));
+        server.setServerErrorRatio(serverError);
+        server.start();
+        System.out.println("Mock DeepSeek endpoint: " + server.getEndpoint());
+    }
+
+    /**
+     * The parts of a request the server looks at.
+     */
+    private record Prompt(String model, boolean stream, String lastMessage) {
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            if (!exchange.getRequestURI().getPath().endsWith("/chat/completions")) {
+                sendError(exchange, 404, "not_found", "Unknown path: " + exchange.getRequestURI().getPath());
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "invalid_request_error", "Method not allowed");
+                return;
+            }
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authorization == null || !authorization.startsWith("Bearer ") || authorization.length() == 7) {
+                sendError(exchange, 401, "authentication_error", "Authentication Fails (no such user)");
+                return;
+            }
+
+            Prompt prompt;
+            try (InputStream body = exchange.getRequestBody()) {
+                prompt = readPrompt(body);
+            } catch (IOException malformed) {
+                sendError(exchange, 400, "invalid_request_error", "Invalid JSON: " + malformed.getMessage());
+                return;
+            }
+
+            sleep(latency.plusMillis(randomMillis(latencyJitter)));
+            int failure = nextFailure();
+            if (failure == 429) {
+                failures.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", formatSeconds(retryAfter));
+                sendError(exchange, 429, "rate_limit_error", "Rate limit reached for requests");
+                return;
+            }
+            if (failure != 0) {
+                failures.incrementAndGet();
+                sendError(exchange, failure, "server_error", "The server is overloaded, please try again later");
+                return;
+            }
+
+            String content = echo && prompt.lastMessage() != null ? prompt.lastMessage() : answer;
+            if (prompt.stream()) {
+                streams.incrementAndGet();
+                sendStream(exchange, prompt.model(), content);
+            } else {
+                sendCompletion(exchange, prompt.model(), content);
+            }
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        } catch (IOException disconnected) {
+            // the client went away in the middle of the answer
+        }
+    }
+
+    private static Prompt readPrompt(InputStream body) throws IOException {
+        String model = MODEL;
+        boolean stream = false;
+        String lastMessage = null;
+        JsonReader reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "model" -> model = reader.nextString();
+                case "stream" -> stream = reader.nextBoolean();
+                case "messages" -> {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (reader.nextName().equals("content")) {
+                                lastMessage = reader.nextStringOrNull();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    reader.endArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Prompt(model, stream, lastMessage);
+    }
+
+    /**
+     * Picks the status of an injected failure, or 0 to answer normally.
+     */
+    private int nextFailure() {
+        Integer status = scripted.poll();
+        if (status != null) {
+            return status;
+        }
+        double draw = random.nextDouble();
+        if (draw < rateLimitRatio) {
+            return 429;
+        }
+        if (draw < rateLimitRatio + serverErrorRatio) {
+            return new int[] { 500, 502, 503 }[random.nextInt(3)];
+        }
+        return 0;
+    }
+
+    private void sendCompletion(HttpExchange exchange, String model, String content) throws IOException, InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length() * 2 + 512);
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writeHeader(writer, UUID.randomUUID().toString(), model, "chat.completion");
+            writer.name("choices").beginArray().beginObject();
+            writer.name("index").value(0L);
+            writer.name("message").beginObject();
+            writer.name("role").value("assistant");
+            writer.name("content").value(content);
+            writer.endObject();
+            writer.name("logprobs").nullValue();
+            writer.name("finish_reason").value("stop");
+            writer.endObject().endArray();
+            writeUsage(writer, content);
+            writer.endObject();
+        }
+        byte[] body = out.toByteArray();
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream response = exchange.getResponseBody();
+        int step = dripBytes > 0 ? dripBytes : body.length;
+        for (int offset = 0; offset < body.length; offset += step) {
+            if (offset > 0) {
+                sleep(dripDelay);
+            }
+            response.write(body, offset, Math.min(step, body.length - offset));
+            response.flush();
+        }
+    }
+
+    private void sendStream(HttpExchange exchange, String model, String content) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream response = exchange.getResponseBody();
+        ByteArrayOutputStream event = new ByteArrayOutputStream(256);
+        String id = UUID.randomUUID().toString();
+
+        int start = 0;
+        while (start <= content.length()) {
+            boolean last = start == content.length();
+            int end = Math.min(start + chunkCharacters, content.length());
+            if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+                end++;
+            }
+
+            event.reset();
+            try (JsonWriter writer = new JsonWriter(event)) {
+                writer.beginObject();
+                writeHeader(writer, id, model, "chat.completion.chunk");
+                writer.name("choices").beginArray().beginObject();
+                writer.name("index").value(0L);
+                writer.name("delta").beginObject();
+                writer.name("content").value(last ? "" : content.substring(start, end));
+                writer.endObject();
+                writer.name("logprobs").nullValue();
+                if (last) {
+                    writer.name("finish_reason").value("stop");
+                } else {
+                    writer.name("finish_reason").nullValue();
+                }
+                writer.endObject().endArray();
+                if (last) {
+                    writeUsage(writer, content);
+                }
+                writer.endObject();
+            }
+            response.write("data: ".getBytes(StandardCharsets.US_ASCII));
+            event.writeTo(response);
+            response.write("\n\n".getBytes(StandardCharsets.US_ASCII));
+            response.flush();
+            if (last) {
+                break;
+            }
+            start = end;
+            sleep(chunkDelay);
+        }
+        response.write("data: [DONE]\n\n".getBytes(StandardCharsets.US_ASCII));
+        response.flush();
+    }
+
+    private static void writeHeader(JsonWriter writer, String id, String model, String object) throws IOException {
+        writer.name("id").value(id);
+        writer.name("object").value(object);
+        writer.name("created").value(System.currentTimeMillis() / 1000);
+        writer.name("model").value(model);
+    }
+
+    private static void writeUsage(JsonWriter writer, String content) throws IOException {
+        long completionTokens = Math.max(1, content.length() / 4);
+        writer.name("usage").beginObject();
+        writer.name("prompt_tokens").value(16L);
+        writer.name("completion_tokens").value(completionTokens);
+        writer.name("total_tokens").value(16 + completionTokens);
+        writer.endObject();
+    }
+
+    private static void sendError(HttpExchange exchange, int statusCode, String type, String message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            writer.name("error").beginObject();
+            writer.name("message").value(message);
+            writer.name("type").value(type);
+            writer.name("code").nullValue();
+            writer.endObject();
+            writer.endObject();
+        }
+        byte[] body = out.toByteArray();
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private long randomMillis(Duration bound) {
+        long millis = bound.toMillis();
+        return millis > 0 ? random.nextLong(millis + 1) : 0;
+    }
+
+    private static String formatSeconds(Duration duration) {
+        long millis = duration.toMillis();
+        return millis % 1000 == 0 ? Long.toString(millis / 1000) : Double.toString(millis / 1000.0);
+    }
+
+    private static void sleep(Duration duration) throws InterruptedException {
+        if (!duration.isZero() && !duration.isNegative()) {
+            Thread.sleep(duration);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+#!/bin/sh
+# Compiles and runs the headless load generator. Arguments are passed to
+# LoadGenerator, for example:
+#
+#   tools/load-test.sh -stages 50,100,250,500 -stage-seconds 20 -stream -json load.json
+#
+# Without -endpoint, an embedded mock server answers the requests. The
+# plugin classes are taken from the Eclipse output folder bin/, or from
+# PLUGIN_CLASSES; no Eclipse or SWT classes are needed at run time. Set
+# JAVA_HOME to choose the JDK and JAVA_OPTS to tune the JVM.
+set -e
+cd "$(dirname "$0")/.."
+
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+JAVAC="${JAVA_HOME:+$JAVA_HOME/bin/}javac"
+OUT=bin-tools
+PLUGIN_CLASSES="${PLUGIN_CLASSES:-bin}"
+
+"$JAVAC" -d "$OUT" -cp "$PLUGIN_CLASSES" -sourcepath tools \
+    tools/com/deepseek/plugin/tools/LoadGenerator.java
+exec "$JAVA" ${JAVA_OPTS:--Xmx1g} -cp "$OUT:$PLUGIN_CLASSES" com.deepseek.plugin.tools.LoadGenerator "$@"
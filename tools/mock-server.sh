@@ -0,0 +1,18 @@
+#!/bin/sh
+# Compiles and starts the local mock DeepSeek server. Arguments are passed to
+# MockDeepSeekServer, for example:
+#
+#   tools/mock-server.sh -port 8089 -latency 200 -jitter 100 -rate-limit 0.1
+#
+# Then set the "API endpoint" preference to the printed URL. Set JAVA_HOME to
+# choose the JDK.
+set -e
+cd "$(dirname "$0")/.."
+
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+JAVAC="${JAVA_HOME:+$JAVA_HOME/bin/}javac"
+OUT=bin-tools
+
+"$JAVAC" -d "$OUT" -sourcepath src:tools \
+    tools/com/deepseek/plugin/tools/MockDeepSeekServer.java
+exec "$JAVA" -cp "$OUT" com.deepseek.plugin.tools.MockDeepSeekServer "$@"